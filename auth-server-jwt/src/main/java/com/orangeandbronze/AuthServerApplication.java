@@ -2,10 +2,12 @@ package com.orangeandbronze;
 
 import java.security.Principal;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.authentication.configurers.GlobalAuthenticationConfigurerAdapter;
 import org.springframework.security.oauth2.config.annotation.web.configuration.EnableAuthorizationServer;
@@ -47,10 +49,13 @@ public class AuthServerApplication {
     @Configuration
     public static class AuthenticationManagerConfig
     		extends GlobalAuthenticationConfigurerAdapter {
+    	@Autowired
+    	private DaoAuthenticationProvider userAuthenticationProvider;
+
     	@Override
     	public void init(AuthenticationManagerBuilder auth) throws Exception {
-            auth.inMemoryAuthentication()
-            	.withUser("user").password("secret").roles("USER", "ADMIN");
+    		// users are kept in the database (see data.sql for "user")
+            auth.authenticationProvider(userAuthenticationProvider);
     	}
 
     }
@@ -1,7 +1,12 @@
 package com.orangeandbronze;
 
+import com.orangeandbronze.store.BoundedPasswordEncoder;
+import com.orangeandbronze.store.CachingClientDetailsService;
+import com.orangeandbronze.token.SigningJwtAccessTokenConverter;
+import com.orangeandbronze.token.TokenSigningProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
@@ -13,9 +18,16 @@ import org.springframework.security.oauth2.config.annotation.web.configurers.Aut
 import org.springframework.security.oauth2.provider.token.TokenStore;
 import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
 import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
-import org.springframework.security.oauth2.provider.token.store.KeyStoreKeyFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.PrivateKey;
 
 @Configuration
+@EnableConfigurationProperties(TokenSigningProperties.class)
 public class OAuthConfig extends AuthorizationServerConfigurerAdapter {
 
 	@Value("${jwt.keystore.classPathResource:'jwt.jks'}")
@@ -29,6 +41,12 @@ public class OAuthConfig extends AuthorizationServerConfigurerAdapter {
 
 	@Autowired
 	private AuthenticationManager authenticationManager;
+	@Autowired
+	private TokenSigningProperties tokenSigningProperties;
+	@Autowired
+	private CachingClientDetailsService clientDetailsService;
+	@Autowired
+	private BoundedPasswordEncoder passwordEncoder;
 
 	@Bean
 	TokenStore jwtTokenStore() {
@@ -41,22 +59,36 @@ public class OAuthConfig extends AuthorizationServerConfigurerAdapter {
 	 */
 	@Bean
 	JwtAccessTokenConverter jwtTokenEnhancer() {
-		JwtAccessTokenConverter converter = new JwtAccessTokenConverter();
-
 		// when using symmetric encryption
 		// converter.setSigningKey(...);
 
 		// we opted to use asymmetric (public-private) encryption
-		// the public-private key-pair is stored in a file (key store)
-		KeyStoreKeyFactory keyStoreKeyFactory = new KeyStoreKeyFactory(
-				new ClassPathResource(keyStoreClassPathResource), keyStorePassword.toCharArray());
-		converter.setKeyPair(keyStoreKeyFactory.getKeyPair(
-				keyStoreKeyPair, keyStoreKeyPairPassword.toCharArray()));
-		return converter;
+		// the public-private key-pair is stored in a file (key store),
+		// read once here; the converter keeps a signer built from it
+		return new SigningJwtAccessTokenConverter(loadKeyPair(), tokenSigningProperties);
+	}
+
+	/*
+	 * KeyStoreKeyFactory only reads RSA key pairs; this reads EC ones too.
+	 */
+	private KeyPair loadKeyPair() {
+		try (InputStream in = new ClassPathResource(keyStoreClassPathResource).getInputStream()) {
+			KeyStore keyStore = KeyStore.getInstance("jks");
+			keyStore.load(in, keyStorePassword.toCharArray());
+			PrivateKey privateKey = (PrivateKey) keyStore.getKey(keyStoreKeyPair, keyStoreKeyPairPassword.toCharArray());
+			if (privateKey == null) {
+				throw new IllegalStateException("No key pair " + keyStoreKeyPair + " in " + keyStoreClassPathResource);
+			}
+			return new KeyPair(keyStore.getCertificate(keyStoreKeyPair).getPublicKey(), privateKey);
+		} catch (GeneralSecurityException | IOException ex) {
+			throw new IllegalStateException("Cannot load key pair " + keyStoreKeyPair + " from " + keyStoreClassPathResource, ex);
+		}
 	}
 
 	@Override
 	public void configure(AuthorizationServerEndpointsConfigurer endpoints) throws Exception {
+		// these calls go through the configuration proxy, so they return the
+		// singletons; the key store is not read again
 		endpoints.tokenStore(jwtTokenStore())
 			.tokenEnhancer(jwtTokenEnhancer())
 			.authenticationManager(authenticationManager);
@@ -66,6 +98,8 @@ public class OAuthConfig extends AuthorizationServerConfigurerAdapter {
 	public void configure(AuthorizationServerSecurityConfigurer security) throws Exception {
 		// @formatter:off
 		security
+			.passwordEncoder(passwordEncoder)
+				// client secrets are stored hashed, like user passwords
 			.tokenKeyAccess("permitAll()")
 				// allow anyone to get public key (since we're using public-private encryption)
 				// public key can be retrieved from "/oauth/token_key"
@@ -77,13 +111,8 @@ public class OAuthConfig extends AuthorizationServerConfigurerAdapter {
 
 	@Override
 	public void configure(ClientDetailsServiceConfigurer clients) throws Exception {
-		// @formatter:off
-		clients.inMemory()
-			.withClient("acme")
-				.secret("acmesecret")
-				.authorizedGrantTypes("authorization_code", "refresh_token", "password")
-				.scopes("openid");
-		// @formatter:on
+		// clients are kept in the database (see data.sql for "acme")
+		clients.withClientDetails(clientDetailsService);
 	}
 
 }
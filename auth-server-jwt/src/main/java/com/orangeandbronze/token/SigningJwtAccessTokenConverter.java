@@ -0,0 +1,101 @@
+package com.orangeandbronze.token;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orangeandbronze.jws.EcdsaSigner;
+import com.orangeandbronze.jws.EcdsaVerifier;
+import org.springframework.security.jwt.crypto.sign.RsaSigner;
+import org.springframework.security.jwt.crypto.sign.RsaVerifier;
+import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
+import org.springframework.security.jwt.crypto.sign.Signer;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Issues JWTs with a signer built once from the key pair, and
+ * publishes the matching public key on {@code /oauth/token_key}.
+ * </p><p>
+ * The header segment is encoded once, and the claims are written straight
+ * to bytes with one shared {@link ObjectMapper} instead of going through
+ * a JSON string. With {@code jwt.signing.compact-claims}, scope is written
+ * as a space-delimited string. Authorities stay an array: for a token
+ * with no user, such as a client credentials one, Spring's
+ * {@code DefaultAccessTokenConverter} reads them as a collection only.
+ * </p>
+ */
+public class SigningJwtAccessTokenConverter extends JwtAccessTokenConverter {
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final Signer signer;
+    private final String headerSegment;
+    private final boolean compactClaims;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public SigningJwtAccessTokenConverter(KeyPair keyPair, TokenSigningProperties properties) {
+        String algorithm = properties.getAlgorithm();
+        SignatureVerifier verifier;
+        if (keyPair.getPrivate() instanceof RSAPrivateKey) {
+            if (!"RS256".equals(algorithm)) {
+                // the resource servers read an RSA key as SHA256withRSA
+                throw new IllegalStateException("An RSA key pair signs RS256 only, not " + algorithm);
+            }
+            signer = new RsaSigner((RSAPrivateKey) keyPair.getPrivate());
+            verifier = new RsaVerifier((RSAPublicKey) keyPair.getPublic());
+        } else if (keyPair.getPrivate() instanceof ECPrivateKey) {
+            signer = new EcdsaSigner((ECPrivateKey) keyPair.getPrivate());
+            verifier = new EcdsaVerifier((ECPublicKey) keyPair.getPublic());
+            String curveAlgorithm = "ES" + signer.algorithm().substring(3, 6);
+            if (!curveAlgorithm.equals(algorithm)) {
+                throw new IllegalStateException("The EC key pair's curve signs " + curveAlgorithm + ", not " + algorithm);
+            }
+        } else {
+            throw new IllegalStateException("Unsupported key pair: " + keyPair.getPrivate().getAlgorithm());
+        }
+        setSigner(signer);
+        setVerifier(verifier);
+        setVerifierKey("-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----");
+        this.headerSegment = BASE64URL.encodeToString(
+                ("{\"alg\":\"" + algorithm + "\",\"typ\":\"JWT\"}").getBytes(StandardCharsets.UTF_8));
+        this.compactClaims = properties.isCompactClaims();
+    }
+
+    @Override
+    protected String encode(OAuth2AccessToken accessToken, OAuth2Authentication authentication) {
+        Map<String, ?> claims = getAccessTokenConverter().convertAccessToken(accessToken, authentication);
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(compactClaims ? compact(claims) : claims);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot convert access token to JSON", ex);
+        }
+        String content = headerSegment + '.' + BASE64URL.encodeToString(payload);
+        byte[] signature = signer.sign(content.getBytes(StandardCharsets.US_ASCII));
+        return content + '.' + BASE64URL.encodeToString(signature);
+    }
+
+    private static Map<String, ?> compact(Map<String, ?> claims) {
+        Map<String, Object> compact = new LinkedHashMap<>(claims);
+        Object scope = compact.get(SCOPE);
+        if (scope instanceof Collection) {
+            compact.put(SCOPE, StringUtils.collectionToDelimitedString((Collection<?>) scope, " "));
+        }
+        return compact;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.orangeandbronze.token;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "jwt.signing")
+public class TokenSigningProperties {
+
+    /**
+     * JWS algorithm tokens are signed with: RS256 for an RSA key pair, or
+     * ES256, ES384 or ES512 for an EC key pair on the matching curve.
+     */
+    private String algorithm = "RS256";
+
+    /**
+     * Whether scope goes in the token as a space-delimited string rather
+     * than a JSON array. Spring's token converters read either; authorities
+     * stay an array, which is all they read for a token with no user.
+     */
+    private boolean compactClaims = false;
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public boolean isCompactClaims() {
+        return compactClaims;
+    }
+
+    public void setCompactClaims(boolean compactClaims) {
+        this.compactClaims = compactClaims;
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.orangeandbronze.store;
+
+import com.orangeandbronze.AuthServerApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.http.client.support.BasicAuthorizationInterceptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Logins per second against a store of 200,000 users. Three threads
+ * post password grants to {@code /oauth/token} for random users, while one
+ * thread keeps asking for {@code /oauth/token_key}, a request that hashes
+ * nothing. Run with one hashing thread and with as many as there are
+ * callers, to show how much the hashing pool leaves for other requests.
+ * </p><p>
+ * Every user has the same password, hashed once, so that seeding takes
+ * seconds rather than hours.
+ * </p><p>
+ * Not run by the build:
+ * </p>
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.store.LoginBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+
+    private static final int USERS = 200000;
+
+    @Param({"10"})
+    public int hashStrength;
+
+    @Param({"1", "3"})
+    public int hashingThreads;
+
+    private EmbeddedWebApplicationContext context;
+    private RestTemplate client;
+    private final RestTemplate anonymous = new RestTemplate();
+    private String baseUri;
+
+    @Setup
+    public void setUp() {
+        context = (EmbeddedWebApplicationContext) SpringApplication.run(AuthServerApplication.class,
+                "--server.port=0",
+                "--auth.store.hash-strength=" + hashStrength,
+                "--auth.store.hashing-threads=" + hashingThreads,
+                "--logging.level.root=warn",
+                "--logging.level.com.orangeandbronze=warn",
+                "--logging.level.org.springframework.web.filter=warn");
+        seed(context.getBean(JdbcTemplate.class), new BCryptPasswordEncoder(hashStrength).encode("secret"));
+        baseUri = "http://localhost:" + context.getEmbeddedServletContainer().getPort() + "/uaa";
+        client = new RestTemplate();
+        client.getInterceptors().add(new BasicAuthorizationInterceptor("acme", "acmesecret"));
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, String hash) {
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> authorities = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[] {"user-" + i, hash});
+            authorities.add(new Object[] {"user-" + i});
+        }
+        jdbcTemplate.batchUpdate("insert into users (username, password, enabled) values (?, ?, true)", users);
+        jdbcTemplate.batchUpdate("insert into authorities (username, authority) values (?, 'ROLE_USER')",
+                authorities);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("burst")
+    @GroupThreads(3)
+    public Map<?, ?> login() {
+        MultiValueMap<String, String> grant = new LinkedMultiValueMap<>();
+        grant.add("grant_type", "password");
+        grant.add("username", "user-" + ThreadLocalRandom.current().nextInt(USERS));
+        grant.add("password", "secret");
+        return client.postForObject(baseUri + "/oauth/token", grant, Map.class);
+    }
+
+    @Benchmark
+    @Group("burst")
+    @GroupThreads(1)
+    public Map<?, ?> tokenKey() {
+        return anonymous.getForObject(baseUri + "/oauth/token_key", Map.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoginBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
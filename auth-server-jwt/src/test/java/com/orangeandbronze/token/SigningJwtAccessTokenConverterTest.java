@@ -0,0 +1,170 @@
+package com.orangeandbronze.token;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.RsaVerifier;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SigningJwtAccessTokenConverterTest {
+
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<Map<String, Object>>() { };
+
+    private final TokenSigningProperties properties = new TokenSigningProperties();
+
+    @Test
+    public void rs256TokenVerifiesWithThePublishedKey() throws Exception {
+        SigningJwtAccessTokenConverter converter = new SigningJwtAccessTokenConverter(rsaKeyPair(), properties);
+
+        String token = issue(converter).getValue();
+
+        // what a resource server does with /oauth/token_key
+        JwtHelper.decodeAndVerify(token, new RsaVerifier(converter.getKey().get("value")));
+        assertEquals("RS256", header(token).get("alg"));
+        assertEquals("user", new JwtTokenStore(converter).readAuthentication(token).getName());
+    }
+
+    @Test
+    public void es256TokenRoundTrips() throws Exception {
+        properties.setAlgorithm("ES256");
+        SigningJwtAccessTokenConverter converter = new SigningJwtAccessTokenConverter(ecKeyPair(), properties);
+
+        String token = issue(converter).getValue();
+
+        assertEquals("ES256", header(token).get("alg"));
+        // r and s, 32 bytes each
+        assertEquals(86, token.substring(token.lastIndexOf('.') + 1).length());
+        OAuth2Authentication authentication = new JwtTokenStore(converter).readAuthentication(token);
+        assertEquals("user", authentication.getName());
+        assertEquals(Collections.singleton("openid"), authentication.getOAuth2Request().getScope());
+    }
+
+    @Test
+    public void tamperedTokenIsRejected() throws Exception {
+        properties.setAlgorithm("ES256");
+        SigningJwtAccessTokenConverter converter = new SigningJwtAccessTokenConverter(ecKeyPair(), properties);
+        String[] parts = issue(converter).getValue().split("\\.");
+        String[] other = issue(new SigningJwtAccessTokenConverter(ecKeyPair(), properties)).getValue().split("\\.");
+
+        assertRejected(converter, parts[0] + '.' + parts[1] + '.' + other[2]);
+        String claims = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("\"user_name\":\"user\"", "\"user_name\":\"admin\"");
+        assertRejected(converter, parts[0] + '.'
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(claims.getBytes(StandardCharsets.UTF_8))
+                + '.' + parts[2]);
+        assertRejected(converter, parts[0] + '.' + parts[1] + '.' + parts[2].substring(0, 43));
+    }
+
+    @Test
+    public void compactClaimsAreReadBack() throws Exception {
+        properties.setCompactClaims(true);
+        SigningJwtAccessTokenConverter converter = new SigningJwtAccessTokenConverter(rsaKeyPair(), properties);
+
+        String token = issue(converter).getValue();
+
+        Map<String, Object> claims = new ObjectMapper().readValue(
+                JwtHelper.decode(token).getClaims(), JSON_OBJECT);
+        assertEquals("openid", claims.get(JwtAccessTokenConverter.SCOPE));
+        assertEquals(Arrays.asList("ROLE_USER", "ROLE_ADMIN"), claims.get(JwtAccessTokenConverter.AUTHORITIES));
+        OAuth2Authentication authentication = new JwtTokenStore(converter).readAuthentication(token);
+        assertEquals(Collections.singleton("openid"), authentication.getOAuth2Request().getScope());
+        assertEquals(AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"),
+                authentication.getAuthorities());
+    }
+
+    @Test
+    public void compactClientCredentialsTokenIsReadByAStockConverter() throws Exception {
+        properties.setCompactClaims(true);
+        SigningJwtAccessTokenConverter converter = new SigningJwtAccessTokenConverter(rsaKeyPair(), properties);
+        DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken("opaque");
+        accessToken.setScope(new LinkedHashSet<>(Arrays.asList("read", "write")));
+        OAuth2Request request = new OAuth2Request(null, "acme",
+                AuthorityUtils.createAuthorityList("ROLE_CLIENT", "ROLE_TRUSTED"), true,
+                accessToken.getScope(), null, null, null, null);
+
+        String token = converter.enhance(accessToken, new OAuth2Authentication(request, null)).getValue();
+
+        // what a resource server without this converter does
+        JwtAccessTokenConverter stock = new JwtAccessTokenConverter();
+        stock.setVerifier(new RsaVerifier(converter.getKey().get("value")));
+        OAuth2Authentication authentication = new JwtTokenStore(stock).readAuthentication(token);
+        assertTrue(authentication.isClientOnly());
+        assertEquals("acme", authentication.getOAuth2Request().getClientId());
+        assertEquals(accessToken.getScope(), authentication.getOAuth2Request().getScope());
+        assertEquals(AuthorityUtils.createAuthorityList("ROLE_CLIENT", "ROLE_TRUSTED"),
+                authentication.getAuthorities());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void algorithmMustMatchTheKeyPair() throws Exception {
+        properties.setAlgorithm("ES256");
+        new SigningJwtAccessTokenConverter(rsaKeyPair(), properties);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void algorithmMustMatchTheCurve() throws Exception {
+        properties.setAlgorithm("ES384");
+        new SigningJwtAccessTokenConverter(ecKeyPair(), properties);
+    }
+
+    private static void assertRejected(JwtAccessTokenConverter converter, String token) {
+        try {
+            new JwtTokenStore(converter).readAuthentication(token);
+            fail("Expected the token to be rejected");
+        } catch (InvalidTokenException expected) {
+        }
+    }
+
+    static OAuth2AccessToken issue(JwtAccessTokenConverter converter) {
+        DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken("opaque");
+        accessToken.setScope(Collections.singleton("openid"));
+        accessToken.setExpiration(new Date(System.currentTimeMillis() + 3600000));
+        OAuth2Request request = new OAuth2Request(null, "acme", null, true,
+                Collections.singleton("openid"), null, null, null, null);
+        OAuth2Authentication authentication = new OAuth2Authentication(request,
+                new UsernamePasswordAuthenticationToken("user", "N/A",
+                        AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN")));
+        return converter.enhance(accessToken, authentication);
+    }
+
+    private static Map<String, Object> header(String token) throws Exception {
+        return new ObjectMapper().readValue(
+                Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))), JSON_OBJECT);
+    }
+
+    static KeyPair rsaKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    static KeyPair ecKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+}
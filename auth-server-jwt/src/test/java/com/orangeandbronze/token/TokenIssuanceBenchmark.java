@@ -0,0 +1,139 @@
+package com.orangeandbronze.token;
+
+import com.orangeandbronze.AuthServerApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.http.client.support.BasicAuthorizationInterceptor;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import java.security.KeyPair;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Tokens issued per second. {@code token} posts a password grant to
+ * {@code /oauth/token} of a running auth server, which signs an access
+ * token and a refresh token per call; the others time the signing step
+ * alone, {@link JwtAccessTokenConverter#enhance}, with a 2048-bit RSA key
+ * and with a P-256 EC key. {@code stock} is the converter the auth server
+ * used before {@link SigningJwtAccessTokenConverter}.
+ * </p><p>
+ * Not run by the build:
+ * </p>
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.token.TokenIssuanceBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TokenIssuanceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class AuthServer {
+
+        @Param({"RS256", "ES256"})
+        public String algorithm;
+
+        @Param({"false", "true"})
+        public boolean compactClaims;
+
+        private EmbeddedWebApplicationContext context;
+        private RestTemplate restTemplate;
+        private String tokenUri;
+        private final MultiValueMap<String, String> grant = new LinkedMultiValueMap<>();
+
+        @Setup
+        public void setUp() {
+            context = (EmbeddedWebApplicationContext) SpringApplication.run(AuthServerApplication.class,
+                    "--server.port=0",
+                    "--jwt.keystore.keyPair=" + ("RS256".equals(algorithm) ? "jwt" : "jwt-ec"),
+                    "--jwt.signing.algorithm=" + algorithm,
+                    "--jwt.signing.compact-claims=" + compactClaims,
+                    "--logging.level.root=warn",
+                    "--logging.level.com.orangeandbronze=warn",
+                    "--logging.level.org.springframework.web.filter=warn");
+            tokenUri = "http://localhost:" + context.getEmbeddedServletContainer().getPort() + "/uaa/oauth/token";
+            restTemplate = new RestTemplate();
+            restTemplate.getInterceptors().add(new BasicAuthorizationInterceptor("acme", "acmesecret"));
+            grant.add("grant_type", "password");
+            grant.add("username", "user");
+            grant.add("password", "secret");
+        }
+
+        @TearDown
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Converters {
+
+        private JwtAccessTokenConverter stock;
+        private JwtAccessTokenConverter rs256;
+        private JwtAccessTokenConverter es256;
+
+        @Setup
+        public void setUp() throws Exception {
+            KeyPair rsaKeyPair = SigningJwtAccessTokenConverterTest.rsaKeyPair();
+            stock = new JwtAccessTokenConverter();
+            stock.setKeyPair(rsaKeyPair);
+            TokenSigningProperties properties = new TokenSigningProperties();
+            rs256 = new SigningJwtAccessTokenConverter(rsaKeyPair, properties);
+            properties.setAlgorithm("ES256");
+            es256 = new SigningJwtAccessTokenConverter(SigningJwtAccessTokenConverterTest.ecKeyPair(), properties);
+        }
+    }
+
+    @Benchmark
+    public Map<?, ?> token(AuthServer authServer) {
+        return authServer.restTemplate.postForObject(authServer.tokenUri, authServer.grant, Map.class);
+    }
+
+    @Benchmark
+    public OAuth2AccessToken stock(Converters converters) {
+        return SigningJwtAccessTokenConverterTest.issue(converters.stock);
+    }
+
+    @Benchmark
+    public OAuth2AccessToken rs256(Converters converters) {
+        return SigningJwtAccessTokenConverterTest.issue(converters.rs256);
+    }
+
+    @Benchmark
+    public OAuth2AccessToken es256(Converters converters) {
+        return SigningJwtAccessTokenConverterTest.issue(converters.es256);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TokenIssuanceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.orangeandbronze;
+
+import com.orangeandbronze.store.BoundedPasswordEncoder;
+import com.orangeandbronze.store.CachingClientDetailsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.oauth2.config.annotation.configurers.ClientDetailsServiceConfigurer;
+import org.springframework.security.oauth2.config.annotation.web.configuration.AuthorizationServerConfigurerAdapter;
+import org.springframework.security.oauth2.config.annotation.web.configurers.AuthorizationServerEndpointsConfigurer;
+import org.springframework.security.oauth2.config.annotation.web.configurers.AuthorizationServerSecurityConfigurer;
+
+/**
+ * Takes over from Spring Boot's authorization server configuration, which
+ * can only hold the one client in {@code security.oauth2.client.*}.
+ */
+@Configuration
+public class OAuthConfig extends AuthorizationServerConfigurerAdapter {
+
+	@Autowired
+	private AuthenticationManager authenticationManager;
+	@Autowired
+	private CachingClientDetailsService clientDetailsService;
+	@Autowired
+	private BoundedPasswordEncoder passwordEncoder;
+
+	@Override
+	public void configure(AuthorizationServerEndpointsConfigurer endpoints) throws Exception {
+		// needed for the password grant
+		endpoints.authenticationManager(authenticationManager);
+	}
+
+	@Override
+	public void configure(AuthorizationServerSecurityConfigurer security) throws Exception {
+		// client secrets are stored hashed, like user passwords
+		security.passwordEncoder(passwordEncoder);
+	}
+
+	@Override
+	public void configure(ClientDetailsServiceConfigurer clients) throws Exception {
+		// clients are kept in the database (see data.sql for "acme")
+		clients.withClientDetails(clientDetailsService);
+	}
+
+}
@@ -0,0 +1,10 @@
+-- The demo user (password "secret") and client (secret "acmesecret"),
+-- hashed with BCrypt
+merge into users key(username)
+	values ('user', '$2a$10$aLZqeF7jHxT/hR5lXo9yGek2MKZmz.4pffZ5oQGz/dSXnKILIEypy', true);
+merge into authorities key(username, authority) values ('user', 'ROLE_USER');
+merge into authorities key(username, authority) values ('user', 'ROLE_ADMIN');
+
+merge into oauth_client_details (client_id, client_secret, scope, authorized_grant_types) key(client_id)
+	values ('acme', '$2a$10$jgM3ZaM1vRNf/PO.3POKUufxa55N/YLgsCovUQKBodtPuaxw5NHKO', 'openid',
+		'authorization_code,refresh_token,password');
@@ -0,0 +1,29 @@
+-- Spring Security's JdbcUserDetailsManager tables; a login looks the user
+-- up by primary key, and its authorities by the unique index.
+create table if not exists users (
+	username varchar_ignorecase(50) not null primary key,
+	password varchar(100) not null,
+	enabled boolean not null
+);
+
+create table if not exists authorities (
+	username varchar_ignorecase(50) not null,
+	authority varchar_ignorecase(50) not null,
+	constraint fk_authorities_users foreign key(username) references users(username)
+);
+create unique index if not exists ix_auth_username on authorities (username, authority);
+
+-- Spring Security OAuth's JdbcClientDetailsService table
+create table if not exists oauth_client_details (
+	client_id varchar(256) not null primary key,
+	resource_ids varchar(256),
+	client_secret varchar(256),
+	scope varchar(256),
+	authorized_grant_types varchar(256),
+	web_server_redirect_uri varchar(256),
+	authorities varchar(256),
+	access_token_validity integer,
+	refresh_token_validity integer,
+	additional_information varchar(4096),
+	autoapprove varchar(256)
+);
@@ -1,16 +1,62 @@
 package io.pivotal;
 
+import com.orangeandbronze.AuthServerApplication;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(classes = AuthServerApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class AuthServerApplicationTests {
 
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Before
+	public void setUp() {
+		// lets HttpURLConnection hand back a 401 to a POST
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setOutputStreaming(false);
+		restTemplate.getRestTemplate().setRequestFactory(requestFactory);
+	}
+
 	@Test
 	public void contextLoads() {
 	}
 
+	@Test
+	public void storedUserAndClientGetAToken() {
+		ResponseEntity<Map> response = passwordGrant("acmesecret", "secret");
+
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertNotNull(response.getBody().get("access_token"));
+	}
+
+	@Test
+	public void wrongPasswordOrSecretGetsNoToken() {
+		assertNotEquals(HttpStatus.OK, passwordGrant("acmesecret", "wrong").getStatusCode());
+		assertEquals(HttpStatus.UNAUTHORIZED, passwordGrant("wrong", "secret").getStatusCode());
+	}
+
+	private ResponseEntity<Map> passwordGrant(String clientSecret, String password) {
+		MultiValueMap<String, String> grant = new LinkedMultiValueMap<>();
+		grant.add("grant_type", "password");
+		grant.add("username", "user");
+		grant.add("password", password);
+		return restTemplate.withBasicAuth("acme", clientSecret).postForEntity("/oauth/token", grant, Map.class);
+	}
+
 }
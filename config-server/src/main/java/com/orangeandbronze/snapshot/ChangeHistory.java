@@ -0,0 +1,113 @@
+package com.orangeandbronze.snapshot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <p>The last few changes of each snapshot, as the property keys that
+ * changed from one ETag to the next, and who is waiting for the next one.
+ * </p><p>
+ * Like the snapshots it is only kept in memory, so after a restart
+ * clients are told to reload everything.
+ * </p>
+ */
+class ChangeHistory {
+
+    private final int depth;
+    // guarded by this
+    private final Map<String, Deque<Change>> changes = new HashMap<>();
+    private final Map<String, Set<Runnable>> waiters = new HashMap<>();
+
+    ChangeHistory(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * @return the waiters this change is for
+     */
+    synchronized List<Runnable> record(String key, String from, String to, Set<String> keys) {
+        Deque<Change> recent = changes.computeIfAbsent(key, k -> new ArrayDeque<>());
+        recent.addLast(new Change(from, to, keys));
+        if (recent.size() > depth) {
+            recent.removeFirst();
+        }
+        Set<Runnable> woken = waiters.remove(key);
+        return woken == null ? Collections.emptyList() : new ArrayList<>(woken);
+    }
+
+    /**
+     * The keys changed after {@code since} up to {@code current}, or null
+     * when that is no longer known.
+     */
+    synchronized Set<String> keysSince(String key, String since, String current) {
+        Deque<Change> recent = changes.get(key);
+        if (recent == null || recent.isEmpty() || !recent.getLast().to.equals(current)) {
+            return null;
+        }
+        Set<String> keys = new TreeSet<>();
+        for (Iterator<Change> it = recent.descendingIterator(); it.hasNext(); ) {
+            Change change = it.next();
+            keys.addAll(change.keys);
+            if (change.from.equals(since)) {
+                return keys;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs {@code waiter} with the next change to {@code key}, or right away
+     * if there has been one since {@code since}.
+     */
+    void await(String key, String since, Runnable waiter) {
+        synchronized (this) {
+            Deque<Change> recent = changes.get(key);
+            if (recent == null || recent.isEmpty() || recent.getLast().to.equals(since)) {
+                waiters.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(waiter);
+                return;
+            }
+        }
+        waiter.run();
+    }
+
+    synchronized void cancel(String key, Runnable waiter) {
+        Set<Runnable> waiting = waiters.get(key);
+        if (waiting != null) {
+            waiting.remove(waiter);
+            if (waiting.isEmpty()) {
+                waiters.remove(key);
+            }
+        }
+    }
+
+    synchronized int waiting() {
+        int waiting = 0;
+        for (Set<Runnable> set : waiters.values()) {
+            waiting += set.size();
+        }
+        return waiting;
+    }
+
+    private static class Change {
+
+        final String from;
+        final String to;
+        final Set<String> keys;
+
+        Change(String from, String to, Set<String> keys) {
+            this.from = from;
+            this.to = to;
+            this.keys = keys;
+        }
+    }
+
+}
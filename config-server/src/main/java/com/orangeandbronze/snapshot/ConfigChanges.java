@@ -0,0 +1,32 @@
+package com.orangeandbronze.snapshot;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Collection;
+
+/**
+ * What changed in an application's configuration: the property keys,
+ * without values, and the ETag it changed to. Null keys mean the client
+ * has to assume everything did.
+ */
+public final class ConfigChanges {
+
+    private final String version;
+    private final Collection<String> keys;
+
+    @JsonCreator
+    public ConfigChanges(@JsonProperty("version") String version, @JsonProperty("keys") Collection<String> keys) {
+        this.version = version;
+        this.keys = keys;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Collection<String> getKeys() {
+        return keys;
+    }
+
+}
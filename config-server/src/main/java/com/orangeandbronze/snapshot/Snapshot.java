@@ -0,0 +1,59 @@
+package com.orangeandbronze.snapshot;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.cloud.config.environment.Environment;
+
+/**
+ * The configuration resolved for one application, profile and label, as
+ * the Git repository had it at {@link Environment#getVersion()}, before
+ * decryption. The ETag changes whenever anything in it does.
+ */
+public final class Snapshot {
+
+    private final String application;
+    private final String profile;
+    private final String label;
+    private final Environment environment;
+    private final String etag;
+
+    @JsonCreator
+    public Snapshot(@JsonProperty("application") String application, @JsonProperty("profile") String profile,
+            @JsonProperty("label") String label, @JsonProperty("environment") Environment environment,
+            @JsonProperty("etag") String etag) {
+        this.application = application;
+        this.profile = profile;
+        this.label = label;
+        this.environment = environment;
+        this.etag = etag;
+    }
+
+    static String key(String application, String profile, String label) {
+        return application + '/' + profile + '/' + (label == null ? "" : label);
+    }
+
+    String key() {
+        return key(application, profile, label);
+    }
+
+    public String getApplication() {
+        return application;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.orangeandbronze.snapshot;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Collections;
+
+/**
+ * <p>Lets clients wait for their configuration to change instead of
+ * polling it, or being told to refresh from outside.
+ * </p><p>
+ * {@code GET /changes/{name}/{profiles}[/{label}]?since=<etag>&wait=<ms>}
+ * answers with the {@link ConfigChanges} since the snapshot with that ETag
+ * as soon as there are any, or 304 once {@code wait} (at most
+ * {@code max-wait}) runs out. Without {@code since} it answers right away
+ * with the current ETag and no keys, for a client to start from.
+ * </p>
+ */
+@RestController
+@RequestMapping("/changes")
+@ConditionalOnProperty(prefix = "config.snapshot", name = "enabled", havingValue = "true")
+public class SnapshotChangeController {
+
+    private final SnapshotEnvironmentRepository repository;
+    private final long maxWait;
+
+    @Autowired
+    public SnapshotChangeController(SnapshotEnvironmentRepository repository, SnapshotProperties properties) {
+        this.repository = repository;
+        this.maxWait = properties.getMaxWait();
+    }
+
+    @RequestMapping(value = "/{name}/{profiles}", method = RequestMethod.GET)
+    public DeferredResult<ResponseEntity<ConfigChanges>> changes(@PathVariable String name,
+            @PathVariable String profiles, @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "0") long wait) {
+        return changes(name, profiles, null, since, wait);
+    }
+
+    @RequestMapping(value = "/{name}/{profiles}/{label:.+}", method = RequestMethod.GET)
+    public DeferredResult<ResponseEntity<ConfigChanges>> changes(@PathVariable String name,
+            @PathVariable String profiles, @PathVariable String label, @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "0") long wait) {
+        String application = unescape(name);
+        String profile = unescape(profiles);
+        String branch = unescape(label);
+        long timeout = Math.min(Math.max(wait, 0), maxWait);
+        DeferredResult<ResponseEntity<ConfigChanges>> result = new DeferredResult<>(timeout,
+                ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+        if (since == null) {
+            Snapshot snapshot = repository.snapshot(application, profile, branch);
+            result.setResult(ok(new ConfigChanges(snapshot.getEtag(), Collections.<String>emptyList())));
+            return result;
+        }
+        ConfigChanges changes = repository.changes(application, profile, branch, since);
+        if (changes != null || timeout == 0) {
+            result.setResult(ok(changes));
+            return result;
+        }
+        Runnable waiter = () -> result.setResult(ok(repository.changes(application, profile, branch, since)));
+        result.onCompletion(() -> repository.cancelWait(application, profile, branch, waiter));
+        repository.await(application, profile, branch, since, waiter);
+        return result;
+    }
+
+    private static ResponseEntity<ConfigChanges> ok(ConfigChanges changes) {
+        if (changes == null) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(changes);
+    }
+
+    // as EnvironmentController does with names, profiles and labels
+    private static String unescape(String value) {
+        return value == null ? null : value.replace("(_)", "/");
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.orangeandbronze.snapshot;
+
+import org.eclipse.jgit.api.TransportConfigCallback;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.bind.PropertiesConfigurationFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.config.server.config.ConfigServerProperties;
+import org.springframework.cloud.config.server.environment.MultipleJGitEnvironmentRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Puts {@link SnapshotEnvironmentRepository} in front of the Git
+ * repository the config server would otherwise use on its own. The Git one
+ * is set up here as the server sets it up by default, but is not a bean:
+ * the server would serve from every repository bean it finds.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "config.snapshot", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(SnapshotProperties.class)
+public class SnapshotConfig extends WebMvcConfigurerAdapter {
+
+    private final ObjectProvider<SnapshotEnvironmentRepository> snapshots;
+
+    public SnapshotConfig(ObjectProvider<SnapshotEnvironmentRepository> snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    @Bean
+    public SnapshotEnvironmentRepository snapshotEnvironmentRepository(ConfigurableEnvironment environment,
+            ResourceLoader resourceLoader, ConfigServerProperties server,
+            ObjectProvider<TransportConfigCallback> transportConfigCallback, SnapshotProperties properties)
+            throws Exception {
+        MultipleJGitEnvironmentRepository git = new MultipleJGitEnvironmentRepository(environment);
+        PropertiesConfigurationFactory<MultipleJGitEnvironmentRepository> binder =
+                new PropertiesConfigurationFactory<>(git);
+        binder.setPropertySources(environment.getPropertySources());
+        binder.setTargetName("spring.cloud.config.server.git");
+        binder.bindPropertiesToTarget();
+        git.setResourceLoader(resourceLoader);
+        git.setTransportConfigCallback(transportConfigCallback.getIfAvailable());
+        if (server.getDefaultLabel() != null) {
+            git.setDefaultLabel(server.getDefaultLabel());
+        }
+        git.afterPropertiesSet();
+        return new SnapshotEnvironmentRepository(git, properties);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new SnapshotEtagInterceptor(snapshots.getObject()));
+    }
+
+}
@@ -0,0 +1,366 @@
+package com.orangeandbronze.snapshot;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.JGitEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.MultipleJGitEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.MultipleJGitEnvironmentRepository.PatternMatchingJGitEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.SearchPathLocator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Serves configuration from {@link Snapshot}s instead of going to Git on
+ * every request.
+ * </p><ul>
+ * <li>The first request for an application, profile and label resolves it
+ * through the Git repository; concurrent ones wait for that one.</li>
+ * <li>Every {@code refresh-interval} a background thread fetches each
+ * label of each repository snapshots came from, and resolves again the
+ * snapshots whose commit is no longer the head. Requests keep getting the
+ * last good snapshot meanwhile, also when Git cannot be reached.</li>
+ * <li>Snapshots are saved to {@code directory} after every change and
+ * loaded at startup, so a restarted server answers before it has cloned
+ * anything.</li>
+ * <li>The property keys each change touched are kept for clients waiting
+ * on {@link SnapshotChangeController}.</li>
+ * </ul><p>
+ * Snapshots hold values as they are in Git, so {@code {cipher}} values are
+ * saved still encrypted; the server decrypts them per request as before.
+ * </p>
+ */
+public class SnapshotEnvironmentRepository implements EnvironmentRepository, SearchPathLocator, PublicMetrics {
+
+    private static final int HISTORY = 16;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final JGitEnvironmentRepository delegate;
+    private final SnapshotProperties properties;
+    private final SnapshotStore store;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // least recently requested first, guarded by itself
+    private final Map<String, Snapshot> snapshots;
+    private final Map<String, CompletableFuture<Snapshot>> resolving = new ConcurrentHashMap<>();
+    private final ChangeHistory history = new ChangeHistory(HISTORY);
+    private final AtomicBoolean saving = new AtomicBoolean();
+    private ScheduledExecutorService refresher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder changes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public SnapshotEnvironmentRepository(JGitEnvironmentRepository delegate, SnapshotProperties properties) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.store = new SnapshotStore(properties.getDirectory(), objectMapper);
+        this.snapshots = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                return size() > properties.getMaxEntries();
+            }
+        };
+    }
+
+    @PostConstruct
+    public void start() {
+        List<Snapshot> saved = store.load();
+        synchronized (snapshots) {
+            for (Snapshot snapshot : saved) {
+                snapshots.put(snapshot.key(), snapshot);
+            }
+        }
+        if (!saved.isEmpty()) {
+            logger.info("Serving {} saved snapshots from {}", saved.size(), properties.getDirectory());
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("config-snapshot-");
+        threadFactory.setDaemon(true);
+        refresher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        // saved snapshots may be behind Git already
+        refresher.scheduleWithFixedDelay(this::refresh, saved.isEmpty() ? properties.getRefreshInterval() : 0,
+                properties.getRefreshInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    @Override
+    public Environment findOne(String application, String profile, String label) {
+        return snapshot(application, profile, label).getEnvironment();
+    }
+
+    /**
+     * The snapshot for a request, resolved through Git if there is none yet.
+     */
+    public Snapshot snapshot(String application, String profile, String label) {
+        String key = Snapshot.key(application, profile, label);
+        Snapshot snapshot;
+        synchronized (snapshots) {
+            snapshot = snapshots.get(key);
+        }
+        if (snapshot != null) {
+            hits.increment();
+            return snapshot;
+        }
+        CompletableFuture<Snapshot> resolved = new CompletableFuture<>();
+        CompletableFuture<Snapshot> pending = resolving.putIfAbsent(key, resolved);
+        if (pending != null) {
+            return join(pending);
+        }
+        misses.increment();
+        try {
+            snapshot = resolve(application, profile, label);
+            put(snapshot);
+            resolved.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException e) {
+            resolved.completeExceptionally(e);
+            throw e;
+        } finally {
+            resolving.remove(key);
+        }
+    }
+
+    /**
+     * Where the Git repository keeps the files, for the plain file
+     * endpoints.
+     */
+    @Override
+    public Locations getLocations(String application, String profile, String label) {
+        return delegate.getLocations(application, profile, label);
+    }
+
+    /**
+     * The keys changed since the snapshot with ETag {@code since}, or null
+     * if it is still the current one.
+     */
+    public ConfigChanges changes(String application, String profile, String label, String since) {
+        Snapshot snapshot = snapshot(application, profile, label);
+        if (snapshot.getEtag().equals(since)) {
+            return null;
+        }
+        return new ConfigChanges(snapshot.getEtag(), history.keysSince(snapshot.key(), since, snapshot.getEtag()));
+    }
+
+    public void await(String application, String profile, String label, String since, Runnable waiter) {
+        history.await(Snapshot.key(application, profile, label), since, waiter);
+    }
+
+    public void cancelWait(String application, String profile, String label, Runnable waiter) {
+        history.cancel(Snapshot.key(application, profile, label), waiter);
+    }
+
+    void notModified() {
+        notModified.increment();
+    }
+
+    /**
+     * Fetches every label snapshots were taken from, in the repository each
+     * came from, and resolves again those whose commit is no longer the head
+     * of it.
+     */
+    void refresh() {
+        List<Snapshot> current;
+        synchronized (snapshots) {
+            current = new ArrayList<>(snapshots.values());
+        }
+        Map<String, String> heads = new LinkedHashMap<>();
+        boolean changed = false;
+        for (Snapshot snapshot : current) {
+            JGitEnvironmentRepository repository = repository(snapshot.getApplication(), snapshot.getProfile(),
+                    snapshot.getLabel());
+            String label = snapshot.getLabel() == null ? repository.getDefaultLabel() : snapshot.getLabel();
+            String branch = repository.getUri() + "#" + label;
+            if (!heads.containsKey(branch)) {
+                heads.put(branch, head(repository, label));
+            }
+            String head = heads.get(branch);
+            // null when unknown: Git unreachable, or a URI with placeholders
+            if (head != null && head.equals(snapshot.getEnvironment().getVersion())) {
+                continue;
+            }
+            try {
+                Snapshot fresh = resolve(snapshot.getApplication(), snapshot.getProfile(), snapshot.getLabel());
+                if (!fresh.getEtag().equals(snapshot.getEtag())) {
+                    synchronized (snapshots) {
+                        snapshots.replace(snapshot.key(), fresh);
+                    }
+                    Set<String> keys = changedKeys(snapshot.getEnvironment(), fresh.getEnvironment());
+                    changes.increment();
+                    changed = true;
+                    logger.debug("{} changed to {}: {}", snapshot.key(), fresh.getEnvironment().getVersion(), keys);
+                    for (Runnable waiter : history.record(snapshot.key(), snapshot.getEtag(), fresh.getEtag(), keys)) {
+                        waiter.run();
+                    }
+                }
+            } catch (RuntimeException e) {
+                failures.increment();
+                logger.warn("Could not refresh {}, still serving {}: {}", snapshot.key(),
+                        snapshot.getEnvironment().getVersion(), e.getMessage());
+            }
+        }
+        refreshes.increment();
+        if (changed) {
+            save();
+        }
+    }
+
+    /**
+     * The head of the label in the repository, fetched, or null if it
+     * cannot be known.
+     */
+    String head(String application, String profile, String label) {
+        JGitEnvironmentRepository repository = repository(application, profile, label);
+        return head(repository, label == null ? repository.getDefaultLabel() : label);
+    }
+
+    private String head(JGitEnvironmentRepository repository, String label) {
+        if (repository.getUri().contains("{")) {
+            // cloned per application or profile, out of reach here
+            return null;
+        }
+        try {
+            return repository.refresh(label);
+        } catch (RuntimeException e) {
+            logger.debug("Could not fetch {}: {}", label, e.getMessage());
+            return null;
+        }
+    }
+
+    // the first whose pattern matches, as MultipleJGitEnvironmentRepository picks it
+    private JGitEnvironmentRepository repository(String application, String profile, String label) {
+        if (delegate instanceof MultipleJGitEnvironmentRepository) {
+            for (PatternMatchingJGitEnvironmentRepository repository
+                    : ((MultipleJGitEnvironmentRepository) delegate).getRepos().values()) {
+                if (repository.matches(application, profile, label)) {
+                    return repository;
+                }
+            }
+        }
+        return delegate;
+    }
+
+    private Snapshot resolve(String application, String profile, String label) {
+        Environment environment = delegate.findOne(application, profile, label);
+        try {
+            String etag = '"' + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(environment)) + '"';
+            return new Snapshot(application, profile, label, environment, etag);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + application + "/" + profile, e);
+        }
+    }
+
+    // keys whose value, after precedence, is not the same in both
+    private static Set<String> changedKeys(Environment before, Environment after) {
+        Map<String, Object> old = flatten(before);
+        Map<String, Object> current = flatten(after);
+        Set<String> keys = new TreeSet<>();
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            if (!Objects.equals(entry.getValue(), old.remove(entry.getKey()))) {
+                keys.add(entry.getKey());
+            }
+        }
+        keys.addAll(old.keySet());
+        return keys;
+    }
+
+    private static Map<String, Object> flatten(Environment environment) {
+        Map<String, Object> properties = new HashMap<>();
+        List<PropertySource> sources = new ArrayList<>(environment.getPropertySources());
+        // the first source wins
+        Collections.reverse(sources);
+        for (PropertySource source : sources) {
+            for (Map.Entry<?, ?> entry : source.getSource().entrySet()) {
+                properties.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+        }
+        return properties;
+    }
+
+    private void put(Snapshot snapshot) {
+        synchronized (snapshots) {
+            snapshots.put(snapshot.key(), snapshot);
+        }
+        save();
+    }
+
+    /**
+     * Saves on the refresh thread, once for any number of changes made
+     * while a save is waiting.
+     */
+    private void save() {
+        if (saving.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                saving.set(false);
+                List<Snapshot> all;
+                synchronized (snapshots) {
+                    all = new ArrayList<>(snapshots.values());
+                }
+                store.save(all);
+            });
+        }
+    }
+
+    private static Snapshot join(CompletableFuture<Snapshot> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        int size;
+        synchronized (snapshots) {
+            size = snapshots.size();
+        }
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("config.snapshot.entries", size),
+                new Metric<>("config.snapshot.hits", hits.sum()),
+                new Metric<>("config.snapshot.misses", misses.sum()),
+                new Metric<>("config.snapshot.not-modified", notModified.sum()),
+                new Metric<>("config.snapshot.refreshes", refreshes.sum()),
+                new Metric<>("config.snapshot.changes", changes.sum()),
+                new Metric<>("config.snapshot.failures", failures.sum()),
+                new Metric<>("config.snapshot.waiting", history.waiting()));
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.orangeandbronze.snapshot;
+
+import org.springframework.cloud.config.server.environment.EnvironmentController;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers {@code 304 Not Modified} when a client asks for configuration
+ * with the ETag of the snapshot it already has, and otherwise adds the
+ * ETag to the response. The ETag is that of the {@code Environment}, so
+ * only the handler methods answering with it ({@code /app/profile} and
+ * {@code /app/profile/label}) are covered. The same controller renders the
+ * {@code .yml}, {@code .properties} and {@code .json} forms, which differ
+ * from it and from each other; those are left as they are.
+ */
+class SnapshotEtagInterceptor extends HandlerInterceptorAdapter {
+
+    private static final Set<String> ENVIRONMENT_METHODS =
+            new HashSet<>(Arrays.asList("defaultLabel", "labelled"));
+
+    private final SnapshotEnvironmentRepository repository;
+
+    SnapshotEtagInterceptor(SnapshotEnvironmentRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod)
+                || ((HandlerMethod) handler).getBeanType() != EnvironmentController.class
+                || !ENVIRONMENT_METHODS.contains(((HandlerMethod) handler).getMethod().getName())) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(
+                HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null || !variables.containsKey("name") || !variables.containsKey("profiles")) {
+            return true;
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = repository.snapshot(unescape(variables.get("name")), unescape(variables.get("profiles")),
+                    unescape(variables.get("label")));
+        } catch (RuntimeException e) {
+            // leave it to the controller and its error handling
+            return true;
+        }
+        response.setHeader(HttpHeaders.ETAG, snapshot.getEtag());
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && ifNoneMatch.contains(snapshot.getEtag())) {
+            repository.notModified();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        return true;
+    }
+
+    // as EnvironmentController does with names, profiles and labels
+    private static String unescape(String value) {
+        return value == null ? null : value.replace("(_)", "/");
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.orangeandbronze.snapshot;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "config.snapshot")
+public class SnapshotProperties {
+
+    /**
+     * Serve configuration from resolved snapshots kept in memory and on
+     * disk, instead of going to Git on every request.
+     */
+    private boolean enabled;
+
+    /**
+     * Where snapshots are saved, to be served right away after a restart.
+     * They hold every value but {cipher} ones in the clear, so they are
+     * written readable by the server's user only; relative to the working
+     * directory unless absolute.
+     */
+    private String directory = "config-snapshots";
+
+    /**
+     * How often (in milliseconds) Git is checked for new commits, and
+     * changed snapshots resolved again.
+     */
+    private long refreshInterval = 30000;
+
+    /**
+     * Most application, profile and label combinations kept. Past this the
+     * least recently requested one is dropped.
+     */
+    private int maxEntries = 1000;
+
+    /**
+     * Longest (in milliseconds) a request for changes is held open waiting
+     * for one.
+     */
+    private long maxWait = 30000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+}
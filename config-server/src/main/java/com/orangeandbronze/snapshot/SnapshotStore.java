@@ -0,0 +1,76 @@
+package com.orangeandbronze.snapshot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps snapshots in one JSON file, replaced whole on every save so a
+ * crash leaves either the old file or the new one. Where the file system
+ * has POSIX permissions, the file and a directory made for it are the
+ * owner's only: snapshots hold configuration as it is in Git, secrets
+ * included.
+ */
+class SnapshotStore {
+
+    private static final String FILE = "snapshots.json";
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    SnapshotStore(String directory, ObjectMapper objectMapper) {
+        this.directory = Paths.get(directory);
+        this.objectMapper = objectMapper;
+    }
+
+    List<Snapshot> load() {
+        Path file = directory.resolve(FILE);
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        try {
+            return objectMapper.readValue(file.toFile(), new TypeReference<List<Snapshot>>() {});
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable snapshots in {}: {}", file, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    void save(List<Snapshot> snapshots) {
+        try {
+            Path temp;
+            if (POSIX) {
+                Files.createDirectories(directory,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+                temp = Files.createTempFile(directory, FILE, ".tmp",
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } else {
+                Files.createDirectories(directory);
+                temp = Files.createTempFile(directory, FILE, ".tmp");
+            }
+            try {
+                objectMapper.writeValue(temp.toFile(), snapshots);
+                Files.move(temp, directory.resolve(FILE), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not save snapshots to {}: {}", directory, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+package com.orangeandbronze.snapshot;
+
+import com.orangeandbronze.ConfigServerApplication;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * A config server over a Git repository in a local directory, and another
+ * for the applications named {@code fortune*}.
+ */
+public class SnapshotEnvironmentRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final RestTemplate restTemplate = new RestTemplate();
+    private File repository;
+    private File fortuneRepository;
+    private File snapshots;
+    private Git git;
+    private Git fortuneGit;
+    private ConfigurableApplicationContext server;
+    private int port;
+
+    @Before
+    public void createRepository() throws Exception {
+        repository = folder.newFolder("config-repo");
+        snapshots = folder.newFolder("snapshots");
+        git = Git.init().setDirectory(repository).call();
+        commit("greeting: Hello");
+        fortuneRepository = folder.newFolder("fortune-repo");
+        fortuneGit = Git.init().setDirectory(fortuneRepository).call();
+        commit(fortuneGit, "fortune.yml", "fortune: Be patient");
+        server = start();
+    }
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+        git.close();
+        fortuneGit.close();
+    }
+
+    @Test
+    public void unchangedConfigurationIsNotSentAgain() {
+        ResponseEntity<Map> first = get(null);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals("Hello", greeting(first));
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+
+        ResponseEntity<Map> second = get(etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getStatusCode());
+        assertNull(second.getBody());
+    }
+
+    @Test
+    public void fileEndpointsGetNoEnvironmentEtag() {
+        String etag = get(null).getHeaders().getETag();
+
+        for (String file : new String[] {"/greeting-default.yml", "/greeting-default.properties",
+                "/master/greeting-default.json"}) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setIfNoneMatch(etag);
+            ResponseEntity<String> response = restTemplate.exchange("http://localhost:" + port + file,
+                    HttpMethod.GET, new HttpEntity<>(headers), String.class);
+            assertEquals(file, HttpStatus.OK, response.getStatusCode());
+            assertNull(file, response.getHeaders().getETag());
+            assertTrue(file, response.getBody().contains("Hello"));
+        }
+    }
+
+    @Test
+    public void refreshPicksUpNewCommits() throws Exception {
+        String etag = get(null).getHeaders().getETag();
+
+        commit("greeting: Howdy");
+        assertEquals("Hello", greeting(get(null)));
+        server.getBean(SnapshotEnvironmentRepository.class).refresh();
+
+        ResponseEntity<Map> changed = get(etag);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertEquals("Howdy", greeting(changed));
+        assertNotEquals(etag, changed.getHeaders().getETag());
+    }
+
+    @Test
+    public void waitingClientsAreToldWhichKeysChanged() throws Exception {
+        commit("greeting: Hello\nfarewell: Bye");
+        server.getBean(SnapshotEnvironmentRepository.class).refresh();
+        String since = restTemplate.getForObject("http://localhost:" + port + "/changes/greeting/default",
+                ConfigChanges.class).getVersion();
+        CompletableFuture<ResponseEntity<ConfigChanges>> waiting = CompletableFuture.supplyAsync(() ->
+                restTemplate.getForEntity("http://localhost:" + port + "/changes/greeting/default?since={since}"
+                        + "&wait=10000", ConfigChanges.class, since));
+
+        commit("greeting: Howdy\nfarewell: Bye");
+        server.getBean(SnapshotEnvironmentRepository.class).refresh();
+
+        ResponseEntity<ConfigChanges> changes = waiting.get(10, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.OK, changes.getStatusCode());
+        assertEquals(Collections.singletonList("greeting"), new ArrayList<>(changes.getBody().getKeys()));
+        assertEquals(get(null).getHeaders().getETag(), changes.getBody().getVersion());
+        assertEquals(HttpStatus.NOT_MODIFIED, restTemplate.getForEntity("http://localhost:" + port
+                + "/changes/greeting/default?since={since}", ConfigChanges.class,
+                changes.getBody().getVersion()).getStatusCode());
+    }
+
+    @Test
+    public void headComesFromTheRepositoryThatServesTheApplication() throws Exception {
+        SnapshotEnvironmentRepository snapshots = server.getBean(SnapshotEnvironmentRepository.class);
+        String fortuneVersion = snapshots.snapshot("fortune", "default", null).getEnvironment().getVersion();
+        String greetingVersion = snapshots.snapshot("greeting", "default", null).getEnvironment().getVersion();
+        assertNotEquals(greetingVersion, fortuneVersion);
+
+        assertEquals(fortuneVersion, snapshots.head("fortune", "default", null));
+        assertEquals(greetingVersion, snapshots.head("greeting", "default", null));
+
+        commit(fortuneGit, "fortune.yml", "fortune: Be bold");
+        snapshots.refresh();
+        Snapshot fortune = snapshots.snapshot("fortune", "default", null);
+        assertNotEquals(fortuneVersion, fortune.getEnvironment().getVersion());
+        assertEquals(fortune.getEnvironment().getVersion(), snapshots.head("fortune", "default", null));
+        assertEquals(greetingVersion, snapshots.snapshot("greeting", "default", null).getEnvironment().getVersion());
+    }
+
+    @Test
+    public void savedSnapshotsAreTheOwnersOnly() throws Exception {
+        Path file = new File(snapshots, "more/snapshots.json").toPath();
+        Assume.assumeTrue(file.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        server.close();
+        server = start(file.getParent().toString());
+
+        get(null);
+        for (int i = 0; i < 50 && !Files.exists(file); i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.getParent())));
+    }
+
+    @Test
+    public void restartedServerAnswersWithoutGit() throws Exception {
+        String etag = get(null).getHeaders().getETag();
+        server.close();
+        FileSystemUtils.deleteRecursively(repository);
+
+        server = start();
+
+        ResponseEntity<Map> restarted = get(null);
+        assertEquals(HttpStatus.OK, restarted.getStatusCode());
+        assertEquals("Hello", greeting(restarted));
+        assertEquals(etag, restarted.getHeaders().getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, get(etag).getStatusCode());
+    }
+
+    private ConfigurableApplicationContext start() throws IOException {
+        return start(snapshots.getPath());
+    }
+
+    private ConfigurableApplicationContext start(String snapshotDirectory) throws IOException {
+        port = freePort();
+        return new SpringApplicationBuilder(ConfigServerApplication.class).run(
+                "--server.port=" + port,
+                "--spring.jmx.enabled=false",
+                "--spring.cloud.config.server.git.uri=" + repository.toURI(),
+                "--spring.cloud.config.server.git.basedir=" + folder.newFolder().getPath(),
+                "--spring.cloud.config.server.git.repos.fortune.pattern=fortune*",
+                "--spring.cloud.config.server.git.repos.fortune.uri=" + fortuneRepository.toURI(),
+                "--config.snapshot.directory=" + snapshotDirectory,
+                "--config.snapshot.refresh-interval=3600000");
+    }
+
+    private void commit(String content) throws Exception {
+        commit(git, "greeting.yml", content);
+    }
+
+    private static void commit(Git git, String file, String content) throws Exception {
+        Files.write(new File(git.getRepository().getWorkTree(), file).toPath(),
+                content.getBytes(StandardCharsets.UTF_8));
+        git.add().addFilepattern(file).call();
+        git.commit().setMessage(content).call();
+    }
+
+    private ResponseEntity<Map> get(String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        if (etag != null) {
+            headers.setIfNoneMatch(etag);
+        }
+        return restTemplate.exchange("http://localhost:" + port + "/greeting/default", HttpMethod.GET,
+                new HttpEntity<>(headers), Map.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object greeting(ResponseEntity<Map> response) {
+        List<Map<String, Object>> sources = (List<Map<String, Object>>) response.getBody().get("propertySources");
+        return ((Map<String, Object>) sources.get(0).get("source")).get("greeting");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.orangeandbronze.snapshot;
+
+import com.orangeandbronze.ConfigServerApplication;
+import org.eclipse.jgit.api.Git;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * <p>Starts the config server over a Git repository with and without
+ * snapshots, and reports for each:
+ * </p><ul>
+ * <li>time from a restart with an empty clone directory to the first
+ * response (with snapshots, the saved ones are served);</li>
+ * <li>latency of {@code requests} sequential requests, plain and, with
+ * snapshots, with the ETag of the last response.</li>
+ * </ul><p>
+ * The repository is a generated local one unless a {@code uri} is given.
+ * Not run by the build:
+ * </p><pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.snapshot.SnapshotHarness [requests] [uri]"
+ * </pre>
+ */
+public class SnapshotHarness {
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        File work = Files.createTempDirectory("snapshot-harness").toFile();
+        String uri = args.length > 1 ? args[1] : repository(new File(work, "repo")).toURI().toString();
+        File snapshots = new File(work, "snapshots");
+
+        for (boolean enabled : new boolean[] {false, true}) {
+            ConfigurableApplicationContext server = null;
+            try {
+                int port = freePort();
+                server = start(port, uri, enabled, new File(work, "clone-" + enabled), snapshots);
+                String etag = get(port, null).getHeaders().getETag();
+                server.close();
+
+                port = freePort();
+                long started = System.nanoTime();
+                server = start(port, uri, enabled, new File(work, "restart-" + enabled), snapshots);
+                get(port, null);
+                double firstResponse = (System.nanoTime() - started) / 1e6;
+
+                System.out.printf("snapshots %s:%n", enabled ? "on" : "off");
+                System.out.printf("  restart to first response: %.0f ms%n", firstResponse);
+                measure("  full responses", port, null, requests);
+                if (enabled) {
+                    measure("  with If-None-Match", port, etag, requests);
+                }
+            } finally {
+                if (server != null) {
+                    server.close();
+                }
+            }
+        }
+    }
+
+    private static void measure(String name, int port, String etag, int requests) {
+        for (int i = 0; i < requests; i++) {
+            get(port, etag);
+        }
+        long[] latencies = new long[requests];
+        int bytes = 0;
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            ResponseEntity<String> response = get(port, etag);
+            latencies[i] = System.nanoTime() - start;
+            bytes = response.getBody() == null ? 0 : response.getBody().length();
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%s (%d bytes): p50 %.2f ms, p99 %.2f ms%n", name, bytes,
+                latencies[requests / 2] / 1e6, latencies[requests * 99 / 100] / 1e6);
+    }
+
+    private static ConfigurableApplicationContext start(int port, String uri, boolean enabled, File basedir,
+            File snapshots) {
+        return new SpringApplicationBuilder(ConfigServerApplication.class).run(
+                "--server.port=" + port,
+                "--spring.jmx.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.orangeandbronze=INFO",
+                "--spring.cloud.config.server.git.uri=" + uri,
+                "--spring.cloud.config.server.git.basedir=" + basedir.getPath(),
+                "--config.snapshot.enabled=" + enabled,
+                "--config.snapshot.directory=" + snapshots.getPath());
+    }
+
+    private static File repository(File directory) throws Exception {
+        Git git = Git.init().setDirectory(directory).call();
+        try {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                content.append("greeting.message").append(i).append(": Hello number ").append(i).append('\n');
+            }
+            Files.write(new File(directory, "greeting.yml").toPath(),
+                    content.toString().getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(directory, "application.yml").toPath(),
+                    "logging.level.root: INFO\n".getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("Initial configuration").call();
+        } finally {
+            git.close();
+        }
+        return directory;
+    }
+
+    private static ResponseEntity<String> get(int port, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        if (etag != null) {
+            headers.setIfNoneMatch(etag);
+        }
+        return new RestTemplate().exchange("http://localhost:" + port + "/greeting/default", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
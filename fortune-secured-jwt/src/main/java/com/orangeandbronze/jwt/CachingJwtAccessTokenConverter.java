@@ -0,0 +1,74 @@
+package com.orangeandbronze.jwt;
+
+import org.springframework.security.jwt.Jwt;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.InvalidSignatureException;
+import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.common.util.JsonParser;
+import org.springframework.security.oauth2.common.util.JsonParserFactory;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+
+import java.util.Map;
+
+/**
+ * <p>Decodes tokens with the key from a {@link SigningKeySource}, and skips
+ * the signature check for tokens in the {@link VerifiedTokenCache}.
+ * </p><p>
+ * {@code DefaultTokenServices} decodes every token twice, once to read the
+ * access token and once for the authentication, so even a single request
+ * hits the cache.
+ * </p>
+ */
+public class CachingJwtAccessTokenConverter extends JwtAccessTokenConverter {
+
+    private final SigningKeySource keySource;
+    private final VerifiedTokenCache cache;
+    private final JsonParser jsonParser = JsonParserFactory.create();
+
+    public CachingJwtAccessTokenConverter(SigningKeySource keySource, VerifiedTokenCache cache) {
+        this.keySource = keySource;
+        this.cache = cache;
+    }
+
+    @Override
+    protected Map<String, Object> decode(String token) {
+        SignatureVerifier verifier = keySource.verifier();
+        try {
+            return cache.get(token, verifier, value -> verify(value, verifier));
+        } catch (InvalidSignatureException ex) {
+            SignatureVerifier rotated = keySource.rotate(verifier);
+            if (rotated == null) {
+                throw new InvalidTokenException("Cannot convert access token to JSON", ex);
+            }
+            try {
+                return cache.get(token, rotated, value -> verify(value, rotated));
+            } catch (InvalidSignatureException retryEx) {
+                throw new InvalidTokenException("Cannot convert access token to JSON", retryEx);
+            }
+        }
+    }
+
+    /**
+     * What {@link JwtAccessTokenConverter#decode(String)} does, but with the
+     * given verifier, and letting a signature mismatch through so the key
+     * can be rotated.
+     */
+    private Map<String, Object> verify(String token, SignatureVerifier verifier) {
+        Jwt jwt;
+        Map<String, Object> claims;
+        try {
+            jwt = JwtHelper.decodeAndVerify(token, verifier);
+            claims = jsonParser.parseMap(jwt.getClaims());
+        } catch (InvalidSignatureException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw new InvalidTokenException("Cannot convert access token to JSON", ex);
+        }
+        if (claims.get(EXP) instanceof Integer) {
+            claims.put(EXP, ((Integer) claims.get(EXP)).longValue());
+        }
+        return claims;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.orangeandbronze.jwt;
+
+import org.springframework.boot.autoconfigure.security.oauth2.resource.ResourceServerProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.security.oauth2.provider.token.DefaultTokenServices;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Replaces the token services Spring Boot sets up for
+ * {@code security.oauth2.resource.jwt.key-uri}: Boot fetches the key once at
+ * startup and checks the signature of every request, these pick up a
+ * rotated key and check each token once.
+ */
+@Configuration
+@EnableConfigurationProperties(JwtVerificationProperties.class)
+public class JwtVerificationConfig {
+
+    @Bean
+    public SigningKeySource signingKeySource(ResourceServerProperties resource, JwtVerificationProperties properties) {
+        return new SigningKeySource(resource.getJwt().getKeyUri(), resource.getClientId(), resource.getClientSecret(),
+                keyRestTemplate(properties), properties);
+    }
+
+    // no timeouts by default, and a fetch holds up every request waiting for the key
+    static RestTemplate keyRestTemplate(JwtVerificationProperties properties) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(properties.getKeyConnectTimeout());
+        requestFactory.setReadTimeout(properties.getKeyReadTimeout());
+        return new RestTemplate(requestFactory);
+    }
+
+    @Bean
+    public VerifiedTokenCache verifiedTokenCache(JwtVerificationProperties properties) {
+        return new VerifiedTokenCache(properties.getCacheMaxSize());
+    }
+
+    @Bean
+    public TokenStore tokenStore(SigningKeySource signingKeySource, VerifiedTokenCache verifiedTokenCache) {
+        return new JwtTokenStore(new CachingJwtAccessTokenConverter(signingKeySource, verifiedTokenCache));
+    }
+
+    @Bean
+    public DefaultTokenServices tokenServices(TokenStore tokenStore) {
+        DefaultTokenServices tokenServices = new DefaultTokenServices();
+        tokenServices.setTokenStore(tokenStore);
+        return tokenServices;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.orangeandbronze.jwt;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "jwt.verification")
+public class JwtVerificationProperties {
+
+    /**
+     * How long (in milliseconds) a fetched signing key is used before it is
+     * fetched again.
+     */
+    private long keyMaxAge = 3600000;
+
+    /**
+     * Minimum time (in milliseconds) between fetches prompted by a token
+     * the current key does not verify. This is how a rotated key is picked
+     * up before {@code key-max-age}.
+     */
+    private long keyRefetchInterval = 30000;
+
+    /**
+     * Timeout (in milliseconds) for connecting to the key endpoint.
+     */
+    private int keyConnectTimeout = 1000;
+
+    /**
+     * Timeout (in milliseconds) for the key endpoint to answer. A fetch
+     * holds up the requests waiting for the key, so the key there is kept
+     * when it runs out.
+     */
+    private int keyReadTimeout = 5000;
+
+    /**
+     * Maximum number of verified tokens remembered until they expire. With
+     * 0 every request is verified.
+     */
+    private int cacheMaxSize = 10000;
+
+    public long getKeyMaxAge() {
+        return keyMaxAge;
+    }
+
+    public void setKeyMaxAge(long keyMaxAge) {
+        this.keyMaxAge = keyMaxAge;
+    }
+
+    public long getKeyRefetchInterval() {
+        return keyRefetchInterval;
+    }
+
+    public void setKeyRefetchInterval(long keyRefetchInterval) {
+        this.keyRefetchInterval = keyRefetchInterval;
+    }
+
+    public int getKeyConnectTimeout() {
+        return keyConnectTimeout;
+    }
+
+    public void setKeyConnectTimeout(int keyConnectTimeout) {
+        this.keyConnectTimeout = keyConnectTimeout;
+    }
+
+    public int getKeyReadTimeout() {
+        return keyReadTimeout;
+    }
+
+    public void setKeyReadTimeout(int keyReadTimeout) {
+        this.keyReadTimeout = keyReadTimeout;
+    }
+
+    public int getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(int cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.orangeandbronze.jwt;
+
+import com.orangeandbronze.jws.EcdsaVerifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.jwt.crypto.sign.MacSigner;
+import org.springframework.security.jwt.crypto.sign.RsaVerifier;
+import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>The auth server's signing key, fetched from its {@code token_key}
+ * endpoint and kept as a ready-made {@link SignatureVerifier}.
+ * </p><p>
+ * The key is fetched on first use and again once it is older than
+ * {@code jwt.verification.key-max-age}. A token the key does not verify may
+ * have been signed with a new key, so {@link #rotate(SignatureVerifier)}
+ * fetches it early, at most once per {@code key-refetch-interval}. A
+ * fetch that returns the same key keeps the same verifier, so tokens
+ * already verified with it stay cached.
+ * </p>
+ */
+public class SigningKeySource {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final String keyUri;
+    private final HttpEntity<Void> request;
+    private final RestTemplate restTemplate;
+    private final JwtVerificationProperties properties;
+    private final AtomicReference<Key> key = new AtomicReference<>();
+    private final Object fetchLock = new Object();
+
+    public SigningKeySource(String keyUri, String clientId, String clientSecret,
+                            RestTemplate restTemplate, JwtVerificationProperties properties) {
+        this.keyUri = keyUri;
+        HttpHeaders headers = new HttpHeaders();
+        if (clientId != null && clientSecret != null) {
+            // as Spring Boot does, in case the key endpoint is not open to all
+            headers.add(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder()
+                    .encodeToString((clientId + ":" + clientSecret).getBytes(StandardCharsets.UTF_8)));
+        }
+        this.request = new HttpEntity<>(headers);
+        this.restTemplate = restTemplate;
+        this.properties = properties;
+    }
+
+    public SignatureVerifier verifier() {
+        Key current = key.get();
+        if (current == null || current.isOlderThan(System.currentTimeMillis(), properties.getKeyMaxAge())) {
+            current = fetch(current);
+        }
+        return current.verifier;
+    }
+
+    /**
+     * Called when the given verifier rejected a token's signature.
+     * @return a verifier for a newer key, or null when there is none or it
+     * is too soon to ask the auth server again
+     */
+    public SignatureVerifier rotate(SignatureVerifier rejected) {
+        Key current = key.get();
+        if (current == null || current.verifier != rejected) {
+            // another request has fetched since
+            return current == null ? null : current.verifier;
+        }
+        if (!current.isOlderThan(System.currentTimeMillis(), properties.getKeyRefetchInterval())) {
+            return null;
+        }
+        Key fetched = fetch(current);
+        return fetched.verifier == rejected ? null : fetched.verifier;
+    }
+
+    private Key fetch(Key stale) {
+        synchronized (fetchLock) {
+            Key current = key.get();
+            if (current != stale) {
+                return current;
+            }
+            long now = System.currentTimeMillis();
+            Key fetched;
+            try {
+                String value = fetchValue();
+                if (current != null && current.value.equals(value)) {
+                    fetched = new Key(value, current.verifier, now);
+                } else {
+                    logger.debug("Fetched {} signing key from {}", current == null ? "the" : "a new", keyUri);
+                    fetched = new Key(value, verifier(value), now);
+                }
+            } catch (RestClientException ex) {
+                if (current == null) {
+                    throw ex;
+                }
+                // keep the key we have; ask again no sooner than a fresh fetch would
+                logger.warn("Fetching the signing key from {} failed: {}", keyUri, ex.getMessage());
+                fetched = new Key(current.value, current.verifier, now);
+            }
+            key.set(fetched);
+            return fetched;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private String fetchValue() {
+        Map<String, Object> body = restTemplate.exchange(keyUri, HttpMethod.GET, request, Map.class).getBody();
+        Object value = body == null ? null : body.get("value");
+        if (!(value instanceof String)) {
+            throw new RestClientException("No signing key in the response from " + keyUri);
+        }
+        return (String) value;
+    }
+
+    // as Spring Boot's, a PEM key is a public key and anything else a shared
+    // secret; the public key may be an EC one as well as RSA
+    private static SignatureVerifier verifier(String value) {
+        if (!value.startsWith("-----BEGIN")) {
+            return new MacSigner(value);
+        }
+        ECPublicKey ecKey = ecPublicKey(value);
+        return ecKey != null ? new EcdsaVerifier(ecKey) : new RsaVerifier(value);
+    }
+
+    private static ECPublicKey ecPublicKey(String pem) {
+        String base64 = pem.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", "");
+        try {
+            return (ECPublicKey) KeyFactory.getInstance("EC")
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+        } catch (IllegalArgumentException | GeneralSecurityException ex) {
+            // not an EC key
+            return null;
+        }
+    }
+
+    private static class Key {
+
+        final String value;
+        final SignatureVerifier verifier;
+        final long fetchedAt;
+
+        Key(String value, SignatureVerifier verifier, long fetchedAt) {
+            this.value = value;
+            this.verifier = verifier;
+            this.fetchedAt = fetchedAt;
+        }
+
+        boolean isOlderThan(long now, long age) {
+            return now - fetchedAt >= age;
+        }
+    }
+
+}
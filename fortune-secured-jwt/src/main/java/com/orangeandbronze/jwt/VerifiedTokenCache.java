@@ -0,0 +1,122 @@
+package com.orangeandbronze.jwt;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * <p>The claims of tokens whose signature has already been checked, keyed
+ * by the SHA-256 of the token so the tokens themselves are not kept.
+ * </p><ul>
+ * <li>An entry expires at its token's {@code exp}; tokens without one are
+ * not cached.</li>
+ * <li>An entry only counts for the verifier that checked it, so a rotated
+ * signing key has every token checked again.</li>
+ * <li>At most {@code jwt.verification.cache-max-size} tokens are kept,
+ * least recently used first out.</li>
+ * </ul>
+ */
+public class VerifiedTokenCache implements PublicMetrics {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    private final int maxSize;
+    // guarded by itself
+    private final Map<ByteBuffer, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedTokenCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+                return size() > VerifiedTokenCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param verify checks the token's signature with the given verifier
+     * and returns its claims
+     * @return a copy of the token's claims
+     */
+    public Map<String, Object> get(String token, SignatureVerifier verifier,
+                                   Function<String, Map<String, Object>> verify) {
+        if (maxSize <= 0) {
+            return verify.apply(token);
+        }
+        ByteBuffer key = ByteBuffer.wrap(SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && (entry.expiresAt <= now || entry.verifier != verifier)) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            hits.increment();
+            return new LinkedHashMap<>(entry.claims);
+        }
+        misses.increment();
+
+        Map<String, Object> claims = verify.apply(token);
+        Object exp = claims.get("exp");
+        if (exp instanceof Number && ((Number) exp).longValue() * 1000 > now) {
+            Entry verified = new Entry(new LinkedHashMap<>(claims), verifier, ((Number) exp).longValue() * 1000);
+            synchronized (entries) {
+                entries.put(key, verified);
+            }
+        }
+        return claims;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("jwt.cache.hits", hitCount),
+                new Metric<>("jwt.cache.misses", total - hitCount),
+                new Metric<>("jwt.cache.hit-ratio", total == 0 ? 0.0 : (double) hitCount / total),
+                new Metric<>("jwt.cache.entries", size));
+    }
+
+    private static class Entry {
+
+        final Map<String, Object> claims;
+        final SignatureVerifier verifier;
+        final long expiresAt;
+
+        Entry(Map<String, Object> claims, SignatureVerifier verifier, long expiresAt) {
+            this.claims = claims;
+            this.verifier = verifier;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.orangeandbronze.jwt;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.MediaType;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.RsaSigner;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class CachingJwtAccessTokenConverterTest {
+
+    private static final String KEY_URI = "http://localhost:9999/uaa/oauth/token_key";
+
+    private final KeyPair key = generateKeyPair();
+    private final KeyPair rotatedKey = generateKeyPair();
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final MockRestServiceServer authServer = MockRestServiceServer.bindTo(restTemplate).build();
+    private final JwtVerificationProperties properties = new JwtVerificationProperties();
+
+    @Before
+    public void setUp() {
+        properties.setCacheMaxSize(2);
+    }
+
+    @Test
+    public void repeatedTokenIsVerifiedOnce() {
+        expectKeyFetch(key);
+        VerifiedTokenCache cache = new VerifiedTokenCache(properties.getCacheMaxSize());
+        CachingJwtAccessTokenConverter converter = converter(cache);
+        String token = token(key, "user", expiresIn(60));
+
+        assertEquals("user", converter.decode(token).get("user_name"));
+        assertEquals("user", converter.decode(token).get("user_name"));
+
+        assertEquals(1L, metric(cache, "jwt.cache.hits"));
+        assertEquals(1L, metric(cache, "jwt.cache.misses"));
+        authServer.verify();
+    }
+
+    @Test
+    public void expiredTokenIsVerifiedEveryTime() {
+        expectKeyFetch(key);
+        VerifiedTokenCache cache = new VerifiedTokenCache(properties.getCacheMaxSize());
+        CachingJwtAccessTokenConverter converter = converter(cache);
+        String token = token(key, "user", expiresIn(-1));
+
+        converter.decode(token);
+        converter.decode(token);
+
+        assertEquals(0L, metric(cache, "jwt.cache.hits"));
+        assertEquals(0, metric(cache, "jwt.cache.entries"));
+    }
+
+    @Test
+    public void leastRecentlyUsedTokenIsEvicted() {
+        expectKeyFetch(key);
+        VerifiedTokenCache cache = new VerifiedTokenCache(properties.getCacheMaxSize());
+        CachingJwtAccessTokenConverter converter = converter(cache);
+        String first = token(key, "first", expiresIn(60));
+
+        converter.decode(first);
+        converter.decode(token(key, "second", expiresIn(60)));
+        converter.decode(first);
+        converter.decode(token(key, "third", expiresIn(60)));
+        converter.decode(first);
+
+        assertEquals(2, metric(cache, "jwt.cache.entries"));
+        assertEquals(2L, metric(cache, "jwt.cache.hits"));
+    }
+
+    @Test
+    public void tokenSignedWithAnotherKeyIsRejected() {
+        expectKeyFetch(key);
+        CachingJwtAccessTokenConverter converter = converter(new VerifiedTokenCache(properties.getCacheMaxSize()));
+        converter.decode(token(key, "user", expiresIn(60)));
+
+        try {
+            // fetched just now, so the auth server is not asked again
+            converter.decode(token(rotatedKey, "user", expiresIn(60)));
+            fail("Expected the token to be rejected");
+        } catch (InvalidTokenException expected) {
+        }
+        authServer.verify();
+    }
+
+    @Test
+    public void rotatedKeyIsFetchedOnMismatch() {
+        properties.setKeyRefetchInterval(0);
+        expectKeyFetch(key);
+        expectKeyFetch(rotatedKey);
+        VerifiedTokenCache cache = new VerifiedTokenCache(properties.getCacheMaxSize());
+        CachingJwtAccessTokenConverter converter = converter(cache);
+        String oldToken = token(key, "old", expiresIn(60));
+        converter.decode(oldToken);
+
+        assertEquals("new", converter.decode(token(rotatedKey, "new", expiresIn(60))).get("user_name"));
+        authServer.verify();
+
+        properties.setKeyRefetchInterval(60000);
+        try {
+            // was cached, but for the old key
+            converter.decode(oldToken);
+            fail("Expected the token to be rejected");
+        } catch (InvalidTokenException expected) {
+        }
+    }
+
+    @Test
+    public void ecKeyVerifiesEs256Tokens() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair ecKey = generator.generateKeyPair();
+        authServer.expect(requestTo(KEY_URI)).andRespond(withSuccess("{\"alg\":\"SHA256withECDSA\",\"value\":\""
+                + "-----BEGIN PUBLIC KEY-----\\n" + Base64.getEncoder().encodeToString(ecKey.getPublic().getEncoded())
+                + "\\n-----END PUBLIC KEY-----\"}", MediaType.APPLICATION_JSON));
+        CachingJwtAccessTokenConverter converter = converter(new VerifiedTokenCache(properties.getCacheMaxSize()));
+        String token = es256Token(ecKey, "user", expiresIn(60));
+
+        assertEquals("user", converter.decode(token).get("user_name"));
+        try {
+            converter.decode(es256Token(generator.generateKeyPair(), "user", expiresIn(60)));
+            fail("Expected the token to be rejected");
+        } catch (InvalidTokenException expected) {
+        }
+    }
+
+    private CachingJwtAccessTokenConverter converter(VerifiedTokenCache cache) {
+        SigningKeySource keySource = new SigningKeySource(KEY_URI, "acme", "acmesecret", restTemplate, properties);
+        return new CachingJwtAccessTokenConverter(keySource, cache);
+    }
+
+    private void expectKeyFetch(KeyPair keyPair) {
+        JwtAccessTokenConverter authServerConverter = new JwtAccessTokenConverter();
+        authServerConverter.setKeyPair(keyPair);
+        Map<String, String> tokenKey = authServerConverter.getKey();
+        authServer.expect(requestTo(KEY_URI)).andRespond(withSuccess(
+                "{\"alg\":\"" + tokenKey.get("alg") + "\",\"value\":\"" + tokenKey.get("value").replace("\n", "\\n") + "\"}",
+                MediaType.APPLICATION_JSON));
+    }
+
+    static String token(KeyPair keyPair, String user, long exp) {
+        String claims = "{\"user_name\":\"" + user + "\",\"scope\":[\"openid\"],\"exp\":" + exp
+                + ",\"authorities\":[\"ROLE_USER\"],\"client_id\":\"acme\"}";
+        return JwtHelper.encode(claims, new RsaSigner((RSAPrivateKey) keyPair.getPrivate())).getEncoded();
+    }
+
+    private static String es256Token(KeyPair keyPair, String user, long exp) throws GeneralSecurityException {
+        Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+        String content = base64.encodeToString("{\"alg\":\"ES256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8))
+                + '.' + base64.encodeToString(("{\"user_name\":\"" + user + "\",\"exp\":" + exp
+                + ",\"authorities\":[\"ROLE_USER\"],\"client_id\":\"acme\"}").getBytes(StandardCharsets.UTF_8));
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(content.getBytes(StandardCharsets.US_ASCII));
+        // DER SEQUENCE { INTEGER r, INTEGER s } to r and s, 32 bytes each
+        byte[] der = signature.sign();
+        byte[] jose = new byte[64];
+        int offset = 2;
+        for (int i = 0; i < 2; i++) {
+            int length = der[offset + 1];
+            byte[] integer = new BigInteger(Arrays.copyOfRange(der, offset + 2, offset + 2 + length)).toByteArray();
+            int start = integer.length > 32 ? integer.length - 32 : 0;
+            System.arraycopy(integer, start, jose, 32 * (i + 1) - (integer.length - start), integer.length - start);
+            offset += 2 + length;
+        }
+        return content + '.' + base64.encodeToString(jose);
+    }
+
+    static long expiresIn(long seconds) {
+        return System.currentTimeMillis() / 1000 + seconds;
+    }
+
+    static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Number metric(VerifiedTokenCache cache, String name) {
+        for (Metric<?> metric : cache.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue();
+            }
+        }
+        throw new AssertionError("No metric " + name);
+    }
+
+}
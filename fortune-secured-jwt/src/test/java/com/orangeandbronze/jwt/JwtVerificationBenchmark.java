@@ -0,0 +1,124 @@
+package com.orangeandbronze.jwt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.DefaultTokenServices;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.security.KeyPair;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * <p>Verifications per second of a request's token, as the resource server
+ * does it: {@code DefaultTokenServices.loadAuthentication} on a
+ * {@link JwtTokenStore}. Requests carry one of 100 tokens signed with a
+ * 2048-bit RSA key. Compares Spring Boot's setup (a plain
+ * {@link JwtAccessTokenConverter} with the key set) with
+ * {@link CachingJwtAccessTokenConverter}, with the cache on and off.
+ * </p><p>
+ * Not run by the build:
+ * </p>
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.jwt.JwtVerificationBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtVerificationBenchmark {
+
+    private static final String KEY_URI = "http://localhost:9999/uaa/oauth/token_key";
+
+    private final String[] tokens = new String[100];
+    private DefaultTokenServices boot;
+    private DefaultTokenServices uncached;
+    private DefaultTokenServices cached;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPair key = CachingJwtAccessTokenConverterTest.generateKeyPair();
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = CachingJwtAccessTokenConverterTest.token(key, "user-" + i,
+                    CachingJwtAccessTokenConverterTest.expiresIn(3600));
+        }
+
+        JwtAccessTokenConverter authServerConverter = new JwtAccessTokenConverter();
+        authServerConverter.setKeyPair(key);
+        Map<String, String> tokenKey = authServerConverter.getKey();
+
+        JwtAccessTokenConverter bootConverter = new JwtAccessTokenConverter();
+        bootConverter.setVerifierKey(tokenKey.get("value"));
+        bootConverter.afterPropertiesSet();
+        boot = tokenServices(bootConverter);
+
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer authServer = MockRestServiceServer.bindTo(restTemplate).build();
+        authServer.expect(ExpectedCount.manyTimes(), requestTo(KEY_URI)).andRespond(withSuccess(
+                "{\"value\":\"" + tokenKey.get("value").replace("\n", "\\n") + "\"}", MediaType.APPLICATION_JSON));
+        JwtVerificationProperties properties = new JwtVerificationProperties();
+        SigningKeySource keySource = new SigningKeySource(KEY_URI, "acme", "acmesecret", restTemplate, properties);
+        uncached = tokenServices(new CachingJwtAccessTokenConverter(keySource, new VerifiedTokenCache(0)));
+        cached = tokenServices(new CachingJwtAccessTokenConverter(keySource,
+                new VerifiedTokenCache(properties.getCacheMaxSize())));
+    }
+
+    private static DefaultTokenServices tokenServices(JwtAccessTokenConverter converter) {
+        DefaultTokenServices tokenServices = new DefaultTokenServices();
+        tokenServices.setTokenStore(new JwtTokenStore(converter));
+        return tokenServices;
+    }
+
+    @Benchmark
+    public OAuth2Authentication boot() {
+        return boot.loadAuthentication(nextToken());
+    }
+
+    @Benchmark
+    public OAuth2Authentication uncached() {
+        return uncached.loadAuthentication(nextToken());
+    }
+
+    @Benchmark
+    public OAuth2Authentication cached() {
+        return cached.loadAuthentication(nextToken());
+    }
+
+    private String nextToken() {
+        return tokens[ThreadLocalRandom.current().nextInt(tokens.length)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.orangeandbronze.jwt;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * A key endpoint that answers the first request and then takes connections
+ * without ever answering.
+ */
+public class SigningKeySourceTest {
+
+    private final JwtVerificationProperties properties = new JwtVerificationProperties();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch stop = new CountDownLatch(1);
+    private HttpServer authServer;
+    private String keyUri;
+
+    @Before
+    public void startAuthServer() throws Exception {
+        JwtAccessTokenConverter converter = new JwtAccessTokenConverter();
+        converter.setKeyPair(CachingJwtAccessTokenConverterTest.generateKeyPair());
+        byte[] key = ("{\"alg\":\"SHA256withRSA\",\"value\":\""
+                + converter.getKey().get("value").replace("\n", "\\n") + "\"}").getBytes(StandardCharsets.UTF_8);
+        authServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        authServer.createContext("/uaa/oauth/token_key", exchange -> {
+            if (requests.incrementAndGet() > 1) {
+                try {
+                    stop.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, key.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(key);
+            }
+        });
+        authServer.start();
+        keyUri = "http://localhost:" + authServer.getAddress().getPort() + "/uaa/oauth/token_key";
+        properties.setKeyReadTimeout(300);
+    }
+
+    @After
+    public void stopAuthServer() {
+        stop.countDown();
+        authServer.stop(0);
+    }
+
+    @Test
+    public void hangingKeyEndpointKeepsTheKeyWeHave() {
+        properties.setKeyMaxAge(0);
+        SigningKeySource keySource = keySource();
+        SignatureVerifier verifier = keySource.verifier();
+
+        long start = System.nanoTime();
+        assertSame(verifier, keySource.verifier());
+        assertEquals(2, requests.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+    }
+
+    @Test(expected = ResourceAccessException.class)
+    public void hangingKeyEndpointFailsTheFirstFetch() {
+        requests.set(1);
+        keySource().verifier();
+    }
+
+    private SigningKeySource keySource() {
+        return new SigningKeySource(keyUri, "acme", "acmesecret",
+                JwtVerificationConfig.keyRestTemplate(properties), properties);
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.orangeandbronze.userinfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Remembers the principal the auth server returned for each access
+ * token, in front of Spring Boot's {@code UserInfoTokenServices}.
+ * </p><ul>
+ * <li>Within {@code userinfo.cache.ttl} a token is not sent to the auth
+ * server again.</li>
+ * <li>Concurrent requests with the same token wait on a single call.</li>
+ * <li>A token the auth server rejects is not cached.</li>
+ * <li>At most {@code userinfo.cache.max-size} tokens are kept, least
+ * recently used first out.</li>
+ * <li>Tokens can be evicted one at a time, per user, or all at once, so a
+ * revoked token need not wait out the TTL.</li>
+ * </ul>
+ */
+public class CachingUserInfoTokenServices implements ResourceServerTokenServices, PublicMetrics {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private ResourceServerTokenServices delegate;
+    private UserInfoCacheProperties properties;
+    // guarded by itself
+    private final Map<String, Entry> entries;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CachingUserInfoTokenServices(ResourceServerTokenServices delegate, UserInfoCacheProperties properties) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CachingUserInfoTokenServices.this.properties.getMaxSize();
+            }
+        };
+    }
+
+    @Override
+    public OAuth2Authentication loadAuthentication(String accessToken) {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            entry = entries.get(accessToken);
+            if (entry == null || entry.isOlderThan(now, properties.getTtl())) {
+                entry = new Entry();
+                entries.put(accessToken, entry);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            load(accessToken, entry);
+        } else {
+            hits.increment();
+            if (!entry.authentication.isDone()) {
+                coalesced.increment();
+            }
+        }
+
+        OAuth2Authentication authentication;
+        try {
+            authentication = entry.authentication.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        }
+        // the authentication manager sets this request's details on what it
+        // gets, so every request gets an instance of its own
+        return new OAuth2Authentication(authentication.getOAuth2Request(), authentication.getUserAuthentication());
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String accessToken) {
+        return delegate.readAccessToken(accessToken);
+    }
+
+    /**
+     * @return whether the token was cached
+     */
+    public boolean evict(String accessToken) {
+        synchronized (entries) {
+            return entries.remove(accessToken) != null;
+        }
+    }
+
+    /**
+     * @return the number of tokens evicted
+     */
+    public int evictUser(String name) {
+        int evicted = 0;
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                OAuth2Authentication authentication = iterator.next().loaded();
+                if (authentication != null && name.equals(authentication.getName())) {
+                    iterator.remove();
+                    evicted++;
+                }
+            }
+        }
+        logger.debug("Evicted {} cached tokens of {}", evicted, name);
+        return evicted;
+    }
+
+    /**
+     * @return the number of tokens evicted
+     */
+    public int evictAll() {
+        int evicted;
+        synchronized (entries) {
+            evicted = entries.size();
+            entries.clear();
+        }
+        logger.debug("Evicted all {} cached tokens", evicted);
+        return evicted;
+    }
+
+    // whatever the delegate throws, the requests waiting on the entry must be let go
+    private void load(String accessToken, Entry entry) {
+        calls.increment();
+        try {
+            entry.complete(delegate.loadAuthentication(accessToken));
+        } catch (Throwable ex) {
+            failures.increment();
+            synchronized (entries) {
+                entries.remove(accessToken, entry);
+            }
+            entry.authentication.completeExceptionally(ex);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long hitCount = hits.sum();
+        long total = hitCount + calls.sum();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("userinfo.calls", calls.sum()),
+                new Metric<>("userinfo.failures", failures.sum()),
+                new Metric<>("userinfo.cache.hits", hitCount),
+                new Metric<>("userinfo.cache.coalesced", coalesced.sum()),
+                new Metric<>("userinfo.cache.hit-ratio", total == 0 ? 0.0 : (double) hitCount / total),
+                new Metric<>("userinfo.cache.entries", size));
+    }
+
+    private static class Entry {
+
+        final CompletableFuture<OAuth2Authentication> authentication = new CompletableFuture<>();
+        volatile long loadedAt;
+
+        void complete(OAuth2Authentication value) {
+            loadedAt = System.currentTimeMillis();
+            authentication.complete(value);
+        }
+
+        OAuth2Authentication loaded() {
+            return authentication.isDone() && !authentication.isCompletedExceptionally()
+                    ? authentication.join() : null;
+        }
+
+        // an entry still being loaded is never too old
+        boolean isOlderThan(long now, long age) {
+            return authentication.isDone() && now - loadedAt > age;
+        }
+    }
+
+}
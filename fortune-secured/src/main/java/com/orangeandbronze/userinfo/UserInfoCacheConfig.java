@@ -0,0 +1,44 @@
+package com.orangeandbronze.userinfo;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.AuthoritiesExtractor;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.PrincipalExtractor;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.ResourceServerProperties;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoRestTemplateFactory;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoTokenServices;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Puts a {@link CachingUserInfoTokenServices} in front of the
+ * {@link UserInfoTokenServices} Spring Boot would have set up for
+ * {@code security.oauth2.resource.user-info-uri}, built the same way.
+ */
+@Configuration
+@EnableConfigurationProperties(UserInfoCacheProperties.class)
+public class UserInfoCacheConfig {
+
+    @Bean
+    public CachingUserInfoTokenServices cachingUserInfoTokenServices(
+            ResourceServerProperties resource, UserInfoRestTemplateFactory restTemplateFactory,
+            ObjectProvider<AuthoritiesExtractor> authoritiesExtractor,
+            ObjectProvider<PrincipalExtractor> principalExtractor, UserInfoCacheProperties properties) {
+        UserInfoTokenServices userInfo = new UserInfoTokenServices(resource.getUserInfoUri(), resource.getClientId());
+        userInfo.setRestTemplate(restTemplateFactory.getUserInfoRestTemplate());
+        userInfo.setTokenType(resource.getTokenType());
+        if (authoritiesExtractor.getIfAvailable() != null) {
+            userInfo.setAuthoritiesExtractor(authoritiesExtractor.getIfAvailable());
+        }
+        if (principalExtractor.getIfAvailable() != null) {
+            userInfo.setPrincipalExtractor(principalExtractor.getIfAvailable());
+        }
+        return new CachingUserInfoTokenServices(userInfo, properties);
+    }
+
+    @Bean
+    public UserInfoCacheEndpoint userInfoCacheEndpoint(CachingUserInfoTokenServices cachingUserInfoTokenServices) {
+        return new UserInfoCacheEndpoint(cachingUserInfoTokenServices);
+    }
+
+}
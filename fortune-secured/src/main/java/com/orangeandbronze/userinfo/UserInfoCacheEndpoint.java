@@ -0,0 +1,46 @@
+package com.orangeandbronze.userinfo;
+
+import org.springframework.boot.actuate.endpoint.mvc.AbstractMvcEndpoint;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * <p>The revocation hook of {@link CachingUserInfoTokenServices}, as a
+ * sensitive actuator endpoint:
+ * </p>
+ * <pre>
+ * DELETE /userinfo-cache?token=...   one access token
+ * DELETE /userinfo-cache?user=...    every token of one user
+ * DELETE /userinfo-cache             everything
+ * </pre>
+ */
+public class UserInfoCacheEndpoint extends AbstractMvcEndpoint {
+
+    private CachingUserInfoTokenServices tokenServices;
+
+    public UserInfoCacheEndpoint(CachingUserInfoTokenServices tokenServices) {
+        super("/userinfo-cache", true);
+        this.tokenServices = tokenServices;
+    }
+
+    @RequestMapping(method = RequestMethod.DELETE)
+    @ResponseBody
+    public Map<String, Object> evict(@RequestParam(required = false) String token,
+                                     @RequestParam(required = false) String user) {
+        int evicted;
+        if (token != null) {
+            evicted = tokenServices.evict(token) ? 1 : 0;
+        } else if (user != null) {
+            evicted = tokenServices.evictUser(user);
+        } else {
+            evicted = tokenServices.evictAll();
+        }
+        return Collections.singletonMap("evicted", evicted);
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.orangeandbronze.userinfo;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "userinfo.cache")
+public class UserInfoCacheProperties {
+
+    /**
+     * How long (in milliseconds) the principal of an access token is reused
+     * before the auth server is asked again. A revoked token is accepted
+     * for up to this long unless it is evicted.
+     */
+    private long ttl = 60000;
+
+    /**
+     * Maximum number of access tokens cached at once.
+     */
+    private int maxSize = 10000;
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.orangeandbronze.userinfo;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CachingUserInfoTokenServicesTest {
+
+    private final AuthServer authServer = new AuthServer();
+    private final UserInfoCacheProperties properties = new UserInfoCacheProperties();
+    private final CachingUserInfoTokenServices tokenServices = new CachingUserInfoTokenServices(authServer, properties);
+
+    @Test
+    public void tokenIsSentToTheAuthServerOnceWithinTtl() {
+        authServer.users.put("token-1", "user");
+
+        assertEquals("user", tokenServices.loadAuthentication("token-1").getName());
+        assertEquals("user", tokenServices.loadAuthentication("token-1").getName());
+
+        assertEquals(1, authServer.calls.get());
+        assertEquals(0.5, metric("userinfo.cache.hit-ratio").doubleValue(), 0);
+    }
+
+    @Test
+    public void tokenIsSentAgainAfterTtl() throws InterruptedException {
+        properties.setTtl(10);
+        authServer.users.put("token-1", "user");
+
+        tokenServices.loadAuthentication("token-1");
+        Thread.sleep(20);
+        tokenServices.loadAuthentication("token-1");
+
+        assertEquals(2, authServer.calls.get());
+    }
+
+    @Test
+    public void everyRequestGetsAnAuthenticationOfItsOwn() {
+        authServer.users.put("token-1", "user");
+
+        OAuth2Authentication first = tokenServices.loadAuthentication("token-1");
+        first.setDetails("first request");
+        OAuth2Authentication second = tokenServices.loadAuthentication("token-1");
+
+        assertNotSame(first, second);
+        assertNull(second.getDetails());
+        assertEquals(first.getAuthorities(), second.getAuthorities());
+    }
+
+    @Test
+    public void concurrentRequestsWaitOnOneCall() throws Exception {
+        authServer.users.put("token-1", "user");
+        authServer.latch = new CountDownLatch(1);
+        ExecutorService requests = Executors.newFixedThreadPool(8);
+        List<Future<OAuth2Authentication>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(requests.submit(() -> tokenServices.loadAuthentication("token-1")));
+        }
+        Thread.sleep(100);
+        authServer.latch.countDown();
+
+        for (Future<OAuth2Authentication> result : results) {
+            assertEquals("user", result.get(1, TimeUnit.SECONDS).getName());
+        }
+        requests.shutdown();
+        assertEquals(1, authServer.calls.get());
+        assertEquals(7L, metric("userinfo.cache.coalesced"));
+    }
+
+    @Test
+    public void rejectedTokenIsNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                tokenServices.loadAuthentication("unknown");
+                fail("Expected the token to be rejected");
+            } catch (InvalidTokenException expected) {
+            }
+        }
+
+        assertEquals(2, authServer.calls.get());
+        assertEquals(2L, metric("userinfo.failures"));
+        assertEquals(0, metric("userinfo.cache.entries"));
+    }
+
+    @Test
+    public void callFailingWithAnErrorReleasesTheWaitingRequests() throws Exception {
+        authServer.users.put("token-1", "user");
+        authServer.error = new NoClassDefFoundError("org/springframework/security/oauth2/provider/OAuth2Request");
+        authServer.latch = new CountDownLatch(1);
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<OAuth2Authentication>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(requests.submit(() -> tokenServices.loadAuthentication("token-1")));
+            }
+            Thread.sleep(100);
+            authServer.latch.countDown();
+            for (Future<OAuth2Authentication> result : results) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                    fail("Expected the call to fail");
+                } catch (ExecutionException expected) {
+                    assertTrue(expected.getCause() instanceof NoClassDefFoundError);
+                }
+            }
+        } finally {
+            requests.shutdownNow();
+        }
+
+        authServer.error = null;
+        assertEquals("user", tokenServices.loadAuthentication("token-1").getName());
+        assertEquals(2, authServer.calls.get());
+        assertEquals(1L, metric("userinfo.failures"));
+    }
+
+    @Test
+    public void leastRecentlyUsedTokenIsEvicted() {
+        properties.setMaxSize(2);
+        authServer.users.put("token-1", "first");
+        authServer.users.put("token-2", "second");
+        authServer.users.put("token-3", "third");
+
+        tokenServices.loadAuthentication("token-1");
+        tokenServices.loadAuthentication("token-2");
+        tokenServices.loadAuthentication("token-1");
+        tokenServices.loadAuthentication("token-3");
+        tokenServices.loadAuthentication("token-2");
+
+        assertEquals(4, authServer.calls.get());
+    }
+
+    @Test
+    public void evictedTokensAreSentAgain() {
+        authServer.users.put("token-1", "user");
+        authServer.users.put("token-2", "user");
+        authServer.users.put("token-3", "other");
+        tokenServices.loadAuthentication("token-1");
+        tokenServices.loadAuthentication("token-2");
+        tokenServices.loadAuthentication("token-3");
+
+        assertTrue(tokenServices.evict("token-3"));
+        assertEquals(2, tokenServices.evictUser("user"));
+        assertEquals(0, tokenServices.evictAll());
+
+        authServer.users.remove("token-1");
+        try {
+            tokenServices.loadAuthentication("token-1");
+            fail("Expected the revoked token to be rejected");
+        } catch (InvalidTokenException expected) {
+        }
+    }
+
+    private Number metric(String name) {
+        for (Metric<?> metric : tokenServices.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue();
+            }
+        }
+        throw new AssertionError("No metric " + name);
+    }
+
+    /**
+     * Stands in for UserInfoTokenServices calling the auth server.
+     */
+    private static class AuthServer implements ResourceServerTokenServices {
+
+        final Map<String, String> users = new ConcurrentHashMap<>();
+        final AtomicInteger calls = new AtomicInteger();
+        volatile CountDownLatch latch = new CountDownLatch(0);
+        volatile Error error;
+
+        @Override
+        public OAuth2Authentication loadAuthentication(String accessToken) {
+            calls.incrementAndGet();
+            try {
+                latch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (error != null) {
+                throw error;
+            }
+            String user = users.get(accessToken);
+            if (user == null) {
+                throw new InvalidTokenException(accessToken);
+            }
+            OAuth2Request request = new OAuth2Request(null, "acme", null, true, null, null, null, null, null);
+            return new OAuth2Authentication(request, new UsernamePasswordAuthenticationToken(
+                    user, "N/A", AuthorityUtils.createAuthorityList("ROLE_USER")));
+        }
+
+        @Override
+        public OAuth2AccessToken readAccessToken(String accessToken) {
+            throw new UnsupportedOperationException("Not supported: read access token");
+        }
+    }
+
+}
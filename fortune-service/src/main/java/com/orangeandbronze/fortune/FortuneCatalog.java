@@ -0,0 +1,22 @@
+package com.orangeandbronze.fortune;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An immutable, indexed collection of fortunes. Implementations are
+ * loaded once at startup and must be safe for concurrent reads.
+ */
+public interface FortuneCatalog {
+
+    int size();
+
+    String getFortune(int index);
+
+    /**
+     * Writes the UTF-8 encoding of the fortune at {@code index}
+     * without creating any intermediate objects.
+     */
+    void writeFortune(int index, OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,97 @@
+package com.orangeandbronze.fortune;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * <p>Converts a plain-text fortune file (one fortune per line, blank lines
+ * and lines starting with {@code #} skipped) into the binary format read
+ * by {@link MappedFortuneCatalog}.
+ * </p><p>
+ * Usage, after {@code mvn compile}:
+ * </p>
+ * <pre>
+ * java -cp target/classes com.orangeandbronze.fortune.FortuneCatalogBuilder fortunes.txt fortunes.bin
+ * </pre>
+ */
+public class FortuneCatalogBuilder {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: FortuneCatalogBuilder <input.txt> <output.bin>");
+            System.exit(1);
+        }
+        int count = build(new File(args[0]), new File(args[1]));
+        System.out.println("Wrote " + count + " fortunes to " + args[1]);
+    }
+
+    /**
+     * The text is streamed into a temporary blob file while the offsets are
+     * collected, so only the index is ever held in memory.
+     *
+     * @return the number of fortunes written
+     */
+    public static int build(File input, File output) throws IOException {
+        File blob = File.createTempFile("fortunes", ".blob");
+        try {
+            int[] offsets = new int[1024];
+            int count = 0;
+            long position = 0;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8));
+                 OutputStream out = new BufferedOutputStream(new FileOutputStream(blob))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                    out.write(bytes);
+                    if (count + 1 == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    }
+                    offsets[count++] = (int) position;
+                    position += bytes.length;
+                    if (MappedFortuneCatalog.HEADER_SIZE + (count + 1) * 4L + position > Integer.MAX_VALUE) {
+                        throw new IOException("Fortune corpus exceeds 2GB: " + input);
+                    }
+                }
+            }
+            if (count == 0) {
+                throw new IOException("No fortunes found in " + input);
+            }
+            offsets[count] = (int) position;
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(output)));
+                 InputStream in = new FileInputStream(blob)) {
+                out.writeInt(MappedFortuneCatalog.MAGIC);
+                out.writeInt(count);
+                for (int i = 0; i <= count; i++) {
+                    out.writeInt(offsets[i]);
+                }
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            return count;
+        } finally {
+            Files.deleteIfExists(blob.toPath());
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.orangeandbronze.fortune;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+
+/**
+ * Selects the backing store with {@code fortune.catalog.type}:
+ * {@code memory} (the default) loads a text file onto the heap,
+ * {@code mapped} memory-maps a file built by {@link FortuneCatalogBuilder}.
+ */
+@Configuration
+public class FortuneCatalogConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "fortune.catalog.type", havingValue = "memory", matchIfMissing = true)
+    public FortuneCatalog fortuneCatalog(
+            @Value("${fortune.catalog.location:classpath:fortunes.txt}") Resource location) throws IOException {
+        return InMemoryFortuneCatalog.load(location);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "fortune.catalog.type", havingValue = "mapped")
+    public FortuneCatalog mappedFortuneCatalog(
+            @Value("${fortune.catalog.location}") Resource location) throws IOException {
+        return new MappedFortuneCatalog(location.getFile());
+    }
+
+}
@@ -3,24 +3,59 @@ package com.orangeandbronze.fortune;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
 @RestController
 public class FortuneController {
 
+    private static final String TEXT_PLAIN_UTF8 = "text/plain;charset=UTF-8";
+    private static final String NDJSON_UTF8 = "application/x-ndjson;charset=UTF-8";
+    private static final int BATCH_BUFFER_SIZE = 8192;
+
     private Logger logger = LoggerFactory.getLogger(getClass());
     private FortuneService fortuneService;
+    private int maxBatchCount;
 
     @Autowired
-    public FortuneController(FortuneService fortuneService) {
+    public FortuneController(FortuneService fortuneService,
+                             @Value("${fortune.batch.max-count:1000}") int maxBatchCount) {
         this.fortuneService = fortuneService;
+        this.maxBatchCount = maxBatchCount;
     }
 
 
+    /*
+     * Writes the pre-encoded fortune straight to the response instead
+     * of returning a String, which would be re-encoded on every request.
+     */
     @RequestMapping("/")
-    public String getQuote() {
+    public void getQuote(HttpServletResponse response) throws IOException {
         logger.debug("fetching fortune.");
-        return fortuneService.getFortune();
+        response.setContentType(TEXT_PLAIN_UTF8);
+        fortuneService.writeFortune(response.getOutputStream());
+    }
+
+    /*
+     * Streams the fortunes one JSON string per line. The container flushes
+     * each time its (bounded) response buffer fills up.
+     */
+    @RequestMapping("/batch")
+    public void getQuotes(@RequestParam(defaultValue = "10") int count,
+                          HttpServletResponse response) throws IOException {
+        logger.debug("fetching {} fortunes.", count);
+        if (count < 1 || count > maxBatchCount) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "count must be between 1 and " + maxBatchCount);
+            return;
+        }
+        response.setContentType(NDJSON_UTF8);
+        response.setBufferSize(BATCH_BUFFER_SIZE);
+        fortuneService.writeFortunes(count, response.getOutputStream());
     }
 }
@@ -1,31 +1,53 @@
 package com.orangeandbronze.fortune;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Random;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 public class FortuneService {
 
+    private static final JsonFactory JSON = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final SerializedString NEWLINE = new SerializedString("\n");
+
+    private FortuneCatalog fortuneCatalog;
+
+    @Autowired
+    public FortuneService(FortuneCatalog fortuneCatalog) {
+        this.fortuneCatalog = fortuneCatalog;
+    }
+
     public String getFortune() {
-        Random random = new Random();
-        String fortune;
-
-        switch (random.nextInt(3)) {
-            case 0:
-                fortune = "You learn from your mistakes... You will learn a lot today.";
-                break;
-            case 1:
-                fortune = "You can always find happiness at work on Friday";
-                break;
-            case 2:
-                fortune = "You will be hungry again in one hour.";
-                break;
-            default:
-                fortune = "Today will be an awesome day!";
-                break;
+        return fortuneCatalog.getFortune(nextIndex());
+    }
+
+    public void writeFortune(OutputStream out) throws IOException {
+        fortuneCatalog.writeFortune(nextIndex(), out);
+    }
+
+    /**
+     * Writes {@code count} fortunes as newline-delimited JSON strings. The
+     * generator encodes into its own fixed-size buffer and hands full
+     * chunks to {@code out}, so the batch is never held in memory at once.
+     */
+    public void writeFortunes(int count, OutputStream out) throws IOException {
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.setRootValueSeparator(NEWLINE);
+            for (int i = 0; i < count; i++) {
+                json.writeString(getFortune());
+            }
+            json.writeRaw('\n');
         }
+    }
 
-        return fortune;
+    private int nextIndex() {
+        return ThreadLocalRandom.current().nextInt(fortuneCatalog.size());
     }
 }
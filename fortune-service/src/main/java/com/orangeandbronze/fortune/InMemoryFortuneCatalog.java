@@ -0,0 +1,67 @@
+package com.orangeandbronze.fortune;
+
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps every fortune on the heap, together with its pre-encoded
+ * UTF-8 bytes, so serving one is a single array lookup.
+ */
+public class InMemoryFortuneCatalog implements FortuneCatalog {
+
+    private final String[] fortunes;
+    private final byte[][] encoded;
+
+    public InMemoryFortuneCatalog(List<String> fortunes) {
+        if (fortunes.isEmpty()) {
+            throw new IllegalArgumentException("A fortune catalog needs at least one fortune");
+        }
+        this.fortunes = fortunes.toArray(new String[fortunes.size()]);
+        this.encoded = new byte[this.fortunes.length][];
+        for (int i = 0; i < this.fortunes.length; i++) {
+            this.encoded[i] = this.fortunes[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads one fortune per line; blank lines and lines starting with
+     * {@code #} are skipped.
+     */
+    public static InMemoryFortuneCatalog load(Resource resource) throws IOException {
+        List<String> fortunes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    fortunes.add(line);
+                }
+            }
+        }
+        return new InMemoryFortuneCatalog(fortunes);
+    }
+
+    @Override
+    public int size() {
+        return fortunes.length;
+    }
+
+    @Override
+    public String getFortune(int index) {
+        return fortunes[index];
+    }
+
+    @Override
+    public void writeFortune(int index, OutputStream out) throws IOException {
+        out.write(encoded[index]);
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.orangeandbronze.fortune;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>Serves fortunes from a memory-mapped file written by
+ * {@link FortuneCatalogBuilder}. Only the header is read at startup, so
+ * startup time and heap usage do not grow with the size of the corpus;
+ * the operating system pages the rest in on demand.
+ * </p><p>
+ * File layout (big-endian):
+ * </p>
+ * <pre>
+ * int    magic          {@link #MAGIC}
+ * int    count          number of fortunes
+ * int[]  offsets        count + 1 offsets into the blob
+ * byte[] blob           UTF-8 text of every fortune, back to back
+ * </pre>
+ */
+public class MappedFortuneCatalog implements FortuneCatalog {
+
+    static final int MAGIC = 0x46525431; // "FRT1"
+    static final int HEADER_SIZE = 8;
+
+    private static final int COPY_BUFFER_SIZE = 4096;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int blobStart;
+
+    /*
+     * Each thread gets its own view of the mapping and its own copy
+     * buffer, so reads need neither locking nor per-request allocation.
+     */
+    private final ThreadLocal<Reader> readers;
+
+    public MappedFortuneCatalog(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Fortune catalog too large to map: " + file);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a fortune catalog: " + file);
+        }
+        this.count = buffer.getInt(4);
+        // checked before use, so a corrupt count cannot overflow the offsets
+        if (count <= 0 || count >= (buffer.limit() - HEADER_SIZE) / 4) {
+            throw new IOException("Corrupt fortune catalog: " + file + " claims " + count
+                    + " fortunes, more than its " + buffer.limit() + " bytes can hold");
+        }
+        this.blobStart = HEADER_SIZE + (count + 1) * 4;
+        // checked once here, so reads can trust every fortune's length
+        int previous = 0;
+        for (int i = 0; i <= count; i++) {
+            int offset = offset(i);
+            if (offset < previous) {
+                throw new IOException("Corrupt fortune catalog: " + file + " has its offsets out of order at fortune " + i);
+            }
+            previous = offset;
+        }
+        if ((long) blobStart + offset(count) > buffer.limit()) {
+            throw new IOException("Corrupt fortune catalog: " + file + " is cut off before the end of its fortunes");
+        }
+        this.readers = ThreadLocal.withInitial(() -> new Reader(buffer.duplicate()));
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public String getFortune(int index) {
+        int start = offset(index);
+        int length = offset(index + 1) - start;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = readers.get().view;
+        view.position(blobStart + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void writeFortune(int index, OutputStream out) throws IOException {
+        int start = offset(index);
+        int remaining = offset(index + 1) - start;
+        Reader reader = readers.get();
+        reader.view.position(blobStart + start);
+        while (remaining > 0) {
+            int chunk = Math.min(remaining, reader.copyBuffer.length);
+            reader.view.get(reader.copyBuffer, 0, chunk);
+            out.write(reader.copyBuffer, 0, chunk);
+            remaining -= chunk;
+        }
+    }
+
+    private int offset(int index) {
+        return buffer.getInt(HEADER_SIZE + index * 4);
+    }
+
+    private static class Reader {
+
+        final ByteBuffer view;
+        final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+
+        Reader(ByteBuffer view) {
+            this.view = view;
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.orangeandbronze.limit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Puts an adaptive concurrency limit in front of the fortune endpoints.
+ * Actuator and other endpoints are not limited. {@code /batch} gets a
+ * limiter of its own: a batch takes many times as long as a single
+ * fortune, so sharing one latency estimate would let either endpoint's
+ * mix throw off the limit of the other.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "fortune.limiter", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public ConcurrencyLimiter fortuneLimiter(ConcurrencyLimitProperties properties) {
+        return new ConcurrencyLimiter(properties);
+    }
+
+    @Bean
+    public ConcurrencyLimiter batchLimiter(ConcurrencyLimitProperties properties) {
+        return new ConcurrencyLimiter(properties, "fortune.limiter.batch");
+    }
+
+    @Bean
+    public FilterRegistrationBean fortuneLimitFilter(ConcurrencyLimitProperties properties) {
+        return limitFilter(fortuneLimiter(properties), properties, "/");
+    }
+
+    @Bean
+    public FilterRegistrationBean batchLimitFilter(ConcurrencyLimitProperties properties) {
+        return limitFilter(batchLimiter(properties), properties, "/batch");
+    }
+
+    private FilterRegistrationBean limitFilter(ConcurrencyLimiter limiter, ConcurrencyLimitProperties properties,
+                                               String path) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(
+                new ConcurrencyLimitFilter(limiter, properties.getRetryAfter()));
+        registration.addUrlPatterns(path);
+        return registration;
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.orangeandbronze.limit;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A gradient-based adaptive concurrency limit. Two moving averages of
+ * request latency are kept: a long-term one that tracks the latency the
+ * service can sustain, and a short-term one that tracks the current latency.
+ * While the short-term latency stays within the tolerance of the long-term
+ * one the limit grows by roughly its square root per update; when requests
+ * start queuing the ratio between the two shrinks it.
+ * </p><p>
+ * The long-term average only learns from requests that did not queue, so
+ * sustained overload cannot pass its own queueing delay off as the normal
+ * latency and let the limit creep back up. While the limit sheds load some
+ * requests still get through quickly; only when none of a hundred queued
+ * requests did is the service itself taken to have got slower, and the
+ * fastest of them becomes the new baseline.
+ * </p><p>
+ * Admission is a single atomic increment. Updates happen on completion and
+ * are skipped rather than waited for when another thread is updating.
+ * </p>
+ */
+public class ConcurrencyLimiter implements PublicMetrics {
+
+    private static final double LONG_WINDOW = 600;
+    private static final double SHORT_WINDOW = 10;
+    private static final int SLOWDOWN_WINDOW = 100;
+
+    private final ConcurrencyLimitProperties properties;
+    private final String metricPrefix;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile int limit;
+
+    // guarded by updateLock
+    private double estimatedLimit;
+    private double longRtt;
+    private double shortRtt;
+    private long slowdownMinRtt = Long.MAX_VALUE;
+    private int slowdownSamples;
+
+    public ConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+        this(properties, "fortune.limiter");
+    }
+
+    public ConcurrencyLimiter(ConcurrencyLimitProperties properties, String metricPrefix) {
+        this.properties = properties;
+        this.metricPrefix = metricPrefix;
+        this.estimatedLimit = properties.getInitialLimit();
+        this.limit = properties.getInitialLimit();
+    }
+
+    public boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void release(long rttNanos) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        if (updateLock.tryLock()) {
+            try {
+                update(rttNanos, inFlightAtCompletion);
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    private void update(long rttNanos, int inFlightAtCompletion) {
+        if (longRtt == 0) {
+            longRtt = rttNanos;
+            shortRtt = rttNanos;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+
+        boolean queueing = shortRtt > properties.getRttTolerance() * longRtt;
+        if (!queueing) {
+            longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+            slowdownSamples = 0;
+            slowdownMinRtt = Long.MAX_VALUE;
+        } else {
+            slowdownMinRtt = Math.min(slowdownMinRtt, rttNanos);
+            if (++slowdownSamples == SLOWDOWN_WINDOW) {
+                // not even the fastest request got through quickly: the service itself got slower
+                if (slowdownMinRtt > properties.getRttTolerance() * longRtt) {
+                    longRtt = slowdownMinRtt;
+                }
+                slowdownSamples = 0;
+                slowdownMinRtt = Long.MAX_VALUE;
+            }
+        }
+
+        // let the long-term average catch up quickly once a load spike is over
+        if (longRtt > 2 * shortRtt) {
+            longRtt *= 0.95;
+        }
+
+        // too few requests to say anything about the limit
+        if (inFlightAtCompletion < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, properties.getRttTolerance() * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + (queueing ? 0 : Math.sqrt(estimatedLimit));
+        newLimit = estimatedLimit * (1 - properties.getSmoothing()) + newLimit * properties.getSmoothing();
+        estimatedLimit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>(metricPrefix + ".limit", limit),
+                new Metric<>(metricPrefix + ".in-flight", inFlight.get()),
+                new Metric<>(metricPrefix + ".rejected", rejected.sum()));
+    }
+
+}
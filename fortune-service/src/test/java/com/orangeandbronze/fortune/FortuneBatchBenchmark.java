@@ -0,0 +1,110 @@
+package com.orangeandbronze.fortune;
+
+import com.orangeandbronze.FortuneServiceApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Fortunes per second over HTTP: a page's worth fetched one
+ * {@code GET /} at a time, against one {@code GET /batch}. The service
+ * runs in-process on a random port, with discovery and the config client
+ * off; the JDK's HTTP client keeps connections alive, so both sides pay
+ * per request rather than per connection.
+ * </p><p>
+ * Not run by the build:
+ * </p>
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.fortune.FortuneBatchBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class FortuneBatchBenchmark {
+
+    private static final int PAGE = 10;
+
+    private EmbeddedWebApplicationContext context;
+    private URL single;
+    private URL batch;
+
+    @Setup
+    public void setUp() throws IOException {
+        // read by the bootstrap context too
+        System.setProperty("spring.cloud.config.enabled", "false");
+        context = (EmbeddedWebApplicationContext) new SpringApplicationBuilder(FortuneServiceApplication.class)
+                .properties("server.port=0", "eureka.client.enabled=false", "logging.level.root=WARN")
+                .run();
+        String base = "http://localhost:" + context.getEmbeddedServletContainer().getPort();
+        single = new URL(base + "/");
+        batch = new URL(base + "/batch?count=" + PAGE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE)
+    public long single() throws IOException {
+        long bytes = 0;
+        for (int i = 0; i < PAGE; i++) {
+            bytes += fetch(single);
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE)
+    public long batch() throws IOException {
+        return fetch(batch);
+    }
+
+    private static long fetch(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        byte[] buffer = new byte[4096];
+        long bytes = 0;
+        // read to the end, or the connection is not reused
+        try (InputStream in = connection.getInputStream()) {
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                bytes += n;
+            }
+        }
+        return bytes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FortuneBatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.orangeandbronze.fortune;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FortuneCatalogBuilderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mappedCatalogServesWhatWasBuilt() throws IOException {
+        List<String> fortunes = Arrays.asList("first", "café ☕ 🍀", "third");
+        File input = folder.newFile("fortunes.txt");
+        Files.write(input.toPath(), Arrays.asList("# comment", "first", "", "café ☕ 🍀", "  third  "),
+                StandardCharsets.UTF_8);
+        File output = new File(folder.getRoot(), "fortunes.bin");
+
+        assertEquals(3, FortuneCatalogBuilder.build(input, output));
+
+        MappedFortuneCatalog catalog = new MappedFortuneCatalog(output);
+        assertEquals(fortunes.size(), catalog.size());
+        for (int i = 0; i < fortunes.size(); i++) {
+            assertEquals(fortunes.get(i), catalog.getFortune(i));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            catalog.writeFortune(i, out);
+            assertArrayEquals(fortunes.get(i).getBytes(StandardCharsets.UTF_8), out.toByteArray());
+        }
+    }
+
+    @Test
+    public void writesFortunesLongerThanTheCopyBuffer() throws IOException {
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'x');
+        String longFortune = new String(chars);
+        File input = folder.newFile("fortunes.txt");
+        Files.write(input.toPath(), Arrays.asList("short", longFortune), StandardCharsets.UTF_8);
+        File output = new File(folder.getRoot(), "fortunes.bin");
+        FortuneCatalogBuilder.build(input, output);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MappedFortuneCatalog(output).writeFortune(1, out);
+
+        assertEquals(longFortune, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsInputWithoutFortunes() throws IOException {
+        File input = folder.newFile("fortunes.txt");
+        Files.write(input.toPath(), Arrays.asList("# only a comment", ""), StandardCharsets.UTF_8);
+
+        FortuneCatalogBuilder.build(input, new File(folder.getRoot(), "fortunes.bin"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFilesThatAreNotCatalogs() throws IOException {
+        File file = folder.newFile("fortunes.txt");
+        Files.write(file.toPath(), Arrays.asList("not a catalog"), StandardCharsets.UTF_8);
+
+        new MappedFortuneCatalog(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsCatalogsClaimingMoreFortunesThanTheyHold() throws IOException {
+        File file = folder.newFile("fortunes.bin");
+        ByteBuffer header = ByteBuffer.allocate(16);
+        header.putInt(MappedFortuneCatalog.MAGIC).putInt(Integer.MAX_VALUE).putInt(0).putInt(0);
+        Files.write(file.toPath(), header.array());
+
+        new MappedFortuneCatalog(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsCatalogsWithOffsetsOutOfOrder() throws IOException {
+        File file = folder.newFile("fortunes.bin");
+        ByteBuffer catalog = ByteBuffer.allocate(25);
+        catalog.putInt(MappedFortuneCatalog.MAGIC).putInt(2).putInt(0).putInt(5).putInt(3)
+                .put("abcde".getBytes(StandardCharsets.UTF_8));
+        Files.write(file.toPath(), catalog.array());
+
+        new MappedFortuneCatalog(file);
+    }
+
+}
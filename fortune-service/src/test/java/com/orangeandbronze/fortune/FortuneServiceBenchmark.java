@@ -0,0 +1,137 @@
+package com.orangeandbronze.fortune;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Throughput and allocation rate of the catalog-backed
+ * {@link FortuneService} against the original one, which built a
+ * {@code Random} and switched over three strings on every call. The
+ * {@code write} benchmarks include getting the response bytes: the
+ * original controller returned a String, encoded per request.
+ * </p><p>
+ * Not run by the build. Run with the allocation profiler (the
+ * {@code gc.alloc.rate.norm} column is bytes per call):
+ * </p>
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.fortune.FortuneServiceBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class FortuneServiceBenchmark {
+
+    private FortuneService fortuneService;
+
+    @Setup
+    public void setUp() throws IOException {
+        fortuneService = new FortuneService(InMemoryFortuneCatalog.load(new ClassPathResource("fortunes.txt")));
+    }
+
+    @Benchmark
+    public String original() {
+        return OriginalFortuneService.getFortune();
+    }
+
+    @Benchmark
+    public String catalog() {
+        return fortuneService.getFortune();
+    }
+
+    @Benchmark
+    public void originalWrite(Output output) throws IOException {
+        output.write(OriginalFortuneService.getFortune().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void catalogWrite(Output output) throws IOException {
+        fortuneService.writeFortune(output);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FortuneServiceBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    /**
+     * Stands in for the response stream, one per thread like a request's.
+     */
+    @State(Scope.Thread)
+    public static class Output extends OutputStream {
+
+        private Blackhole blackhole;
+
+        @Setup
+        public void setUp(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+
+    /**
+     * {@code FortuneService#getFortune()} before the catalog.
+     */
+    static class OriginalFortuneService {
+
+        static String getFortune() {
+            Random random = new Random();
+            String fortune;
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    fortune = "You learn from your mistakes... You will learn a lot today.";
+                    break;
+                case 1:
+                    fortune = "You can always find happiness at work on Friday";
+                    break;
+                case 2:
+                    fortune = "You will be hungry again in one hour.";
+                    break;
+                default:
+                    fortune = "Today will be an awesome day!";
+                    break;
+            }
+
+            return fortune;
+        }
+    }
+
+}
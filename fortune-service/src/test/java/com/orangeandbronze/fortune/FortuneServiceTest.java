@@ -0,0 +1,53 @@
+package com.orangeandbronze.fortune;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FortuneServiceTest {
+
+    @Test
+    public void writesOneJsonStringPerLine() throws IOException {
+        FortuneService service = new FortuneService(
+                new InMemoryFortuneCatalog(Collections.singletonList("say \"cheese\" \\ café")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.writeFortunes(3, out);
+
+        String line = "\"say \\\"cheese\\\" \\\\ café\"";
+        assertEquals(line + "\n" + line + "\n" + line + "\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writesOnlyFortunesFromTheCatalog() throws IOException {
+        FortuneService service = new FortuneService(new InMemoryFortuneCatalog(Arrays.asList("a", "b", "c")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.writeFortunes(100, out);
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(100, lines.length);
+        for (String line : lines) {
+            assertTrue(Arrays.asList("\"a\"", "\"b\"", "\"c\"").contains(line));
+        }
+    }
+
+    @Test
+    public void writesTheEncodedFortune() throws IOException {
+        FortuneService service = new FortuneService(new InMemoryFortuneCatalog(Collections.singletonList("café")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.writeFortune(out);
+
+        assertArrayEquals("café".getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.orangeandbronze.fortune;
+
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class InMemoryFortuneCatalogTest {
+
+    @Test
+    public void skipsBlankAndCommentLines() throws IOException {
+        String text = "# header\n\n  first  \n#second\nthird\n\n";
+        InMemoryFortuneCatalog catalog = InMemoryFortuneCatalog.load(
+                new ByteArrayResource(text.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, catalog.size());
+        assertEquals("first", catalog.getFortune(0));
+        assertEquals("third", catalog.getFortune(1));
+    }
+
+    @Test
+    public void writesPreEncodedUtf8() throws IOException {
+        InMemoryFortuneCatalog catalog = new InMemoryFortuneCatalog(Arrays.asList("plain", "café ☕ 🍀"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        catalog.writeFortune(1, out);
+
+        assertArrayEquals("café ☕ 🍀".getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnEmptyCatalog() {
+        new InMemoryFortuneCatalog(Collections.emptyList());
+    }
+
+}
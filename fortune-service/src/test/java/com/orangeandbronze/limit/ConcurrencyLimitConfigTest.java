@@ -0,0 +1,91 @@
+package com.orangeandbronze.limit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.test.util.EnvironmentTestUtils;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimitConfigTest {
+
+    private AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+
+    @After
+    public void close() {
+        context.close();
+    }
+
+    @Test
+    public void offUnlessEnabled() {
+        context.register(ConcurrencyLimitConfig.class);
+        context.refresh();
+
+        assertTrue(context.getBeansOfType(ConcurrencyLimiter.class).isEmpty());
+    }
+
+    @Test
+    public void batchesAreLimitedApartFromSingleFortunes() throws Exception {
+        EnvironmentTestUtils.addEnvironment(context, "fortune.limiter.enabled=true",
+                "fortune.limiter.initial-limit=1");
+        context.register(ConcurrencyLimitConfig.class);
+        context.refresh();
+        Filter fortune = filter("fortuneLimitFilter", "/");
+        Filter batch = filter("batchLimitFilter", "/batch");
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread slowBatch = new Thread(() -> {
+            try {
+                batch.doFilter(new MockHttpServletRequest("GET", "/batch"), new MockHttpServletResponse(),
+                        (request, response) -> {
+                            started.countDown();
+                            await(release);
+                        });
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        slowBatch.start();
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertEquals(HttpServletResponse.SC_OK, status(fortune, "/"));
+            assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, status(batch, "/batch"));
+        } finally {
+            release.countDown();
+            slowBatch.join();
+        }
+        assertEquals(HttpServletResponse.SC_OK, status(batch, "/batch"));
+    }
+
+    private Filter filter(String name, String path) {
+        FilterRegistrationBean registration = context.getBean(name, FilterRegistrationBean.class);
+        assertEquals(Collections.singleton(path), registration.getUrlPatterns());
+        return registration.getFilter();
+    }
+
+    private static int status(Filter filter, String path) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", path), response, (request, res) -> { });
+        return response.getStatus();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.orangeandbronze.limit;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Overload scenario: many more closed-loop clients than the service has
+ * workers, each worker taking a fixed time per request. Without a limit
+ * every request queues for a worker and the tail latency grows with the
+ * number of clients. With the limit in front, the excess is turned away
+ * with a 503 and the tail latency of the requests that are admitted stays
+ * a small multiple of the service time, however many clients there are.
+ */
+public class ConcurrencyLimitOverloadTest {
+
+    private static final int WORKERS = 4;
+    private static final int CLIENTS = 64;
+    private static final long SERVICE_MILLIS = 5;
+    private static final long RUN_MILLIS = 2000;
+
+    @Test
+    public void shedsLoadAndKeepsTheTailLatencyBounded() throws Exception {
+        Result unlimited = run(null);
+        Result limited = run(new ConcurrencyLimitFilter(new ConcurrencyLimiter(new ConcurrencyLimitProperties()), 1));
+
+        assertTrue("nothing was rejected: " + limited, limited.rejected > 0);
+        assertTrue("p99 " + limited.p99Millis() + " ms with the limit, " + unlimited.p99Millis() + " ms without",
+                limited.p99Millis() * 2 < unlimited.p99Millis());
+    }
+
+    private Result run(ConcurrencyLimitFilter filter) throws Exception {
+        Semaphore workers = new Semaphore(WORKERS, true);
+        FilterChain service = (request, response) -> {
+            try {
+                workers.acquire();
+                try {
+                    Thread.sleep(SERVICE_MILLIS);
+                } finally {
+                    workers.release();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+        List<Future<Result>> results = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            results.add(clients.submit(() -> {
+                Result result = new Result();
+                start.await();
+                while (System.nanoTime() < deadline) {
+                    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+                    MockHttpServletResponse response = new MockHttpServletResponse();
+                    long begin = System.nanoTime();
+                    if (filter != null) {
+                        filter.doFilter(request, response, service);
+                    } else {
+                        service.doFilter(request, response);
+                    }
+                    if (response.getStatus() == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+                        result.rejected++;
+                        // as told by Retry-After, scaled down to the test
+                        Thread.sleep(SERVICE_MILLIS);
+                    } else {
+                        result.latencies.add(System.nanoTime() - begin);
+                    }
+                }
+                return result;
+            }));
+        }
+        start.countDown();
+        Result total = new Result();
+        for (Future<Result> result : results) {
+            total.add(result.get());
+        }
+        clients.shutdown();
+        return total;
+    }
+
+    private static class Result {
+
+        final List<Long> latencies = new ArrayList<>();
+        long rejected;
+
+        void add(Result other) {
+            latencies.addAll(other.latencies);
+            rejected += other.rejected;
+        }
+
+        long p99Millis() {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return TimeUnit.NANOSECONDS.toMillis(sorted.get((int) (sorted.size() * 0.99)));
+        }
+
+        @Override
+        public String toString() {
+            return latencies.size() + " served, " + rejected + " rejected, p99 " + p99Millis() + " ms";
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.orangeandbronze.limit;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+
+    @Test
+    public void admitsUpToTheLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties);
+        for (int i = 0; i < properties.getInitialLimit(); i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1L, metric(limiter, "fortune.limiter.rejected"));
+
+        limiter.release(FAST);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void limitGrowsWhileLatencyHolds() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties);
+        saturate(limiter, FAST, 20);
+
+        assertTrue(limit(limiter) > properties.getInitialLimit());
+    }
+
+    @Test
+    public void limitShrinksWhenLatencyRises() {
+        // keeps a round of requests below the hundred it takes to call it a slowdown of the service
+        properties.setMaxLimit(50);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties);
+        saturate(limiter, FAST, 20);
+        int grown = limit(limiter);
+
+        saturate(limiter, SLOW, 1);
+
+        assertTrue(limit(limiter) < grown);
+    }
+
+    @Test
+    public void sustainedLatencyBecomesTheNewBaseline() {
+        properties.setMaxLimit(50);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties);
+        saturate(limiter, FAST, 20);
+        saturate(limiter, SLOW, 1);
+        int shrunk = limit(limiter);
+
+        saturate(limiter, SLOW, 20);
+
+        assertTrue(limit(limiter) > shrunk);
+    }
+
+    @Test
+    public void limitStaysWithinBounds() {
+        properties.setMinLimit(8);
+        properties.setMaxLimit(50);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties);
+
+        saturate(limiter, FAST, 100);
+        assertEquals(50, limit(limiter));
+
+        saturate(limiter, SLOW * 1000, 1);
+        assertEquals(8, limit(limiter));
+    }
+
+    @Test
+    public void queueingDoesNotBecomeTheBaseline() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties);
+        int highest = 0;
+        // four workers: every four requests in flight add one service time
+        for (int round = 0; round < 1000; round++) {
+            int admitted = 0;
+            while (limiter.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limiter.release(FAST * Math.max(1, admitted / 4));
+            }
+            if (round >= 20) {
+                highest = Math.max(highest, limit(limiter));
+            }
+        }
+
+        assertTrue("limit reached " + highest, highest < 4 * 16);
+    }
+
+    @Test
+    public void lightLoadLeavesTheLimitAlone() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(i % 2 == 0 ? FAST : SLOW);
+        }
+
+        assertEquals(properties.getInitialLimit(), limit(limiter));
+    }
+
+    /*
+     * Each round admits requests until the limiter rejects one, then
+     * completes them all with the given latency.
+     */
+    private static void saturate(ConcurrencyLimiter limiter, long rttNanos, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int admitted = 0;
+            while (limiter.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limiter.release(rttNanos);
+            }
+        }
+    }
+
+    private static int limit(ConcurrencyLimiter limiter) {
+        return (int) metric(limiter, "fortune.limiter.limit");
+    }
+
+    private static long metric(ConcurrencyLimiter limiter, String name) {
+        for (Metric<?> metric : limiter.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new AssertionError("no metric " + name);
+    }
+
+}
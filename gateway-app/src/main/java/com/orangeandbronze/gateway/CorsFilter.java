@@ -2,42 +2,89 @@ package com.orangeandbronze.gateway;
 
 import com.netflix.zuul.ZuulFilter;
 import com.netflix.zuul.context.RequestContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Map;
 
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PRE_DECORATION_FILTER_ORDER;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PRE_TYPE;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PROXY_KEY;
+
+/**
+ * Applies the CORS policy of the matched route. Preflight requests are
+ * answered here and never reach the backend; requests without an
+ * {@code Origin} header are not touched at all.
+ */
 @Component
+@EnableConfigurationProperties(CorsProperties.class)
 public class CorsFilter extends ZuulFilter {
 
+    private final CorsPolicy defaultPolicy;
+    private final Map<String, CorsPolicy> routePolicies = new HashMap<>();
+
+    @Autowired
+    public CorsFilter(CorsProperties properties) {
+        this.defaultPolicy = new CorsPolicy(properties.getDefaults());
+        for (Map.Entry<String, CorsProperties.Policy> route : properties.getRoutes().entrySet()) {
+            routePolicies.put(route.getKey(), new CorsPolicy(route.getValue()));
+        }
+    }
+
     @Override
     public String filterType() {
-        return "pre";
+        return PRE_TYPE;
     }
 
+    // needs the route, which PreDecorationFilter resolves
     @Override
     public int filterOrder() {
-        return 1;
+        return PRE_DECORATION_FILTER_ORDER + 1;
     }
 
     @Override
     public boolean shouldFilter() {
-        return true;
+        return RequestContext.getCurrentContext().getRequest().getHeader("Origin") != null;
     }
 
     @Override
     public Object run() {
         RequestContext ctx = RequestContext.getCurrentContext();
-
+        HttpServletRequest request = ctx.getRequest();
         HttpServletResponse response = ctx.getResponse();
-        response.addHeader("Access-Control-Allow-Origin", "*");
-        response.addHeader("Access-Control-Allow-Methods", "OPTIONS,GET");
+        String origin = request.getHeader("Origin");
 
-        HttpServletRequest request = ctx.getRequest();
-        if (request.getMethod().equals("OPTIONS")) {
-            ctx.setSendZuulResponse(true);
+        CorsPolicy policy = routePolicies.get(ctx.get(PROXY_KEY));
+        if (policy == null) {
+            policy = defaultPolicy;
+        }
+
+        String requestedMethod = request.getHeader("Access-Control-Request-Method");
+        boolean preflight = "OPTIONS".equals(request.getMethod()) && requestedMethod != null;
+
+        if (!policy.allowsOrigin(origin) || (preflight && !policy.allowsMethod(requestedMethod))) {
+            if (preflight) {
+                respondLocally(ctx, HttpServletResponse.SC_FORBIDDEN);
+            }
+            // a simple request goes through, the browser hides the response
+            return null;
         }
 
+        policy.addAllowOrigin(response, origin);
+        if (preflight) {
+            policy.addPreflight(response, request.getHeader("Access-Control-Request-Headers"));
+            respondLocally(ctx, HttpServletResponse.SC_OK);
+        }
         return null;
     }
+
+    private void respondLocally(RequestContext ctx, int status) {
+        ctx.setSendZuulResponse(false);
+        ctx.setResponseStatusCode(status);
+        ctx.getResponse().setStatus(status);
+    }
 }
@@ -0,0 +1,190 @@
+package com.orangeandbronze.gateway;
+
+import com.netflix.util.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory cache of proxied responses, filled by
+ * {@link ResponseCachePostFilter} and served by {@link ResponseCachePreFilter}.
+ * Entries expire after their route's TTL; once the bodies exceed
+ * {@code zuul.cache.max-bytes} the least recently used ones are evicted.
+ * Being shared by every client, it answers a request with credentials
+ * only from a response marked {@code Cache-Control: public}.
+ */
+@Component
+@EnableConfigurationProperties(ResponseCacheProperties.class)
+public class ResponseCache implements PublicMetrics {
+
+    private ResponseCacheProperties properties;
+
+    // guarded by itself
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public ResponseCache(ResponseCacheProperties properties) {
+        this.properties = properties;
+    }
+
+    public long getTtl(String routeId) {
+        return routeId == null ? 0 : properties.getTtl(routeId);
+    }
+
+    public int getMaxEntryBytes() {
+        return properties.getCache().getMaxEntryBytes();
+    }
+
+    /**
+     * @return whether cached responses are told apart by the given request
+     * header, so a response that varies on it may be cached
+     */
+    public boolean keysOn(String header) {
+        for (String varyHeader : properties.getCache().getVaryHeaders()) {
+            if (varyHeader.equalsIgnoreCase(header)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String key(String routeId, HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(routeId).append(' ').append(request.getRequestURI());
+        if (request.getQueryString() != null) {
+            key.append('?').append(request.getQueryString());
+        }
+        for (String header : properties.getCache().getVaryHeaders()) {
+            key.append('\n').append(header).append(':');
+            String value = request.getHeader(header);
+            if (value != null) {
+                key.append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    public Entry get(String key) {
+        return get(key, false);
+    }
+
+    /**
+     * @param credentials whether the request carries credentials, in which
+     * case only a public response will do
+     */
+    public Entry get(String key, boolean credentials) {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= now) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null && credentials && !entry.shared) {
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+            bytesSaved.add(entry.body.length);
+        }
+        return entry;
+    }
+
+    public void put(String key, Entry entry) {
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, entry);
+            totalBytes += entry.body.length;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (totalBytes > properties.getCache().getMaxBytes() && eldest.hasNext()) {
+                totalBytes -= eldest.next().body.length;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.body.length;
+        }
+    }
+
+    static boolean hasCredentials(HttpServletRequest request) {
+        return request.getHeader("Authorization") != null || request.getHeader("Cookie") != null;
+    }
+
+    static boolean isPublic(List<Pair<String, String>> headers) {
+        for (Pair<String, String> header : headers) {
+            if ("Cache-Control".equalsIgnoreCase(header.first())) {
+                for (String directive : header.second().split(",")) {
+                    if ("public".equalsIgnoreCase(directive.trim())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        int size;
+        long bytes;
+        synchronized (entries) {
+            size = entries.size();
+            bytes = totalBytes;
+        }
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("zuul.cache.hits", hitCount),
+                new Metric<>("zuul.cache.misses", total - hitCount),
+                new Metric<>("zuul.cache.hit-ratio", total == 0 ? 0.0 : (double) hitCount / total),
+                new Metric<>("zuul.cache.bytes-saved", bytesSaved.sum()),
+                new Metric<>("zuul.cache.entries", size),
+                new Metric<>("zuul.cache.bytes", bytes),
+                new Metric<>("zuul.cache.evictions", evictions.sum()));
+    }
+
+    public static class Entry {
+
+        final int status;
+        final List<Pair<String, String>> headers;
+        final byte[] body;
+        final boolean gzipped;
+        final long expiresAt;
+        // may be served to requests with credentials
+        final boolean shared;
+
+        Entry(int status, List<Pair<String, String>> headers, byte[] body, boolean gzipped, long expiresAt) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.gzipped = gzipped;
+            this.expiresAt = expiresAt;
+            this.shared = isPublic(headers);
+        }
+    }
+
+}
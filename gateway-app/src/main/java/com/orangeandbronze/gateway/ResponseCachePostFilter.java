@@ -0,0 +1,122 @@
+package com.orangeandbronze.gateway;
+
+import com.netflix.util.Pair;
+import com.netflix.zuul.ZuulFilter;
+import com.netflix.zuul.context.RequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.POST_TYPE;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PROXY_KEY;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.SEND_RESPONSE_FILTER_ORDER;
+
+/**
+ * Stores successful responses to requests that missed the cache, just
+ * before they are written to the client. Responses marked no-store or
+ * private are not stored, nor are responses that set a cookie or vary on a
+ * request header the cache key does not include. The response to a request
+ * with credentials is stored only if it is marked public.
+ */
+@Component
+public class ResponseCachePostFilter extends ZuulFilter {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private ResponseCache responseCache;
+
+    @Autowired
+    public ResponseCachePostFilter(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public String filterType() {
+        return POST_TYPE;
+    }
+
+    @Override
+    public int filterOrder() {
+        return SEND_RESPONSE_FILTER_ORDER - 1;
+    }
+
+    @Override
+    public boolean shouldFilter() {
+        RequestContext ctx = RequestContext.getCurrentContext();
+        return ctx.get(ResponseCachePreFilter.CACHE_KEY) != null
+                && ctx.getThrowable() == null
+                && ctx.getResponseStatusCode() == 200
+                && ctx.getResponseBody() == null
+                && ctx.getResponseDataStream() != null
+                && isCacheable(ctx.getZuulResponseHeaders())
+                && (!ResponseCache.hasCredentials(ctx.getRequest())
+                        || ResponseCache.isPublic(ctx.getZuulResponseHeaders()));
+    }
+
+    @Override
+    public Object run() {
+        RequestContext ctx = RequestContext.getCurrentContext();
+        try {
+            InputStream in = ctx.getResponseDataStream();
+            byte[] body = readAtMost(in, responseCache.getMaxEntryBytes() + 1);
+            if (body.length > responseCache.getMaxEntryBytes()) {
+                // too large to cache: hand back what was read plus the rest
+                ctx.setResponseDataStream(new SequenceInputStream(new ByteArrayInputStream(body), in));
+                return null;
+            }
+            ctx.setResponseDataStream(new ByteArrayInputStream(body));
+
+            long expiresAt = System.currentTimeMillis() + responseCache.getTtl((String) ctx.get(PROXY_KEY));
+            responseCache.put((String) ctx.get(ResponseCachePreFilter.CACHE_KEY), new ResponseCache.Entry(
+                    ctx.getResponseStatusCode(), new ArrayList<>(ctx.getZuulResponseHeaders()),
+                    body, ctx.getResponseGZipped(), expiresAt));
+        } catch (IOException ex) {
+            logger.warn("Could not cache response: {}", ex.getMessage());
+        }
+        return null;
+    }
+
+    private boolean isCacheable(List<Pair<String, String>> headers) {
+        for (Pair<String, String> header : headers) {
+            if ("Cache-Control".equalsIgnoreCase(header.first())) {
+                String value = header.second().toLowerCase();
+                if (value.contains("no-store") || value.contains("private")) {
+                    return false;
+                }
+            } else if ("Set-Cookie".equalsIgnoreCase(header.first())) {
+                // someone's session, not for every client
+                return false;
+            } else if ("Vary".equalsIgnoreCase(header.first())) {
+                for (String name : header.second().split(",")) {
+                    // "*" is never part of the key
+                    if (!name.trim().isEmpty() && !responseCache.keysOn(name.trim())) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private byte[] readAtMost(InputStream in, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(limit, StreamUtils.BUFFER_SIZE));
+        byte[] buffer = new byte[StreamUtils.BUFFER_SIZE];
+        int remaining = limit;
+        int read;
+        while (remaining > 0 && (read = in.read(buffer, 0, Math.min(buffer.length, remaining))) != -1) {
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.orangeandbronze.gateway;
+
+import com.netflix.util.Pair;
+import com.netflix.zuul.ZuulFilter;
+import com.netflix.zuul.context.RequestContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PRE_DECORATION_FILTER_ORDER;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PRE_TYPE;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PROXY_KEY;
+
+/**
+ * Answers GET requests on cached routes from the {@link ResponseCache}
+ * without contacting the backend. Runs once the route is resolved and
+ * CORS preflights have been answered. A request with an
+ * {@code Authorization} or {@code Cookie} header is answered only from a
+ * public response.
+ */
+@Component
+public class ResponseCachePreFilter extends ZuulFilter {
+
+    static final String CACHE_KEY = "responseCacheKey";
+    static final String CACHE_HIT = "responseCacheHit";
+
+    private ResponseCache responseCache;
+
+    @Autowired
+    public ResponseCachePreFilter(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public String filterType() {
+        return PRE_TYPE;
+    }
+
+    @Override
+    public int filterOrder() {
+        return PRE_DECORATION_FILTER_ORDER + 2;
+    }
+
+    @Override
+    public boolean shouldFilter() {
+        RequestContext ctx = RequestContext.getCurrentContext();
+        return ctx.sendZuulResponse()
+                && "GET".equals(ctx.getRequest().getMethod())
+                && responseCache.getTtl((String) ctx.get(PROXY_KEY)) > 0;
+    }
+
+    @Override
+    public Object run() {
+        RequestContext ctx = RequestContext.getCurrentContext();
+        String key = responseCache.key((String) ctx.get(PROXY_KEY), ctx.getRequest());
+        ResponseCache.Entry entry = responseCache.get(key, ResponseCache.hasCredentials(ctx.getRequest()));
+        if (entry == null) {
+            // let the post filter store the response under the same key
+            ctx.put(CACHE_KEY, key);
+            return null;
+        }
+
+        ctx.put(CACHE_HIT, true);
+        ctx.setSendZuulResponse(false);
+        ctx.setResponseStatusCode(entry.status);
+        for (Pair<String, String> header : entry.headers) {
+            ctx.addZuulResponseHeader(header.first(), header.second());
+        }
+        ctx.setResponseGZipped(entry.gzipped);
+        ctx.setOriginContentLength((long) entry.body.length);
+        ctx.setResponseDataStream(new ByteArrayInputStream(entry.body));
+        return null;
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Binds the response cache settings. Per-route TTLs sit next to the
+ * route definitions they belong to:
+ * </p>
+ * <pre>
+ * zuul:
+ *   routes:
+ *     fortune:
+ *       serviceId: fortune-service
+ *       cache-ttl: 5000
+ *   cache:
+ *     max-bytes: 16777216
+ * </pre><p>
+ * Everything else under {@code zuul.*} belongs to Zuul itself and is ignored.
+ * </p>
+ */
+@ConfigurationProperties(prefix = "zuul", ignoreInvalidFields = true)
+public class ResponseCacheProperties {
+
+    private Map<String, Route> routes = new LinkedHashMap<>();
+
+    private Cache cache = new Cache();
+
+    public Map<String, Route> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Route> routes) {
+        this.routes = routes;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public long getTtl(String routeId) {
+        Route route = routes.get(routeId);
+        return route == null ? 0 : route.getCacheTtl();
+    }
+
+    public static class Route {
+
+        /**
+         * How long (in milliseconds) responses on this route are cached;
+         * 0 disables caching.
+         */
+        private long cacheTtl;
+
+        public long getCacheTtl() {
+            return cacheTtl;
+        }
+
+        public void setCacheTtl(long cacheTtl) {
+            this.cacheTtl = cacheTtl;
+        }
+    }
+
+    public static class Cache {
+
+        /**
+         * Upper bound for the size of all cached bodies together.
+         */
+        private long maxBytes = 16 * 1024 * 1024;
+
+        /**
+         * Larger responses are passed through without being cached.
+         */
+        private int maxEntryBytes = 1024 * 1024;
+
+        /**
+         * Request headers that select different cached responses.
+         */
+        private List<String> varyHeaders = new ArrayList<>(Arrays.asList("Accept", "Accept-Encoding"));
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public int getMaxEntryBytes() {
+            return maxEntryBytes;
+        }
+
+        public void setMaxEntryBytes(int maxEntryBytes) {
+            this.maxEntryBytes = maxEntryBytes;
+        }
+
+        public List<String> getVaryHeaders() {
+            return varyHeaders;
+        }
+
+        public void setVaryHeaders(List<String> varyHeaders) {
+            this.varyHeaders = varyHeaders;
+        }
+    }
+
+}
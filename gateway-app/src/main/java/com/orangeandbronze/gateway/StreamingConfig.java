@@ -0,0 +1,44 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.ERROR_TYPE;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.POST_TYPE;
+
+/**
+ * The filters that release {@link StreamingRoutingFilter}'s backend
+ * connections, and direct socket buffers for Tomcat's NIO connector, so
+ * request and response bytes stay off the heap until they are copied into
+ * the stream buffers.
+ */
+@Configuration
+public class StreamingConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "gateway.streaming", name = "enabled", havingValue = "true")
+    public StreamingReleaseFilter streamingReleasePostFilter(StreamingRoutingFilter routingFilter) {
+        return new StreamingReleaseFilter(routingFilter, POST_TYPE);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "gateway.streaming", name = "enabled", havingValue = "true")
+    public StreamingReleaseFilter streamingReleaseErrorFilter(StreamingRoutingFilter routingFilter) {
+        return new StreamingReleaseFilter(routingFilter, ERROR_TYPE);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "gateway.streaming", name = "direct-buffers", havingValue = "true")
+    public EmbeddedServletContainerCustomizer directBufferCustomizer() {
+        return container -> {
+            if (container instanceof TomcatEmbeddedServletContainerFactory) {
+                ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(
+                        connector -> connector.setProperty("socket.directBuffer", "true"));
+            }
+        };
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "gateway.streaming")
+public class StreamingProperties {
+
+    /**
+     * Route through {@link StreamingRoutingFilter} instead of Zuul's
+     * Ribbon and simple-host routing filters.
+     */
+    private boolean enabled;
+
+    /**
+     * Stream service id routes too. They then bypass Hystrix (timeouts,
+     * circuit breaker, fallback providers) and Ribbon retries; the instance
+     * still comes from Ribbon's load balancer.
+     */
+    private boolean serviceRoutes;
+
+    /**
+     * Size of the per-thread copy buffer and of each pooled connection's
+     * socket buffers.
+     */
+    private int bufferSize = 8192;
+
+    /**
+     * Let Tomcat's NIO connector use direct socket buffers.
+     */
+    private boolean directBuffers;
+
+    private int maxTotal = 200;
+
+    private int maxPerRoute = 50;
+
+    private int connectTimeout = 1000;
+
+    private int readTimeout = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isServiceRoutes() {
+        return serviceRoutes;
+    }
+
+    public void setServiceRoutes(boolean serviceRoutes) {
+        this.serviceRoutes = serviceRoutes;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public boolean isDirectBuffers() {
+        return directBuffers;
+    }
+
+    public void setDirectBuffers(boolean directBuffers) {
+        this.directBuffers = directBuffers;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+}
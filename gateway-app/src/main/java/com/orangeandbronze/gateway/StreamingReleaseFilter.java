@@ -0,0 +1,43 @@
+package com.orangeandbronze.gateway;
+
+import com.netflix.zuul.ZuulFilter;
+import com.netflix.zuul.context.RequestContext;
+
+/**
+ * Gives back the backend response {@link StreamingRoutingFilter} holds for
+ * a request once the request is over. Registered both as the last post
+ * filter and as an error filter, since Zuul runs only the error filters
+ * when a post filter fails.
+ */
+public class StreamingReleaseFilter extends ZuulFilter {
+
+    private final StreamingRoutingFilter routingFilter;
+    private final String filterType;
+
+    public StreamingReleaseFilter(StreamingRoutingFilter routingFilter, String filterType) {
+        this.routingFilter = routingFilter;
+        this.filterType = filterType;
+    }
+
+    @Override
+    public String filterType() {
+        return filterType;
+    }
+
+    @Override
+    public int filterOrder() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean shouldFilter() {
+        return RequestContext.getCurrentContext().containsKey(StreamingRoutingFilter.RESPONSE_STREAM_KEY);
+    }
+
+    @Override
+    public Object run() {
+        routingFilter.release(RequestContext.getCurrentContext());
+        return null;
+    }
+
+}
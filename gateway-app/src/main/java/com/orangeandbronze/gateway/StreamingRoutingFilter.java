@@ -0,0 +1,413 @@
+package com.orangeandbronze.gateway;
+
+import com.netflix.zuul.ZuulFilter;
+import com.netflix.zuul.context.RequestContext;
+import com.netflix.zuul.exception.ZuulException;
+import com.netflix.zuul.http.HttpServletRequestWrapper;
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.netflix.zuul.filters.ProxyRequestHelper;
+import org.springframework.cloud.netflix.zuul.util.ZuulRuntimeException;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.REQUEST_ENTITY_KEY;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.RIBBON_ROUTING_FILTER_ORDER;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.ROUTE_TYPE;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.SERVICE_ID_KEY;
+
+/**
+ * <p>Routes url routes, and service id routes if
+ * {@code gateway.streaming.service-routes} is set, without holding a body
+ * in memory. Zuul's request wrapper reads the whole request body into a byte array
+ * before it is forwarded; this filter reads the container's input stream
+ * instead and copies it to the backend through one fixed-size buffer per
+ * thread. Form bodies, which Zuul has already read to parse them, are sent
+ * from its copy. The backend response stream is handed to {@code SendResponseFilter},
+ * which copies it through its own per-thread buffer
+ * ({@code zuul.initialStreamBufferSize}).
+ * </p><p>
+ * Every copy is a blocking read followed by a blocking write on the same
+ * thread, so a slow client slows the backend read and vice versa: nothing
+ * queues up in the gateway. The heap a request holds, whatever the body
+ * size, is the two copy buffers (shared by all requests on the thread),
+ * the pooled connection's input and output buffers ({@code bufferSize}
+ * each) and Tomcat's own socket and output buffers. With the defaults that
+ * is roughly 40KB per in-flight request.
+ * </p><p>
+ * Service id routes get an instance from Ribbon's load balancer, but none
+ * of what {@code RibbonRoutingFilter} wraps around the call: no Hystrix
+ * command (so no timeout, circuit breaker or {@code FallbackProvider}) and
+ * no Ribbon retries. A failed call is a 500, as for url routes.
+ * </p><p>
+ * Runs just before {@code RibbonRoutingFilter} and turns the remaining
+ * routing filters off for the request once the response is in. The
+ * backend response is kept in the request context until
+ * {@link StreamingReleaseFilter} gives it back, so its connection is
+ * released however the request ends.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "gateway.streaming", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(StreamingProperties.class)
+public class StreamingRoutingFilter extends ZuulFilter implements PublicMetrics {
+
+    static final String RESPONSE_STREAM_KEY = "streamingResponseStream";
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final ProxyRequestHelper helper;
+    private final LoadBalancerClient loadBalancer;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ThreadLocal<byte[]> buffers;
+    private final boolean serviceRoutes;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    @Autowired
+    public StreamingRoutingFilter(ProxyRequestHelper helper, LoadBalancerClient loadBalancer,
+            StreamingProperties properties) {
+        this.helper = helper;
+        this.loadBalancer = loadBalancer;
+        int bufferSize = properties.getBufferSize();
+        this.buffers = ThreadLocal.withInitial(() -> new byte[bufferSize]);
+        this.serviceRoutes = properties.isServiceRoutes();
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxPerRoute());
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setBufferSize(bufferSize)
+                .setFragmentSizeHint(bufferSize)
+                .build());
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(properties.getConnectTimeout())
+                        .setSocketTimeout(properties.getReadTimeout())
+                        .setRedirectsEnabled(false)
+                        .build())
+                .disableContentCompression()
+                .disableCookieManagement()
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    @Override
+    public String filterType() {
+        return ROUTE_TYPE;
+    }
+
+    @Override
+    public int filterOrder() {
+        return RIBBON_ROUTING_FILTER_ORDER - 1;
+    }
+
+    @Override
+    public boolean shouldFilter() {
+        RequestContext ctx = RequestContext.getCurrentContext();
+        return ctx.sendZuulResponse()
+                && (ctx.getRouteHost() != null || serviceRoutes && ctx.get(SERVICE_ID_KEY) != null);
+    }
+
+    @Override
+    public Object run() {
+        RequestContext ctx = RequestContext.getCurrentContext();
+        HttpServletRequest request = ctx.getRequest();
+        try {
+            URI base = resolve(ctx);
+            String uri = stripTrailingSlash(base.getRawPath()) + helper.buildZuulRequestURI(request);
+            if (request.getQueryString() != null) {
+                uri += "?" + request.getQueryString();
+            }
+
+            BasicHttpRequest backendRequest;
+            InputStream body = requestBody(ctx, request);
+            if (body != null) {
+                BasicHttpEntityEnclosingRequest withBody = new BasicHttpEntityEnclosingRequest(request.getMethod(), uri);
+                withBody.setEntity(new StreamingEntity(body, request.getContentLengthLong(), request.getContentType()));
+                backendRequest = withBody;
+            } else {
+                backendRequest = new BasicHttpRequest(request.getMethod(), uri);
+            }
+            for (Map.Entry<String, List<String>> header : helper.buildZuulRequestHeaders(request).entrySet()) {
+                if ("content-length".equalsIgnoreCase(header.getKey())
+                        || "transfer-encoding".equalsIgnoreCase(header.getKey())) {
+                    continue;
+                }
+                for (String value : header.getValue()) {
+                    backendRequest.addHeader(header.getKey(), value);
+                }
+            }
+
+            requests.increment();
+            inFlight.incrementAndGet();
+            CloseableHttpResponse response;
+            try {
+                response = httpClient.execute(
+                        new HttpHost(base.getHost(), base.getPort(), base.getScheme()), backendRequest);
+            } catch (IOException | RuntimeException ex) {
+                inFlight.decrementAndGet();
+                throw ex;
+            }
+            ResponseStream content = new ResponseStream(response);
+            ctx.set(RESPONSE_STREAM_KEY, content);
+
+            MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
+            for (Header header : response.getAllHeaders()) {
+                headers.add(header.getName(), header.getValue());
+            }
+            helper.setResponse(response.getStatusLine().getStatusCode(),
+                    response.getEntity() != null ? content : null, headers);
+            // routed: keep RibbonRoutingFilter and SimpleHostRoutingFilter out of it.
+            // Not with setSendZuulResponse(false), which stops SendResponseFilter
+            // writing the response stream.
+            ctx.setRouteHost(null);
+            ctx.remove(SERVICE_ID_KEY);
+        } catch (ZuulException ex) {
+            throw new ZuulRuntimeException(ex);
+        } catch (Exception ex) {
+            throw new ZuulRuntimeException(new ZuulException(ex, 500, ex.getMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * Gives back the backend response of the current request, if it still
+     * holds one: its connection goes back to the pool when the response
+     * was sent, and is closed when the request failed.
+     */
+    void release(RequestContext ctx) {
+        ResponseStream content = (ResponseStream) ctx.remove(RESPONSE_STREAM_KEY);
+        if (content == null) {
+            return;
+        }
+        try {
+            if (ctx.getThrowable() != null) {
+                content.abort();
+            } else {
+                content.close();
+            }
+        } catch (IOException ex) {
+            logger.debug("Releasing backend response failed: {}", ex.getMessage());
+        }
+    }
+
+    private URI resolve(RequestContext ctx) throws Exception {
+        URL routeHost = ctx.getRouteHost();
+        if (routeHost != null) {
+            return routeHost.toURI();
+        }
+        String serviceId = (String) ctx.get(SERVICE_ID_KEY);
+        ServiceInstance instance = loadBalancer.choose(serviceId);
+        if (instance == null) {
+            throw new ZuulException("No instance available for " + serviceId, 503, "LOAD_BALANCER");
+        }
+        return instance.getUri();
+    }
+
+    /**
+     * The container's own input stream, bypassing Zuul's buffering wrapper,
+     * unless a pre filter has already replaced the body. Form bodies are the
+     * exception: {@code FormBodyWrapperFilter} has already read them to get
+     * at their parameters, so only the request Zuul wrapped them in still
+     * has them.
+     */
+    private InputStream requestBody(RequestContext ctx, HttpServletRequest request) throws IOException {
+        InputStream replaced = (InputStream) ctx.get(REQUEST_ENTITY_KEY);
+        if (replaced != null) {
+            return replaced;
+        }
+        if (request.getContentLengthLong() <= 0 && request.getHeader("Transfer-Encoding") == null) {
+            return null;
+        }
+        HttpServletRequest raw = request;
+        if (raw instanceof HttpServletRequestWrapper && !isFormBody(request)) {
+            raw = ((HttpServletRequestWrapper) raw).getRequest();
+        }
+        return raw.getInputStream();
+    }
+
+    // the requests FormBodyWrapperFilter wraps
+    private static boolean isFormBody(HttpServletRequest request) {
+        if (request.getContentType() == null) {
+            return false;
+        }
+        try {
+            MediaType mediaType = MediaType.valueOf(request.getContentType());
+            return MediaType.APPLICATION_FORM_URLENCODED.includes(mediaType)
+                    || request.getAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE) != null
+                    && MediaType.MULTIPART_FORM_DATA.includes(mediaType);
+        } catch (InvalidMediaTypeException ex) {
+            return false;
+        }
+    }
+
+    private static String stripTrailingSlash(String path) {
+        if (path == null) {
+            return "";
+        }
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("gateway.streaming.requests", requests.sum()),
+                new Metric<>("gateway.streaming.in-flight", inFlight.get()),
+                new Metric<>("gateway.streaming.bytes-in", bytesIn.sum()),
+                new Metric<>("gateway.streaming.bytes-out", bytesOut.sum()),
+                new Metric<>("gateway.streaming.pool.leased", connectionManager.getTotalStats().getLeased()));
+    }
+
+    /**
+     * Writes the client's body to the backend as it arrives, chunked when
+     * its length is unknown.
+     */
+    private class StreamingEntity extends AbstractHttpEntity {
+
+        private final InputStream in;
+        private final long length;
+
+        StreamingEntity(InputStream in, long length, String contentType) {
+            this.in = in;
+            this.length = length;
+            setContentType(contentType);
+            setChunked(length < 0);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream getContent() {
+            return in;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            byte[] buffer = buffers.get();
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                bytesIn.add(read);
+            }
+            out.flush();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return true;
+        }
+    }
+
+    /**
+     * The backend response body. Counts the bytes handed to the client and
+     * ends the request's in-flight count exactly once: closing it returns
+     * the connection to the pool (after reading what is left of the body),
+     * aborting it closes the connection.
+     */
+    private class ResponseStream extends FilterInputStream {
+
+        private final CloseableHttpResponse response;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ResponseStream(CloseableHttpResponse response) throws IOException {
+            super(response.getEntity() != null ? response.getEntity().getContent() : null);
+            this.response = response;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                bytesOut.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytesOut.add(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                try {
+                    if (in != null) {
+                        super.close();
+                    }
+                } finally {
+                    response.close();
+                }
+            }
+        }
+
+        void abort() throws IOException {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                response.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.orangeandbronze.gateway;
+
+import com.netflix.zuul.context.RequestContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PROXY_KEY;
+
+public class CorsFilterTest {
+
+    private static final String APP = "http://localhost:8791";
+
+    private CorsFilter filter;
+
+    @Before
+    public void setUp() {
+        CorsProperties properties = new CorsProperties();
+        CorsProperties.Policy fortune = new CorsProperties.Policy();
+        fortune.setAllowedOrigins(Collections.singletonList(APP));
+        fortune.setAllowedMethods(Arrays.asList("GET", "POST"));
+        fortune.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        fortune.setAllowCredentials(true);
+        fortune.setMaxAge(3600);
+        properties.getRoutes().put("fortune", fortune);
+        filter = new CorsFilter(properties);
+    }
+
+    @After
+    public void tearDown() {
+        RequestContext.getCurrentContext().unset();
+    }
+
+    @Test
+    public void answersPreflightsLocally() {
+        RequestContext ctx = request("fortune", "OPTIONS", APP);
+        request(ctx).addHeader("Access-Control-Request-Method", "POST");
+        request(ctx).addHeader("Access-Control-Request-Headers", "Authorization");
+
+        assertTrue(filter.shouldFilter());
+        filter.run();
+
+        MockHttpServletResponse response = response(ctx);
+        assertFalse(ctx.sendZuulResponse());
+        assertEquals(200, response.getStatus());
+        assertEquals(APP, response.getHeader("Access-Control-Allow-Origin"));
+        assertEquals("Origin", response.getHeader("Vary"));
+        assertEquals("true", response.getHeader("Access-Control-Allow-Credentials"));
+        assertEquals("GET,POST", response.getHeader("Access-Control-Allow-Methods"));
+        assertEquals("Authorization,Content-Type", response.getHeader("Access-Control-Allow-Headers"));
+        assertEquals("3600", response.getHeader("Access-Control-Max-Age"));
+    }
+
+    @Test
+    public void refusesPreflightsFromOtherOriginsOrForOtherMethods() {
+        RequestContext ctx = request("fortune", "OPTIONS", "http://evil.example");
+        request(ctx).addHeader("Access-Control-Request-Method", "GET");
+        filter.run();
+        assertFalse(ctx.sendZuulResponse());
+        assertEquals(403, response(ctx).getStatus());
+        assertNull(response(ctx).getHeader("Access-Control-Allow-Origin"));
+
+        ctx = request("fortune", "OPTIONS", APP);
+        request(ctx).addHeader("Access-Control-Request-Method", "DELETE");
+        filter.run();
+        assertFalse(ctx.sendZuulResponse());
+        assertEquals(403, response(ctx).getStatus());
+        assertNull(response(ctx).getHeader("Access-Control-Allow-Methods"));
+    }
+
+    @Test
+    public void letsSimpleRequestsFromOtherOriginsThroughWithoutHeaders() {
+        RequestContext ctx = request("fortune", "GET", "http://evil.example");
+        filter.run();
+
+        assertTrue(ctx.sendZuulResponse());
+        assertNull(response(ctx).getHeader("Access-Control-Allow-Origin"));
+    }
+
+    @Test
+    public void addsTheAllowOriginToSimpleRequests() {
+        RequestContext ctx = request("fortune", "GET", APP);
+        filter.run();
+
+        assertTrue(ctx.sendZuulResponse());
+        assertEquals(APP, response(ctx).getHeader("Access-Control-Allow-Origin"));
+        assertEquals("true", response(ctx).getHeader("Access-Control-Allow-Credentials"));
+        assertNull(response(ctx).getHeader("Access-Control-Allow-Methods"));
+        assertNull(response(ctx).getHeader("Access-Control-Max-Age"));
+    }
+
+    @Test
+    public void routesWithoutAPolicyGetTheDefaults() {
+        RequestContext ctx = request("other", "OPTIONS", "http://evil.example");
+        request(ctx).addHeader("Access-Control-Request-Method", "GET");
+        request(ctx).addHeader("Access-Control-Request-Headers", "X-Requested-With");
+        filter.run();
+
+        MockHttpServletResponse response = response(ctx);
+        assertFalse(ctx.sendZuulResponse());
+        assertEquals(200, response.getStatus());
+        assertEquals("*", response.getHeader("Access-Control-Allow-Origin"));
+        assertNull(response.getHeader("Access-Control-Allow-Credentials"));
+        assertEquals("OPTIONS,GET", response.getHeader("Access-Control-Allow-Methods"));
+        assertEquals("X-Requested-With", response.getHeader("Access-Control-Allow-Headers"));
+        assertEquals("1800", response.getHeader("Access-Control-Max-Age"));
+
+        ctx = request("other", "OPTIONS", APP);
+        request(ctx).addHeader("Access-Control-Request-Method", "POST");
+        filter.run();
+        assertEquals(403, response(ctx).getStatus());
+    }
+
+    @Test
+    public void ignoresRequestsWithoutAnOrigin() {
+        request("fortune", "GET", null);
+        assertFalse(filter.shouldFilter());
+    }
+
+    private static RequestContext request(String routeId, String method, String origin) {
+        RequestContext.getCurrentContext().unset();
+        RequestContext ctx = RequestContext.getCurrentContext();
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/fortune/");
+        if (origin != null) {
+            request.addHeader("Origin", origin);
+        }
+        ctx.setRequest(request);
+        ctx.setResponse(new MockHttpServletResponse());
+        ctx.set(PROXY_KEY, routeId);
+        return ctx;
+    }
+
+    private static MockHttpServletRequest request(RequestContext ctx) {
+        return (MockHttpServletRequest) ctx.getRequest();
+    }
+
+    private static MockHttpServletResponse response(RequestContext ctx) {
+        return (MockHttpServletResponse) ctx.getResponse();
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.orangeandbronze.gateway;
+
+import com.netflix.zuul.context.RequestContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PROXY_KEY;
+
+/**
+ * One request through the pre filter, a stand-in for the routing filter,
+ * and the post filter; then a second request to see what was cached.
+ */
+public class ResponseCacheFiltersTest {
+
+    private static final String FORTUNE = "A cached fortune";
+
+    private ResponseCache responseCache;
+    private ResponseCachePreFilter preFilter;
+    private ResponseCachePostFilter postFilter;
+
+    @Before
+    public void setUp() {
+        ResponseCacheProperties properties = new ResponseCacheProperties();
+        ResponseCacheProperties.Route route = new ResponseCacheProperties.Route();
+        route.setCacheTtl(60000);
+        properties.getRoutes().put("fortune", route);
+        properties.getCache().setMaxEntryBytes(FORTUNE.length());
+        responseCache = new ResponseCache(properties);
+        preFilter = new ResponseCachePreFilter(responseCache);
+        postFilter = new ResponseCachePostFilter(responseCache);
+    }
+
+    @After
+    public void tearDown() {
+        RequestContext.getCurrentContext().unset();
+    }
+
+    @Test
+    public void servesTheSecondRequestFromTheCache() throws IOException {
+        assertEquals(FORTUNE, proxy("fortune", FORTUNE));
+
+        RequestContext ctx = request("fortune");
+        assertTrue(preFilter.shouldFilter());
+        preFilter.run();
+        assertFalse(ctx.sendZuulResponse());
+        assertEquals(200, ctx.getResponseStatusCode());
+        assertEquals("max-age=60", header(ctx, "Cache-Control"));
+        assertEquals(FORTUNE, StreamUtils.copyToString(ctx.getResponseDataStream(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void leavesRoutesWithoutATtlAlone() {
+        request("other");
+        assertFalse(preFilter.shouldFilter());
+    }
+
+    @Test
+    public void doesNotStoreNoStoreOrPrivateResponses() throws IOException {
+        assertEquals(FORTUNE, proxy("fortune", FORTUNE, "Cache-Control", "no-store"));
+        assertNull(responseCache.get(key()));
+
+        assertEquals(FORTUNE, proxy("fortune", FORTUNE, "Cache-Control", "Private, max-age=60"));
+        assertNull(responseCache.get(key()));
+    }
+
+    @Test
+    public void storesResponsesThatVaryOnlyOnKeyedHeaders() throws IOException {
+        assertEquals(FORTUNE, proxy("fortune", FORTUNE, "Vary", "Accept, Accept-Encoding"));
+        assertNotNull(responseCache.get(key()));
+    }
+
+    @Test
+    public void doesNotStoreResponsesThatVaryOnOtherHeaders() throws IOException {
+        assertEquals(FORTUNE, proxy("fortune", FORTUNE, "Vary", "Accept, Authorization"));
+        assertNull(responseCache.get(key()));
+
+        assertEquals(FORTUNE, proxy("fortune", FORTUNE, "Vary", "*"));
+        assertNull(responseCache.get(key()));
+    }
+
+    @Test
+    public void doesNotStoreResponsesThatSetACookie() throws IOException {
+        assertEquals(FORTUNE, proxy("fortune", FORTUNE, "Set-Cookie", "SESSION=abc; HttpOnly"));
+        assertNull(responseCache.get(key()));
+    }
+
+    @Test
+    public void answersRequestsWithCredentialsOnlyFromPublicResponses() throws IOException {
+        assertEquals(FORTUNE, proxy(request("fortune", "Authorization"), FORTUNE));
+        assertNull(responseCache.get(key()));
+
+        assertEquals(FORTUNE, proxy("fortune", FORTUNE));
+        for (String credentials : new String[] {"Authorization", "Cookie"}) {
+            RequestContext ctx = request("fortune", credentials);
+            preFilter.run();
+            assertTrue(credentials, ctx.sendZuulResponse());
+        }
+
+        assertEquals(FORTUNE, proxy(request("fortune", "Authorization"), FORTUNE, "Cache-Control", "public"));
+        RequestContext ctx = request("fortune", "Cookie");
+        preFilter.run();
+        assertFalse(ctx.sendZuulResponse());
+        assertEquals(FORTUNE, StreamUtils.copyToString(ctx.getResponseDataStream(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void passesOnResponsesTooLargeToStore() throws IOException {
+        String large = FORTUNE + FORTUNE;
+        assertEquals(large, proxy("fortune", large));
+        assertNull(responseCache.get(key()));
+    }
+
+    /*
+     * A miss on the given route answered by the backend with the body and
+     * header: what the client gets.
+     */
+    private String proxy(String routeId, String body, String... header) throws IOException {
+        return proxy(request(routeId), body, header);
+    }
+
+    private String proxy(RequestContext ctx, String body, String... header) throws IOException {
+        assertTrue(preFilter.shouldFilter());
+        preFilter.run();
+        assertTrue(ctx.sendZuulResponse());
+
+        ctx.setResponseStatusCode(200);
+        ctx.addZuulResponseHeader("Cache-Control", "max-age=60");
+        if (header.length > 0) {
+            ctx.addZuulResponseHeader(header[0], header[1]);
+        }
+        ctx.setResponseDataStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        if (postFilter.shouldFilter()) {
+            postFilter.run();
+        }
+        return StreamUtils.copyToString(ctx.getResponseDataStream(), StandardCharsets.UTF_8);
+    }
+
+    private RequestContext request(String routeId, String... credentials) {
+        RequestContext.getCurrentContext().unset();
+        RequestContext ctx = RequestContext.getCurrentContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fortune/");
+        request.addHeader("Accept", "application/json");
+        for (String name : credentials) {
+            request.addHeader(name, "Cookie".equals(name) ? "SESSION=abc" : "Bearer abc");
+        }
+        ctx.setRequest(request);
+        ctx.setResponse(new MockHttpServletResponse());
+        ctx.set(PROXY_KEY, routeId);
+        return ctx;
+    }
+
+    private String key() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fortune/");
+        request.addHeader("Accept", "application/json");
+        return responseCache.key("fortune", request);
+    }
+
+    private static String header(RequestContext ctx, String name) {
+        return ctx.getZuulResponseHeaders().stream()
+                .filter(header -> header.first().equals(name))
+                .map(header -> header.second())
+                .findFirst().orElse(null);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.orangeandbronze.gateway;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+
+    private final ResponseCacheProperties properties = new ResponseCacheProperties();
+    private ResponseCache responseCache;
+
+    @Before
+    public void setUp() {
+        properties.getCache().setMaxBytes(10);
+        responseCache = new ResponseCache(properties);
+    }
+
+    @Test
+    public void keyIsTheRoutePathAndQuery() {
+        assertEquals(responseCache.key("fortune", request("/fortune/", null)),
+                responseCache.key("fortune", request("/fortune/", null)));
+        assertNotEquals(responseCache.key("fortune", request("/fortune/", null)),
+                responseCache.key("fortune", request("/fortune/", "count=2")));
+        assertNotEquals(responseCache.key("fortune", request("/fortune/", "count=1")),
+                responseCache.key("fortune", request("/fortune/", "count=2")));
+        assertNotEquals(responseCache.key("fortune", request("/fortune/", null)),
+                responseCache.key("other", request("/fortune/", null)));
+    }
+
+    @Test
+    public void keyVariesOnlyOnTheVaryHeaders() {
+        MockHttpServletRequest json = request("/fortune/", null);
+        json.addHeader("Accept", "application/json");
+        MockHttpServletRequest text = request("/fortune/", null);
+        text.addHeader("Accept", "text/plain");
+        MockHttpServletRequest gzip = request("/fortune/", null);
+        gzip.addHeader("Accept", "application/json");
+        gzip.addHeader("Accept-Encoding", "gzip");
+        MockHttpServletRequest traced = request("/fortune/", null);
+        traced.addHeader("Accept", "application/json");
+        traced.addHeader("X-B3-TraceId", "463ac35c9f6413ad");
+
+        String key = responseCache.key("fortune", json);
+        assertNotEquals(key, responseCache.key("fortune", text));
+        assertNotEquals(key, responseCache.key("fortune", gzip));
+        assertEquals(key, responseCache.key("fortune", traced));
+
+        assertTrue(responseCache.keysOn("accept-encoding"));
+        assertFalse(responseCache.keysOn("X-B3-TraceId"));
+        assertFalse(responseCache.keysOn("*"));
+    }
+
+    @Test
+    public void expiredEntriesAreMisses() {
+        responseCache.put("fresh", entry(1, System.currentTimeMillis() + 60000));
+        responseCache.put("stale", entry(1, System.currentTimeMillis() - 1));
+
+        assertNotNull(responseCache.get("fresh"));
+        assertNull(responseCache.get("stale"));
+        assertNull(responseCache.get("absent"));
+
+        assertEquals(1L, metric("zuul.cache.hits"));
+        assertEquals(2L, metric("zuul.cache.misses"));
+        assertEquals(1, metric("zuul.cache.entries"));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedOnceOverMaxBytes() {
+        long expiresAt = System.currentTimeMillis() + 60000;
+        responseCache.put("a", entry(4, expiresAt));
+        responseCache.put("b", entry(4, expiresAt));
+        responseCache.get("a");
+        responseCache.put("c", entry(4, expiresAt));
+
+        assertNotNull(responseCache.get("a"));
+        assertNull(responseCache.get("b"));
+        assertNotNull(responseCache.get("c"));
+        assertEquals(1L, metric("zuul.cache.evictions"));
+        assertEquals(8L, metric("zuul.cache.bytes"));
+        assertEquals(12L, metric("zuul.cache.bytes-saved"));
+    }
+
+    @Test
+    public void replacingAnEntryReleasesItsBytes() {
+        long expiresAt = System.currentTimeMillis() + 60000;
+        responseCache.put("a", entry(8, expiresAt));
+        responseCache.put("a", entry(8, expiresAt));
+
+        assertEquals(8L, metric("zuul.cache.bytes"));
+        assertEquals(0L, metric("zuul.cache.evictions"));
+    }
+
+    private static MockHttpServletRequest request(String uri, String query) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setQueryString(query);
+        return request;
+    }
+
+    private static ResponseCache.Entry entry(int bytes, long expiresAt) {
+        return new ResponseCache.Entry(200, Collections.emptyList(), new byte[bytes], false, expiresAt);
+    }
+
+    private Object metric(String name) {
+        for (Metric<?> metric : responseCache.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue();
+            }
+        }
+        throw new AssertionError("No metric " + name);
+    }
+
+}
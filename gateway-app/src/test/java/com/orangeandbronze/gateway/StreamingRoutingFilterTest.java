@@ -0,0 +1,353 @@
+package com.orangeandbronze.gateway;
+
+import com.netflix.zuul.ZuulFilter;
+import com.netflix.zuul.context.RequestContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cloud.netflix.zuul.filters.pre.DebugFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.POST_TYPE;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.SEND_RESPONSE_FILTER_ORDER;
+
+/**
+ * Streams multi-megabyte bodies to and from a stub backend through
+ * {@code url} routes, and checks that every way a request can end gives
+ * its backend connection back.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "gateway.streaming.enabled=true",
+        "eureka.client.enabled=false"})
+public class StreamingRoutingFilterTest {
+
+    private static final int BODY_SIZE = 8 * 1024 * 1024;
+    private static final String FAIL_POST_HEADER = "X-Fail-Post";
+
+    private static HttpServer backend;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private StreamingRoutingFilter filter;
+
+    @Autowired
+    private DebugFilter debugFilter;
+
+    @BeforeClass
+    public static void startBackend() throws IOException {
+        backend = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        backend.setExecutor(Executors.newCachedThreadPool());
+        backend.createContext("/upload", exchange -> {
+            CRC32 crc = new CRC32();
+            long length = consume(exchange.getRequestBody(), crc);
+            respond(exchange, (length + " " + crc.getValue()).getBytes(StandardCharsets.UTF_8));
+        });
+        backend.createContext("/echo", exchange -> {
+            byte[] body = StreamUtils.copyToByteArray(exchange.getRequestBody());
+            String echo = exchange.getRequestHeaders().getFirst("Content-Type") + "\n"
+                    + new String(body, StandardCharsets.UTF_8);
+            respond(exchange, echo.getBytes(StandardCharsets.UTF_8));
+        });
+        backend.createContext("/download", exchange -> {
+            exchange.sendResponseHeaders(200, BODY_SIZE);
+            try (OutputStream out = exchange.getResponseBody()) {
+                writeBody(out, BODY_SIZE);
+            }
+        });
+        backend.createContext("/truncated", exchange -> {
+            exchange.sendResponseHeaders(200, BODY_SIZE);
+            writeBody(exchange.getResponseBody(), BODY_SIZE / 8);
+            exchange.getResponseBody().flush();
+            // drops the connection a megabyte into the promised eight
+            exchange.close();
+        });
+        backend.start();
+        System.setProperty("zuul.routes.stub.url", "http://localhost:" + backend.getAddress().getPort());
+        System.setProperty("zuul.routes.down.url", "http://localhost:" + closedPort());
+        System.setProperty("spring.cloud.config.enabled", "false");
+    }
+
+    @AfterClass
+    public static void stopBackend() {
+        backend.stop(0);
+        System.clearProperty("zuul.routes.stub.url");
+        System.clearProperty("zuul.routes.down.url");
+        System.clearProperty("spring.cloud.config.enabled");
+    }
+
+    @Test
+    public void debugFilterIsOffWhileStreaming() {
+        assertTrue(debugFilter.isFilterDisabled());
+    }
+
+    @Test
+    public void streamsLargeRequestBodies() throws Exception {
+        HttpURLConnection connection = upload(false);
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(BODY_SIZE + " " + expectedCrc(), body(connection));
+        awaitReleased();
+    }
+
+    @Test
+    public void streamsLargeChunkedRequestBodies() throws Exception {
+        HttpURLConnection connection = upload(true);
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(BODY_SIZE + " " + expectedCrc(), body(connection));
+        awaitReleased();
+    }
+
+    @Test
+    public void forwardsFormBodiesAlreadyReadByZuul() throws Exception {
+        HttpURLConnection connection = post("/stub/echo", "application/x-www-form-urlencoded",
+                "fortune=lucky&count=7");
+
+        assertEquals(200, connection.getResponseCode());
+        String[] echo = body(connection).split("\n", 2);
+        assertTrue(echo[0], echo[0].startsWith("application/x-www-form-urlencoded"));
+        assertTrue(echo[1], echo[1].contains("fortune=lucky"));
+        assertTrue(echo[1], echo[1].contains("count=7"));
+        awaitReleased();
+    }
+
+    @Test
+    public void forwardsMultipartBodiesAlreadyReadByZuul() throws Exception {
+        String multipart = "--fortune-boundary\r\n"
+                + "Content-Disposition: form-data; name=\"note\"\r\n\r\n"
+                + "fortune favours the bold\r\n"
+                + "--fortune-boundary\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"fortunes.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + "you will stream today\r\n"
+                + "--fortune-boundary--\r\n";
+        HttpURLConnection connection = post("/stub/echo", "multipart/form-data; boundary=fortune-boundary",
+                multipart);
+
+        assertEquals(200, connection.getResponseCode());
+        String[] echo = body(connection).split("\n", 2);
+        // Zuul writes the parts out again, under a boundary of its own
+        String boundary = echo[0].substring(echo[0].indexOf("boundary=") + "boundary=".length());
+        assertTrue(echo[1], echo[1].startsWith("--" + boundary));
+        assertTrue(echo[1], echo[1].contains("fortune favours the bold"));
+        assertTrue(echo[1], echo[1].contains("filename=\"fortunes.txt\""));
+        assertTrue(echo[1], echo[1].contains("you will stream today"));
+        awaitReleased();
+    }
+
+    @Test
+    public void streamsLargeResponseBodies() throws Exception {
+        HttpURLConnection connection = open("/stub/download");
+
+        assertEquals(200, connection.getResponseCode());
+        CRC32 crc = new CRC32();
+        try (InputStream in = connection.getInputStream()) {
+            assertEquals(BODY_SIZE, consume(in, crc));
+        }
+        assertEquals(expectedCrc(), crc.getValue());
+        awaitReleased();
+    }
+
+    @Test
+    public void unreachableBackendReleasesNothingItDidNotTake() throws Exception {
+        assertEquals(500, open("/down/").getResponseCode());
+        awaitReleased();
+    }
+
+    @Test
+    public void truncatedBackendResponseReleasesTheConnection() throws Exception {
+        HttpURLConnection connection = open("/stub/truncated");
+        try (InputStream in = connection.getInputStream()) {
+            assertNotEquals(BODY_SIZE, consume(in, new CRC32()));
+        } catch (IOException expected) {
+            // the gateway may cut the client off as well
+        }
+        awaitReleased();
+    }
+
+    @Test
+    public void failingPostFilterReleasesTheConnection() throws Exception {
+        HttpURLConnection connection = open("/stub/download");
+        connection.setRequestProperty(FAIL_POST_HEADER, "true");
+
+        assertEquals(500, connection.getResponseCode());
+        awaitReleased();
+    }
+
+    private HttpURLConnection upload(boolean chunked) throws IOException {
+        HttpURLConnection connection = open("/stub/upload");
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        if (chunked) {
+            connection.setChunkedStreamingMode(64 * 1024);
+        } else {
+            connection.setFixedLengthStreamingMode(BODY_SIZE);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            writeBody(out, BODY_SIZE);
+        }
+        return connection;
+    }
+
+    private HttpURLConnection post(String path, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection = open(path);
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", contentType);
+        connection.setFixedLengthStreamingMode(bytes.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(bytes);
+        }
+        return connection;
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+    }
+
+    /**
+     * Waits for the gateway to finish with the last request, which it may
+     * still be doing after the client has read the response.
+     */
+    private void awaitReleased() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (metric("gateway.streaming.in-flight") != 0 || metric("gateway.streaming.pool.leased") != 0) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Still in flight: " + metric("gateway.streaming.in-flight")
+                        + ", leased: " + metric("gateway.streaming.pool.leased"));
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private long metric(String name) {
+        for (Metric<?> metric : filter.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static String body(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Writes a repeating, position-dependent pattern, so a reordered or
+     * dropped chunk changes the checksum.
+     */
+    private static void writeBody(OutputStream out, int size) throws IOException {
+        byte[] chunk = new byte[64 * 1024];
+        for (int written = 0; written < size; written += chunk.length) {
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = (byte) ((written + i) * 31 >>> 3);
+            }
+            out.write(chunk, 0, Math.min(chunk.length, size - written));
+        }
+    }
+
+    private static long expectedCrc() throws IOException {
+        CRC32 crc = new CRC32();
+        writeBody(new OutputStream() {
+            @Override
+            public void write(int b) {
+                crc.update(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                crc.update(b, off, len);
+            }
+        }, BODY_SIZE);
+        return crc.getValue();
+    }
+
+    private static long consume(InputStream in, CRC32 crc) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        for (int read; (read = in.read(buffer)) != -1; total += read) {
+            crc.update(buffer, 0, read);
+        }
+        return total;
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @TestConfiguration
+    static class FailingPostFilterConfig {
+
+        /**
+         * Fails after the response is routed but before it is sent, so only
+         * the error filters run.
+         */
+        @Bean
+        public ZuulFilter failingPostFilter() {
+            return new ZuulFilter() {
+                @Override
+                public String filterType() {
+                    return POST_TYPE;
+                }
+
+                @Override
+                public int filterOrder() {
+                    return SEND_RESPONSE_FILTER_ORDER - 10;
+                }
+
+                @Override
+                public boolean shouldFilter() {
+                    return RequestContext.getCurrentContext().getRequest().getHeader(FAIL_POST_HEADER) != null;
+                }
+
+                @Override
+                public Object run() {
+                    throw new IllegalStateException("failing post filter");
+                }
+            };
+        }
+    }
+
+}
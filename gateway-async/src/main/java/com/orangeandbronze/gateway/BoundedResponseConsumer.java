@@ -0,0 +1,72 @@
+package com.orangeandbronze.gateway;
+
+import org.apache.http.ContentTooLongException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ContentBufferEntity;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SimpleInputBuffer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+
+/**
+ * Buffers a backend response like {@code BasicAsyncResponseConsumer}, but
+ * fails it once the body exceeds {@code gateway.proxy.max-response-size}
+ * instead of growing the buffer without limit.
+ */
+class BoundedResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private final long maxSize;
+    private volatile HttpResponse response;
+    private volatile SimpleInputBuffer buffer;
+
+    BoundedResponseConsumer(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    protected void onResponseReceived(HttpResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+        long length = entity.getContentLength();
+        if (length > maxSize) {
+            throw new ContentTooLongException("Response body of " + length + " bytes exceeds " + maxSize);
+        }
+        int initialSize = length >= 0 ? (int) length : INITIAL_BUFFER_SIZE;
+        this.buffer = new SimpleInputBuffer(Math.max(initialSize, 1), HeapByteBufferAllocator.INSTANCE);
+        this.response.setEntity(entity);
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+        buffer.consumeContent(decoder);
+        if (buffer.length() > maxSize) {
+            throw new ContentTooLongException("Response body exceeds " + maxSize + " bytes");
+        }
+    }
+
+    @Override
+    protected HttpResponse buildResult(HttpContext context) {
+        if (buffer != null) {
+            response.setEntity(new ContentBufferEntity(response.getEntity(), buffer));
+        }
+        return response;
+    }
+
+    @Override
+    protected void releaseResources() {
+        response = null;
+        buffer = null;
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Same policies as gateway-app's Zuul {@code CorsFilter}, as a servlet
+ * filter ahead of Spring Security so preflights never need a login. Not
+ * named "corsFilter", which Spring Security takes to be its own CorsFilter.
+ */
+@Component("gatewayCorsFilter")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@EnableConfigurationProperties(CorsProperties.class)
+public class CorsFilter extends OncePerRequestFilter {
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final Routes routes;
+    private final CorsPolicy defaultPolicy;
+    private final Map<String, CorsPolicy> routePolicies = new HashMap<>();
+
+    @Autowired
+    public CorsFilter(Routes routes, CorsProperties properties) {
+        this.routes = routes;
+        this.defaultPolicy = new CorsPolicy(properties.getDefaults());
+        for (Map.Entry<String, CorsProperties.Policy> route : properties.getRoutes().entrySet()) {
+            routePolicies.put(route.getKey(), new CorsPolicy(route.getValue()));
+        }
+        urlPathHelper.setUrlDecode(false);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader("Origin") == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        String origin = request.getHeader("Origin");
+
+        Routes.Match match = routes.match(urlPathHelper.getPathWithinApplication(request));
+        CorsPolicy policy = match != null ? routePolicies.get(match.getId()) : null;
+        if (policy == null) {
+            policy = defaultPolicy;
+        }
+
+        String requestedMethod = request.getHeader("Access-Control-Request-Method");
+        boolean preflight = "OPTIONS".equals(request.getMethod()) && requestedMethod != null;
+
+        if (!policy.allowsOrigin(origin) || (preflight && !policy.allowsMethod(requestedMethod))) {
+            if (preflight) {
+                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                return;
+            }
+            // a simple request goes through, the browser hides the response
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        policy.addAllowOrigin(response, origin);
+        if (preflight) {
+            policy.addPreflight(response, request.getHeader("Access-Control-Request-Headers"));
+            response.setStatus(HttpServletResponse.SC_OK);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+}
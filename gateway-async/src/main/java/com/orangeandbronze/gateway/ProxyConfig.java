@@ -0,0 +1,58 @@
+package com.orangeandbronze.gateway;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.HiddenHttpMethodFilter;
+
+@Configuration
+@EnableConfigurationProperties(ProxyProperties.class)
+public class ProxyConfig {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpAsyncClient proxyHttpClient(ProxyProperties properties) {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(properties.getIoThreads())
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setSoTimeout(properties.getReadTimeout())
+                .build();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setSocketTimeout(properties.getReadTimeout())
+                .setRedirectsEnabled(false)
+                .build();
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setDefaultIOReactorConfig(ioReactorConfig)
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnTotal(properties.getMaxTotal())
+                .setMaxConnPerRoute(properties.getMaxPerRoute())
+                .disableCookieManagement()
+                .build();
+        client.start();
+        return client;
+    }
+
+    /*
+     * Boot's HiddenHttpMethodFilter reads the request parameters, which
+     * consumes the body of a form POST before it can be forwarded. This
+     * bean replaces it and is not registered. (HttpPutFormContentFilter
+     * is turned off in application.yml for the same reason.)
+     */
+    @Bean
+    public HiddenHttpMethodFilter hiddenHttpMethodFilter() {
+        return new HiddenHttpMethodFilter();
+    }
+
+    @Bean
+    public FilterRegistrationBean hiddenHttpMethodFilterRegistration(HiddenHttpMethodFilter filter) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+}
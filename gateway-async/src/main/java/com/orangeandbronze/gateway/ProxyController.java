@@ -0,0 +1,323 @@
+package com.orangeandbronze.gateway;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.UserInfoRestTemplateFactory;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.provider.authentication.OAuth2AuthenticationDetails;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Forwards every request matching a route to its backend. The backend call
+ * runs on the NIO client's event loop; the servlet thread returns as soon
+ * as the request is sent and the response is written on async dispatch.
+ */
+@RestController
+public class ProxyController implements PublicMetrics {
+
+    private static final Set<String> HOP_BY_HOP_HEADERS = caseInsensitive(
+            "Connection", "Keep-Alive", "Proxy-Authenticate", "Proxy-Authorization",
+            "TE", "Trailer", "Transfer-Encoding", "Upgrade", "Host", "Content-Length");
+
+    // set from the incoming ones plus this hop, as Zuul's PreDecorationFilter does
+    private static final Set<String> FORWARDED_HEADERS = caseInsensitive(
+            "X-Forwarded-Host", "X-Forwarded-Proto", "X-Forwarded-Port", "X-Forwarded-Prefix",
+            "X-Forwarded-For");
+
+    private static final int COPY_BUFFER_SIZE = 4096;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final Routes routes;
+    private final LoadBalancerClient loadBalancer;
+    private final CloseableHttpAsyncClient httpClient;
+    private final UserInfoRestTemplateFactory userInfoRestTemplateFactory;
+    private final Set<String> sensitiveHeaders;
+    private final long timeout;
+    private final long maxRequestSize;
+    private final long maxResponseSize;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    @Autowired
+    public ProxyController(Routes routes, LoadBalancerClient loadBalancer,
+            CloseableHttpAsyncClient httpClient, RouteProperties routeProperties,
+            ProxyProperties proxyProperties,
+            ObjectProvider<UserInfoRestTemplateFactory> userInfoRestTemplateFactory) {
+        this.routes = routes;
+        this.loadBalancer = loadBalancer;
+        this.httpClient = httpClient;
+        this.userInfoRestTemplateFactory = userInfoRestTemplateFactory.getIfAvailable();
+        this.sensitiveHeaders = caseInsensitive(routeProperties.getSensitiveHeaders());
+        this.timeout = proxyProperties.getTimeout();
+        this.maxRequestSize = proxyProperties.getMaxRequestSize();
+        this.maxResponseSize = proxyProperties.getMaxResponseSize();
+        urlPathHelper.setUrlDecode(false);
+    }
+
+    @RequestMapping("/**")
+    public DeferredResult<ResponseEntity<byte[]>> proxy(HttpServletRequest request) throws IOException {
+        DeferredResult<ResponseEntity<byte[]>> result = new DeferredResult<>(timeout,
+                ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+
+        Routes.Match match = routes.match(urlPathHelper.getPathWithinApplication(request));
+        if (match == null) {
+            result.setResult(ResponseEntity.notFound().build());
+            return result;
+        }
+        URI base = resolve(match);
+        if (base == null) {
+            logger.warn("No instance available for {}", match.getServiceId());
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+            return result;
+        }
+
+        HttpRequest backendRequest;
+        try {
+            backendRequest = backendRequest(request, base, match);
+        } catch (RequestTooLargeException ex) {
+            result.setResult(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build());
+            return result;
+        }
+        requests.increment();
+        inFlight.incrementAndGet();
+        Future<HttpResponse> future = httpClient.execute(
+                HttpAsyncMethods.create(new HttpHost(base.getHost(), base.getPort(), base.getScheme()), backendRequest),
+                new BoundedResponseConsumer(maxResponseSize), new FutureCallback<HttpResponse>() {
+
+                    @Override
+                    public void completed(HttpResponse response) {
+                        inFlight.decrementAndGet();
+                        try {
+                            result.setResult(clientResponse(response));
+                        } catch (IOException e) {
+                            failed(e);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        inFlight.decrementAndGet();
+                        errors.increment();
+                        logger.warn("Proxying to {} failed", backendRequest.getRequestLine(), e);
+                        result.setResult(ResponseEntity.status(HttpStatus.BAD_GATEWAY).build());
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        inFlight.decrementAndGet();
+                    }
+                });
+        result.onTimeout(() -> {
+            timeouts.increment();
+            future.cancel(true);
+        });
+        return result;
+    }
+
+    private URI resolve(Routes.Match match) {
+        if (match.getUrl() != null) {
+            return match.getUrl();
+        }
+        ServiceInstance instance = loadBalancer.choose(match.getServiceId());
+        return instance != null ? instance.getUri() : null;
+    }
+
+    private HttpRequest backendRequest(HttpServletRequest request, URI base, Routes.Match match)
+            throws IOException {
+        String basePath = base.getRawPath() == null ? "" : base.getRawPath();
+        if (basePath.endsWith("/")) {
+            basePath = basePath.substring(0, basePath.length() - 1);
+        }
+        String uri = basePath + match.getPath();
+        if (request.getQueryString() != null) {
+            uri += "?" + request.getQueryString();
+        }
+
+        HttpRequest backendRequest;
+        if (request.getContentLengthLong() > 0 || request.getHeader("Transfer-Encoding") != null) {
+            BasicHttpEntityEnclosingRequest withBody = new BasicHttpEntityEnclosingRequest(request.getMethod(), uri);
+            withBody.setEntity(new NByteArrayEntity(requestBody(request)));
+            backendRequest = withBody;
+        } else {
+            backendRequest = new BasicHttpRequest(request.getMethod(), uri);
+        }
+
+        Enumeration<String> names = request.getHeaderNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            if (HOP_BY_HOP_HEADERS.contains(name) || FORWARDED_HEADERS.contains(name)
+                    || sensitiveHeaders.contains(name)) {
+                continue;
+            }
+            Enumeration<String> values = request.getHeaders(name);
+            while (values.hasMoreElements()) {
+                backendRequest.addHeader(name, values.nextElement());
+            }
+        }
+
+        appendForwarded(backendRequest, request, "X-Forwarded-Host", request.getHeader("Host"));
+        appendForwarded(backendRequest, request, "X-Forwarded-Proto", request.getScheme());
+        appendForwarded(backendRequest, request, "X-Forwarded-Port", String.valueOf(request.getServerPort()));
+        appendForwarded(backendRequest, request, "X-Forwarded-For", request.getRemoteAddr());
+        String prefix = forwardedPrefix(request.getHeader("X-Forwarded-Prefix"), match.getPrefix());
+        if (prefix != null) {
+            backendRequest.setHeader("X-Forwarded-Prefix", prefix);
+        }
+
+        String token = accessToken();
+        if (token != null) {
+            backendRequest.setHeader("Authorization", "Bearer " + token);
+        }
+        return backendRequest;
+    }
+
+    /**
+     * Reads the request body on the servlet thread, which is bounded by
+     * {@code gateway.proxy.max-request-size} both up front (Content-Length)
+     * and while reading (chunked bodies).
+     */
+    private byte[] requestBody(HttpServletRequest request) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length > maxRequestSize) {
+            throw new RequestTooLargeException();
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(length > 0 ? (int) length : COPY_BUFFER_SIZE);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        InputStream in = request.getInputStream();
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (body.size() + read > maxRequestSize) {
+                throw new RequestTooLargeException();
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * The incoming values of an X-Forwarded header with this hop's appended,
+     * so a chain of proxies keeps one header with the whole list.
+     */
+    private static void appendForwarded(HttpRequest backendRequest, HttpServletRequest request,
+                                        String name, String value) {
+        List<String> values = Collections.list(request.getHeaders(name));
+        values.add(value);
+        backendRequest.setHeader(name, String.join(", ", values));
+    }
+
+    private static String forwardedPrefix(String existing, String prefix) {
+        if (existing == null || existing.isEmpty()) {
+            return prefix;
+        }
+        if (prefix == null) {
+            return existing;
+        }
+        return existing.endsWith("/") && prefix.startsWith("/")
+                ? existing + prefix.substring(1) : existing + prefix;
+    }
+
+    /**
+     * The token relay of {@code OAuth2TokenRelayFilter}: the current user's
+     * access token, when logged in through {@link SsoConfig}. It is taken
+     * from the user info OAuth2RestTemplate, which refreshes it once it has
+     * expired, rather than from the authentication, which keeps the token
+     * the user logged in with.
+     */
+    private String accessToken() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getDetails() instanceof OAuth2AuthenticationDetails)) {
+            return null;
+        }
+        if (userInfoRestTemplateFactory == null) {
+            return ((OAuth2AuthenticationDetails) authentication.getDetails()).getTokenValue();
+        }
+        try {
+            return userInfoRestTemplateFactory.getUserInfoRestTemplate().getAccessToken().getValue();
+        } catch (Exception ex) {
+            throw new BadCredentialsException("Cannot obtain valid access token", ex);
+        }
+    }
+
+    private ResponseEntity<byte[]> clientResponse(HttpResponse response) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        for (Header header : response.getAllHeaders()) {
+            if (!HOP_BY_HOP_HEADERS.contains(header.getName()) && !sensitiveHeaders.contains(header.getName())) {
+                headers.add(header.getName(), header.getValue());
+            }
+        }
+        HttpEntity entity = response.getEntity();
+        byte[] body = entity != null ? EntityUtils.toByteArray(entity) : null;
+        return ResponseEntity.status(response.getStatusLine().getStatusCode()).headers(headers).body(body);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("gateway.proxy.in-flight", inFlight.get()),
+                new Metric<>("gateway.proxy.requests", requests.sum()),
+                new Metric<>("gateway.proxy.errors", errors.sum()),
+                new Metric<>("gateway.proxy.timeouts", timeouts.sum()));
+    }
+
+    private static class RequestTooLargeException extends IOException {
+    }
+
+    private static Set<String> caseInsensitive(String... names) {
+        return caseInsensitive(Arrays.asList(names));
+    }
+
+    private static Set<String> caseInsensitive(Collection<String> names) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(names);
+        return set;
+    }
+
+}
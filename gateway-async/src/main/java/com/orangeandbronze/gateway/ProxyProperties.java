@@ -0,0 +1,103 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "gateway.proxy")
+public class ProxyProperties {
+
+    /**
+     * Number of I/O dispatcher (event loop) threads.
+     */
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+
+    private int maxTotal = 1000;
+
+    private int maxPerRoute = 200;
+
+    private int connectTimeout = 1000;
+
+    private int readTimeout = 5000;
+
+    /**
+     * How long (in milliseconds) a proxied request may take in total before
+     * the client gets a 504.
+     */
+    private long timeout = 10000;
+
+    /**
+     * Largest request body (in bytes) forwarded to a backend; larger ones
+     * get a 413. Bodies are read before the request goes async.
+     */
+    private long maxRequestSize = 1024 * 1024;
+
+    /**
+     * Largest response body (in bytes) buffered from a backend; larger ones
+     * get a 502.
+     */
+    private long maxResponseSize = 10 * 1024 * 1024;
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    public void setMaxRequestSize(long maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    public long getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    public void setMaxResponseSize(long maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+}
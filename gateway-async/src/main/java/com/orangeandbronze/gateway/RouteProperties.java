@@ -0,0 +1,96 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The subset of Zuul's {@code zuul.*} properties this gateway understands,
+ * so the same configuration serves both engines.
+ */
+@ConfigurationProperties(prefix = "zuul", ignoreInvalidFields = true)
+public class RouteProperties {
+
+    private Map<String, Route> routes = new LinkedHashMap<>();
+
+    /**
+     * Headers never passed to the backends, nor from their responses back
+     * to the client. Same default as Zuul.
+     */
+    private Set<String> sensitiveHeaders = new LinkedHashSet<>();
+
+    {
+        sensitiveHeaders.add("Cookie");
+        sensitiveHeaders.add("Set-Cookie");
+        sensitiveHeaders.add("Authorization");
+    }
+
+    public Map<String, Route> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Route> routes) {
+        this.routes = routes;
+    }
+
+    public Set<String> getSensitiveHeaders() {
+        return sensitiveHeaders;
+    }
+
+    public void setSensitiveHeaders(Set<String> sensitiveHeaders) {
+        this.sensitiveHeaders = sensitiveHeaders;
+    }
+
+    public static class Route {
+
+        /**
+         * Ant-style path, defaults to {@code /<route name>/**}.
+         */
+        private String path;
+
+        /**
+         * Eureka service id, defaults to the route name when no url is set.
+         */
+        private String serviceId;
+
+        private String url;
+
+        private boolean stripPrefix = true;
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getServiceId() {
+            return serviceId;
+        }
+
+        public void setServiceId(String serviceId) {
+            this.serviceId = serviceId;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public boolean isStripPrefix() {
+            return stripPrefix;
+        }
+
+        public void setStripPrefix(boolean stripPrefix) {
+            this.stripPrefix = stripPrefix;
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches request paths against {@code zuul.routes}, first match wins.
+ */
+@Component
+@EnableConfigurationProperties(RouteProperties.class)
+public class Routes {
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final List<Route> routes = new ArrayList<>();
+
+    @Autowired
+    public Routes(RouteProperties properties) {
+        for (Map.Entry<String, RouteProperties.Route> entry : properties.getRoutes().entrySet()) {
+            routes.add(new Route(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * @return the matched route, or {@code null}
+     */
+    public Match match(String path) {
+        for (Route route : routes) {
+            if (pathMatcher.match(route.pattern, path)) {
+                String forwardPath = path;
+                if (route.prefix != null) {
+                    forwardPath = path.substring(route.prefix.length());
+                    if (forwardPath.isEmpty()) {
+                        forwardPath = "/";
+                    }
+                }
+                return new Match(route, forwardPath);
+            }
+        }
+        return null;
+    }
+
+    private static class Route {
+
+        final String id;
+        final String pattern;
+        final String prefix;
+        final String serviceId;
+        final URI url;
+
+        Route(String id, RouteProperties.Route route) {
+            this.id = id;
+            this.pattern = route.getPath() != null ? route.getPath() : "/" + id + "/**";
+            this.prefix = route.isStripPrefix() && pattern.endsWith("/**")
+                    ? pattern.substring(0, pattern.length() - 3) : null;
+            this.url = route.getUrl() != null ? URI.create(route.getUrl()) : null;
+            this.serviceId = url == null && route.getServiceId() == null ? id : route.getServiceId();
+        }
+    }
+
+    public static class Match {
+
+        private final Route route;
+        private final String path;
+
+        Match(Route route, String path) {
+            this.route = route;
+            this.path = path;
+        }
+
+        public String getId() {
+            return route.id;
+        }
+
+        /**
+         * @return the Eureka service id, or {@code null} for url routes
+         */
+        public String getServiceId() {
+            return route.serviceId;
+        }
+
+        public URI getUrl() {
+            return route.url;
+        }
+
+        /**
+         * @return the stripped prefix, or {@code null}
+         */
+        public String getPrefix() {
+            return route.prefix;
+        }
+
+        /**
+         * @return the path to request from the backend
+         */
+        public String getPath() {
+            return path;
+        }
+    }
+
+}
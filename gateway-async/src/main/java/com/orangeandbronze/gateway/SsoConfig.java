@@ -0,0 +1,15 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.boot.autoconfigure.security.oauth2.client.EnableOAuth2Sso;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Behaves like gateway-secured: users log in through the auth server and
+ * their access token is relayed to the backends.
+ */
+@Configuration
+@Profile("sso")
+@EnableOAuth2Sso
+public class SsoConfig {
+}
@@ -0,0 +1,213 @@
+package com.orangeandbronze.gateway;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Side-by-side load test of gateway-async and the Zuul 1 gateway-app on
+ * localhost. It starts a stub backend answering after a fixed delay, then
+ * puts the same closed-loop load on each gateway URL given: a fixed number
+ * of connections, each sending its next request as soon as the previous
+ * one is answered. Throughput and latency percentiles are printed per
+ * gateway; requests that fail or get a status other than 200 are counted
+ * as errors and left out of the percentiles.
+ * </p><p>
+ * Not run by the build. Start both gateways with the stub as a route,
+ * giving gateway-app enough connections to the stub and Tomcat threads to
+ * use them:
+ * </p>
+ * <pre>
+ * java -jar gateway-app/target/gateway-application-0.0.1-SNAPSHOT.jar --server.port=8080 \
+ *     --zuul.routes.stub.url=http://localhost:9100 --eureka.client.enabled=false \
+ *     --spring.cloud.config.enabled=false --zuul.host.max-total-connections=2000 \
+ *     --zuul.host.max-per-route-connections=2000 --server.tomcat.max-threads=1000
+ * java -jar gateway-async/target/gateway-async-0.0.1-SNAPSHOT.jar --server.port=8081 \
+ *     --zuul.routes.stub.url=http://localhost:9100 --eureka.client.enabled=false \
+ *     --spring.cloud.config.enabled=false
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dstart-class=com.orangeandbronze.gateway.ProxyBenchmark \
+ *     -Dexec.args="http://localhost:8080/stub/ http://localhost:8081/stub/"
+ * </pre>
+ * <p>
+ * The load is set with {@code -Dconnections} (default 1000),
+ * {@code -Dwarmup} and {@code -Dduration} in seconds (10 and 30) and the
+ * backend's {@code -Ddelay} in milliseconds (50).
+ * </p>
+ */
+public class ProxyBenchmark {
+
+    private static final int BACKEND_PORT = 9100;
+    private static final byte[] BACKEND_BODY = "A fortune from the stub backend".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        int connections = Integer.getInteger("connections", 1000);
+        int warmup = Integer.getInteger("warmup", 10);
+        int duration = Integer.getInteger("duration", 30);
+        long delay = Long.getLong("delay", 50);
+        // without a logback.xml on the test classpath the client logs at DEBUG
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        HttpServer backend = startBackend(delay, connections);
+        try (CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setDefaultIOReactorConfig(IOReactorConfig.custom().setSoTimeout(30000).build())
+                .setMaxConnTotal(connections)
+                .setMaxConnPerRoute(connections)
+                .build()) {
+            client.start();
+            System.out.printf("%d connections, backend delay %d ms, %d s measured%n", connections, delay, duration);
+            for (String url : args) {
+                run(client, url, connections, warmup);
+                Result result = run(client, url, connections, duration);
+                System.out.println(url + ": " + result);
+            }
+        } finally {
+            backend.stop(0);
+        }
+    }
+
+    private static HttpServer startBackend(long delay, int connections) throws IOException {
+        // by default it closes keep-alive connections beyond 200 idle ones
+        System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(4 * connections));
+        HttpServer backend = HttpServer.create(new InetSocketAddress("localhost", BACKEND_PORT), connections);
+        backend.setExecutor(Executors.newCachedThreadPool());
+        backend.createContext("/", exchange -> {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, BACKEND_BODY.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(BACKEND_BODY);
+            }
+        });
+        backend.start();
+        return backend;
+    }
+
+    private static Result run(CloseableHttpAsyncClient client, String url, int connections, int seconds)
+            throws InterruptedException {
+        Result result = new Result(seconds);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(connections);
+        for (int i = 0; i < connections; i++) {
+            new Connection(client, url, deadline, result, done).send();
+        }
+        done.await();
+        return result;
+    }
+
+    /**
+     * One client connection's worth of load: a request at a time, until the
+     * deadline passes.
+     */
+    private static class Connection implements FutureCallback<HttpResponse> {
+
+        private final CloseableHttpAsyncClient client;
+        private final String url;
+        private final long deadline;
+        private final Result result;
+        private final CountDownLatch done;
+        private long start;
+
+        Connection(CloseableHttpAsyncClient client, String url, long deadline, Result result, CountDownLatch done) {
+            this.client = client;
+            this.url = url;
+            this.deadline = deadline;
+            this.result = result;
+            this.done = done;
+        }
+
+        void send() {
+            start = System.nanoTime();
+            if (start >= deadline) {
+                done.countDown();
+                return;
+            }
+            client.execute(new HttpGet(url), this);
+        }
+
+        @Override
+        public void completed(HttpResponse response) {
+            try {
+                EntityUtils.consume(response.getEntity());
+            } catch (IOException ex) {
+                failed(ex);
+                return;
+            }
+            if (response.getStatusLine().getStatusCode() == 200) {
+                result.record(System.nanoTime() - start);
+            } else {
+                result.errors.increment();
+            }
+            send();
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            result.errors.increment();
+            send();
+        }
+
+        @Override
+        public void cancelled() {
+            done.countDown();
+        }
+    }
+
+    private static class Result {
+
+        private final int seconds;
+        private final LongAdder errors = new LongAdder();
+        private long[] latencies = new long[1 << 16];
+        private int count;
+
+        Result(int seconds) {
+            this.seconds = seconds;
+        }
+
+        synchronized void record(long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+
+        @Override
+        public synchronized String toString() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return String.format("%.0f req/s, p50 %.1f ms, p99 %.1f ms, max %.1f ms, %d errors",
+                    (double) count / seconds, percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    percentile(sorted, 1.0), errors.sum());
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+
+}
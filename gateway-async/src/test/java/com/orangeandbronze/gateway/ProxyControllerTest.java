@@ -0,0 +1,174 @@
+package com.orangeandbronze.gateway;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Proxies to a stub backend through a {@code url} route, so neither Eureka
+ * nor the config server is needed.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "gateway.proxy.max-request-size=" + ProxyControllerTest.MAX_REQUEST_SIZE,
+        "gateway.proxy.max-response-size=" + ProxyControllerTest.MAX_RESPONSE_SIZE,
+        "eureka.client.enabled=false"})
+public class ProxyControllerTest {
+
+    static final int MAX_REQUEST_SIZE = 1024;
+    static final int MAX_RESPONSE_SIZE = 64 * 1024;
+
+    private static HttpServer backend;
+    private static final AtomicReference<Headers> lastHeaders = new AtomicReference<>();
+
+    @LocalServerPort
+    private int port;
+
+    @BeforeClass
+    public static void startBackend() throws IOException {
+        backend = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        backend.setExecutor(Executors.newCachedThreadPool());
+        backend.createContext("/", exchange -> {
+            lastHeaders.set(exchange.getRequestHeaders());
+            byte[] requestBody = StreamUtils.copyToByteArray(exchange.getRequestBody());
+            String echo = exchange.getRequestMethod() + " " + exchange.getRequestURI() + " " + requestBody.length;
+            respond(exchange, echo.getBytes(StandardCharsets.UTF_8));
+        });
+        backend.createContext("/session", exchange -> {
+            lastHeaders.set(exchange.getRequestHeaders());
+            exchange.getResponseHeaders().add("Set-Cookie", "JSESSIONID=backend");
+            exchange.getResponseHeaders().add("Authorization", "Bearer backend");
+            exchange.getResponseHeaders().add("X-Fortune", "kept");
+            respond(exchange, new byte[0]);
+        });
+        backend.createContext("/large", exchange -> respond(exchange, new byte[2 * MAX_RESPONSE_SIZE]));
+        backend.start();
+        System.setProperty("zuul.routes.stub.url", "http://localhost:" + backend.getAddress().getPort());
+        System.setProperty("spring.cloud.config.enabled", "false");
+    }
+
+    @AfterClass
+    public static void stopBackend() {
+        backend.stop(0);
+        System.clearProperty("zuul.routes.stub.url");
+        System.clearProperty("spring.cloud.config.enabled");
+    }
+
+    @Test
+    public void forwardsWithoutTheRoutePrefix() throws IOException {
+        HttpURLConnection connection = open("/stub/fortunes?count=2");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("GET /fortunes?count=2 0", body(connection));
+    }
+
+    @Test
+    public void appendsThisHopToForwardedHeaders() throws IOException {
+        HttpURLConnection connection = open("/stub/");
+        connection.addRequestProperty("X-Forwarded-For", "10.0.0.1");
+        connection.addRequestProperty("X-Forwarded-Host", "edge.example.com");
+        connection.addRequestProperty("X-Forwarded-Prefix", "/api");
+        assertEquals(200, connection.getResponseCode());
+
+        Headers headers = lastHeaders.get();
+        assertEquals(Arrays.asList("10.0.0.1, 127.0.0.1"), headers.get("X-Forwarded-For"));
+        assertEquals(Arrays.asList("edge.example.com, localhost:" + port), headers.get("X-Forwarded-Host"));
+        assertEquals(Arrays.asList("http"), headers.get("X-Forwarded-Proto"));
+        assertEquals(Arrays.asList("/api/stub"), headers.get("X-Forwarded-Prefix"));
+    }
+
+    @Test
+    public void dropsSensitiveHeadersInBothDirections() throws IOException {
+        HttpURLConnection connection = open("/stub/session");
+        connection.addRequestProperty("Cookie", "SESSION=client");
+        connection.addRequestProperty("Authorization", "Bearer client");
+        assertEquals(200, connection.getResponseCode());
+
+        Headers headers = lastHeaders.get();
+        assertNull(headers.get("Cookie"));
+        assertNull(headers.get("Authorization"));
+        assertNull(connection.getHeaderField("Set-Cookie"));
+        assertNull(connection.getHeaderField("Authorization"));
+        assertEquals("kept", connection.getHeaderField("X-Fortune"));
+    }
+
+    @Test
+    public void forwardsRequestBodiesUpToTheLimit() throws IOException {
+        HttpURLConnection connection = post("/stub/echo", MAX_REQUEST_SIZE, false);
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("POST /echo " + MAX_REQUEST_SIZE, body(connection));
+    }
+
+    @Test
+    public void rejectsOversizedRequestBodies() throws IOException {
+        assertEquals(413, post("/stub/echo", MAX_REQUEST_SIZE + 1, false).getResponseCode());
+    }
+
+    @Test
+    public void rejectsOversizedChunkedRequestBodies() throws IOException {
+        assertEquals(413, post("/stub/echo", 4 * MAX_REQUEST_SIZE, true).getResponseCode());
+    }
+
+    @Test
+    public void oversizedResponseIsABadGateway() throws IOException {
+        assertEquals(502, open("/stub/large").getResponseCode());
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+    }
+
+    private HttpURLConnection post(String path, int length, boolean chunked) throws IOException {
+        HttpURLConnection connection = open(path);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (chunked) {
+            connection.setChunkedStreamingMode(256);
+        } else {
+            connection.setFixedLengthStreamingMode(length);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(new byte[length]);
+        } catch (IOException ex) {
+            // the gateway may answer 413 before reading everything
+        }
+        return connection;
+    }
+
+    private static String body(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+}
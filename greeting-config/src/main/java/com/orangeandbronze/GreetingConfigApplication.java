@@ -2,6 +2,9 @@ package com.orangeandbronze;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
 public class GreetingConfigApplication {
@@ -9,4 +12,9 @@ public class GreetingConfigApplication {
     public static void main(String[] args) {
         SpringApplication.run(GreetingConfigApplication.class, args);
     }
+
+    @Bean
+    RestTemplate restTemplate(ClientHttpRequestFactory requestFactory) {
+        return new RestTemplate(requestFactory);
+    }
 }
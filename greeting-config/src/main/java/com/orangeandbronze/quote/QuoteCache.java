@@ -0,0 +1,145 @@
+package com.orangeandbronze.quote;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * <p>Caches quotes per quote service URL.
+ * </p><ul>
+ * <li>Within {@code quote.cache.ttl} a cached quote is returned as is.</li>
+ * <li>Up to {@code quote.cache.max-stale} after that, it is still returned
+ * while one background task fetches a replacement.</li>
+ * <li>Concurrent misses for the same URL wait on a single upstream call.</li>
+ * <li>At most {@code quote.cache.max-size} URLs are kept, least recently
+ * used first out.</li>
+ * </ul><p>
+ * Unlike {@link QuoteService} this is not refresh scoped, so it drops
+ * everything itself whenever the refresh scope is refreshed.
+ * </p>
+ */
+@Component
+@EnableConfigurationProperties(QuoteCacheProperties.class)
+public class QuoteCache {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private QuoteCacheProperties properties;
+    private final Map<String, Entry> entries;
+    private final ExecutorService revalidator;
+
+    @Autowired
+    public QuoteCache(QuoteCacheProperties properties) {
+        this.properties = properties;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > QuoteCache.this.properties.getMaxSize();
+            }
+        };
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("quote-revalidate-");
+        threadFactory.setDaemon(true);
+        this.revalidator = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    public Quote get(String url, Function<String, Quote> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            entry = entries.get(url);
+            if (entry == null || entry.isOlderThan(now, properties.getTtl() + properties.getMaxStale())) {
+                entry = new Entry();
+                entries.put(url, entry);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            load(url, entry, loader);
+        } else if (entry.isOlderThan(now, properties.getTtl()) && entry.revalidating.compareAndSet(false, true)) {
+            Entry stale = entry;
+            revalidator.execute(() -> revalidate(url, stale, loader));
+        }
+
+        try {
+            return entry.quote.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        }
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void invalidateAll() {
+        logger.debug("Refresh scope refreshed, dropping cached quotes.");
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        revalidator.shutdownNow();
+    }
+
+    // whatever the loader throws, the callers waiting on the entry must be let go
+    private void load(String url, Entry entry, Function<String, Quote> loader) {
+        try {
+            entry.complete(loader.apply(url));
+        } catch (Throwable ex) {
+            synchronized (entries) {
+                entries.remove(url, entry);
+            }
+            entry.quote.completeExceptionally(ex);
+        }
+    }
+
+    private void revalidate(String url, Entry stale, Function<String, Quote> loader) {
+        try {
+            Entry fresh = new Entry();
+            fresh.complete(loader.apply(url));
+            synchronized (entries) {
+                entries.replace(url, stale, fresh);
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Revalidating quote from {} failed: {}", url, ex.getMessage());
+        } finally {
+            stale.revalidating.set(false);
+        }
+    }
+
+    private static class Entry {
+
+        final CompletableFuture<Quote> quote = new CompletableFuture<>();
+        final AtomicBoolean revalidating = new AtomicBoolean();
+        volatile long loadedAt;
+
+        void complete(Quote value) {
+            loadedAt = System.currentTimeMillis();
+            quote.complete(value);
+        }
+
+        // an entry still being loaded is never too old
+        boolean isOlderThan(long now, long age) {
+            return quote.isDone() && now - loadedAt > age;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.orangeandbronze.quote;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "quote.cache")
+public class QuoteCacheProperties {
+
+    /**
+     * How long (in milliseconds) a quote is served without revalidation.
+     */
+    private long ttl = 60000;
+
+    /**
+     * How long (in milliseconds) past its TTL a quote may still be served
+     * while a fresh one is fetched in the background.
+     */
+    private long maxStale = 300000;
+
+    /**
+     * Maximum number of quote service URLs cached at once.
+     */
+    private int maxSize = 100;
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getMaxStale() {
+        return maxStale;
+    }
+
+    public void setMaxStale(long maxStale) {
+        this.maxStale = maxStale;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+}
@@ -1,14 +1,22 @@
 package com.orangeandbronze.quote;
 
-import org.apache.commons.lang3.ArrayUtils;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.util.Collections;
+
 @Service
 @RefreshScope
 public class QuoteService {
@@ -16,11 +24,16 @@ public class QuoteService {
     private Logger logger = LoggerFactory.getLogger(getClass());
     private String quoteServiceURL;
     private RestTemplate restTemplate;
+    private QuoteCache quoteCache;
+    private ObjectMapper objectMapper;
 
     @Autowired
-    public QuoteService(@Value("${quoteServiceURL:}") String quoteServiceURL) {
+    public QuoteService(@Value("${quoteServiceURL:}") String quoteServiceURL, RestTemplate restTemplate,
+                        QuoteCache quoteCache, ObjectMapper objectMapper) {
         this.quoteServiceURL = quoteServiceURL;
-        this.restTemplate = new RestTemplate();
+        this.restTemplate = restTemplate;
+        this.quoteCache = quoteCache;
+        this.objectMapper = objectMapper;
     }
 
     public String getQuoteServiceURL() {
@@ -28,13 +41,28 @@ public class QuoteService {
     }
 
     public Quote getQuote() {
-        logger.info("quoteServiceURL: {}", quoteServiceURL);
-        Quote[] quotes = restTemplate.getForObject(quoteServiceURL, Quote[].class);
-        return getOne(quotes);
+        return quoteCache.get(quoteServiceURL, this::fetchQuote);
+    }
+
+    private Quote fetchQuote(String url) {
+        logger.info("quoteServiceURL: {}", url);
+        return restTemplate.execute(url, HttpMethod.GET,
+                request -> request.getHeaders().setAccept(Collections.singletonList(MediaType.APPLICATION_JSON)),
+                this::readFirst);
     }
 
-	private Quote getOne(Quote[] quotes) {
-		return ArrayUtils.isNotEmpty(quotes) ? quotes[0] : null;
-	}
+    /*
+     * The quote service answers with an array but only the first quote
+     * is used, so stop parsing as soon as it has been read.
+     */
+    private Quote readFirst(ClientHttpResponse response) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(response.getBody())) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            return token == JsonToken.START_OBJECT ? objectMapper.readValue(parser, Quote.class) : null;
+        }
+    }
 
 }
@@ -0,0 +1,139 @@
+package com.orangeandbronze.refresh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.config.client.ConfigClientProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.support.BasicAuthorizationInterceptor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Waits on the config server's {@code /changes} for this application's
+ * name, profiles and label, and hands the changed keys to
+ * {@link TargetedRefresher}. The first request only learns the current
+ * version, so changes made between fetching configuration at startup and
+ * that request are only picked up with the next one.
+ * </p><p>
+ * It has its own {@link RestTemplate}, as the shared one would time out
+ * before the config server answers.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "config.push", name = "enabled", havingValue = "true")
+public class ConfigChangeWatcher {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final TargetedRefresher refresher;
+    private final PushRefreshProperties properties;
+    private final ConfigClientProperties client;
+    private final RestTemplate restTemplate;
+    private final ExecutorService watcher;
+    private volatile String version;
+
+    @Autowired
+    public ConfigChangeWatcher(TargetedRefresher refresher, PushRefreshProperties properties,
+            ConfigClientProperties client, Environment environment) {
+        this.refresher = refresher;
+        this.properties = properties;
+        this.client = client.override(environment);
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setReadTimeout((int) (properties.getWait() + 10000));
+        this.restTemplate = new RestTemplate(requestFactory);
+        if (this.client.getUsername() != null) {
+            restTemplate.getInterceptors().add(
+                    new BasicAuthorizationInterceptor(this.client.getUsername(), this.client.getPassword()));
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("config-push-");
+        threadFactory.setDaemon(true);
+        this.watcher = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        watcher.execute(this::watch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watcher.shutdownNow();
+    }
+
+    /**
+     * The version of the configuration last applied, null until known.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ResponseEntity<ConfigChanges> response = restTemplate.getForEntity(changesUri(), ConfigChanges.class);
+                if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null) {
+                    continue;
+                }
+                ConfigChanges changes = response.getBody();
+                if (version != null) {
+                    Set<String> changed = refresher.refresh(changes.getKeys());
+                    if (changed == null) {
+                        pause();
+                        continue;
+                    }
+                    logger.info("Configuration changed to {}: {}", changes.getVersion(), changed);
+                }
+                version = changes.getVersion();
+            } catch (RestClientException e) {
+                logger.debug("Could not get changes from {}: {}", client.getUri(), e.getMessage());
+                pause();
+            } catch (RuntimeException e) {
+                logger.warn("Refreshing configuration failed", e);
+                pause();
+            }
+        }
+    }
+
+    private URI changesUri() {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(client.getUri())
+                .path("/changes/{name}/{profile}");
+        if (client.getLabel() != null) {
+            uri.path("/{label}");
+        }
+        if (version != null) {
+            uri.queryParam("since", version).queryParam("wait", properties.getWait());
+        }
+        return uri.buildAndExpand(client.getName(), client.getProfile(), escape(client.getLabel()))
+                .encode().toUri();
+    }
+
+    private void pause() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(properties.getRetryInterval());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // as the config client does with labels
+    private static String escape(String label) {
+        return label == null ? null : label.replace("/", "(_)");
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.orangeandbronze.refresh;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Collection;
+
+/**
+ * What the config server says changed: the property keys and the version
+ * they changed to. Null keys mean everything may have.
+ */
+public final class ConfigChanges {
+
+    private final String version;
+    private final Collection<String> keys;
+
+    @JsonCreator
+    public ConfigChanges(@JsonProperty("version") String version, @JsonProperty("keys") Collection<String> keys) {
+        this.version = version;
+        this.keys = keys;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Collection<String> getKeys() {
+        return keys;
+    }
+
+}
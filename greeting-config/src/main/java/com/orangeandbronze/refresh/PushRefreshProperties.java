@@ -0,0 +1,51 @@
+package com.orangeandbronze.refresh;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "config.push")
+public class PushRefreshProperties {
+
+    /**
+     * Wait on the config server for changes and refresh only the beans
+     * bound to the keys that changed. Needs a config server that serves
+     * {@code /changes}.
+     */
+    private boolean enabled;
+
+    /**
+     * How long (in milliseconds) each request for changes waits on the
+     * config server. The server may cut it shorter.
+     */
+    private long wait = 30000;
+
+    /**
+     * How long (in milliseconds) to wait before asking again after the
+     * config server could not be reached or a refresh failed.
+     */
+    private long retryInterval = 5000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getWait() {
+        return wait;
+    }
+
+    public void setWait(long wait) {
+        this.wait = wait;
+    }
+
+    public long getRetryInterval() {
+        return retryInterval;
+    }
+
+    public void setRetryInterval(long retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+}
@@ -0,0 +1,296 @@
+package com.orangeandbronze.refresh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.bootstrap.config.PropertySourceBootstrapConfiguration;
+import org.springframework.cloud.config.client.ConfigServicePropertySourceLocator;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.context.properties.ConfigurationPropertiesRebinder;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.cloud.context.scope.refresh.RefreshScope;
+import org.springframework.cloud.logging.LoggingRebinder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.CompositePropertySource;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Refreshes only what a set of changed keys touches, instead of what
+ * {@link ContextRefresher} does for {@code /refresh}: rebuild the whole
+ * {@code Environment} through a throwaway bootstrap context, rebind every
+ * {@code @ConfigurationProperties} bean and drop every refresh scoped one.
+ * </p><ol>
+ * <li>The config server's property source is fetched again and swapped in
+ * place, and the keys whose value actually changed kept.</li>
+ * <li>{@code @ConfigurationProperties} beans are rebound if their prefix
+ * covers one of them.</li>
+ * <li>Refresh scoped beans are dropped if one of their {@code @Value}s or
+ * their prefix names one of them. Those that declare neither are dropped
+ * on any change, as they may read the {@code Environment} themselves.</li>
+ * </ol><p>
+ * Keys are compared in relaxed form, so {@code greeting.display-fortune}
+ * covers {@code greeting.displayFortune}. Without keys, or when the
+ * property source is not where the bootstrap context left it, this falls
+ * back to a full refresh.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "config.push", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(PushRefreshProperties.class)
+public class TargetedRefresher implements PublicMetrics {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^:}\\s]+)");
+    private static final String REFRESH_SCOPE = "refresh";
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final ConfigurableApplicationContext context;
+    private final ConfigurableEnvironment environment;
+    private final ConfigurationPropertiesRebinder rebinder;
+    private final RefreshScope refreshScope;
+    private final ContextRefresher contextRefresher;
+    private final ObjectProvider<ConfigServicePropertySourceLocator> locator;
+    private final ObjectProvider<LoggingRebinder> loggingRebinder;
+    // keys each refresh scoped bean is bound to, empty if not known
+    private final Map<String, Set<String>> boundKeys = new ConcurrentHashMap<>();
+
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder fullRefreshes = new LongAdder();
+    private final LongAdder rebound = new LongAdder();
+    private final LongAdder recreated = new LongAdder();
+    private volatile long lastMillis;
+
+    @Autowired
+    public TargetedRefresher(ConfigurableApplicationContext context, ConfigurationPropertiesRebinder rebinder,
+            RefreshScope refreshScope, ContextRefresher contextRefresher,
+            ObjectProvider<ConfigServicePropertySourceLocator> locator,
+            ObjectProvider<LoggingRebinder> loggingRebinder) {
+        this.context = context;
+        this.environment = context.getEnvironment();
+        this.rebinder = rebinder;
+        this.refreshScope = refreshScope;
+        this.contextRefresher = contextRefresher;
+        this.locator = locator;
+        this.loggingRebinder = loggingRebinder;
+    }
+
+    /**
+     * @param keys what the config server says changed, or null if it cannot
+     *             tell
+     * @return the keys whose value changed here, or null if the config
+     * server could not be reached
+     */
+    public synchronized Set<String> refresh(Collection<String> keys) {
+        long start = System.nanoTime();
+        try {
+            if (keys == null) {
+                return fullRefresh();
+            }
+            Map<String, String> before = new HashMap<>();
+            for (String key : keys) {
+                before.put(key, environment.getProperty(key));
+            }
+            ConfigServicePropertySourceLocator configService = locator.getIfAvailable();
+            PropertySource<?> located = configService == null ? null : configService.locate(environment);
+            if (located == null) {
+                logger.warn("Could not fetch configuration for changed keys {}", keys);
+                return null;
+            }
+            if (!replace(located)) {
+                return fullRefresh();
+            }
+            Set<String> changed = new TreeSet<>();
+            for (String key : keys) {
+                if (!Objects.equals(before.get(key), environment.getProperty(key))) {
+                    changed.add(key);
+                }
+            }
+            if (!changed.isEmpty()) {
+                rebind(changed);
+                refreshScoped(changed);
+                rebindLogging(changed);
+            }
+            refreshes.increment();
+            return changed;
+        } finally {
+            lastMillis = (System.nanoTime() - start) / 1000000;
+        }
+    }
+
+    private Set<String> fullRefresh() {
+        rebound.add(rebinder.getBeanNames().size());
+        recreated.add(refreshScopedBeans().size());
+        fullRefreshes.increment();
+        Set<String> changed = contextRefresher.refresh();
+        logger.info("Refreshed everything for {}", changed);
+        return changed;
+    }
+
+    // swaps the config server's source inside the one the bootstrap context added
+    private boolean replace(PropertySource<?> located) {
+        MutablePropertySources sources = environment.getPropertySources();
+        PropertySource<?> bootstrap = sources.get(PropertySourceBootstrapConfiguration.BOOTSTRAP_PROPERTY_SOURCE_NAME);
+        if (!(bootstrap instanceof CompositePropertySource)) {
+            return false;
+        }
+        CompositePropertySource replaced = new CompositePropertySource(bootstrap.getName());
+        boolean found = false;
+        for (PropertySource<?> source : ((CompositePropertySource) bootstrap).getPropertySources()) {
+            if (source.getName().equals(located.getName())) {
+                replaced.addPropertySource(located);
+                found = true;
+            } else {
+                replaced.addPropertySource(source);
+            }
+        }
+        if (found) {
+            sources.replace(bootstrap.getName(), replaced);
+        }
+        return found;
+    }
+
+    private void rebind(Set<String> changed) {
+        for (String name : rebinder.getBeanNames()) {
+            ConfigurationProperties annotation = context.findAnnotationOnBean(name, ConfigurationProperties.class);
+            String prefix = annotation == null ? null : prefix(annotation);
+            // without a prefix it may be bound to anything
+            if ((prefix == null || prefix.isEmpty() || covers(Collections.singleton(prefix), changed))
+                    && rebinder.rebind(name)) {
+                logger.debug("Rebound {} for {}", name, changed);
+                rebound.increment();
+            }
+        }
+    }
+
+    private void refreshScoped(Set<String> changed) {
+        for (String name : refreshScopedBeans()) {
+            Set<String> keys = boundKeys.computeIfAbsent(name, this::boundKeys);
+            if ((keys.isEmpty() || covers(keys, changed)) && refreshScope.refresh(name)) {
+                logger.debug("Recreating {} for {}", name, changed);
+                recreated.increment();
+            }
+        }
+    }
+
+    private void rebindLogging(Set<String> changed) {
+        LoggingRebinder logging = loggingRebinder.getIfAvailable();
+        if (logging != null && covers(Collections.singleton("logging.level"), changed)) {
+            logging.onApplicationEvent(new EnvironmentChangeEvent(changed));
+        }
+    }
+
+    private Set<String> refreshScopedBeans() {
+        ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            if (REFRESH_SCOPE.equals(beanFactory.getBeanDefinition(name).getScope())) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private Set<String> boundKeys(String name) {
+        Class<?> type = context.getBeanFactory().getType(name);
+        if (type == null) {
+            return Collections.emptySet();
+        }
+        type = ClassUtils.getUserClass(type);
+        Set<String> keys = new TreeSet<>();
+        ConfigurationProperties properties = AnnotationUtils.findAnnotation(type, ConfigurationProperties.class);
+        if (properties != null) {
+            keys.add(prefix(properties));
+        }
+        ReflectionUtils.doWithFields(type, field -> placeholders(field.getAnnotation(Value.class), keys));
+        ReflectionUtils.doWithMethods(type, method -> {
+            placeholders(method.getAnnotation(Value.class), keys);
+            parameterPlaceholders(method.getParameterAnnotations(), keys);
+        });
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            parameterPlaceholders(constructor.getParameterAnnotations(), keys);
+        }
+        return keys;
+    }
+
+    private static void parameterPlaceholders(Annotation[][] parameters, Set<String> keys) {
+        for (Annotation[] annotations : parameters) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof Value) {
+                    placeholders((Value) annotation, keys);
+                }
+            }
+        }
+    }
+
+    private static void placeholders(Value value, Set<String> keys) {
+        if (value != null) {
+            Matcher matcher = PLACEHOLDER.matcher(value.value());
+            while (matcher.find()) {
+                keys.add(matcher.group(1));
+            }
+        }
+    }
+
+    private static String prefix(ConfigurationProperties annotation) {
+        return annotation.prefix().isEmpty() ? annotation.value() : annotation.prefix();
+    }
+
+    // whether any changed key is one of the bound ones, or nested in it
+    static boolean covers(Collection<String> bound, Collection<String> changed) {
+        for (String key : changed) {
+            String canonical = canonical(key);
+            for (String prefix : bound) {
+                String boundKey = canonical(prefix);
+                if (canonical.equals(boundKey) || canonical.startsWith(boundKey + ".")
+                        || canonical.startsWith(boundKey + "[")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String canonical(String key) {
+        return key.toLowerCase().replace("-", "").replace("_", "");
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("config.push.refreshes", refreshes.sum()),
+                new Metric<>("config.push.full-refreshes", fullRefreshes.sum()),
+                new Metric<>("config.push.rebound", rebound.sum()),
+                new Metric<>("config.push.recreated", recreated.sum()),
+                new Metric<>("config.push.last-millis", lastMillis));
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.orangeandbronze.quote;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QuoteCacheTest {
+
+    private static final String URL = "http://quotes";
+
+    private QuoteCache cache;
+
+    @After
+    public void shutdown() {
+        cache.shutdown();
+    }
+
+    @Test
+    public void freshQuoteIsServedWithoutLoading() {
+        cache = cache(60000, 60000);
+        Quote quote = new Quote();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertSame(quote, cache.get(URL, url -> {
+            loads.incrementAndGet();
+            return quote;
+        }));
+        assertSame(quote, cache.get(URL, url -> {
+            loads.incrementAndGet();
+            return new Quote();
+        }));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void staleQuoteIsServedWhileOneRevalidationRuns() throws Exception {
+        cache = cache(0, 60000);
+        Quote stale = new Quote();
+        Quote fresh = new Quote();
+        cache.get(URL, url -> stale);
+        Thread.sleep(5);
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, Quote> slowLoader = url -> {
+            loads.incrementAndGet();
+            await(release);
+            return fresh;
+        };
+        for (int i = 0; i < 5; i++) {
+            assertSame(stale, cache.get(URL, slowLoader));
+        }
+        release.countDown();
+
+        assertSame(fresh, eventually(() -> cache.get(URL, url -> fresh), fresh));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void failedRevalidationKeepsTheStaleQuote() throws Exception {
+        cache = cache(0, 60000);
+        Quote stale = new Quote();
+        Quote fresh = new Quote();
+        cache.get(URL, url -> stale);
+        Thread.sleep(5);
+
+        CountDownLatch failed = new CountDownLatch(1);
+        assertSame(stale, cache.get(URL, url -> {
+            failed.countDown();
+            throw new IllegalStateException("quote service down");
+        }));
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+
+        // the next request after the failure revalidates again
+        assertSame(fresh, eventually(() -> cache.get(URL, url -> fresh), fresh));
+    }
+
+    @Test
+    public void quoteTooStaleToServeIsLoadedInline() throws Exception {
+        cache = cache(0, 0);
+        cache.get(URL, url -> new Quote());
+        Thread.sleep(5);
+
+        Quote fresh = new Quote();
+        assertSame(fresh, cache.get(URL, url -> fresh));
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        cache = cache(60000, 60000);
+        Quote quote = new Quote();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Quote>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> cache.get(URL, url -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return quote;
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<Quote> result : results) {
+                assertSame(quote, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+        cache = cache(60000, 60000);
+        try {
+            cache.get(URL, url -> {
+                throw new IllegalStateException("quote service down");
+            });
+            fail("expected the load to fail");
+        } catch (IllegalStateException expected) {
+        }
+
+        Quote quote = new Quote();
+        assertSame(quote, cache.get(URL, url -> quote));
+    }
+
+    @Test
+    public void loadFailingWithAnErrorReleasesTheWaitingCallers() throws Exception {
+        cache = cache(60000, 60000);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Quote> owner = callers.submit(() -> cache.get(URL, url -> {
+                loading.countDown();
+                await(release);
+                throw new NoClassDefFoundError("com/orangeandbronze/quote/Quote");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<Quote> waiter = callers.submit(() -> cache.get(URL, url -> new Quote()));
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<Quote> result : Arrays.asList(owner, waiter)) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                    fail("expected the load to fail");
+                } catch (ExecutionException expected) {
+                    assertTrue(expected.getCause() instanceof NoClassDefFoundError);
+                }
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        Quote quote = new Quote();
+        assertSame(quote, cache.get(URL, url -> quote));
+    }
+
+    @Test
+    public void leastRecentlyUsedUrlIsEvicted() {
+        QuoteCacheProperties properties = new QuoteCacheProperties();
+        properties.setMaxSize(2);
+        cache = new QuoteCache(properties);
+        Quote first = new Quote();
+        cache.get("http://first", url -> first);
+        cache.get("http://second", url -> new Quote());
+        cache.get("http://first", url -> new Quote());
+        cache.get("http://third", url -> new Quote());
+
+        assertSame(first, cache.get("http://first", url -> new Quote()));
+        Quote reloaded = new Quote();
+        assertSame(reloaded, cache.get("http://second", url -> reloaded));
+    }
+
+    private static QuoteCache cache(long ttl, long maxStale) {
+        QuoteCacheProperties properties = new QuoteCacheProperties();
+        properties.setTtl(ttl);
+        properties.setMaxStale(maxStale);
+        return new QuoteCache(properties);
+    }
+
+    private static Quote eventually(Supplier<Quote> get, Quote expected)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        Quote quote = get.get();
+        while (quote != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            quote = get.get();
+        }
+        return quote;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
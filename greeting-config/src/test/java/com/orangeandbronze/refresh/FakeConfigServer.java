@@ -0,0 +1,134 @@
+package com.orangeandbronze.refresh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves one application's configuration the way the config server does,
+ * {@code /changes} included, from a map the caller changes.
+ */
+class FakeConfigServer {
+
+    private final String application;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    // guarded by this
+    private Map<String, Object> properties;
+    private int version = 1;
+    private Collection<String> lastKeys = Collections.emptyList();
+
+    FakeConfigServer(String application, Map<String, Object> properties) throws IOException {
+        this.application = application;
+        this.properties = new LinkedHashMap<>(properties);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(threads);
+        server.start();
+    }
+
+    String getUri() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Changes one property and tells waiting clients about it, or about
+     * everything if {@code keys} is null.
+     */
+    synchronized void change(String key, Object value, Collection<String> keys) {
+        properties = new LinkedHashMap<>(properties);
+        properties.put(key, value);
+        version++;
+        lastKeys = keys;
+        notifyAll();
+    }
+
+    void stop() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/changes/" + application + "/")) {
+                changes(exchange, query(exchange.getRequestURI().getQuery()));
+            } else if (path.startsWith("/" + application + "/")) {
+                environment(exchange);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        } catch (InterruptedException e) {
+            exchange.sendResponseHeaders(503, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void environment(HttpExchange exchange) throws IOException {
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("name", "fake:" + application + ".yml");
+        Map<String, Object> environment = new LinkedHashMap<>();
+        synchronized (this) {
+            source.put("source", properties);
+            environment.put("version", String.valueOf(version));
+        }
+        environment.put("name", application);
+        environment.put("profiles", Collections.singletonList("default"));
+        environment.put("propertySources", Collections.singletonList(source));
+        send(exchange, environment);
+    }
+
+    private void changes(HttpExchange exchange, Map<String, String> query) throws IOException,
+            InterruptedException {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        synchronized (this) {
+            String since = query.get("since");
+            if (since != null) {
+                long deadline = System.currentTimeMillis() + Long.parseLong(query.getOrDefault("wait", "0"));
+                while (since.equals(String.valueOf(version)) && System.currentTimeMillis() < deadline) {
+                    wait(deadline - System.currentTimeMillis());
+                }
+                if (since.equals(String.valueOf(version))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+            }
+            changes.put("version", String.valueOf(version));
+            changes.put("keys", since == null ? Collections.emptyList() : lastKeys);
+        }
+        send(exchange, changes);
+    }
+
+    private void send(HttpExchange exchange, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(String query) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                parameters.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+            }
+        }
+        return parameters;
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.orangeandbronze.refresh;
+
+import com.orangeandbronze.GreetingConfigApplication;
+import com.orangeandbronze.greeting.GreetingProperties;
+import com.orangeandbronze.quote.QuoteService;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.cloud.context.properties.ConfigurationPropertiesRebinder;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Changes {@code greeting.display-fortune} on a {@link FakeConfigServer}
+ * {@code rounds} times, once refreshing the way {@code /refresh} does and
+ * once pushed to {@link TargetedRefresher}, while requests keep hitting
+ * {@code /} and the refresh scoped {@link QuoteService}. Reported per mode:
+ * </p><ul>
+ * <li>refresh latency, from the change until {@link GreetingProperties}
+ * has it (pushed, this includes the long-poll answering);</li>
+ * <li>beans rebound or recreated per refresh;</li>
+ * <li>the slowest request and {@code QuoteService} call while a refresh
+ * ran, against the 99th percentile outside them.</li>
+ * </ul><p>
+ * Not run by the build:
+ * </p><pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.refresh.RefreshHarness [rounds]"
+ * </pre>
+ */
+public class RefreshHarness {
+
+    private static final int WARM_UP = 5;
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        for (boolean push : new boolean[] {false, true}) {
+            Map<String, Object> properties = new LinkedHashMap<>();
+            properties.put("greeting.display-fortune", false);
+            properties.put("quoteServiceURL", "http://quotes/a");
+            FakeConfigServer configServer = new FakeConfigServer("greeting-config", properties);
+            ConfigurableApplicationContext application = null;
+            try {
+                application = new SpringApplicationBuilder(GreetingConfigApplication.class).run(
+                        "--server.port=0",
+                        "--spring.jmx.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--spring.cloud.config.uri=" + configServer.getUri(),
+                        "--config.push.enabled=" + push);
+                run(application, configServer, push, rounds);
+            } finally {
+                if (application != null) {
+                    application.close();
+                }
+                configServer.stop();
+            }
+        }
+    }
+
+    private static void run(ConfigurableApplicationContext application, FakeConfigServer configServer,
+            boolean push, int rounds) throws Exception {
+        if (push) {
+            while (application.getBean(ConfigChangeWatcher.class).getVersion() == null) {
+                Thread.sleep(10);
+            }
+        }
+        String url = "http://localhost:"
+                + ((EmbeddedWebApplicationContext) application).getEmbeddedServletContainer().getPort() + "/";
+        GreetingProperties greeting = application.getBean(GreetingProperties.class);
+        QuoteService quoteService = application.getBean(QuoteService.class);
+
+        // start and end of each refresh, and of each call, in nanoseconds
+        List<long[]> refreshes = Collections.synchronizedList(new ArrayList<>());
+        List<long[]> requests = Collections.synchronizedList(new ArrayList<>());
+        List<long[]> calls = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService threads = Executors.newFixedThreadPool(3);
+        RestTemplate restTemplate = new RestTemplate();
+        for (int t = 0; t < 2; t++) {
+            threads.submit(() -> {
+                while (running.get()) {
+                    long start = System.nanoTime();
+                    restTemplate.getForObject(url, String.class);
+                    requests.add(new long[] {start, System.nanoTime()});
+                }
+                return null;
+            });
+        }
+        threads.submit(() -> {
+            while (running.get()) {
+                long start = System.nanoTime();
+                quoteService.getQuoteServiceURL();
+                calls.add(new long[] {start, System.nanoTime()});
+                Thread.sleep(1);
+            }
+            return null;
+        });
+
+        long rebuilt = 0;
+        List<Long> refresherMillis = new ArrayList<>();
+        for (int round = 0; round < WARM_UP + rounds; round++) {
+            Thread.sleep(200);
+            boolean value = round % 2 == 0;
+            long before = push ? rebuilt(application) : 0;
+            long start = System.nanoTime();
+            configServer.change("greeting.display-fortune", value,
+                    Collections.singleton("greeting.display-fortune"));
+            if (!push) {
+                application.getBean(ContextRefresher.class).refresh();
+            }
+            while (greeting.isDisplayFortune() != value) {
+                Thread.yield();
+            }
+            long end = System.nanoTime();
+            if (round < WARM_UP) {
+                continue;
+            }
+            refreshes.add(new long[] {start, end});
+            if (push) {
+                refresherMillis.add(metric(application, "config.push.last-millis"));
+            }
+            rebuilt += push ? rebuilt(application) - before
+                    : application.getBean(ConfigurationPropertiesRebinder.class).getBeanNames().size()
+                    + refreshScoped(application);
+        }
+        running.set(false);
+        threads.shutdown();
+        threads.awaitTermination(30, TimeUnit.SECONDS);
+
+        List<Long> latencies = new ArrayList<>();
+        for (long[] refresh : refreshes) {
+            latencies.add(refresh[1] - refresh[0]);
+        }
+        Collections.sort(latencies);
+        System.out.printf("%s, %d refreshes:%n", push ? "pushed, targeted" : "/refresh", refreshes.size());
+        System.out.printf("  refresh latency: p50 %.1f ms, max %.1f ms%n", percentile(latencies, 0.5),
+                percentile(latencies, 1.0));
+        if (push) {
+            Collections.sort(refresherMillis);
+            System.out.printf("  of which fetching and rebinding: p50 %d ms%n",
+                    refresherMillis.get(refresherMillis.size() / 2));
+        }
+        System.out.printf("  beans rebuilt per refresh: %.1f%n", rebuilt / (double) refreshes.size());
+        report("  GET /", requests, refreshes);
+        report("  QuoteService call", calls, refreshes);
+    }
+
+    private static void report(String name, List<long[]> samples, List<long[]> refreshes) {
+        List<Long> during = new ArrayList<>();
+        List<Long> outside = new ArrayList<>();
+        synchronized (samples) {
+            for (long[] sample : samples) {
+                if (sample[0] < refreshes.get(0)[0] - TimeUnit.MILLISECONDS.toNanos(100)) {
+                    continue;
+                }
+                boolean overlaps = false;
+                for (long[] refresh : refreshes) {
+                    overlaps |= sample[0] < refresh[1] && sample[1] > refresh[0];
+                }
+                (overlaps ? during : outside).add(sample[1] - sample[0]);
+            }
+        }
+        Collections.sort(during);
+        Collections.sort(outside);
+        System.out.printf("%s: slowest during refresh %.2f ms (%d calls), p99 outside %.2f ms%n", name,
+                percentile(during, 1.0), during.size(), percentile(outside, 0.99));
+    }
+
+    private static long rebuilt(ConfigurableApplicationContext application) {
+        return metric(application, "config.push.rebound") + metric(application, "config.push.recreated");
+    }
+
+    private static long metric(ConfigurableApplicationContext application, String name) {
+        for (Metric<?> metric : application.getBean(TargetedRefresher.class).metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static int refreshScoped(ConfigurableApplicationContext application) {
+        int count = 0;
+        for (String name : application.getBeanFactory().getBeanDefinitionNames()) {
+            if ("refresh".equals(application.getBeanFactory().getBeanDefinition(name).getScope())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return Double.NaN;
+        }
+        int index = Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1);
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.orangeandbronze.refresh;
+
+import com.orangeandbronze.GreetingConfigApplication;
+import com.orangeandbronze.greeting.GreetingProperties;
+import com.orangeandbronze.quote.QuoteService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * The application against a {@link FakeConfigServer} that pushes changes.
+ */
+public class TargetedRefresherTest {
+
+    private FakeConfigServer configServer;
+    private ConfigurableApplicationContext application;
+
+    @Before
+    public void start() throws Exception {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("greeting.display-fortune", false);
+        properties.put("quoteServiceURL", "http://quotes/a");
+        configServer = new FakeConfigServer("greeting-config", properties);
+        application = new SpringApplicationBuilder(GreetingConfigApplication.class).run(
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--spring.cloud.config.uri=" + configServer.getUri(),
+                "--config.push.enabled=true",
+                "--config.push.retry-interval=100");
+        eventually(() -> application.getBean(ConfigChangeWatcher.class).getVersion() != null);
+    }
+
+    @After
+    public void stop() {
+        if (application != null) {
+            application.close();
+        }
+        configServer.stop();
+    }
+
+    @Test
+    public void onlyBeansBoundToChangedKeysAreRefreshed() {
+        Object quoteService = application.getBean("scopedTarget.quoteService");
+
+        configServer.change("greeting.display-fortune", true, Collections.singleton("greeting.display-fortune"));
+
+        eventually(() -> application.getBean(GreetingProperties.class).isDisplayFortune());
+        assertSame(quoteService, application.getBean("scopedTarget.quoteService"));
+        assertEquals(0, metric("config.push.recreated"));
+        assertEquals(1, metric("config.push.rebound"));
+
+        configServer.change("quoteServiceURL", "http://quotes/b", Collections.singleton("quoteServiceURL"));
+
+        eventually(() -> "http://quotes/b".equals(application.getBean(QuoteService.class).getQuoteServiceURL()));
+        assertNotSame(quoteService, application.getBean("scopedTarget.quoteService"));
+        assertEquals(1, metric("config.push.recreated"));
+        assertEquals(1, metric("config.push.rebound"));
+        assertEquals(0, metric("config.push.full-refreshes"));
+    }
+
+    @Test
+    public void unknownChangesRefreshEverything() {
+        configServer.change("quoteServiceURL", "http://quotes/c", null);
+
+        eventually(() -> "http://quotes/c".equals(application.getBean(QuoteService.class).getQuoteServiceURL()));
+        assertEquals(1, metric("config.push.full-refreshes"));
+    }
+
+    @Test
+    public void relaxedNamesCoverBoundKeys() {
+        assertTrue(TargetedRefresher.covers(Collections.singleton("greeting"),
+                Collections.singleton("greeting.display-fortune")));
+        assertTrue(TargetedRefresher.covers(Collections.singleton("quoteServiceURL"),
+                Collections.singleton("quote-service-url")));
+        assertFalse(TargetedRefresher.covers(Collections.singleton("quote.cache"),
+                Collections.singleton("quoteServiceURL")));
+    }
+
+    private long metric(String name) {
+        for (Metric<?> metric : application.getBean(TargetedRefresher.class).metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static void eventually(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("not refreshed in time", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+}
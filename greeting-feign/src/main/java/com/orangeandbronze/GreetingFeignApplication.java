@@ -1,9 +1,15 @@
 package com.orangeandbronze;
 
+import com.orangeandbronze.loadbalancer.ServerLoadFeignClient;
+import feign.Client;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.netflix.feign.EnableFeignClients;
+import org.springframework.cloud.netflix.feign.ribbon.CachingSpringLoadBalancerFactory;
+import org.springframework.cloud.netflix.feign.ribbon.LoadBalancerFeignClient;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 @EnableDiscoveryClient
@@ -13,4 +19,14 @@ public class GreetingFeignApplication {
     public static void main(String[] args) {
         SpringApplication.run(GreetingFeignApplication.class, args);
     }
+
+    /*
+     * The same client Spring Cloud would create, with per-instance load
+     * tracking for PeakEwmaRule under the load balancer.
+     */
+    @Bean
+    Client feignClient(CachingSpringLoadBalancerFactory loadBalancerFactory, SpringClientFactory clientFactory) {
+        return new LoadBalancerFeignClient(new ServerLoadFeignClient(new Client.Default(null, null)),
+                loadBalancerFactory, clientFactory);
+    }
 }
@@ -0,0 +1,38 @@
+package com.orangeandbronze.greeting;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orangeandbronze.hedge.Hedger;
+import com.orangeandbronze.hedge.HedgingFeignClient;
+import com.orangeandbronze.loadbalancer.ServerLoadFeignClient;
+import com.orangeandbronze.ndjson.NdjsonDecoder;
+import feign.Client;
+import feign.codec.Decoder;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.HttpMessageConverters;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.netflix.feign.support.ResponseEntityDecoder;
+import org.springframework.cloud.netflix.feign.support.SpringDecoder;
+import org.springframework.context.annotation.Bean;
+
+/*
+ * Not annotated with @Configuration on purpose: it is only meant to be
+ * picked up by the FortuneServiceClient's own Feign context, not by
+ * component scanning.
+ */
+public class FortuneServiceClientConfiguration {
+
+    @Bean
+    public Decoder feignDecoder(ObjectFactory<HttpMessageConverters> messageConverters, ObjectMapper objectMapper) {
+        return new NdjsonDecoder(objectMapper,
+                new ResponseEntityDecoder(new SpringDecoder(messageConverters)));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "hedge", name = "enabled", havingValue = "true")
+    public Client feignClient(Hedger hedger, LoadBalancerClient loadBalancer) {
+        return new HedgingFeignClient(new ServerLoadFeignClient(new Client.Default(null, null)),
+                hedger, loadBalancer);
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.orangeandbronze.hedge;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Takes the place of Spring Cloud's {@code LoadBalancerFeignClient} for a
+ * Feign client: picks instances itself and hedges GET and HEAD requests.
+ */
+public class HedgingFeignClient implements Client {
+
+    private final Client delegate;
+    private final Hedger hedger;
+    private final LoadBalancerClient loadBalancer;
+
+    public HedgingFeignClient(Client delegate, Hedger hedger, LoadBalancerClient loadBalancer) {
+        this.delegate = delegate;
+        this.hedger = hedger;
+        this.loadBalancer = loadBalancer;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        URI uri = URI.create(request.url());
+        if (!"GET".equals(request.method()) && !"HEAD".equals(request.method())) {
+            ServiceInstance instance = loadBalancer.choose(uri.getHost());
+            if (instance == null) {
+                throw new IllegalStateException("No instances available for " + uri.getHost());
+            }
+            return delegate.execute(to(instance, request, uri), options);
+        }
+        return hedger.execute(uri.getHost(),
+                instance -> delegate.execute(to(instance, request, uri), options), Response::close);
+    }
+
+    private Request to(ServiceInstance instance, Request request, URI uri) {
+        return Request.create(request.method(), loadBalancer.reconstructURI(instance, uri).toString(),
+                request.headers(), request.body(), request.charset());
+    }
+
+}
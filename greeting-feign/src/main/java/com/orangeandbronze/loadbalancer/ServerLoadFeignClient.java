@@ -0,0 +1,38 @@
+package com.orangeandbronze.loadbalancer;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Feeds {@link ServerLoad} from Feign. Wraps the client that makes the
+ * actual call, below the load balancer, so the URL names the chosen
+ * instance.
+ */
+public class ServerLoadFeignClient implements Client {
+
+    private final Client delegate;
+
+    public ServerLoadFeignClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        URI uri = URI.create(request.url());
+        ServerLoad load = ServerLoad.of(uri.getHost(), uri.getPort());
+        long start = load.start();
+        try {
+            Response response = delegate.execute(request, options);
+            load.end(start);
+            return response;
+        } catch (IOException | RuntimeException ex) {
+            load.fail(start);
+            throw ex;
+        }
+    }
+
+}
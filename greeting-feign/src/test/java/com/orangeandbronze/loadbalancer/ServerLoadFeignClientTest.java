@@ -0,0 +1,73 @@
+package com.orangeandbronze.loadbalancer;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * The Feign client wiring of {@link ServerLoad}; the rule itself is tested
+ * in greeting-ribbon.
+ */
+public class ServerLoadFeignClientTest {
+
+    /*
+     * ServerLoad is a static registry, so every test uses a host of its own.
+     */
+    private final String host = "feign-" + UUID.randomUUID();
+    private final ServerLoad load = ServerLoad.of(host, 8080);
+
+    @Test
+    public void measuresTheCallOnTheChosenInstance() throws IOException {
+        Client client = new ServerLoadFeignClient((request, options) -> {
+            assertEquals(1, load.getInFlight());
+            sleep(20);
+            return Response.builder().status(200).reason("OK").headers(Collections.emptyMap())
+                    .body("fortune", StandardCharsets.UTF_8).request(request).build();
+        });
+
+        assertEquals(200, client.execute(request(), new Request.Options()).status());
+
+        assertEquals(0, load.getInFlight());
+        assertTrue(load.getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void failedCallCountsAsSlow() {
+        Client client = new ServerLoadFeignClient((request, options) -> {
+            throw new ConnectException("Connection refused");
+        });
+
+        try {
+            client.execute(request(), new Request.Options());
+            fail("Expected the failure to be rethrown");
+        } catch (IOException ex) {
+            assertEquals("Connection refused", ex.getMessage());
+        }
+
+        assertEquals(0, load.getInFlight());
+        assertTrue(load.getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    private Request request() {
+        return Request.create("GET", "http://" + host + ":8080/", Collections.emptyMap(), null, null);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -1,11 +1,14 @@
 package com.orangeandbronze.greetingfrontend;
 
+import com.orangeandbronze.discovery.InstanceCache;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@Import(InstanceCache.class)
 public class FrontendApplication {
 
     public static void main(String... args) {
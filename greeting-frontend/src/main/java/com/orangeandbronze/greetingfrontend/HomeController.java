@@ -1,6 +1,6 @@
 package com.orangeandbronze.greetingfrontend;
 
-import com.netflix.discovery.EurekaClient;
+import com.orangeandbronze.discovery.InstanceCache;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.servlet.ModelAndView;
@@ -12,10 +12,10 @@ import static java.lang.String.format;
 @Controller
 public class HomeController {
 
-    private final EurekaClient discoveryClient;
+    private final InstanceCache instanceCache;
 
-    public HomeController(EurekaClient discoveryClient) {
-        this.discoveryClient = discoveryClient;
+    public HomeController(InstanceCache instanceCache) {
+        this.instanceCache = instanceCache;
     }
 
 
@@ -31,8 +31,8 @@ public class HomeController {
 
 
     private String getGatewayUrl() {
-        return discoveryClient
-            .getNextServerFromEureka("gateway-application", false)
+        return instanceCache
+            .nextInstance("gateway-application")
             .getHomePageUrl();
     }
 
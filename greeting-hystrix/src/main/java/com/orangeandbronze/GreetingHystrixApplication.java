@@ -1,11 +1,22 @@
 package com.orangeandbronze;
 
+import com.orangeandbronze.http.HttpClientProperties;
+import com.orangeandbronze.loadbalancer.ServerLoadAsyncRequestFactory;
+import com.orangeandbronze.loadbalancer.ServerLoadRequestFactory;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.circuitbreaker.EnableCircuitBreaker;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
@@ -17,10 +28,47 @@ public class GreetingHystrixApplication {
         SpringApplication.run(GreetingHystrixApplication.class, args);
     }
 
+    /*
+     * The shared pooled factory, wrapped to feed PeakEwmaRule the load of
+     * each instance. Primary, so it is the one the RestTemplate and
+     * everything else sending requests through the pool gets.
+     */
+    @Primary
+    @Bean
+    ClientHttpRequestFactory serverLoadRequestFactory(CloseableHttpClient httpClient) {
+        return new ServerLoadRequestFactory(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    @LoadBalanced
+    @Bean
+    RestTemplate restTemplate(ClientHttpRequestFactory requestFactory) {
+        return new RestTemplate(requestFactory);
+    }
+
+    /*
+     * Backed by the NIO-based Apache HttpAsyncClient, so waiting on
+     * fortune-service does not hold any thread. @LoadBalanced applies
+     * Ribbon to it just like to the RestTemplate above. The pool is sized
+     * like the blocking one's; the client's own default is 5 connections
+     * per host, beyond which requests queue until Hystrix times them out.
+     * The blocking factory is passed explicitly because the single-argument
+     * constructor casts the async one to a ClientHttpRequestFactory.
+     */
     @LoadBalanced
     @Bean
-    RestTemplate restTemplate() {
-        return new RestTemplate();
+    AsyncRestTemplate asyncRestTemplate(HttpClientProperties properties,
+                                        ClientHttpRequestFactory requestFactory) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setSocketTimeout(properties.getReadTimeout())
+                .setConnectionRequestTimeout(properties.getConnectionRequestTimeout())
+                .build();
+        return new AsyncRestTemplate(new ServerLoadAsyncRequestFactory(
+                new HttpComponentsAsyncClientHttpRequestFactory(HttpAsyncClients.custom()
+                        .setMaxConnTotal(properties.getMaxTotal())
+                        .setMaxConnPerRoute(properties.getMaxPerRoute())
+                        .setDefaultRequestConfig(requestConfig)
+                        .build())), requestFactory);
     }
 
 }
@@ -0,0 +1,40 @@
+package com.orangeandbronze.fortune;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the newline-delimited JSON returned by fortune-service's
+ * {@code /batch} endpoint.
+ */
+class FortuneBatchReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(FortuneBatchReader.class);
+
+    private FortuneBatchReader() {
+    }
+
+    static List<String> read(ObjectMapper objectMapper, String body) {
+        List<String> fortunes = new ArrayList<>();
+        if (body == null) {
+            return fortunes;
+        }
+        for (String line : body.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                fortunes.add(objectMapper.readValue(line, String.class));
+            } catch (IOException ex) {
+                logger.debug("Skipping malformed fortune: {}", line);
+            }
+        }
+        return fortunes;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.orangeandbronze.fortune;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.hystrix.HystrixCollapser;
+import com.netflix.hystrix.HystrixCollapserKey;
+import com.netflix.hystrix.HystrixCollapserProperties;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import rx.Observable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Gathers concurrent fortune calls made within {@code fortune.collapser.window}
+ * milliseconds into a single call to fortune-service's {@code /batch}
+ * endpoint, and hands each caller one fortune of the batch.
+ * </p><p>
+ * The fan-in ratio, batch size and the time calls wait for their window to
+ * close are published as actuator metrics, to weigh the added latency
+ * against the reduction in upstream calls.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "fortune.collapser.enabled", havingValue = "true")
+@EnableConfigurationProperties(FortuneCollapserProperties.class)
+public class FortuneCollapser implements PublicMetrics {
+
+    /*
+     * A pool of its own: getFortune blocks a thread of the FortuneService
+     * pool until its batch arrives, so a batch queued behind those threads
+     * would be rejected once ten callers wait for it.
+     */
+    private static final HystrixCommand.Setter BATCH_COMMAND = HystrixCommand.Setter
+            .withGroupKey(HystrixCommandGroupKey.Factory.asKey("FortuneService"))
+            .andCommandKey(HystrixCommandKey.Factory.asKey("getFortunes"))
+            .andThreadPoolKey(HystrixThreadPoolKey.Factory.asKey("FortuneBatch"));
+
+    private RestTemplate restTemplate;
+    private ObjectMapper objectMapper;
+    private final HystrixCollapser.Setter collapserSetter;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    @Autowired
+    public FortuneCollapser(FortuneCollapserProperties properties,
+                            @LoadBalanced RestTemplate restTemplate,
+                            ObjectMapper objectMapper) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.collapserSetter = HystrixCollapser.Setter
+                .withCollapserKey(HystrixCollapserKey.Factory.asKey("getFortune"))
+                .andScope(HystrixCollapser.Scope.GLOBAL)
+                .andCollapserPropertiesDefaults(HystrixCollapserProperties.Setter()
+                        .withTimerDelayInMilliseconds(properties.getWindow())
+                        .withMaxRequestsInBatch(properties.getMaxBatchSize()));
+    }
+
+    public Observable<String> getFortune() {
+        return new Collapser().toObservable();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long requestCount = requests.sum();
+        long batchCount = batches.sum();
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("fortune.collapser.requests", requestCount),
+                new Metric<>("fortune.collapser.batches", batchCount),
+                new Metric<>("fortune.collapser.fan-in", batchCount == 0 ? 0.0 : (double) requestCount / batchCount),
+                new Metric<>("fortune.collapser.batch-size.last", lastBatchSize.get()),
+                new Metric<>("fortune.collapser.batch-size.max", maxBatchSize.get()),
+                new Metric<>("fortune.collapser.wait-time-ms", requestCount == 0 ? 0.0
+                        : TimeUnit.NANOSECONDS.toMicros(waitNanos.sum()) / 1000.0 / requestCount));
+    }
+
+    private void recordBatch(Collection<HystrixCollapser.CollapsedRequest<String, Long>> collapsed) {
+        long now = System.nanoTime();
+        for (HystrixCollapser.CollapsedRequest<String, Long> request : collapsed) {
+            waitNanos.add(now - request.getArgument());
+        }
+        int size = collapsed.size();
+        requests.add(size);
+        batches.increment();
+        lastBatchSize.set(size);
+        maxBatchSize.accumulateAndGet(size, Math::max);
+    }
+
+    /*
+     * The request argument is only the time the call was made, to measure
+     * how long it waited for its batch.
+     */
+    private class Collapser extends HystrixCollapser<List<String>, String, Long> {
+
+        private final long createdAt = System.nanoTime();
+
+        Collapser() {
+            super(collapserSetter);
+        }
+
+        @Override
+        public Long getRequestArgument() {
+            return createdAt;
+        }
+
+        @Override
+        protected HystrixCommand<List<String>> createCommand(Collection<CollapsedRequest<String, Long>> collapsed) {
+            recordBatch(collapsed);
+            return new BatchCommand(collapsed.size());
+        }
+
+        @Override
+        protected void mapResponseToRequests(List<String> fortunes, Collection<CollapsedRequest<String, Long>> collapsed) {
+            int i = 0;
+            for (CollapsedRequest<String, Long> request : collapsed) {
+                if (i < fortunes.size()) {
+                    request.setResponse(fortunes.get(i++));
+                } else {
+                    request.setException(new IllegalStateException("fortune-service returned too few fortunes"));
+                }
+            }
+        }
+    }
+
+    /*
+     * No fallback on purpose: a failed batch fails every collapsed call,
+     * which then falls back through FortuneService's own Hystrix command.
+     */
+    private class BatchCommand extends HystrixCommand<List<String>> {
+
+        private final int count;
+
+        BatchCommand(int count) {
+            super(BATCH_COMMAND);
+            this.count = count;
+        }
+
+        @Override
+        protected List<String> run() {
+            String body = restTemplate.getForObject("http://fortune-service/batch?count={count}", String.class, count);
+            return FortuneBatchReader.read(objectMapper, body);
+        }
+    }
+
+}
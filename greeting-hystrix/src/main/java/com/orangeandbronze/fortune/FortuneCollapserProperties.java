@@ -0,0 +1,45 @@
+package com.orangeandbronze.fortune;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "fortune.collapser")
+public class FortuneCollapserProperties {
+
+    private boolean enabled;
+
+    /**
+     * How long (in milliseconds) to gather calls before sending them as one batch.
+     */
+    private int window = 10;
+
+    /**
+     * Maximum number of calls in one batch; must not exceed fortune-service's
+     * {@code fortune.batch.max-count}.
+     */
+    private int maxBatchSize = 100;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public void setWindow(int window) {
+        this.window = window;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.orangeandbronze.fortune;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "fortune.prefetch")
+public class FortunePrefetchProperties {
+
+    private boolean enabled;
+
+    /**
+     * Maximum number of fortunes held in the buffer.
+     */
+    private int capacity = 100;
+
+    /**
+     * A refill is started once the buffer holds this many fortunes or fewer.
+     */
+    private int lowWaterMark = 25;
+
+    /**
+     * Milliseconds to wait after a failed refill before trying again. The
+     * wait doubles with each further failure, up to max-backoff.
+     */
+    private long backoff = 1000;
+
+    /**
+     * Longest wait in milliseconds between refill attempts while they fail.
+     */
+    private long maxBackoff = 60000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    public void setLowWaterMark(int lowWaterMark) {
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    public long getBackoff() {
+        return backoff;
+    }
+
+    public void setBackoff(long backoff) {
+        this.backoff = backoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+}
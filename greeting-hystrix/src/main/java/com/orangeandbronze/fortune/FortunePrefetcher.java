@@ -0,0 +1,165 @@
+package com.orangeandbronze.fortune;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.AsyncRestTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Keeps a bounded buffer of fortunes fetched ahead of time from
+ * fortune-service's {@code /batch} endpoint, so that most page views are
+ * served without a remote call. Taking a fortune never blocks; once the
+ * buffer drops to the low-water mark a single asynchronous refill tops it
+ * back up.
+ * </p><p>
+ * The last fetched batch is also kept so that, while fortune-service is
+ * unavailable, the fallback can still hand out real fortunes. A failed
+ * refill is not retried on the next page view but after a backoff that
+ * doubles with each further failure, so an outage does not turn every
+ * page view below the low-water mark into a {@code /batch} call.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "fortune.prefetch.enabled", havingValue = "true")
+@EnableConfigurationProperties(FortunePrefetchProperties.class)
+public class FortunePrefetcher implements PublicMetrics {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private FortunePrefetchProperties properties;
+    private AsyncRestTemplate asyncRestTemplate;
+    private ObjectMapper objectMapper;
+
+    private final ArrayBlockingQueue<String> buffer;
+    private volatile String[] recent = new String[0];
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long nextRefillAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+    private final LongAdder refillFailures = new LongAdder();
+    private final AtomicLong lastRefillMillis = new AtomicLong();
+
+    @Autowired
+    public FortunePrefetcher(FortunePrefetchProperties properties,
+                             @LoadBalanced AsyncRestTemplate asyncRestTemplate,
+                             ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.asyncRestTemplate = asyncRestTemplate;
+        this.objectMapper = objectMapper;
+        this.buffer = new ArrayBlockingQueue<>(properties.getCapacity());
+    }
+
+    /**
+     * @return a prefetched fortune, or {@code null} if the buffer is empty
+     */
+    public String poll() {
+        String fortune = buffer.poll();
+        if (fortune != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        if (buffer.size() <= properties.getLowWaterMark()) {
+            refill();
+        }
+        return fortune;
+    }
+
+    /**
+     * @return a fortune from the most recent batch, or {@code null} if
+     * no batch has been fetched yet
+     */
+    public String recentFortune() {
+        String[] fortunes = recent;
+        return fortunes.length == 0 ? null : fortunes[ThreadLocalRandom.current().nextInt(fortunes.length)];
+    }
+
+    private void refill() {
+        if (System.currentTimeMillis() < nextRefillAt || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        int count = properties.getCapacity() - buffer.size();
+        if (count <= 0) {
+            refilling.set(false);
+            return;
+        }
+        logger.debug("Prefetching {} fortunes.", count);
+        long start = System.nanoTime();
+        try {
+            asyncRestTemplate.getForEntity("http://fortune-service/batch?count={count}", String.class, count)
+                    .addCallback(
+                            response -> {
+                                try {
+                                    store(response);
+                                } finally {
+                                    lastRefillMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                                    refills.increment();
+                                    failures.set(0);
+                                    refilling.set(false);
+                                }
+                            },
+                            this::failed);
+        } catch (RuntimeException ex) {
+            // e.g. no instance of fortune-service to send it to
+            failed(ex);
+        }
+    }
+
+    private void failed(Throwable ex) {
+        int failed = failures.incrementAndGet();
+        long backoff = Math.min(properties.getMaxBackoff(), properties.getBackoff() << Math.min(failed - 1, 20));
+        logger.debug("Prefetching fortunes failed, not trying again for {} ms.", backoff, ex);
+        nextRefillAt = System.currentTimeMillis() + backoff;
+        refillFailures.increment();
+        refilling.set(false);
+    }
+
+    private void store(ResponseEntity<String> response) {
+        List<String> fortunes = FortuneBatchReader.read(objectMapper, response.getBody());
+        if (fortunes.isEmpty()) {
+            return;
+        }
+        recent = fortunes.toArray(new String[fortunes.size()]);
+        for (String fortune : fortunes) {
+            if (!buffer.offer(fortune)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("fortune.prefetch.hits", hitCount),
+                new Metric<>("fortune.prefetch.misses", total - hitCount),
+                new Metric<>("fortune.prefetch.hit-ratio", total == 0 ? 0.0 : (double) hitCount / total),
+                new Metric<>("fortune.prefetch.depth", buffer.size()),
+                new Metric<>("fortune.prefetch.refills", refills.sum()),
+                new Metric<>("fortune.prefetch.refill-failures", refillFailures.sum()),
+                new Metric<>("fortune.prefetch.refill-latency-ms", lastRefillMillis.get()));
+    }
+
+}
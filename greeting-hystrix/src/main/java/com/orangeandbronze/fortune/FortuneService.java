@@ -3,10 +3,16 @@ package com.orangeandbronze.fortune;
 import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
+import rx.Observable;
+import rx.subscriptions.Subscriptions;
 
 @Service
 public class FortuneService {
@@ -17,18 +23,89 @@ public class FortuneService {
     @LoadBalanced
     private RestTemplate restTemplate;
 
-    public FortuneService(RestTemplate restTemplate) {
+    @Autowired
+    @LoadBalanced
+    private AsyncRestTemplate asyncRestTemplate;
+
+    // only present when fortune.prefetch.enabled=true
+    private FortunePrefetcher prefetcher;
+
+    // only present when fortune.collapser.enabled=true
+    private FortuneCollapser collapser;
+
+    public FortuneService(RestTemplate restTemplate, AsyncRestTemplate asyncRestTemplate,
+                          ObjectProvider<FortunePrefetcher> prefetcher,
+                          ObjectProvider<FortuneCollapser> collapser) {
         this.restTemplate = restTemplate;
+        this.asyncRestTemplate = asyncRestTemplate;
+        this.prefetcher = prefetcher.getIfAvailable();
+        this.collapser = collapser.getIfAvailable();
     }
 
 
     @HystrixCommand(fallbackMethod = "defaultFortune")
     public String getFortune() {
+        String prefetched = prefetched();
+        if (prefetched != null) {
+            return prefetched;
+        }
+        if (collapser != null) {
+            return collapser.getFortune().toBlocking().single();
+        }
         return restTemplate.getForObject("http://fortune-service", String.class);
     }
 
+    /*
+     * Returning an Observable makes this a HystrixObservableCommand, which
+     * runs with semaphore isolation on the calling thread. That thread only
+     * sends the request; the response arrives on an I/O thread. The
+     * semaphore bounds the greetings in flight, so it is raised in
+     * application.yml (the default is 10).
+     */
+    @HystrixCommand(commandKey = "getFortuneAsync", fallbackMethod = "defaultFortuneAsync")
+    public Observable<String> getFortuneAsync() {
+        String prefetched = prefetched();
+        if (prefetched != null) {
+            return Observable.just(prefetched);
+        }
+        if (collapser != null) {
+            return collapser.getFortune();
+        }
+        return Observable.create(subscriber -> {
+            ListenableFuture<ResponseEntity<String>> response =
+                    asyncRestTemplate.getForEntity("http://fortune-service", String.class);
+            // e.g. on a Hystrix timeout: abort the request rather than let it run on
+            subscriber.add(Subscriptions.create(() -> response.cancel(true)));
+            response.addCallback(
+                    entity -> {
+                        subscriber.onNext(entity.getBody());
+                        subscriber.onCompleted();
+                    },
+                    ex -> {
+                        if (!subscriber.isUnsubscribed()) {
+                            subscriber.onError(ex);
+                        }
+                    });
+        });
+    }
+
     public String defaultFortune() {
+        if (prefetcher != null) {
+            String recent = prefetcher.recentFortune();
+            if (recent != null) {
+                logger.debug("Recently fetched fortune used.");
+                return recent;
+            }
+        }
         logger.debug("Default fortune used.");
         return "This fortune is no good. Try another.";
     }
+
+    public Observable<String> defaultFortuneAsync() {
+        return Observable.just(defaultFortune());
+    }
+
+    private String prefetched() {
+        return prefetcher != null ? prefetcher.poll() : null;
+    }
 }
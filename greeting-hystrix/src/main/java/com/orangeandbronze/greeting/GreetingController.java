@@ -4,8 +4,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.ModelAndView;
 
 import com.orangeandbronze.fortune.FortuneService;
 
@@ -21,18 +22,30 @@ public class GreetingController {
     }
 
 
+    /*
+     * The request thread goes back to the container as soon as the
+     * fortune is requested; the view is rendered once it (or the
+     * Hystrix fallback) arrives.
+     */
     @RequestMapping("/")
-    public String getGreeting(Model model) {
-        logger.debug("Adding greeting");
-        model.addAttribute("msg", "Greetings!!!");
+    public DeferredResult<ModelAndView> getGreeting() {
+        DeferredResult<ModelAndView> result = new DeferredResult<>();
 
-        String fortune = fortuneService.getFortune();
+        fortuneService.getFortuneAsync().subscribe(
+                fortune -> {
+                    ModelAndView modelAndView = new ModelAndView("greeting");
+                    logger.debug("Adding greeting");
+                    modelAndView.addObject("msg", "Greetings!!!");
 
-        logger.debug("Adding fortune");
-        model.addAttribute("fortune", fortune);
+                    logger.debug("Adding fortune");
+                    modelAndView.addObject("fortune", fortune);
 
-        // resolves to the greeting view
-        return "greeting";
+                    // resolves to the greeting view
+                    result.setResult(modelAndView);
+                },
+                result::setErrorResult);
+
+        return result;
     }
 
 }
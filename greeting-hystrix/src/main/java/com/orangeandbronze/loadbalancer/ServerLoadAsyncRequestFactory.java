@@ -0,0 +1,80 @@
+package com.orangeandbronze.loadbalancer;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AsyncClientHttpRequest;
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+/**
+ * {@link ServerLoadRequestFactory} for the AsyncRestTemplate: the request
+ * ends when the response future completes, not when it is handed out.
+ */
+public class ServerLoadAsyncRequestFactory implements AsyncClientHttpRequestFactory {
+
+    private final AsyncClientHttpRequestFactory delegate;
+
+    public ServerLoadAsyncRequestFactory(AsyncClientHttpRequestFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public AsyncClientHttpRequest createAsyncRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        AsyncClientHttpRequest request = delegate.createAsyncRequest(uri, httpMethod);
+        return new AsyncClientHttpRequest() {
+
+            @Override
+            public ListenableFuture<ClientHttpResponse> executeAsync() throws IOException {
+                ServerLoad load = ServerLoad.of(uri.getHost(), uri.getPort());
+                long start = load.start();
+                ListenableFuture<ClientHttpResponse> future;
+                try {
+                    future = request.executeAsync();
+                } catch (IOException | RuntimeException ex) {
+                    load.fail(start);
+                    throw ex;
+                }
+                future.addCallback(new ListenableFutureCallback<ClientHttpResponse>() {
+
+                    @Override
+                    public void onSuccess(ClientHttpResponse response) {
+                        load.end(start);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable ex) {
+                        load.fail(start);
+                    }
+                });
+                return future;
+            }
+
+            @Override
+            public OutputStream getBody() throws IOException {
+                return request.getBody();
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return request.getHeaders();
+            }
+
+            @Override
+            public HttpMethod getMethod() {
+                return request.getMethod();
+            }
+
+            @Override
+            public URI getURI() {
+                return request.getURI();
+            }
+        };
+    }
+
+}
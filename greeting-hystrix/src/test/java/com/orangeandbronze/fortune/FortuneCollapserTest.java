@@ -0,0 +1,148 @@
+package com.orangeandbronze.fortune;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Collapsed fortune calls from more callers than FortuneService's Hystrix
+ * thread pool has threads. The blocking callers stand in for
+ * FortuneService.getFortune: commands in the FortuneService pool that wait
+ * for their batch, filling that pool, so the batch itself must run
+ * elsewhere. The other callers subscribe without holding a pool thread,
+ * like getFortuneAsync.
+ */
+public class FortuneCollapserTest {
+
+    // Hystrix's default thread pool size
+    private static final int POOL_THREADS = 10;
+    private static final int ASYNC_CALLERS = 20;
+    private static final long FORTUNE_DELAY = 100;
+    private static final String FORTUNE = "A stubbed fortune";
+
+    private HttpServer fortuneService;
+    private final AtomicInteger batchCalls = new AtomicInteger();
+    private FortuneCollapser collapser;
+
+    @Before
+    public void setUp() throws IOException {
+        fortuneService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        fortuneService.setExecutor(Executors.newCachedThreadPool());
+        fortuneService.createContext("/batch", exchange -> {
+            batchCalls.incrementAndGet();
+            try {
+                Thread.sleep(FORTUNE_DELAY);
+                int count = Integer.parseInt(exchange.getRequestURI().getQuery().replace("count=", ""));
+                StringBuilder lines = new StringBuilder();
+                for (int i = 0; i < count; i++) {
+                    lines.append('"').append(FORTUNE).append("\"\n");
+                }
+                byte[] body = lines.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        fortuneService.start();
+
+        // stands in for the load balancer
+        int port = fortuneService.getAddress().getPort();
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add((request, body, execution) ->
+                execution.execute(new HttpRequestWrapper(request) {
+
+                    @Override
+                    public URI getURI() {
+                        return UriComponentsBuilder.fromUri(request.getURI())
+                                .host("localhost").port(port).build(true).toUri();
+                    }
+                }, body));
+        collapser = new FortuneCollapser(new FortuneCollapserProperties(), restTemplate, new ObjectMapper());
+    }
+
+    @After
+    public void tearDown() {
+        fortuneService.stop(0);
+    }
+
+    @Test
+    public void collapsedCallsBeyondThePoolSizeDoNotFail() throws Exception {
+        int callers = POOL_THREADS + ASYNC_CALLERS;
+        ExecutorService clients = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> fortunes = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Callable<String> call = i < POOL_THREADS
+                    ? () -> new BlockingCaller().execute()
+                    : () -> collapser.getFortune().toBlocking().single();
+            fortunes.add(clients.submit(() -> {
+                start.await();
+                return call.call();
+            }));
+        }
+        start.countDown();
+        for (Future<String> fortune : fortunes) {
+            assertEquals(FORTUNE, fortune.get(30, TimeUnit.SECONDS));
+        }
+        clients.shutdown();
+
+        assertTrue(batchCalls.get() + " batches for " + callers + " calls", batchCalls.get() < callers);
+        assertEquals((long) callers, metric("fortune.collapser.requests"));
+        assertEquals((long) batchCalls.get(), metric("fortune.collapser.batches"));
+    }
+
+    private Object metric(String name) {
+        for (Metric<?> metric : collapser.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue();
+            }
+        }
+        throw new AssertionError("No metric " + name);
+    }
+
+    /**
+     * What javanica makes of FortuneService.getFortune with the collapser
+     * on: a command in the FortuneService pool, blocked on its batch.
+     */
+    private class BlockingCaller extends HystrixCommand<String> {
+
+        BlockingCaller() {
+            super(HystrixCommandGroupKey.Factory.asKey("FortuneService"));
+        }
+
+        @Override
+        protected String run() {
+            return collapser.getFortune().toBlocking().single();
+        }
+    }
+
+}
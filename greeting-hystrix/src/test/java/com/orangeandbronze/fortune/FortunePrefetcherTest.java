@@ -0,0 +1,197 @@
+package com.orangeandbronze.fortune;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FortunePrefetcherTest {
+
+    private FortunePrefetchProperties properties;
+    private StubAsyncRestTemplate template;
+    private FortunePrefetcher prefetcher;
+
+    @Before
+    public void setUp() {
+        properties = new FortunePrefetchProperties();
+        properties.setCapacity(4);
+        properties.setLowWaterMark(1);
+        properties.setBackoff(100);
+        properties.setMaxBackoff(250);
+        template = new StubAsyncRestTemplate();
+        prefetcher = new FortunePrefetcher(properties, template, new ObjectMapper());
+    }
+
+    @Test
+    public void emptyBufferMissesAndStartsARefillForTheWholeCapacity() {
+        assertNull(prefetcher.poll());
+
+        assertEquals(1, template.requests.size());
+        assertEquals("http://fortune-service/batch?count=4", template.requests.get(0));
+        assertEquals(1L, metric("fortune.prefetch.misses"));
+    }
+
+    @Test
+    public void onlyOneRefillIsInFlight() {
+        prefetcher.poll();
+        prefetcher.poll();
+        prefetcher.poll();
+
+        assertEquals(1, template.requests.size());
+    }
+
+    @Test
+    public void servesPrefetchedFortunesAndRefillsOnlyAtTheLowWaterMark() {
+        prefetcher.poll();
+        template.succeed("\"a\"\n\"b\"\n\"c\"\n\"d\"\n");
+
+        assertNotNull(prefetcher.poll());
+        assertNotNull(prefetcher.poll());
+        // three left, then two: above the low-water mark of one
+        assertEquals(1, template.requests.size());
+
+        assertNotNull(prefetcher.poll());
+        // one left
+        assertEquals(2, template.requests.size());
+        assertEquals("http://fortune-service/batch?count=3", template.requests.get(1));
+
+        assertEquals(3L, metric("fortune.prefetch.hits"));
+        assertEquals(1L, metric("fortune.prefetch.depth"));
+        assertEquals(1L, metric("fortune.prefetch.refills"));
+    }
+
+    @Test
+    public void skipsMalformedLines() {
+        prefetcher.poll();
+        template.succeed("\"a\"\nnot json\n\n\"b\"\n");
+
+        assertEquals(2L, metric("fortune.prefetch.depth"));
+    }
+
+    @Test
+    public void keepsTheLastBatchForTheFallback() {
+        assertNull(prefetcher.recentFortune());
+
+        prefetcher.poll();
+        template.succeed("\"a\"\n");
+
+        assertEquals("a", prefetcher.recentFortune());
+        prefetcher.poll();
+        // still there once the buffer is drained
+        assertEquals("a", prefetcher.recentFortune());
+    }
+
+    @Test
+    public void backsOffAfterAFailedRefill() throws Exception {
+        prefetcher.poll();
+        template.fail();
+
+        prefetcher.poll();
+        assertEquals(1, template.requests.size());
+        assertEquals(1L, metric("fortune.prefetch.refill-failures"));
+
+        Thread.sleep(150);
+        prefetcher.poll();
+        assertEquals(2, template.requests.size());
+    }
+
+    @Test
+    public void backoffDoublesUpToTheMaximumAndResetsOnSuccess() throws Exception {
+        prefetcher.poll();
+        template.fail();
+        Thread.sleep(150);
+
+        prefetcher.poll();
+        template.fail();
+        // now 200 ms
+        Thread.sleep(150);
+        prefetcher.poll();
+        assertEquals(2, template.requests.size());
+        Thread.sleep(100);
+        prefetcher.poll();
+        assertEquals(3, template.requests.size());
+
+        template.fail();
+        // 400 ms, capped at 250 ms
+        Thread.sleep(300);
+        prefetcher.poll();
+        assertEquals(4, template.requests.size());
+
+        template.succeed("\"a\"\n");
+        prefetcher.poll();
+        template.fail();
+        // back to 100 ms
+        Thread.sleep(150);
+        prefetcher.poll();
+        assertEquals(6, template.requests.size());
+    }
+
+    @Test
+    public void backsOffWhenTheRequestCannotBeSent() throws Exception {
+        template.refuse = true;
+        prefetcher.poll();
+        prefetcher.poll();
+
+        assertEquals(1, template.requests.size());
+        assertEquals(1L, metric("fortune.prefetch.refill-failures"));
+
+        template.refuse = false;
+        Thread.sleep(150);
+        prefetcher.poll();
+        assertEquals(2, template.requests.size());
+    }
+
+    private Object metric(String name) {
+        for (Metric<?> metric : prefetcher.metrics()) {
+            if (metric.getName().equals(name)) {
+                Number value = metric.getValue();
+                return value instanceof Integer ? Long.valueOf(value.longValue()) : value;
+            }
+        }
+        throw new AssertionError("No metric " + name);
+    }
+
+    /**
+     * Records the requests and leaves them pending until the test completes
+     * the latest one.
+     */
+    private static class StubAsyncRestTemplate extends AsyncRestTemplate {
+
+        final List<String> requests = new ArrayList<>();
+        boolean refuse;
+        private SettableListenableFuture<ResponseEntity<String>> pending;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> ListenableFuture<ResponseEntity<T>> getForEntity(String url, Class<T> responseType,
+                                                                    Object... uriVariables) {
+            requests.add(url.replace("{count}", String.valueOf(uriVariables[0])));
+            if (refuse) {
+                throw new IllegalStateException("No instances available for fortune-service");
+            }
+            pending = new SettableListenableFuture<>();
+            return (ListenableFuture<ResponseEntity<T>>) (ListenableFuture<?>) pending;
+        }
+
+        void succeed(String body) {
+            pending.set(new ResponseEntity<>(body, HttpStatus.OK));
+        }
+
+        void fail() {
+            pending.setException(new ResourceAccessException("Connection refused"));
+        }
+
+    }
+
+}
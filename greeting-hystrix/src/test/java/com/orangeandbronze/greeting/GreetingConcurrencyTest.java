@@ -0,0 +1,161 @@
+package com.orangeandbronze.greeting;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.View;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load test of the non-blocking greeting path: ten times as many
+ * concurrent greetings as request threads, against a fortune-service stub
+ * that takes a while to answer. Every greeting should get the stub's
+ * fortune rather than the fallback, with the calls to the stub
+ * overlapping well beyond the request thread count. The greeting view is
+ * rendered as just the fortune, leaving the JSP out of it. The Hystrix
+ * timeout is lengthened so a slow build machine is not mistaken for a
+ * rejection; semaphore rejections are immediate either way.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.max-threads=" + GreetingConcurrencyTest.REQUEST_THREADS,
+        "hystrix.command.getFortuneAsync.execution.isolation.thread.timeoutInMilliseconds=30000",
+        "eureka.client.enabled=false"})
+public class GreetingConcurrencyTest {
+
+    static final int REQUEST_THREADS = 10;
+    private static final int GREETINGS = 10 * REQUEST_THREADS;
+    private static final long FORTUNE_DELAY = 200;
+    private static final String FORTUNE = "A stubbed fortune";
+
+    private static HttpServer fortuneService;
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @LocalServerPort
+    private int port;
+
+    @TestConfiguration
+    static class FortuneView {
+
+        @Bean
+        View greeting() {
+            return new View() {
+
+                @Override
+                public String getContentType() {
+                    return "text/html;charset=UTF-8";
+                }
+
+                @Override
+                public void render(Map<String, ?> model, HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+                    response.setContentType(getContentType());
+                    response.getWriter().write(String.valueOf(model.get("fortune")));
+                }
+            };
+        }
+    }
+
+    @BeforeClass
+    public static void startFortuneService() throws IOException {
+        fortuneService = HttpServer.create(new InetSocketAddress("localhost", 0), GREETINGS);
+        fortuneService.setExecutor(Executors.newCachedThreadPool());
+        fortuneService.createContext("/", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(FORTUNE_DELAY);
+                byte[] body = FORTUNE.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/plain;charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        fortuneService.start();
+        // read by Ribbon instead of Eureka, and by the bootstrap context
+        System.setProperty("fortune-service.ribbon.listOfServers",
+                "localhost:" + fortuneService.getAddress().getPort());
+        System.setProperty("spring.cloud.config.enabled", "false");
+    }
+
+    @AfterClass
+    public static void stopFortuneService() {
+        fortuneService.stop(0);
+        System.clearProperty("fortune-service.ribbon.listOfServers");
+        System.clearProperty("spring.cloud.config.enabled");
+    }
+
+    @Test
+    public void greetingsBeyondTheRequestThreadsDoNotFallBack() throws Exception {
+        // the Ribbon client is created on first use, which counts against the Hystrix timeout
+        greeting();
+        maxInFlight.set(0);
+
+        ExecutorService clients = Executors.newFixedThreadPool(GREETINGS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> greetings = new ArrayList<>();
+        for (int i = 0; i < GREETINGS; i++) {
+            greetings.add(clients.submit(() -> {
+                start.await();
+                return greeting();
+            }));
+        }
+        start.countDown();
+        int served = 0;
+        for (Future<String> greeting : greetings) {
+            if (greeting.get(30, TimeUnit.SECONDS).equals(FORTUNE)) {
+                served++;
+            }
+        }
+        clients.shutdown();
+
+        assertEquals("greetings served the fortune, not the fallback", GREETINGS, served);
+        assertTrue("at most " + maxInFlight.get() + " fortune calls overlapped",
+                maxInFlight.get() > REQUEST_THREADS);
+    }
+
+    private String greeting() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/").openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.orangeandbronze.loadbalancer;
+
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AsyncClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockAsyncClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * The RestTemplate and AsyncRestTemplate wiring of {@link ServerLoad}; the
+ * rule itself is tested in greeting-ribbon.
+ */
+public class ServerLoadRequestFactoryTest {
+
+    /*
+     * ServerLoad is a static registry, so every test uses a host of its own.
+     */
+    private final String host = "factory-" + UUID.randomUUID();
+    private final URI uri = URI.create("http://" + host + ":8080/");
+    private final ServerLoad load = ServerLoad.of(host, 8080);
+
+    @Test
+    public void measuresTheRequestOnTheChosenInstance() throws IOException {
+        ServerLoadRequestFactory factory = new ServerLoadRequestFactory((uri, method) -> new MockClientHttpRequest() {
+
+            @Override
+            protected ClientHttpResponse executeInternal() throws IOException {
+                assertEquals(1, load.getInFlight());
+                sleep(20);
+                return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+            }
+        });
+
+        ClientHttpRequest request = factory.createRequest(uri, HttpMethod.GET);
+        assertEquals(0, load.getInFlight());
+        assertEquals(HttpStatus.OK, request.execute().getStatusCode());
+
+        assertEquals(0, load.getInFlight());
+        assertTrue(load.getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void failedRequestCountsAsSlow() throws IOException {
+        ServerLoadRequestFactory factory = new ServerLoadRequestFactory((uri, method) -> new MockClientHttpRequest() {
+
+            @Override
+            protected ClientHttpResponse executeInternal() throws IOException {
+                throw new ConnectException("Connection refused");
+            }
+        });
+
+        try {
+            factory.createRequest(uri, HttpMethod.GET).execute();
+            fail("Expected the failure to be rethrown");
+        } catch (ConnectException ex) {
+            assertEquals("Connection refused", ex.getMessage());
+        }
+
+        assertEquals(0, load.getInFlight());
+        assertTrue(load.getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    public void asyncRequestIsInFlightUntilItsFutureCompletes() throws Exception {
+        SettableListenableFuture<ClientHttpResponse> response = new SettableListenableFuture<>();
+        ServerLoadAsyncRequestFactory factory = new ServerLoadAsyncRequestFactory((uri, method) -> pending(response));
+
+        ListenableFuture<ClientHttpResponse> future = factory.createAsyncRequest(uri, HttpMethod.GET).executeAsync();
+        sleep(20);
+        assertEquals(1, load.getInFlight());
+        assertEquals(0.0, load.getLatencyNanos(), 0);
+
+        response.set(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        assertEquals(HttpStatus.OK, future.get().getStatusCode());
+        assertEquals(0, load.getInFlight());
+        assertTrue(load.getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void failedAsyncRequestCountsAsSlow() throws Exception {
+        SettableListenableFuture<ClientHttpResponse> response = new SettableListenableFuture<>();
+        ServerLoadAsyncRequestFactory factory = new ServerLoadAsyncRequestFactory((uri, method) -> pending(response));
+
+        factory.createAsyncRequest(uri, HttpMethod.GET).executeAsync();
+        response.setException(new ConnectException("Connection refused"));
+
+        assertEquals(0, load.getInFlight());
+        assertTrue(load.getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    /**
+     * A request whose response arrives when the given future is completed.
+     */
+    private static AsyncClientHttpRequest pending(SettableListenableFuture<ClientHttpResponse> response) {
+        return new MockAsyncClientHttpRequest() {
+
+            @Override
+            public ListenableFuture<ClientHttpResponse> executeAsync() {
+                return response;
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -1,10 +1,17 @@
 package com.orangeandbronze;
 
+import com.orangeandbronze.hedge.HedgingInterceptor;
+import com.orangeandbronze.loadbalancer.ServerLoadRequestFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
@@ -15,12 +22,30 @@ public class GreetingRibbonApplication {
         SpringApplication.run(GreetingRibbonApplication.class, args);
     }
 
+    /*
+     * The shared pooled factory, wrapped to feed PeakEwmaRule the load of
+     * each instance. Primary, so it is the one the RestTemplate and
+     * everything else sending requests through the pool gets.
+     */
+    @Primary
+    @Bean
+    ClientHttpRequestFactory serverLoadRequestFactory(CloseableHttpClient httpClient) {
+        return new ServerLoadRequestFactory(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
     // TODO 01: Define a RestTemplate bean
     // TODO 02: Annotate it as @LoadBalanced
     @Bean
     @LoadBalanced
-    RestTemplate restTemplate() {
-        return new RestTemplate();
+    RestTemplate restTemplate(ClientHttpRequestFactory requestFactory,
+                              ObjectProvider<HedgingInterceptor> hedgingInterceptor) {
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        // added here so it runs ahead of the load balancer interceptor
+        HedgingInterceptor hedging = hedgingInterceptor.getIfAvailable();
+        if (hedging != null) {
+            restTemplate.getInterceptors().add(hedging);
+        }
+        return restTemplate;
     }
 
 }
@@ -0,0 +1,56 @@
+package com.orangeandbronze.hedge;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Hedges GET and HEAD requests made through a {@code @LoadBalanced}
+ * RestTemplate. It must come before Spring Cloud's load balancer
+ * interceptor: it picks the instances itself and sends the requests
+ * straight through the request factory, so the rest of the chain is only
+ * used for requests it does not hedge.
+ */
+@Component
+@ConditionalOnProperty(prefix = "hedge", name = "enabled", havingValue = "true")
+public class HedgingInterceptor implements ClientHttpRequestInterceptor {
+
+    private final Hedger hedger;
+    private final LoadBalancerClient loadBalancer;
+    private final ClientHttpRequestFactory requestFactory;
+
+    @Autowired
+    public HedgingInterceptor(Hedger hedger, LoadBalancerClient loadBalancer,
+            ClientHttpRequestFactory requestFactory) {
+        this.hedger = hedger;
+        this.loadBalancer = loadBalancer;
+        this.requestFactory = requestFactory;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        HttpMethod method = request.getMethod();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            return execution.execute(request, body);
+        }
+        URI uri = request.getURI();
+        return hedger.execute(uri.getHost(), instance -> {
+            ClientHttpRequest attempt = requestFactory.createRequest(loadBalancer.reconstructURI(instance, uri), method);
+            attempt.getHeaders().putAll(request.getHeaders());
+            return attempt.execute();
+        }, ClientHttpResponse::close);
+    }
+
+}
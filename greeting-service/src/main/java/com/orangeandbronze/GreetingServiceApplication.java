@@ -3,6 +3,9 @@ package com.orangeandbronze;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
 @EnableDiscoveryClient
@@ -11,5 +14,10 @@ public class GreetingServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(GreetingServiceApplication.class, args);
     }
+
+    @Bean
+    RestTemplate restTemplate(ClientHttpRequestFactory requestFactory) {
+        return new RestTemplate(requestFactory);
+    }
  
 }
@@ -1,7 +1,7 @@
 package com.orangeandbronze.greeting;
 
 import com.netflix.appinfo.InstanceInfo;
-import com.netflix.discovery.EurekaClient;
+import com.orangeandbronze.discovery.InstanceCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,13 +14,13 @@ import org.springframework.web.client.RestTemplate;
 public class GreetingController {
 
     private Logger logger = LoggerFactory.getLogger(getClass());
-    private EurekaClient discoveryClient;
+    private InstanceCache instanceCache;
     private RestTemplate restTemplate;
 
     @Autowired
-    public GreetingController(EurekaClient discoveryClient) {
-        this.discoveryClient = discoveryClient;
-        this.restTemplate = new RestTemplate();
+    public GreetingController(InstanceCache instanceCache, RestTemplate restTemplate) {
+        this.instanceCache = instanceCache;
+        this.restTemplate = restTemplate;
     }
 
 
@@ -40,12 +40,7 @@ public class GreetingController {
 
 
     private String fetchFortuneServiceUrl() {
-        InstanceInfo instance = discoveryClient.getNextServerFromEureka("FORTUNE-SERVICE", false);
-        logger.debug("instanceID: {}", instance.getId());
-
-        String fortuneServiceUrl = instance.getHomePageUrl();
-        logger.debug("fortune service homePageUrl: {}", fortuneServiceUrl);
-
-        return fortuneServiceUrl;
+        InstanceInfo instance = instanceCache.nextInstance("FORTUNE-SERVICE");
+        return instance.getHomePageUrl();
     }
 }
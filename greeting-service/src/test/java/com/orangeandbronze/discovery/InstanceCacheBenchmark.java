@@ -0,0 +1,167 @@
+package com.orangeandbronze.discovery;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.discovery.DiscoveryClient;
+import com.netflix.discovery.EurekaClient;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.autoconfigure.RefreshAutoConfiguration;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.cloud.netflix.eureka.EurekaClientConfigBean;
+import org.springframework.cloud.netflix.eureka.EurekaInstanceConfigBean;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Lazy;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>One instance lookup for FORTUNE-SERVICE, five instances up: through
+ * {@link InstanceCache}, against
+ * {@link EurekaClient#getNextServerFromEureka(String, boolean)} on a bare
+ * {@link DiscoveryClient}, and on the refresh-scoped, lazy proxy that the
+ * applications are actually injected with.
+ * </p><p>
+ * The client neither registers nor fetches; the registry is filled in
+ * directly, so nothing leaves the JVM. Not run by the build:
+ * </p>
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.discovery.InstanceCacheBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class InstanceCacheBenchmark {
+
+    private static final String SERVICE_ID = "FORTUNE-SERVICE";
+
+    private DiscoveryClient discoveryClient;
+    private AnnotationConfigApplicationContext context;
+    private EurekaClient refreshScopedClient;
+    private InstanceCache instanceCache;
+
+    @Setup
+    public void setUp() throws Exception {
+        // no logback.xml on the test classpath, so everything logs at DEBUG
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        EurekaClientConfigBean clientConfig = new EurekaClientConfigBean();
+        clientConfig.setRegisterWithEureka(false);
+        clientConfig.setFetchRegistry(false);
+        EurekaInstanceConfigBean instanceConfig = new EurekaInstanceConfigBean(
+                new InetUtils(new InetUtilsProperties()));
+        instanceConfig.setAppname("greeting-service");
+        InstanceInfo self = InstanceInfo.Builder.newBuilder()
+                .setAppName("GREETING-SERVICE")
+                .setHostName("localhost")
+                .build();
+        discoveryClient = new DiscoveryClient(new ApplicationInfoManager(instanceConfig, self), clientConfig);
+
+        Application application = new Application(SERVICE_ID);
+        for (int i = 0; i < 5; i++) {
+            application.addInstance(InstanceInfo.Builder.newBuilder()
+                    .setInstanceId("fortune-" + i)
+                    .setAppName(SERVICE_ID)
+                    .setHostName("fortune-" + i)
+                    .setVIPAddress("fortune-service")
+                    .setStatus(InstanceStatus.UP)
+                    .build());
+        }
+        Applications applications = new Applications();
+        applications.addApplication(application);
+        applications.shuffleInstances(true);
+        registry(discoveryClient).set(applications);
+
+        context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerSingleton("discoveryClient", discoveryClient);
+        context.register(RefreshScopedClient.class);
+        context.refresh();
+        refreshScopedClient = context.getBean("eurekaClient", EurekaClient.class);
+
+        instanceCache = new InstanceCache(refreshScopedClient);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReference<Applications> registry(DiscoveryClient discoveryClient) throws Exception {
+        Field field = DiscoveryClient.class.getDeclaredField("localRegionApps");
+        field.setAccessible(true);
+        return (AtomicReference<Applications>) field.get(discoveryClient);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        discoveryClient.shutdown();
+    }
+
+    @Benchmark
+    public InstanceInfo discoveryClient() {
+        return discoveryClient.getNextServerFromEureka(SERVICE_ID, false);
+    }
+
+    @Benchmark
+    public InstanceInfo refreshScopedDiscoveryClient() {
+        return refreshScopedClient.getNextServerFromEureka(SERVICE_ID, false);
+    }
+
+    @Benchmark
+    public InstanceInfo instanceCache() {
+        return instanceCache.nextInstance(SERVICE_ID);
+    }
+
+    /**
+     * Declares the client the way Spring Cloud's
+     * {@code EurekaClientAutoConfiguration} does once spring-cloud-config
+     * brings in the refresh scope.
+     */
+    @Configuration
+    @Import(RefreshAutoConfiguration.class)
+    static class RefreshScopedClient {
+
+        @Bean
+        @RefreshScope
+        @Lazy
+        public EurekaClient eurekaClient(DiscoveryClient discoveryClient) {
+            return discoveryClient;
+        }
+
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InstanceCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -3,10 +3,20 @@ package com.orangeandbronze.greeting;
 import org.springframework.cloud.netflix.feign.FeignClient;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 
-@FeignClient("fortune-service")
+import java.util.List;
+
+@FeignClient(name = "fortune-service", configuration = FortuneServiceClientConfiguration.class)
 public interface FortuneServiceClient {
 
     @RequestMapping(method = RequestMethod.GET, value = "/")
     String getFortune();
+
+    /*
+     * fortune-service streams the batch as newline-delimited JSON,
+     * see FortuneServiceClientConfiguration.NdjsonDecoder.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/batch")
+    List<String> getFortunes(@RequestParam("count") int count);
 }
@@ -0,0 +1,92 @@
+package com.orangeandbronze.registry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads what a {@link BinaryWriter} wrote.
+ * Every method throws {@link IllegalArgumentException} on malformed input.
+ */
+class BinaryReader {
+
+    private static final InstanceRecord.Status[] STATUSES = InstanceRecord.Status.values();
+
+    private final byte[] bytes;
+    private final List<String> seen = new ArrayList<>();
+    private int position;
+
+    BinaryReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    int read() {
+        if (position >= bytes.length) {
+            throw new IllegalArgumentException("Truncated registry data");
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = read();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed number in registry data");
+    }
+
+    long readLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | read();
+        }
+        return value;
+    }
+
+    String readString() {
+        int index = (int) readVarLong();
+        if (index > 0) {
+            if (index > seen.size()) {
+                throw new IllegalArgumentException("Unknown string " + index);
+            }
+            return seen.get(index - 1);
+        }
+        int length = (int) readVarLong();
+        if (length < 0 || length > bytes.length - position) {
+            throw new IllegalArgumentException("Truncated registry data");
+        }
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        seen.add(value);
+        return value;
+    }
+
+    InstanceRecord readKey() {
+        String app = readString();
+        return InstanceRecord.removed(app, readString());
+    }
+
+    InstanceRecord readRecord() {
+        String app = readString();
+        String instanceId = readString();
+        String host = readString();
+        int port = (int) readVarLong();
+        int status = read();
+        if (status >= STATUSES.length) {
+            throw new IllegalArgumentException("Unknown status " + status);
+        }
+        int entries = (int) readVarLong();
+        Map<String, String> metadata = new LinkedHashMap<>();
+        for (int e = 0; e < entries; e++) {
+            metadata.put(readString(), readString());
+        }
+        return new InstanceRecord(app, instanceId, host, port, STATUSES[status], metadata);
+    }
+
+}
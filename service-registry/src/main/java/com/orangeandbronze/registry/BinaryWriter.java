@@ -0,0 +1,65 @@
+package com.orangeandbronze.registry;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Varints and a string table, as described on {@link FeedCodec}; shared by
+ * the feed and {@link ReplicationCodec}. Read back with a
+ * {@link BinaryReader}.
+ */
+class BinaryWriter extends ByteArrayOutputStream {
+
+    private final Map<String, Integer> seen = new HashMap<>();
+
+    BinaryWriter(int size) {
+        super(size);
+    }
+
+    void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        write((int) value);
+    }
+
+    void writeLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            write((int) (value >>> shift));
+        }
+    }
+
+    void writeString(String value) {
+        Integer index = seen.get(value);
+        if (index != null) {
+            writeVarLong(index);
+            return;
+        }
+        seen.put(value, seen.size() + 1);
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        write(0);
+        writeVarLong(utf8.length);
+        write(utf8, 0, utf8.length);
+    }
+
+    void writeKey(InstanceRecord record) {
+        writeString(record.getApp());
+        writeString(record.getInstanceId());
+    }
+
+    void writeRecord(InstanceRecord record) {
+        writeKey(record);
+        writeString(record.getHost());
+        writeVarLong(record.getPort());
+        write(record.getStatus().ordinal());
+        writeVarLong(record.getMetadata().size());
+        for (Map.Entry<String, String> entry : record.getMetadata().entrySet()) {
+            writeString(entry.getKey());
+            writeString(entry.getValue());
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.orangeandbronze.registry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>The last {@code capacity} registry changes, numbered from 1 up, in a
+ * ring. The numbers start over whenever the registry does, so they come
+ * with a random epoch that tells one run's apart from another's. Clients
+ * waiting for a change past their version are handed back when one is
+ * appended, for the caller to run.
+ * </p><p>
+ * Thread safe. {@link ShardedRegistry} appends while it holds the lock of
+ * the instance's shard, so two changes to one instance are numbered in
+ * the order they were made, and runs the waiters once it has let go.
+ * </p>
+ */
+class ChangeLog {
+
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final Feed.Change[] ring;
+    // guarded by this
+    private long version;
+    private final Set<Runnable> waiters = new LinkedHashSet<>();
+
+    ChangeLog(int capacity) {
+        this.ring = new Feed.Change[capacity];
+    }
+
+    /**
+     * @return the waiters this change is for
+     */
+    synchronized List<Runnable> append(boolean removed, InstanceRecord record) {
+        version++;
+        ring[(int) (version % ring.length)] = new Feed.Change(removed, record);
+        if (waiters.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Runnable> woken = new ArrayList<>(waiters);
+        waiters.clear();
+        return woken;
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * The changes after {@code since}, one per instance, or null when some
+     * of them are no longer kept or {@code since} is not a version of this
+     * log.
+     */
+    Feed changesSince(long since) {
+        Map<String, Feed.Change> compacted = new LinkedHashMap<>();
+        long current;
+        synchronized (this) {
+            current = version;
+            if (since == current) {
+                return new Feed(epoch, current, false, new ArrayList<>());
+            }
+            if (since < 0 || since > current || current - since > ring.length) {
+                return null;
+            }
+            for (long v = since + 1; v <= current; v++) {
+                Feed.Change change = ring[(int) (v % ring.length)];
+                String key = change.getRecord().key();
+                // keep the latest, in the order of the latest
+                compacted.remove(key);
+                compacted.put(key, change);
+            }
+        }
+        return new Feed(epoch, current, false, new ArrayList<>(compacted.values()));
+    }
+
+    /**
+     * Runs the waiter once there is a change after {@code since}: now, if
+     * there is one already.
+     */
+    void await(long since, Runnable waiter) {
+        synchronized (this) {
+            if (version <= since) {
+                waiters.add(waiter);
+                return;
+            }
+        }
+        waiter.run();
+    }
+
+    synchronized void cancel(Runnable waiter) {
+        waiters.remove(waiter);
+    }
+
+    synchronized int waiting() {
+        return waiters.size();
+    }
+
+}
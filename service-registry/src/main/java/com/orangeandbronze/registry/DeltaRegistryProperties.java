@@ -0,0 +1,90 @@
+package com.orangeandbronze.registry;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "registry.delta")
+public class DeltaRegistryProperties {
+
+    /**
+     * Serve the registry as a versioned change feed on {@code /registry},
+     * next to Eureka's own API.
+     */
+    private boolean enabled;
+
+    /**
+     * Number of lock stripes instances are spread over (a power of two).
+     */
+    private int shards = 64;
+
+    /**
+     * Changes kept for clients to catch up from. A client further behind
+     * gets the whole registry instead.
+     */
+    private int changeLogCapacity = 65536;
+
+    /**
+     * How long (in milliseconds) an instance stays registered without a
+     * heartbeat, unless it registered with a lease of its own.
+     */
+    private long leaseDuration = 90000;
+
+    /**
+     * How often (in milliseconds) expired leases are looked for.
+     */
+    private long evictionInterval = 30000;
+
+    /**
+     * Longest time (in milliseconds) a client's request for changes is held
+     * open when there are none.
+     */
+    private long maxWait = 30000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    public int getChangeLogCapacity() {
+        return changeLogCapacity;
+    }
+
+    public void setChangeLogCapacity(int changeLogCapacity) {
+        this.changeLogCapacity = changeLogCapacity;
+    }
+
+    public long getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public void setLeaseDuration(long leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    public long getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public void setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.orangeandbronze.registry;
+
+import com.netflix.appinfo.InstanceInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceCanceledEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRegisteredEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRenewedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mirrors instances registered with Eureka into the {@link ShardedRegistry},
+ * so clients of the change feed see the services that still use Eureka.
+ * Eureka evicts without an event; the mirrored lease, renewed with each
+ * Eureka heartbeat, expires on its own. What Eureka peers replicate to
+ * each other is left out: the node a client talked to passes it on through
+ * {@link PeerReplicator}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "registry.delta", name = "enabled", havingValue = "true")
+public class EurekaRegistryBridge {
+
+    private final ShardedRegistry registry;
+
+    @Autowired
+    public EurekaRegistryBridge(ShardedRegistry registry) {
+        this.registry = registry;
+    }
+
+    @EventListener
+    public void registered(EurekaInstanceRegisteredEvent event) {
+        if (event.isReplication()) {
+            return;
+        }
+        register(event.getInstanceInfo(), event.getLeaseDuration());
+    }
+
+    @EventListener
+    public void renewed(EurekaInstanceRenewedEvent event) {
+        if (event.isReplication()) {
+            return;
+        }
+        if (!registry.renew(event.getAppName(), event.getServerId()) && event.getInstanceInfo() != null) {
+            register(event.getInstanceInfo(), 0);
+        }
+    }
+
+    @EventListener
+    public void canceled(EurekaInstanceCanceledEvent event) {
+        if (event.isReplication()) {
+            return;
+        }
+        registry.cancel(event.getAppName(), event.getServerId());
+    }
+
+    private void register(InstanceInfo info, int leaseSeconds) {
+        if (info == null) {
+            return;
+        }
+        int leaseDuration = leaseSeconds > 0 ? leaseSeconds
+                : info.getLeaseInfo() != null ? info.getLeaseInfo().getDurationInSecs() : 0;
+        registry.register(new InstanceRecord(info.getAppName(), info.getInstanceId(), info.getHostName(),
+                info.getPort(), status(info.getStatus()), info.getMetadata()), leaseDuration * 1000L);
+    }
+
+    private static InstanceRecord.Status status(InstanceInfo.InstanceStatus status) {
+        if (status == null) {
+            return InstanceRecord.Status.UNKNOWN;
+        }
+        try {
+            return InstanceRecord.Status.valueOf(status.name());
+        } catch (IllegalArgumentException e) {
+            return InstanceRecord.Status.UNKNOWN;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.orangeandbronze.registry;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>What a client needs to bring its copy of the registry to
+ * {@link #getVersion()}: either the changes since the version it has, or,
+ * when it is too far behind or its version is from another
+ * {@link #getEpoch() epoch}, every instance ({@link #isSnapshot()}).
+ * </p><p>
+ * Changes are compacted: an instance that changed several times appears
+ * once, as it is now.
+ * </p>
+ */
+public final class Feed {
+
+    public static final class Change {
+
+        private final boolean removed;
+        private final InstanceRecord record;
+
+        Change(boolean removed, InstanceRecord record) {
+            this.removed = removed;
+            this.record = record;
+        }
+
+        public boolean isRemoved() {
+            return removed;
+        }
+
+        public InstanceRecord getRecord() {
+            return record;
+        }
+    }
+
+    private final long epoch;
+    private final long version;
+    private final boolean snapshot;
+    private final List<Change> changes;
+
+    Feed(long epoch, long version, boolean snapshot, List<Change> changes) {
+        this.epoch = epoch;
+        this.version = version;
+        this.snapshot = snapshot;
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * Identifies the run of the registry the version belongs to: versions
+     * start over from 1 when the registry restarts.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return !snapshot && changes.isEmpty();
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.orangeandbronze.registry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Binary form of a {@link Feed}, served as {@value #MEDIA_TYPE}.
+ * </p><pre>
+ * feed    = 'R' 'F' format flags epoch:long version:varlong count:varint change*
+ * change  = op(0 put, 1 remove) app:str id:str [put: host:str port:varint status metadata]
+ * metadata = count:varint (key:str value:str)*
+ * str     = 0 length:varint utf8   (first time)
+ *         | index:varint           (the index-th string seen before, from 1)
+ * </pre><p>
+ * Application names, hosts and metadata keys repeat across instances, so
+ * after their first use each costs a byte or two.
+ * </p>
+ */
+public final class FeedCodec {
+
+    public static final String MEDIA_TYPE = "application/x-registry-feed";
+
+    private static final int MAGIC_R = 'R';
+    private static final int MAGIC_F = 'F';
+    private static final int FORMAT = 2;
+    private static final int SNAPSHOT = 1;
+    private static final int PUT = 0;
+    private static final int REMOVE = 1;
+
+    private FeedCodec() {
+    }
+
+    public static byte[] encode(Feed feed) {
+        BinaryWriter out = new BinaryWriter(64 + feed.getChanges().size() * 32);
+        out.write(MAGIC_R);
+        out.write(MAGIC_F);
+        out.write(FORMAT);
+        out.write(feed.isSnapshot() ? SNAPSHOT : 0);
+        out.writeLong(feed.getEpoch());
+        out.writeVarLong(feed.getVersion());
+        out.writeVarLong(feed.getChanges().size());
+        for (Feed.Change change : feed.getChanges()) {
+            out.write(change.isRemoved() ? REMOVE : PUT);
+            if (change.isRemoved()) {
+                out.writeKey(change.getRecord());
+            } else {
+                out.writeRecord(change.getRecord());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a feed
+     */
+    public static Feed decode(byte[] bytes) {
+        BinaryReader in = new BinaryReader(bytes);
+        if (in.read() != MAGIC_R || in.read() != MAGIC_F || in.read() != FORMAT) {
+            throw new IllegalArgumentException("Not a registry feed");
+        }
+        boolean snapshot = (in.read() & SNAPSHOT) != 0;
+        long epoch = in.readLong();
+        long version = in.readVarLong();
+        int count = (int) in.readVarLong();
+        List<Feed.Change> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean removed = in.read() == REMOVE;
+            changes.add(new Feed.Change(removed, removed ? in.readKey() : in.readRecord()));
+        }
+        return new Feed(epoch, version, snapshot, changes);
+    }
+
+}
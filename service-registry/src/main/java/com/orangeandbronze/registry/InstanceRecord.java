@@ -0,0 +1,98 @@
+package com.orangeandbronze.registry;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * What the registry knows of one instance of an application. Immutable;
+ * a change is a new record.
+ */
+public final class InstanceRecord {
+
+    public enum Status {
+        UP, DOWN, STARTING, OUT_OF_SERVICE, UNKNOWN
+    }
+
+    private final String app;
+    private final String instanceId;
+    private final String host;
+    private final int port;
+    private final Status status;
+    private final Map<String, String> metadata;
+
+    public InstanceRecord(String app, String instanceId, String host, int port, Status status,
+            Map<String, String> metadata) {
+        this.app = Objects.requireNonNull(app, "app");
+        this.instanceId = Objects.requireNonNull(instanceId, "instanceId");
+        this.host = host == null ? "" : host;
+        this.port = port;
+        this.status = status == null ? Status.UNKNOWN : status;
+        this.metadata = metadata == null || metadata.isEmpty() ? Collections.<String, String>emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(metadata));
+    }
+
+    /**
+     * A record standing for a removed instance: only its key is known.
+     */
+    static InstanceRecord removed(String app, String instanceId) {
+        return new InstanceRecord(app, instanceId, null, 0, null, null);
+    }
+
+    public String getApp() {
+        return app;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    String key() {
+        return key(app, instanceId);
+    }
+
+    static String key(String app, String instanceId) {
+        return app + '/' + instanceId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InstanceRecord)) {
+            return false;
+        }
+        InstanceRecord other = (InstanceRecord) o;
+        return port == other.port && app.equals(other.app) && instanceId.equals(other.instanceId)
+                && host.equals(other.host) && status == other.status && metadata.equals(other.metadata);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(app, instanceId, host, port, status, metadata);
+    }
+
+    @Override
+    public String toString() {
+        return key() + " " + host + ":" + port + " " + status;
+    }
+
+}
@@ -0,0 +1,413 @@
+package com.orangeandbronze.registry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Passes the changes clients make through this node on to every peer in
+ * {@code registry.replication.peers}, and takes theirs.
+ * </p><ul>
+ * <li>Each peer has a queue and a sender thread. While one batch is on the
+ * wire the next one fills: heartbeats to an instance already queued are
+ * coalesced, a later change to an instance replaces an earlier one, and a
+ * batch goes out when it is full or its oldest change has waited
+ * {@code flush-interval}. Large batches are gzipped.</li>
+ * <li>A peer answers with the heartbeats it had no instance for; those
+ * instances are sent again as registrations.</li>
+ * <li>Every {@code anti-entropy-interval}, and once at startup, this node
+ * compares a digest of its instances with each peer's and pulls the
+ * buckets that differ, keeping the later change to each instance. That is
+ * also how a restarted node gets the registry back.</li>
+ * </ul><p>
+ * With {@code batched=false} every change and heartbeat is a request of its
+ * own, for comparison.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "registry.delta", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicationProperties.class)
+public class PeerReplicator implements RegistryListener, PublicMetrics {
+
+    private static final String GZIP = "gzip";
+    private static final MediaType REPLICATION = MediaType.parseMediaType(ReplicationCodec.MEDIA_TYPE);
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final ShardedRegistry registry;
+    private final ReplicationProperties properties;
+    private final RestTemplate restTemplate;
+    private final List<PeerNode> nodes = new ArrayList<>();
+    private ExecutorService senders;
+    private ScheduledExecutorService antiEntropy;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder ops = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder resent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+
+    @Autowired
+    public PeerReplicator(ShardedRegistry registry, ReplicationProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(properties.getTimeout());
+        requestFactory.setReadTimeout(properties.getTimeout());
+        this.restTemplate = new RestTemplate(requestFactory);
+        for (String peer : properties.getPeers()) {
+            if (StringUtils.hasText(peer)) {
+                nodes.add(new PeerNode(StringUtils.trimTrailingCharacter(peer.trim(), '/')));
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        registry.addListener(this);
+        CustomizableThreadFactory senderThreads = new CustomizableThreadFactory("registry-replication-");
+        senderThreads.setDaemon(true);
+        senders = Executors.newFixedThreadPool(nodes.size(), senderThreads);
+        for (PeerNode node : nodes) {
+            senders.submit(node);
+        }
+        if (properties.getAntiEntropyInterval() > 0) {
+            CustomizableThreadFactory antiEntropyThread = new CustomizableThreadFactory("registry-anti-entropy-");
+            antiEntropyThread.setDaemon(true);
+            antiEntropy = Executors.newSingleThreadScheduledExecutor(antiEntropyThread);
+            antiEntropy.scheduleWithFixedDelay(this::repair, 0, properties.getAntiEntropyInterval(),
+                    TimeUnit.MILLISECONDS);
+        }
+        logger.info("Replicating to {} ({})", nodes, properties.isBatched() ? "batched" : "per event");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (senders != null) {
+            senders.shutdownNow();
+        }
+        if (antiEntropy != null) {
+            antiEntropy.shutdownNow();
+        }
+    }
+
+    @Override
+    public void registered(InstanceRecord record, long leaseDuration, long timestamp) {
+        queue(ReplicationOp.register(record, leaseDuration, timestamp));
+    }
+
+    @Override
+    public void renewed(String app, String instanceId) {
+        queue(ReplicationOp.renew(app, instanceId));
+    }
+
+    @Override
+    public void cancelled(String app, String instanceId, long timestamp) {
+        queue(ReplicationOp.cancel(app, instanceId, timestamp));
+    }
+
+    private void queue(ReplicationOp op) {
+        for (PeerNode node : nodes) {
+            node.add(op);
+        }
+    }
+
+    /**
+     * Applies a batch from a peer, without passing it on.
+     * @return the instances heartbeats came for that this node does not have
+     */
+    List<InstanceRecord> apply(List<ReplicationOp> batch) {
+        List<InstanceRecord> unknown = new ArrayList<>();
+        for (ReplicationOp op : batch) {
+            InstanceRecord record = op.getRecord();
+            switch (op.getType()) {
+                case REGISTER:
+                    registry.replicateRegister(record, op.getLeaseDuration(), op.getTimestamp());
+                    break;
+                case CANCEL:
+                    registry.replicateCancel(record.getApp(), record.getInstanceId(), op.getTimestamp());
+                    break;
+                default:
+                    if (!registry.replicateRenew(record.getApp(), record.getInstanceId())) {
+                        unknown.add(record);
+                    }
+            }
+        }
+        received.add(batch.size());
+        return unknown;
+    }
+
+    /**
+     * Compares digests with each peer and takes the later change to every
+     * instance in the buckets that differ.
+     */
+    void repair() {
+        for (PeerNode node : nodes) {
+            try {
+                long[] local = registry.digest();
+                long[] remote = ReplicationCodec.decodeDigest(
+                        restTemplate.getForObject(node.url + "/registry/replication/digest", byte[].class));
+                Set<Integer> differing = new TreeSet<>();
+                for (int bucket = 0; bucket < Math.min(local.length, remote.length); bucket++) {
+                    if (local[bucket] != remote[bucket]) {
+                        differing.add(bucket);
+                    }
+                }
+                if (differing.isEmpty()) {
+                    continue;
+                }
+                HttpHeaders headers = new HttpHeaders();
+                headers.set(HttpHeaders.ACCEPT_ENCODING, GZIP);
+                ResponseEntity<byte[]> response = restTemplate.exchange(
+                        node.url + "/registry/replication/entries?buckets={buckets}", HttpMethod.GET,
+                        new HttpEntity<>(headers), byte[].class,
+                        StringUtils.collectionToCommaDelimitedString(differing));
+                byte[] body = response.getBody();
+                if (GZIP.equals(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+                    body = ReplicationCodec.gunzip(body);
+                }
+                List<ReplicationOp> entries = ReplicationCodec.decodeBatch(body);
+                apply(entries);
+                repaired.add(differing.size());
+                logger.debug("Compared {} buckets that differ from {}", differing.size(), node.url);
+            } catch (RestClientException | IllegalArgumentException e) {
+                logger.debug("Could not compare with {}: {}", node.url, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long pending = 0;
+        long lag = 0;
+        for (PeerNode node : nodes) {
+            pending += node.pending();
+            lag = Math.max(lag, node.lag);
+        }
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("registry.replication.peers", nodes.size()),
+                new Metric<>("registry.replication.pending", pending),
+                new Metric<>("registry.replication.lag", lag),
+                new Metric<>("registry.replication.batches", batches.sum()),
+                new Metric<>("registry.replication.ops", ops.sum()),
+                new Metric<>("registry.replication.coalesced", coalesced.sum()),
+                new Metric<>("registry.replication.bytes", bytes.sum()),
+                new Metric<>("registry.replication.failures", failures.sum()),
+                new Metric<>("registry.replication.dropped", dropped.sum()),
+                new Metric<>("registry.replication.resent", resent.sum()),
+                new Metric<>("registry.replication.received", received.sum()),
+                new Metric<>("registry.replication.repaired", repaired.sum()));
+    }
+
+    private class PeerNode implements Runnable {
+
+        final String url;
+        // batched, guarded by this
+        private final Map<String, ReplicationOp> changes = new LinkedHashMap<>();
+        private final Map<String, ReplicationOp> renewals = new LinkedHashMap<>();
+        // per event, guarded by this
+        private final Deque<ReplicationOp> events = new ArrayDeque<>();
+        // milliseconds the oldest change in the last batch waited, until acknowledged
+        volatile long lag;
+        private boolean failing;
+
+        PeerNode(String url) {
+            this.url = url;
+        }
+
+        synchronized void add(ReplicationOp op) {
+            if (!properties.isBatched()) {
+                if (events.size() >= properties.getMaxPending()) {
+                    dropped.increment();
+                    return;
+                }
+                events.add(op);
+            } else if (op.getType() == ReplicationOp.Type.RENEW) {
+                if (changes.containsKey(op.key()) || renewals.containsKey(op.key())) {
+                    coalesced.increment();
+                    return;
+                }
+                if (renewals.size() >= properties.getMaxPending()) {
+                    dropped.increment();
+                    return;
+                }
+                renewals.put(op.key(), op);
+            } else {
+                // a registration carries a lease, a cancellation ends it
+                if (changes.remove(op.key()) != null | renewals.remove(op.key()) != null) {
+                    coalesced.increment();
+                }
+                changes.put(op.key(), op);
+            }
+            int pending = pending();
+            if (pending == 1 || pending >= properties.getBatchSize()) {
+                notifyAll();
+            }
+        }
+
+        synchronized int pending() {
+            return properties.isBatched() ? changes.size() + renewals.size() : events.size();
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    List<ReplicationOp> batch = take();
+                    if (!send(batch)) {
+                        requeue(batch);
+                        Thread.sleep(properties.getRetryInterval());
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    logger.warn("Replication to " + url + " failed", e);
+                }
+            }
+        }
+
+        private synchronized List<ReplicationOp> take() throws InterruptedException {
+            while (pending() == 0) {
+                wait();
+            }
+            if (!properties.isBatched()) {
+                return Collections.singletonList(events.poll());
+            }
+            long deadline = oldest() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushInterval());
+            for (long left; pending() < properties.getBatchSize() && (left = deadline - System.nanoTime()) > 0; ) {
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            List<ReplicationOp> batch = new ArrayList<>(Math.min(pending(), properties.getBatchSize()));
+            drain(changes, batch);
+            drain(renewals, batch);
+            return batch;
+        }
+
+        private long oldest() {
+            long oldest = Long.MAX_VALUE;
+            if (!changes.isEmpty()) {
+                oldest = changes.values().iterator().next().getQueuedAt();
+            }
+            if (!renewals.isEmpty()) {
+                oldest = Math.min(oldest, renewals.values().iterator().next().getQueuedAt());
+            }
+            return oldest;
+        }
+
+        private void drain(Map<String, ReplicationOp> pending, List<ReplicationOp> batch) {
+            for (Iterator<ReplicationOp> it = pending.values().iterator();
+                    it.hasNext() && batch.size() < properties.getBatchSize(); ) {
+                batch.add(it.next());
+                it.remove();
+            }
+        }
+
+        private boolean send(List<ReplicationOp> batch) {
+            byte[] body = ReplicationCodec.encodeBatch(batch);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(REPLICATION);
+            if (properties.isBatched() && properties.getCompressAbove() > 0
+                    && body.length > properties.getCompressAbove()) {
+                body = ReplicationCodec.gzip(body);
+                headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+            }
+            long oldest = Long.MAX_VALUE;
+            for (ReplicationOp op : batch) {
+                oldest = Math.min(oldest, op.getQueuedAt());
+            }
+            byte[] unknown;
+            try {
+                unknown = restTemplate.postForObject(url + "/registry/replication",
+                        new HttpEntity<>(body, headers), byte[].class);
+            } catch (RestClientException e) {
+                failures.increment();
+                if (!failing) {
+                    logger.warn("Could not replicate to {}: {}", url, e.getMessage());
+                    failing = true;
+                }
+                return false;
+            }
+            lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+            batches.increment();
+            ops.add(batch.size());
+            bytes.add(body.length);
+            if (failing) {
+                logger.info("Replicating to {} again", url);
+                failing = false;
+            }
+            if (unknown != null && unknown.length > 0) {
+                for (InstanceRecord key : ReplicationCodec.decodeKeys(unknown)) {
+                    ReplicationOp registration = registry.registration(key.getApp(), key.getInstanceId());
+                    if (registration != null) {
+                        resent.increment();
+                        add(registration);
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Puts back the changes of a batch that did not get through, unless
+         * something later replaced them; heartbeats are dropped.
+         */
+        private synchronized void requeue(List<ReplicationOp> batch) {
+            for (ReplicationOp op : batch) {
+                if (op.getType() == ReplicationOp.Type.RENEW) {
+                    dropped.increment();
+                } else if (properties.isBatched()) {
+                    changes.putIfAbsent(op.key(), op);
+                } else {
+                    events.addFirst(op);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.orangeandbronze.registry;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+
+/**
+ * <p>The registry's own API, next to Eureka's.
+ * </p><ul>
+ * <li>{@code POST /registry/{app}/{instanceId}} registers (JSON body),
+ * {@code PUT .../heartbeat} renews, {@code DELETE} cancels.</li>
+ * <li>{@code GET /registry/changes?epoch=<epoch>&since=<version>&wait=<ms>}
+ * answers with a {@link FeedCodec} feed as soon as there is something past
+ * {@code since}, or 304 once {@code wait} (at most {@code max-wait}) runs
+ * out. A client starts at 0 and then passes the epoch and version of each
+ * feed it applies; a version of another epoch, from before the registry
+ * restarted, gets a snapshot straight away.</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/registry")
+@ConditionalOnProperty(prefix = "registry.delta", name = "enabled", havingValue = "true")
+public class RegistryController {
+
+    private static final MediaType FEED = MediaType.parseMediaType(FeedCodec.MEDIA_TYPE);
+
+    private final ShardedRegistry registry;
+    private final long maxWait;
+
+    @Autowired
+    public RegistryController(ShardedRegistry registry, DeltaRegistryProperties properties) {
+        this.registry = registry;
+        this.maxWait = properties.getMaxWait();
+    }
+
+    @RequestMapping(value = "/{app}/{instanceId:.+}", method = RequestMethod.POST)
+    public ResponseEntity<Void> register(@PathVariable String app, @PathVariable String instanceId,
+            @RequestBody Registration registration) {
+        registry.register(new InstanceRecord(app, instanceId, registration.getHost(), registration.getPort(),
+                registration.getStatus(), registration.getMetadata()), registration.getLeaseDuration());
+        return ResponseEntity.noContent().build();
+    }
+
+    @RequestMapping(value = "/{app}/{instanceId}/heartbeat", method = RequestMethod.PUT)
+    public ResponseEntity<Void> heartbeat(@PathVariable String app, @PathVariable String instanceId) {
+        return registry.renew(app, instanceId) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @RequestMapping(value = "/{app}/{instanceId:.+}", method = RequestMethod.DELETE)
+    public ResponseEntity<Void> cancel(@PathVariable String app, @PathVariable String instanceId) {
+        return registry.cancel(app, instanceId) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @RequestMapping(value = "/changes", method = RequestMethod.GET)
+    public DeferredResult<ResponseEntity<byte[]>> changes(@RequestParam(defaultValue = "0") long epoch,
+            @RequestParam(defaultValue = "0") long since, @RequestParam(defaultValue = "0") long wait) {
+        long timeout = Math.min(Math.max(wait, 0), maxWait);
+        DeferredResult<ResponseEntity<byte[]>> result = new DeferredResult<>(timeout,
+                ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+        if (timeout == 0 || since == 0 || epoch != registry.epoch() || registry.version() != since) {
+            result.setResult(feed(epoch, since));
+            return result;
+        }
+        Runnable waiter = () -> result.setResult(feed(epoch, since));
+        result.onCompletion(() -> registry.cancelWait(waiter));
+        registry.await(since, waiter);
+        return result;
+    }
+
+    private ResponseEntity<byte[]> feed(long epoch, long since) {
+        byte[] body = registry.encodedFeed(epoch, since);
+        return ResponseEntity.ok()
+                .contentType(FEED)
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(body);
+    }
+
+    public static class Registration {
+
+        private String host;
+        private int port;
+        private InstanceRecord.Status status = InstanceRecord.Status.UP;
+        private Map<String, String> metadata;
+        private long leaseDuration;
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public InstanceRecord.Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(InstanceRecord.Status status) {
+            this.status = status;
+        }
+
+        public Map<String, String> getMetadata() {
+            return metadata;
+        }
+
+        public void setMetadata(Map<String, String> metadata) {
+            this.metadata = metadata;
+        }
+
+        public long getLeaseDuration() {
+            return leaseDuration;
+        }
+
+        public void setLeaseDuration(long leaseDuration) {
+            this.leaseDuration = leaseDuration;
+        }
+    }
+
+}
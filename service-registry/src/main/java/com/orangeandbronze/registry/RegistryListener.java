@@ -0,0 +1,16 @@
+package com.orangeandbronze.registry;
+
+/**
+ * Told of every change clients make through this node, as opposed to those
+ * replicated from peers or evictions. Called on the request thread, after
+ * the change is made, so it should not block.
+ */
+interface RegistryListener {
+
+    void registered(InstanceRecord record, long leaseDuration, long timestamp);
+
+    void renewed(String app, String instanceId);
+
+    void cancelled(String app, String instanceId, long timestamp);
+
+}
@@ -0,0 +1,108 @@
+package com.orangeandbronze.registry;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>A client's copy of the registry, kept up to date from
+ * {@code /registry/changes}. Call {@link #poll(long)} in a loop; it returns
+ * as soon as something changed, or after {@code wait} without a change.
+ * </p><p>
+ * The template's read timeout must be longer than the wait. Polling is
+ * meant for one thread; reads may come from any.
+ * </p>
+ */
+public class RegistryReplica {
+
+    private final String changesUrl;
+    private final RestTemplate restTemplate;
+    private final Map<String, InstanceRecord> instances = new ConcurrentHashMap<>();
+    private volatile long epoch;
+    private volatile long version;
+
+    /**
+     * @param baseUrl of the registry, e.g. {@code http://localhost:8761}
+     */
+    public RegistryReplica(String baseUrl, RestTemplate restTemplate) {
+        this.changesUrl = baseUrl + "/registry/changes?epoch={epoch}&since={since}&wait={wait}";
+        this.restTemplate = restTemplate;
+    }
+
+    /**
+     * Fetches and applies what changed since the last poll.
+     * @param wait longest time (in milliseconds) the registry may hold the
+     * request when there is no change
+     * @return the feed applied, or null if there was no change
+     */
+    public Feed poll(long wait) {
+        byte[] body = restTemplate.execute(changesUrl, HttpMethod.GET, null, response ->
+                response.getStatusCode() == HttpStatus.NOT_MODIFIED ? null
+                        : StreamUtils.copyToByteArray(response.getBody()), epoch, version, wait);
+        if (body == null) {
+            return null;
+        }
+        Feed feed = FeedCodec.decode(body);
+        apply(feed);
+        return feed;
+    }
+
+    void apply(Feed feed) {
+        if (feed.isSnapshot()) {
+            Map<String, InstanceRecord> all = new ConcurrentHashMap<>();
+            for (Feed.Change change : feed.getChanges()) {
+                all.put(change.getRecord().key(), change.getRecord());
+            }
+            instances.keySet().retainAll(all.keySet());
+            instances.putAll(all);
+        } else {
+            for (Feed.Change change : feed.getChanges()) {
+                if (change.isRemoved()) {
+                    instances.remove(change.getRecord().key());
+                } else {
+                    instances.put(change.getRecord().key(), change.getRecord());
+                }
+            }
+        }
+        epoch = feed.getEpoch();
+        version = feed.getVersion();
+    }
+
+    public long epoch() {
+        return epoch;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public InstanceRecord get(String app, String instanceId) {
+        return instances.get(InstanceRecord.key(app, instanceId));
+    }
+
+    public List<InstanceRecord> instances(String app) {
+        List<InstanceRecord> found = new ArrayList<>();
+        for (InstanceRecord record : instances.values()) {
+            if (record.getApp().equals(app)) {
+                found.add(record);
+            }
+        }
+        return found;
+    }
+
+    public Collection<InstanceRecord> all() {
+        return instances.values();
+    }
+
+    public int size() {
+        return instances.size();
+    }
+
+}
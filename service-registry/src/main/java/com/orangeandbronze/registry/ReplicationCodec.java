@@ -0,0 +1,165 @@
+package com.orangeandbronze.registry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>What peers send each other, in the style of {@link FeedCodec}:
+ * </p><pre>
+ * batch   = 'R' 'R' format count:varint op*
+ * op      = 0 timestamp:varlong lease:varlong record    (register)
+ *         | 1 timestamp:varlong app:str id:str          (cancel)
+ *         | 2 app:str id:str                            (renew)
+ * keys    = 'R' 'K' format count:varint (app:str id:str)*
+ * digest  = 'R' 'D' format count:varint long*
+ * </pre><p>
+ * Any of them may be gzipped on the way ({@code Content-Encoding: gzip}).
+ * </p>
+ */
+final class ReplicationCodec {
+
+    static final String MEDIA_TYPE = "application/x-registry-replication";
+
+    private static final int MAGIC_R = 'R';
+    private static final int BATCH = 'R';
+    private static final int KEYS = 'K';
+    private static final int DIGEST = 'D';
+    private static final int FORMAT = 1;
+    private static final ReplicationOp.Type[] TYPES = ReplicationOp.Type.values();
+
+    private ReplicationCodec() {
+    }
+
+    static byte[] encodeBatch(List<ReplicationOp> ops) {
+        BinaryWriter out = header(BATCH, ops.size(), 16 + ops.size() * 24);
+        for (ReplicationOp op : ops) {
+            out.write(op.getType().ordinal());
+            switch (op.getType()) {
+                case REGISTER:
+                    out.writeVarLong(op.getTimestamp());
+                    out.writeVarLong(op.getLeaseDuration());
+                    out.writeRecord(op.getRecord());
+                    break;
+                case CANCEL:
+                    out.writeVarLong(op.getTimestamp());
+                    out.writeKey(op.getRecord());
+                    break;
+                default:
+                    out.writeKey(op.getRecord());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a batch
+     */
+    static List<ReplicationOp> decodeBatch(byte[] bytes) {
+        BinaryReader in = new BinaryReader(bytes);
+        int count = header(in, BATCH);
+        List<ReplicationOp> ops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = in.read();
+            if (type >= TYPES.length) {
+                throw new IllegalArgumentException("Unknown replication op " + type);
+            }
+            switch (TYPES[type]) {
+                case REGISTER:
+                    long timestamp = in.readVarLong();
+                    long leaseDuration = in.readVarLong();
+                    ops.add(ReplicationOp.register(in.readRecord(), leaseDuration, timestamp));
+                    break;
+                case CANCEL:
+                    long removedAt = in.readVarLong();
+                    InstanceRecord key = in.readKey();
+                    ops.add(ReplicationOp.cancel(key.getApp(), key.getInstanceId(), removedAt));
+                    break;
+                default:
+                    InstanceRecord renewed = in.readKey();
+                    ops.add(ReplicationOp.renew(renewed.getApp(), renewed.getInstanceId()));
+            }
+        }
+        return ops;
+    }
+
+    static byte[] encodeKeys(List<InstanceRecord> keys) {
+        BinaryWriter out = header(KEYS, keys.size(), 16 + keys.size() * 16);
+        for (InstanceRecord key : keys) {
+            out.writeKey(key);
+        }
+        return out.toByteArray();
+    }
+
+    static List<InstanceRecord> decodeKeys(byte[] bytes) {
+        BinaryReader in = new BinaryReader(bytes);
+        int count = header(in, KEYS);
+        List<InstanceRecord> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(in.readKey());
+        }
+        return keys;
+    }
+
+    static byte[] encodeDigest(long[] digest) {
+        BinaryWriter out = header(DIGEST, digest.length, 16 + digest.length * 8);
+        for (long hash : digest) {
+            out.writeLong(hash);
+        }
+        return out.toByteArray();
+    }
+
+    static long[] decodeDigest(byte[] bytes) {
+        BinaryReader in = new BinaryReader(bytes);
+        long[] digest = new long[header(in, DIGEST)];
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] = in.readLong();
+        }
+        return digest;
+    }
+
+    static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    static byte[] gunzip(byte[] bytes) {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream(bytes.length * 4);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                plain.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed gzip body", e);
+        }
+        return plain.toByteArray();
+    }
+
+    private static BinaryWriter header(int kind, int count, int size) {
+        BinaryWriter out = new BinaryWriter(size);
+        out.write(MAGIC_R);
+        out.write(kind);
+        out.write(FORMAT);
+        out.writeVarLong(count);
+        return out;
+    }
+
+    private static int header(BinaryReader in, int kind) {
+        if (in.read() != MAGIC_R || in.read() != kind || in.read() != FORMAT) {
+            throw new IllegalArgumentException("Not registry replication data");
+        }
+        return (int) in.readVarLong();
+    }
+
+}
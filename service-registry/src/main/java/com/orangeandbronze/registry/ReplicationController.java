@@ -0,0 +1,79 @@
+package com.orangeandbronze.registry;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What {@link PeerReplicator}s call on each other, in
+ * {@link ReplicationCodec}'s form.
+ */
+@RestController
+@RequestMapping("/registry/replication")
+@ConditionalOnProperty(prefix = "registry.delta", name = "enabled", havingValue = "true")
+public class ReplicationController {
+
+    private static final String GZIP = "gzip";
+    private static final MediaType REPLICATION = MediaType.parseMediaType(ReplicationCodec.MEDIA_TYPE);
+
+    private final PeerReplicator replicator;
+    private final ShardedRegistry registry;
+    private final int compressAbove;
+
+    @Autowired
+    public ReplicationController(PeerReplicator replicator, ShardedRegistry registry,
+            ReplicationProperties properties) {
+        this.replicator = replicator;
+        this.registry = registry;
+        this.compressAbove = properties.getCompressAbove();
+    }
+
+    /**
+     * Applies a batch; answers with the instances it renewed that this node
+     * does not have.
+     */
+    @RequestMapping(method = RequestMethod.POST)
+    public ResponseEntity<byte[]> replicate(@RequestBody byte[] body,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String encoding) {
+        List<InstanceRecord> unknown = replicator.apply(
+                ReplicationCodec.decodeBatch(GZIP.equals(encoding) ? ReplicationCodec.gunzip(body) : body));
+        return ResponseEntity.ok().contentType(REPLICATION).body(ReplicationCodec.encodeKeys(unknown));
+    }
+
+    @RequestMapping(value = "/digest", method = RequestMethod.GET)
+    public ResponseEntity<byte[]> digest() {
+        return ResponseEntity.ok().contentType(REPLICATION).body(ReplicationCodec.encodeDigest(registry.digest()));
+    }
+
+    @RequestMapping(value = "/entries", method = RequestMethod.GET)
+    public ResponseEntity<byte[]> entries(@RequestParam Set<Integer> buckets,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        byte[] body = ReplicationCodec.encodeBatch(registry.entries(buckets));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(REPLICATION);
+        if (compressAbove > 0 && body.length > compressAbove && acceptEncoding != null
+                && StringUtils.commaDelimitedListToSet(acceptEncoding.replace(" ", "")).contains(GZIP)) {
+            body = ReplicationCodec.gzip(body);
+            response.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        return response.body(body);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> malformed(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+}
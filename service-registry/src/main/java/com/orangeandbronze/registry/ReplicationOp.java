@@ -0,0 +1,66 @@
+package com.orangeandbronze.registry;
+
+/**
+ * One change a node passes on to its peers. {@code timestamp} is when the
+ * change was made on the node a client talked to; a peer keeps whichever of
+ * two changes to an instance is later.
+ */
+final class ReplicationOp {
+
+    enum Type {
+        REGISTER, CANCEL, RENEW
+    }
+
+    private final Type type;
+    private final InstanceRecord record;
+    private final long leaseDuration;
+    private final long timestamp;
+    private final long queuedAt = System.nanoTime();
+
+    private ReplicationOp(Type type, InstanceRecord record, long leaseDuration, long timestamp) {
+        this.type = type;
+        this.record = record;
+        this.leaseDuration = leaseDuration;
+        this.timestamp = timestamp;
+    }
+
+    static ReplicationOp register(InstanceRecord record, long leaseDuration, long timestamp) {
+        return new ReplicationOp(Type.REGISTER, record, leaseDuration, timestamp);
+    }
+
+    static ReplicationOp cancel(String app, String instanceId, long timestamp) {
+        return new ReplicationOp(Type.CANCEL, InstanceRecord.removed(app, instanceId), 0, timestamp);
+    }
+
+    static ReplicationOp renew(String app, String instanceId) {
+        return new ReplicationOp(Type.RENEW, InstanceRecord.removed(app, instanceId), 0, 0);
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    InstanceRecord getRecord() {
+        return record;
+    }
+
+    long getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * {@link System#nanoTime()} when the op was made on this node.
+     */
+    long getQueuedAt() {
+        return queuedAt;
+    }
+
+    String key() {
+        return record.key();
+    }
+
+}
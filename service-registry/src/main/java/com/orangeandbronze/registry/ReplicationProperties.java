@@ -0,0 +1,133 @@
+package com.orangeandbronze.registry;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "registry.replication")
+public class ReplicationProperties {
+
+    /**
+     * Base URLs of the other registry nodes, e.g.
+     * {@code http://localhost:8762}. Not this node's own.
+     */
+    private List<String> peers = new ArrayList<>();
+
+    /**
+     * Send changes to peers in batches, heartbeats to one instance coalesced;
+     * false sends each change and heartbeat in a request of its own.
+     */
+    private boolean batched = true;
+
+    /**
+     * Most changes in one batch.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Longest time (in milliseconds) a change waits for a batch to fill.
+     */
+    private long flushInterval = 50;
+
+    /**
+     * Batches of more bytes than this are gzipped; 0 never compresses.
+     */
+    private int compressAbove = 1024;
+
+    /**
+     * Changes kept per peer while it is slow or down. Past this, heartbeats
+     * are dropped; anti-entropy and the next heartbeat make up for them.
+     */
+    private int maxPending = 100000;
+
+    /**
+     * How often (in milliseconds) this node compares its instances with
+     * each peer's and takes the later of any that differ; 0 never.
+     */
+    private long antiEntropyInterval = 30000;
+
+    /**
+     * How long (in milliseconds) to wait before sending to a peer again
+     * after a failure.
+     */
+    private long retryInterval = 1000;
+
+    /**
+     * Connect and read timeout (in milliseconds) for requests to peers.
+     */
+    private int timeout = 5000;
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    public void setPeers(List<String> peers) {
+        this.peers = peers;
+    }
+
+    public boolean isBatched() {
+        return batched;
+    }
+
+    public void setBatched(boolean batched) {
+        this.batched = batched;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public int getCompressAbove() {
+        return compressAbove;
+    }
+
+    public void setCompressAbove(int compressAbove) {
+        this.compressAbove = compressAbove;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    public long getAntiEntropyInterval() {
+        return antiEntropyInterval;
+    }
+
+    public void setAntiEntropyInterval(long antiEntropyInterval) {
+        this.antiEntropyInterval = antiEntropyInterval;
+    }
+
+    public long getRetryInterval() {
+        return retryInterval;
+    }
+
+    public void setRetryInterval(long retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+}
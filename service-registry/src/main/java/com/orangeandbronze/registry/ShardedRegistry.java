@@ -0,0 +1,522 @@
+package com.orangeandbronze.registry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>Registered instances and their leases, spread over
+ * {@code registry.delta.shards} lock stripes by instance.
+ * </p><ul>
+ * <li>A heartbeat takes its shard's read lock and renews the lease in
+ * place, so heartbeats never wait for each other or for readers.</li>
+ * <li>Registering, cancelling and evicting take one shard's write lock and
+ * are numbered in a {@link ChangeLog}, which is what clients catch up
+ * from.</li>
+ * <li>Leases not renewed within their duration are evicted every
+ * {@code eviction-interval}.</li>
+ * <li>Changes replicated from peers carry the time they were made and
+ * apply only if later than what this node has for the instance
+ * ({@link PeerReplicator}).</li>
+ * </ul><p>
+ * The last encoded feed is kept, since every client that was up to date
+ * asks for the same one after a change.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "registry.delta", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(DeltaRegistryProperties.class)
+public class ShardedRegistry implements PublicMetrics {
+
+    static final int DIGEST_BUCKETS = 256;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private DeltaRegistryProperties properties;
+    private final Shard[] shards;
+    private final ChangeLog changeLog;
+    private final ScheduledExecutorService evictor;
+    private volatile EncodedFeed lastFeed;
+    private final List<RegistryListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder heartbeats = new LongAdder();
+    private final LongAdder registrations = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+
+    @Autowired
+    public ShardedRegistry(DeltaRegistryProperties properties) {
+        this.properties = properties;
+        int count = Integer.highestOneBit(Math.max(1, properties.getShards() * 2 - 1));
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+        this.changeLog = new ChangeLog(properties.getChangeLogCapacity());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("registry-evict-");
+        threadFactory.setDaemon(true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        evictor.scheduleWithFixedDelay(this::evictExpired, properties.getEvictionInterval(),
+                properties.getEvictionInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdownNow();
+    }
+
+    /**
+     * Registers or replaces an instance. Re-registering an unchanged
+     * instance only renews its lease.
+     * @param leaseDuration in milliseconds; 0 for {@code lease-duration}
+     */
+    public void register(InstanceRecord record, long leaseDuration) {
+        long duration = leaseDuration > 0 ? leaseDuration : properties.getLeaseDuration();
+        long timestamp = put(record, duration, System.currentTimeMillis(), false);
+        for (RegistryListener listener : listeners) {
+            if (timestamp > 0) {
+                listener.registered(record, duration, timestamp);
+            } else {
+                listener.renewed(record.getApp(), record.getInstanceId());
+            }
+        }
+    }
+
+    /**
+     * Applies a registration made on a peer at {@code timestamp}, unless the
+     * instance changed here since.
+     */
+    void replicateRegister(InstanceRecord record, long leaseDuration, long timestamp) {
+        put(record, leaseDuration > 0 ? leaseDuration : properties.getLeaseDuration(), timestamp, true);
+    }
+
+    /**
+     * @return the timestamp of the change, or 0 if the record was not
+     * changed (only its lease renewed) or, when replicated, is older than
+     * what this node has
+     */
+    private long put(InstanceRecord record, long duration, long timestamp, boolean replicated) {
+        String key = record.key();
+        Shard shard = shard(key);
+        List<Runnable> woken = Collections.emptyList();
+        long changedAt = 0;
+        shard.lock.writeLock().lock();
+        try {
+            Lease previous = shard.leases.get(key);
+            Long removedAt = shard.tombstones.get(key);
+            if (replicated && (previous != null && previous.timestamp > timestamp
+                    || removedAt != null && removedAt >= timestamp)) {
+                return 0;
+            }
+            long updated;
+            if (previous != null && previous.record.equals(record)) {
+                updated = replicated ? Math.max(previous.timestamp, timestamp) : previous.timestamp;
+            } else if (replicated) {
+                updated = timestamp;
+                changedAt = updated;
+            } else {
+                // later than anything a peer told us about this instance, whatever its clock said
+                updated = Math.max(timestamp, Math.max(previous == null ? 0 : previous.timestamp + 1,
+                        removedAt == null ? 0 : removedAt + 1));
+                changedAt = updated;
+            }
+            shard.leases.put(key, new Lease(record, duration, System.currentTimeMillis(), updated));
+            shard.tombstones.remove(key);
+            if (changedAt > 0) {
+                registrations.increment();
+                woken = changeLog.append(false, record);
+            }
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+        wake(woken);
+        return changedAt;
+    }
+
+    /**
+     * @return false if the instance is not registered (any more), in which
+     * case it should register again
+     */
+    public boolean renew(String app, String instanceId) {
+        if (!replicateRenew(app, instanceId)) {
+            return false;
+        }
+        for (RegistryListener listener : listeners) {
+            listener.renewed(app, instanceId);
+        }
+        return true;
+    }
+
+    /**
+     * Renews a lease without telling the listeners.
+     */
+    boolean replicateRenew(String app, String instanceId) {
+        String key = InstanceRecord.key(app, instanceId);
+        Shard shard = shard(key);
+        shard.lock.readLock().lock();
+        try {
+            Lease lease = shard.leases.get(key);
+            if (lease == null) {
+                return false;
+            }
+            lease.lastRenewal = System.currentTimeMillis();
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+        heartbeats.increment();
+        return true;
+    }
+
+    public boolean cancel(String app, String instanceId) {
+        long timestamp = remove(app, instanceId, System.currentTimeMillis(), false);
+        if (timestamp == 0) {
+            return false;
+        }
+        for (RegistryListener listener : listeners) {
+            listener.cancelled(app, instanceId, timestamp);
+        }
+        return true;
+    }
+
+    /**
+     * Applies a cancellation made on a peer at {@code timestamp}, unless the
+     * instance registered again here since.
+     */
+    void replicateCancel(String app, String instanceId, long timestamp) {
+        remove(app, instanceId, timestamp, true);
+    }
+
+    /**
+     * Removes the instance and keeps a tombstone, so that an older
+     * registration arriving from a peer does not bring it back.
+     * @return the timestamp of the removal, or 0 if nothing was removed
+     */
+    private long remove(String app, String instanceId, long timestamp, boolean replicated) {
+        String key = InstanceRecord.key(app, instanceId);
+        Shard shard = shard(key);
+        List<Runnable> woken;
+        shard.lock.writeLock().lock();
+        try {
+            Lease lease = shard.leases.get(key);
+            if (replicated) {
+                if (lease != null && lease.timestamp > timestamp) {
+                    return 0;
+                }
+                Long removedAt = shard.tombstones.get(key);
+                shard.tombstones.put(key, removedAt == null ? timestamp : Math.max(removedAt, timestamp));
+            }
+            if (lease == null) {
+                return 0;
+            }
+            if (!replicated) {
+                timestamp = Math.max(timestamp, lease.timestamp + 1);
+                shard.tombstones.put(key, timestamp);
+            }
+            shard.leases.remove(key);
+            cancellations.increment();
+            woken = changeLog.append(true, InstanceRecord.removed(app, instanceId));
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+        wake(woken);
+        return timestamp;
+    }
+
+    /**
+     * Evicts leases not renewed in time, and forgets tombstones older than
+     * {@code lease-duration}. Eviction leaves no tombstone: a peer that still
+     * hears heartbeats for the instance may hand it back.
+     */
+    void evictExpired() {
+        long now = System.currentTimeMillis();
+        List<Runnable> woken = new ArrayList<>();
+        int evicted = 0;
+        for (Shard shard : shards) {
+            shard.lock.writeLock().lock();
+            try {
+                for (Iterator<Lease> leases = shard.leases.values().iterator(); leases.hasNext(); ) {
+                    Lease lease = leases.next();
+                    if (now - lease.lastRenewal > lease.duration) {
+                        leases.remove();
+                        evicted++;
+                        woken.addAll(changeLog.append(true,
+                                InstanceRecord.removed(lease.record.getApp(), lease.record.getInstanceId())));
+                    }
+                }
+                shard.tombstones.values().removeIf(removedAt -> now - removedAt > properties.getLeaseDuration());
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+        if (evicted > 0) {
+            evictions.add(evicted);
+            logger.debug("Evicted {} instances with expired leases", evicted);
+        }
+        wake(woken);
+    }
+
+    public InstanceRecord get(String app, String instanceId) {
+        String key = InstanceRecord.key(app, instanceId);
+        Shard shard = shard(key);
+        shard.lock.readLock().lock();
+        try {
+            Lease lease = shard.leases.get(key);
+            return lease == null ? null : lease.record;
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The instance as a registration to pass on, or null if it is not
+     * registered.
+     */
+    ReplicationOp registration(String app, String instanceId) {
+        String key = InstanceRecord.key(app, instanceId);
+        Shard shard = shard(key);
+        shard.lock.readLock().lock();
+        try {
+            Lease lease = shard.leases.get(key);
+            return lease == null ? null : ReplicationOp.register(lease.record, lease.duration, lease.timestamp);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A hash of the instances and tombstones in each of
+     * {@link #DIGEST_BUCKETS} buckets. Two nodes that agree on a bucket
+     * have the same instances in it, changed at the same times.
+     */
+    long[] digest() {
+        long[] digest = new long[DIGEST_BUCKETS];
+        for (Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                for (Map.Entry<String, Lease> entry : shard.leases.entrySet()) {
+                    digest[bucket(entry.getKey())] += hash(entry.getKey(), entry.getValue().timestamp, false);
+                }
+                for (Map.Entry<String, Long> entry : shard.tombstones.entrySet()) {
+                    digest[bucket(entry.getKey())] += hash(entry.getKey(), entry.getValue(), true);
+                }
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Everything in the given {@link #digest()} buckets, as registrations
+     * and cancellations.
+     */
+    List<ReplicationOp> entries(Set<Integer> buckets) {
+        List<ReplicationOp> entries = new ArrayList<>();
+        for (Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                for (Map.Entry<String, Lease> entry : shard.leases.entrySet()) {
+                    if (buckets.contains(bucket(entry.getKey()))) {
+                        Lease lease = entry.getValue();
+                        entries.add(ReplicationOp.register(lease.record, lease.duration, lease.timestamp));
+                    }
+                }
+                for (Map.Entry<String, Long> entry : shard.tombstones.entrySet()) {
+                    if (buckets.contains(bucket(entry.getKey()))) {
+                        String key = entry.getKey();
+                        int slash = key.indexOf('/');
+                        entries.add(ReplicationOp.cancel(key.substring(0, slash), key.substring(slash + 1),
+                                entry.getValue()));
+                    }
+                }
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return entries;
+    }
+
+    void addListener(RegistryListener listener) {
+        listeners.add(listener);
+    }
+
+    public long epoch() {
+        return changeLog.epoch();
+    }
+
+    public long version() {
+        return changeLog.version();
+    }
+
+    /**
+     * What a client at version {@code since} of {@code epoch} needs: the
+     * changes after it, or every instance if it is too far behind, has a
+     * version from before the registry restarted, or is new (at 0).
+     */
+    public Feed feed(long epoch, long since) {
+        Feed changes = epoch == changeLog.epoch() && since > 0 ? changeLog.changesSince(since) : null;
+        return changes != null ? changes : snapshot();
+    }
+
+    /**
+     * {@link #feed(long, long)}, encoded with {@link FeedCodec}.
+     */
+    public byte[] encodedFeed(long epoch, long since) {
+        // a version from another run says nothing, as for a new client
+        long from = epoch == changeLog.epoch() ? since : 0;
+        EncodedFeed last = lastFeed;
+        long current = changeLog.version();
+        if (last != null && last.since == from && last.version == current) {
+            return last.bytes;
+        }
+        Feed feed = feed(changeLog.epoch(), from);
+        byte[] bytes = FeedCodec.encode(feed);
+        lastFeed = new EncodedFeed(from, feed.getVersion(), bytes);
+        return bytes;
+    }
+
+    private Feed snapshot() {
+        snapshots.increment();
+        // every change up to this version is already in the shards
+        long current = changeLog.version();
+        List<Feed.Change> all = new ArrayList<>();
+        for (Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                for (Lease lease : shard.leases.values()) {
+                    all.add(new Feed.Change(false, lease.record));
+                }
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return new Feed(changeLog.epoch(), current, true, all);
+    }
+
+    /**
+     * Runs the waiter once the registry moves past {@code since}.
+     */
+    public void await(long since, Runnable waiter) {
+        changeLog.await(since, waiter);
+    }
+
+    public void cancelWait(Runnable waiter) {
+        changeLog.cancel(waiter);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                size += shard.leases.size();
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("registry.delta.instances", size()),
+                new Metric<>("registry.delta.version", changeLog.version()),
+                new Metric<>("registry.delta.waiting", changeLog.waiting()),
+                new Metric<>("registry.delta.heartbeats", heartbeats.sum()),
+                new Metric<>("registry.delta.registrations", registrations.sum()),
+                new Metric<>("registry.delta.cancellations", cancellations.sum()),
+                new Metric<>("registry.delta.evictions", evictions.sum()),
+                new Metric<>("registry.delta.snapshots", snapshots.sum()));
+    }
+
+    private Shard shard(String key) {
+        int hash = key.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (shards.length - 1)];
+    }
+
+    static int bucket(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (DIGEST_BUCKETS - 1);
+    }
+
+    private static long hash(String key, long timestamp, boolean removed) {
+        // murmur3's finalizer, so that sums of nearby values do not cancel out
+        long h = ((long) key.hashCode() << 32) ^ timestamp ^ (removed ? Long.MIN_VALUE : 0);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static void wake(List<Runnable> waiters) {
+        for (Runnable waiter : waiters) {
+            waiter.run();
+        }
+    }
+
+    private static class Shard {
+
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        // guarded by lock
+        final Map<String, Lease> leases = new HashMap<>();
+        // when cancelled instances were, guarded by lock
+        final Map<String, Long> tombstones = new HashMap<>();
+    }
+
+    private static class Lease {
+
+        final InstanceRecord record;
+        final long duration;
+        // when the record last changed, on the node where it did
+        final long timestamp;
+        volatile long lastRenewal;
+
+        Lease(InstanceRecord record, long duration, long now, long timestamp) {
+            this.record = record;
+            this.duration = duration;
+            this.timestamp = timestamp;
+            this.lastRenewal = now;
+        }
+    }
+
+    private static class EncodedFeed {
+
+        final long since;
+        final long version;
+        final byte[] bytes;
+
+        EncodedFeed(long since, long version, byte[] bytes) {
+            this.since = since;
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+package com.orangeandbronze.registry;
+
+import com.orangeandbronze.ServiceRegistryApplication;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Runs a registry cluster of {@code nodes} local processes, each peering
+ * with the others, once replicating per event and once batched. Clients
+ * register with the nodes in turn and heartbeat at {@code rate} per second
+ * in total. Reported per mode:
+ * </p><ul>
+ * <li>replication lag: from registering a probe instance on the first node
+ * until every other node's change feed has it, and the age of the oldest
+ * change in each node's last acknowledged batch;</li>
+ * <li>CPU of all nodes per 1,000 heartbeats a second, above what they use
+ * idle, from {@code /proc/<pid>/stat} (so Linux only, assuming 100 ticks a
+ * second), after a warm-up;</li>
+ * <li>bytes sent to peers and changes dropped.</li>
+ * </ul><p>
+ * Not run by the build:
+ * </p><pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.registry.ClusterHarness [nodes] [clients] [rate] [seconds]"
+ * </pre>
+ */
+public class ClusterHarness {
+
+    private static final String PROBE = "PROBE";
+    private static final long TICK_MILLIS = 10;
+    private static final int IDLE = 5;
+    private static final int WARM_UP = 10;
+
+    public static void main(String[] args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int rate = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+
+        for (boolean batched : new boolean[] {false, true}) {
+            List<Process> processes = new ArrayList<>();
+            try {
+                List<String> urls = start(nodes, batched, processes);
+                run(urls, batched, clients, rate, seconds);
+            } finally {
+                for (Process process : processes) {
+                    process.destroy();
+                    process.waitFor(10, TimeUnit.SECONDS);
+                }
+            }
+        }
+    }
+
+    private static List<String> start(int nodes, boolean batched, List<Process> processes)
+            throws IOException, InterruptedException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            urls.add("http://localhost:" + freePort());
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        for (String url : urls) {
+            List<String> peers = new ArrayList<>(urls);
+            peers.remove(url);
+            ProcessBuilder builder = new ProcessBuilder(java, "-Xmx256m", "-cp",
+                    System.getProperty("java.class.path"), ServiceRegistryApplication.class.getName(),
+                    "--server.port=" + url.substring(url.lastIndexOf(':') + 1),
+                    "--registry.delta.enabled=true",
+                    "--registry.replication.peers=" + String.join(",", peers),
+                    "--registry.replication.batched=" + batched,
+                    "--management.security.enabled=false",
+                    "--spring.jmx.enabled=false",
+                    "--logging.level.root=WARN",
+                    "--logging.level.com.orangeandbronze=INFO");
+            builder.redirectErrorStream(true).redirectOutput(new File("target/cluster-node-"
+                    + url.substring(url.lastIndexOf(':') + 1) + ".log"));
+            processes.add(builder.start());
+        }
+        RestTemplate restTemplate = restTemplate();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        for (String url : urls) {
+            while (true) {
+                try {
+                    restTemplate.getForObject(url + "/registry/replication/digest", byte[].class);
+                    break;
+                } catch (RestClientException e) {
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException(url + " did not start");
+                    }
+                    Thread.sleep(500);
+                }
+            }
+        }
+        return urls;
+    }
+
+    private static void run(List<String> urls, boolean batched, int clients, int rate, int seconds)
+            throws Exception {
+        RestTemplate restTemplate = restTemplate();
+        String[] apps = new String[50];
+        for (int i = 0; i < apps.length; i++) {
+            apps[i] = "SERVICE-" + i;
+        }
+        for (int i = 0; i < clients; i++) {
+            restTemplate.postForEntity(urls.get(i % urls.size()) + "/registry/{app}/{id}", registration(i),
+                    Void.class, apps[i % apps.length], "instance-" + i);
+        }
+
+        List<Long> pids = new ArrayList<>();
+        for (String url : urls) {
+            pids.add(Long.parseLong(String.valueOf(
+                    restTemplate.getForObject(url + "/env/PID", Map.class).get("PID"))));
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(IDLE));
+        long idleStart = cpuMillis(pids);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(IDLE));
+        double idle = (cpuMillis(pids) - idleStart) / (double) IDLE;
+
+        ExecutorService threads = Executors.newCachedThreadPool();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARM_UP + seconds + 1);
+        LongAdder heartbeats = new LongAdder();
+        int heartbeaters = 8;
+        long interval = TimeUnit.SECONDS.toNanos(1) * heartbeaters / rate;
+        for (int t = 0; t < heartbeaters; t++) {
+            int first = t;
+            threads.submit(() -> {
+                long next = System.nanoTime();
+                for (int i = first; System.nanoTime() < deadline; i = (i + heartbeaters) % clients) {
+                    LockSupport.parkNanos(next - System.nanoTime());
+                    next += interval;
+                    restTemplate.put(urls.get(i % urls.size()) + "/registry/{app}/{id}/heartbeat", null,
+                            apps[i % apps.length], "instance-" + i);
+                    heartbeats.increment();
+                }
+                return null;
+            });
+        }
+
+        Map<String, Long> probes = new ConcurrentHashMap<>();
+        List<Long> latencies = new CopyOnWriteArrayList<>();
+        RestTemplate polling = restTemplate();
+        for (String url : urls.subList(1, urls.size())) {
+            RegistryReplica replica = new RegistryReplica(url, polling);
+            threads.submit(() -> {
+                replica.poll(0);
+                while (System.nanoTime() < deadline) {
+                    Feed feed = replica.poll(5000);
+                    long now = System.nanoTime();
+                    for (Feed.Change change : feed == null ? Collections.<Feed.Change>emptyList()
+                            : feed.getChanges()) {
+                        Long sent = probes.get(change.getRecord().getInstanceId());
+                        if (sent != null && PROBE.equals(change.getRecord().getApp()) && !change.isRemoved()) {
+                            latencies.add(now - sent);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(WARM_UP));
+        long cpuBefore = cpuMillis(pids);
+        long bytesBefore = sum(restTemplate, urls, "registry.replication.bytes");
+        long beatsBefore = heartbeats.sum();
+        long measured = System.nanoTime();
+        List<Long> batchLags = new ArrayList<>();
+        for (int p = 0; System.nanoTime() < deadline - TimeUnit.SECONDS.toNanos(1); p++) {
+            String id = "probe-" + p;
+            probes.put(id, System.nanoTime());
+            restTemplate.postForEntity(urls.get(0) + "/registry/{app}/{id}", registration(p), Void.class,
+                    PROBE, id);
+            if (p % 5 == 0) {
+                batchLags.add(max(restTemplate, urls, "registry.replication.lag"));
+            }
+            Thread.sleep(200);
+        }
+        double elapsed = (System.nanoTime() - measured) / 1e9;
+        long cpu = cpuMillis(pids) - cpuBefore;
+        long bytes = sum(restTemplate, urls, "registry.replication.bytes") - bytesBefore;
+        long beats = heartbeats.sum() - beatsBefore;
+        long dropped = sum(restTemplate, urls, "registry.replication.dropped");
+        long pending = sum(restTemplate, urls, "registry.replication.pending");
+        threads.shutdown();
+        threads.awaitTermination(30, TimeUnit.SECONDS);
+
+        Collections.sort(latencies);
+        Collections.sort(batchLags);
+        double beatRate = beats / elapsed;
+        System.out.printf("%s: %d nodes, %d clients, %.0f heartbeats/s%n", batched ? "batched" : "per event",
+                urls.size(), clients, beatRate);
+        System.out.printf("  register lag to peers' feeds (%d samples): p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                latencies.size(), percentile(latencies, 0.50), percentile(latencies, 0.99),
+                percentile(latencies, 1.0));
+        System.out.printf("  oldest change in last batch: median %.0f ms, max %.0f ms%n",
+                percentile(batchLags, 0.5) * 1e6, percentile(batchLags, 1.0) * 1e6);
+        System.out.printf("  CPU, all nodes: %.0f ms/s (%.0f idle), %.0f ms/s per 1,000 heartbeats/s above idle%n",
+                cpu / elapsed, idle, (cpu / elapsed - idle) / (beatRate / 1000));
+        System.out.printf("  sent to peers: %.1f KB/s; dropped %d, still pending %d%n",
+                bytes / elapsed / 1024, dropped, pending);
+    }
+
+    private static long cpuMillis(List<Long> pids) throws IOException {
+        long ticks = 0;
+        for (long pid : pids) {
+            String stat = new String(Files.readAllBytes(Paths.get("/proc", String.valueOf(pid), "stat")),
+                    StandardCharsets.US_ASCII);
+            // after "(command)": state is field 3, utime 14 and stime 15
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            ticks += Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        }
+        return ticks * TICK_MILLIS;
+    }
+
+    private static long sum(RestTemplate restTemplate, List<String> urls, String metric) {
+        long sum = 0;
+        for (String url : urls) {
+            sum += metric(restTemplate, url, metric);
+        }
+        return sum;
+    }
+
+    private static long max(RestTemplate restTemplate, List<String> urls, String metric) {
+        long max = 0;
+        for (String url : urls) {
+            max = Math.max(max, metric(restTemplate, url, metric));
+        }
+        return max;
+    }
+
+    private static long metric(RestTemplate restTemplate, String url, String metric) {
+        Object value = restTemplate.getForObject(url + "/metrics", Map.class).get(metric);
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return Double.NaN;
+        }
+        int index = Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1);
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+    private static RestTemplate restTemplate() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setReadTimeout(30000);
+        return new RestTemplate(requestFactory);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static RegistryController.Registration registration(int i) {
+        RegistryController.Registration registration = new RegistryController.Registration();
+        registration.setHost("10.0." + (i / 250 % 250) + "." + (i % 250));
+        registration.setPort(8080);
+        registration.setMetadata(Collections.singletonMap("zone", "zone-" + (i % 3)));
+        return registration;
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.orangeandbronze.registry;
+
+import com.orangeandbronze.ServiceRegistryApplication;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Two registry nodes in this JVM, each the other's peer.
+ */
+public class PeerReplicatorTest {
+
+    private static ConfigurableApplicationContext a;
+    private static ConfigurableApplicationContext b;
+    private static int portA;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @BeforeClass
+    public static void startNodes() throws IOException {
+        portA = freePort();
+        int portB = freePort();
+        a = node(portA, portB);
+        b = node(portB, portA);
+    }
+
+    @AfterClass
+    public static void stopNodes() {
+        if (a != null) {
+            a.close();
+        }
+        if (b != null) {
+            b.close();
+        }
+    }
+
+    @Test
+    public void changesReachThePeer() {
+        RegistryController.Registration registration = new RegistryController.Registration();
+        registration.setHost("localhost");
+        registration.setPort(8080);
+        restTemplate.postForEntity("http://localhost:" + portA + "/registry/FORTUNE/fortune-1", registration,
+                Void.class);
+        eventually(() -> registry(b).get("FORTUNE", "fortune-1") != null);
+
+        long received = metric(b, "registry.replication.received");
+        restTemplate.put("http://localhost:" + portA + "/registry/FORTUNE/fortune-1/heartbeat", null);
+        eventually(() -> metric(b, "registry.replication.received") > received);
+
+        restTemplate.delete("http://localhost:" + portA + "/registry/FORTUNE/fortune-1");
+        eventually(() -> registry(b).get("FORTUNE", "fortune-1") == null);
+    }
+
+    @Test
+    public void peerMissingAnInstanceGetsItWithTheNextHeartbeat() {
+        // known to b only, as if a had restarted
+        registry(b).replicateRegister(record("GREETING", "greeting-1"), 0, System.currentTimeMillis());
+        assertNull(registry(a).get("GREETING", "greeting-1"));
+
+        assertTrue(registry(b).renew("GREETING", "greeting-1"));
+
+        eventually(() -> registry(a).get("GREETING", "greeting-1") != null);
+        assertTrue(metric(b, "registry.replication.resent") > 0);
+    }
+
+    @Test
+    public void antiEntropyKeepsTheLaterChange() {
+        long now = System.currentTimeMillis();
+        registry(a).replicateRegister(record("QUOTE", "only-on-a"), 0, now);
+        registry(a).replicateRegister(record("QUOTE", "cancelled-on-b"), 0, now);
+        registry(b).replicateRegister(record("QUOTE", "cancelled-on-b"), 0, now);
+        registry(b).replicateCancel("QUOTE", "cancelled-on-b", now + 1);
+
+        replicator(b).repair();
+        replicator(a).repair();
+
+        assertNotNull(registry(b).get("QUOTE", "only-on-a"));
+        assertNull(registry(a).get("QUOTE", "cancelled-on-b"));
+        assertArrayEquals(registry(a).digest(), registry(b).digest());
+    }
+
+    @Test
+    public void batchesSurviveEncoding() {
+        List<ReplicationOp> ops = Arrays.asList(
+                ReplicationOp.register(record("FORTUNE", "f1"), 30000, 1234),
+                ReplicationOp.cancel("FORTUNE", "f2", 5678),
+                ReplicationOp.renew("FORTUNE", "f3"));
+
+        byte[] bytes = ReplicationCodec.gunzip(ReplicationCodec.gzip(ReplicationCodec.encodeBatch(ops)));
+        List<ReplicationOp> decoded = ReplicationCodec.decodeBatch(bytes);
+
+        assertEquals(record("FORTUNE", "f1"), decoded.get(0).getRecord());
+        assertEquals(30000, decoded.get(0).getLeaseDuration());
+        assertEquals(1234, decoded.get(0).getTimestamp());
+        assertEquals(ReplicationOp.Type.CANCEL, decoded.get(1).getType());
+        assertEquals(5678, decoded.get(1).getTimestamp());
+        assertEquals("f3", decoded.get(2).getRecord().getInstanceId());
+        long[] digest = {1, -1, Long.MIN_VALUE};
+        assertArrayEquals(digest, ReplicationCodec.decodeDigest(ReplicationCodec.encodeDigest(digest)));
+    }
+
+    private static ConfigurableApplicationContext node(int port, int peer) {
+        return new SpringApplicationBuilder(ServiceRegistryApplication.class).run(
+                "--server.port=" + port,
+                "--spring.jmx.enabled=false",
+                "--registry.delta.enabled=true",
+                "--registry.replication.peers=http://localhost:" + peer,
+                "--registry.replication.flush-interval=10",
+                "--registry.replication.anti-entropy-interval=0");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static ShardedRegistry registry(ConfigurableApplicationContext node) {
+        return node.getBean(ShardedRegistry.class);
+    }
+
+    private static PeerReplicator replicator(ConfigurableApplicationContext node) {
+        return node.getBean(PeerReplicator.class);
+    }
+
+    private static long metric(ConfigurableApplicationContext node, String name) {
+        for (Metric<?> metric : replicator(node).metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static void eventually(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("not replicated in time", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static InstanceRecord record(String app, String instanceId) {
+        return new InstanceRecord(app, instanceId, "host", 8080, InstanceRecord.Status.UP,
+                Collections.singletonMap("zone", "a"));
+    }
+
+}
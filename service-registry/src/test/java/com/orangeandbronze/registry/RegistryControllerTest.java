@@ -0,0 +1,87 @@
+package com.orangeandbronze.registry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "registry.delta.enabled=true",
+        "registry.delta.max-wait=1000"})
+public class RegistryControllerTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ShardedRegistry registry;
+
+    private final RestTemplate restTemplate = new RestTemplate(new SimpleClientHttpRequestFactory());
+
+    @Test
+    public void replicaWaitsForTheNextChange() throws Exception {
+        register("FORTUNE", "fortune-1");
+        RegistryReplica replica = new RegistryReplica(baseUrl(), restTemplate);
+
+        assertTrue(replica.poll(1000).isSnapshot());
+        assertNotNull(replica.get("FORTUNE", "fortune-1"));
+
+        CompletableFuture<Feed> next = CompletableFuture.supplyAsync(() -> replica.poll(5000));
+        Thread.sleep(200);
+        assertFalse("waits while nothing changes", next.isDone());
+        register("FORTUNE", "fortune-2");
+
+        Feed feed = next.get(2, TimeUnit.SECONDS);
+        assertFalse(feed.isSnapshot());
+        assertNotNull(replica.get("FORTUNE", "fortune-2"));
+        assertEquals(registry.version(), replica.version());
+
+        // held for max-wait at most, then nothing
+        long start = System.nanoTime();
+        assertNull(replica.poll(60000));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(0, registry.metrics().stream()
+                .filter(metric -> metric.getName().equals("registry.delta.waiting"))
+                .findFirst().get().getValue().intValue());
+    }
+
+    @Test
+    public void heartbeatForUnknownInstanceIsNotFound() {
+        register("GREETING", "greeting-1");
+        restTemplate.put(baseUrl() + "/registry/GREETING/greeting-1/heartbeat", null);
+        try {
+            restTemplate.put(baseUrl() + "/registry/GREETING/nobody/heartbeat", null);
+            fail("unknown instance renewed");
+        } catch (HttpClientErrorException e) {
+            assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+        }
+        restTemplate.delete(baseUrl() + "/registry/GREETING/greeting-1");
+        assertNull(registry.get("GREETING", "greeting-1"));
+    }
+
+    private void register(String app, String instanceId) {
+        RegistryController.Registration registration = new RegistryController.Registration();
+        registration.setHost("localhost");
+        registration.setPort(8080);
+        registration.setMetadata(Collections.singletonMap("zone", "a"));
+        restTemplate.postForEntity(baseUrl() + "/registry/{app}/{id}", registration, Void.class, app, instanceId);
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.orangeandbronze.registry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orangeandbronze.ServiceRegistryApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Starts the registry with the change feed on a random port and plays
+ * a fleet against it over HTTP:
+ * </p><ul>
+ * <li>{@code clients} instances register, then heartbeat as fast as
+ * {@code heartbeaters} threads can send;</li>
+ * <li>{@code watchers} replicas long-poll for changes;</li>
+ * <li>a probe registers a new instance every 200 ms, and the time until
+ * each watcher has it is the propagation latency.</li>
+ * </ul><p>
+ * Then the same load runs in process against 1 shard and the configured
+ * number, to show what striping does for heartbeats while feeds are read.
+ * Not run by the build:
+ * </p><pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.orangeandbronze.registry.RegistryHarness [clients] [seconds] [watchers] [heartbeaters]"
+ * </pre>
+ */
+public class RegistryHarness {
+
+    private static final String PROBE = "PROBE";
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int watchers = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int heartbeaters = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+
+        ConfigurableApplicationContext context = SpringApplication.run(ServiceRegistryApplication.class,
+                "--server.port=0", "--registry.delta.enabled=true", "--logging.level.root=WARN",
+                "--logging.level.com.orangeandbronze=INFO", "--server.tomcat.max-threads=" + (watchers + 100));
+        try {
+            int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+            overHttp("http://localhost:" + port, context.getBean(ShardedRegistry.class),
+                    clients, seconds, watchers, heartbeaters);
+        } finally {
+            context.close();
+        }
+
+        DeltaRegistryProperties properties = new DeltaRegistryProperties();
+        for (int shards : new int[] {1, properties.getShards()}) {
+            properties.setShards(shards);
+            inProcess(properties, clients, Math.min(seconds, 10), heartbeaters);
+        }
+    }
+
+    private static void overHttp(String baseUrl, ShardedRegistry registry, int clients, int seconds,
+            int watchers, int heartbeaters) throws Exception {
+        RestTemplate restTemplate = restTemplate();
+        String[] apps = apps();
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            restTemplate.postForEntity(baseUrl + "/registry/{app}/{id}", registration(i), Void.class,
+                    apps[i % apps.length], "instance-" + i);
+        }
+        System.out.printf("registered %d instances in %d ms%n", clients,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        ExecutorService threads = Executors.newCachedThreadPool();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        LongAdder heartbeats = new LongAdder();
+        for (int t = 0; t < heartbeaters; t++) {
+            int first = t;
+            threads.submit(() -> {
+                for (int i = first; System.nanoTime() < deadline; i = (i + heartbeaters) % clients) {
+                    restTemplate.put(baseUrl + "/registry/{app}/{id}/heartbeat", null,
+                            apps[i % apps.length], "instance-" + i);
+                    heartbeats.increment();
+                }
+                return null;
+            });
+        }
+
+        Map<String, Long> probes = new ConcurrentHashMap<>();
+        List<Long> latencies = new CopyOnWriteArrayList<>();
+        LongAdder feedBytes = new LongAdder();
+        LongAdder feeds = new LongAdder();
+        RestTemplate polling = restTemplate();
+        polling.getInterceptors().add((request, body, execution) -> {
+            ClientHttpResponse response = execution.execute(request, body);
+            feedBytes.add(response.getHeaders().getContentLength() > 0 ? response.getHeaders().getContentLength() : 0);
+            return response;
+        });
+        for (int w = 0; w < watchers; w++) {
+            RegistryReplica replica = new RegistryReplica(baseUrl, polling);
+            threads.submit(() -> {
+                replica.poll(0);
+                while (System.nanoTime() < deadline) {
+                    Feed feed = replica.poll(5000);
+                    long now = System.nanoTime();
+                    if (feed == null) {
+                        continue;
+                    }
+                    feeds.increment();
+                    for (Feed.Change change : feed.getChanges()) {
+                        Long sent = probes.get(change.getRecord().getInstanceId());
+                        if (sent != null && PROBE.equals(change.getRecord().getApp()) && !change.isRemoved()) {
+                            latencies.add(now - sent);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        Thread.sleep(1000);
+        long snapshotBytes = registry.encodedFeed(0, 0).length;
+        feedBytes.reset();
+        feeds.reset();
+        heartbeats.reset();
+        long measured = System.nanoTime();
+        for (int p = 0; System.nanoTime() < deadline - TimeUnit.SECONDS.toNanos(1); p++) {
+            String id = "probe-" + p;
+            probes.put(id, System.nanoTime());
+            restTemplate.postForEntity(baseUrl + "/registry/{app}/{id}", registration(p), Void.class, PROBE, id);
+            Thread.sleep(200);
+        }
+        double elapsed = (System.nanoTime() - measured) / 1e9;
+        long beats = heartbeats.sum();
+        threads.shutdown();
+        threads.awaitTermination(seconds + 10, TimeUnit.SECONDS);
+
+        Collections.sort(latencies);
+        System.out.printf("%d clients, %d heartbeat threads, %d watchers over HTTP%n",
+                clients, heartbeaters, watchers);
+        System.out.printf("  heartbeats: %.0f/s%n", beats / elapsed);
+        System.out.printf("  propagation (%d samples): p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                latencies.size(), percentile(latencies, 0.50), percentile(latencies, 0.99),
+                percentile(latencies, 1.0));
+        System.out.printf("  snapshot: %d bytes, %.1f per instance (JSON of the same records: %.1f)%n",
+                snapshotBytes, (double) snapshotBytes / registry.size(), jsonBytesPerInstance(registry));
+        System.out.printf("  delta feeds: %d, %.1f bytes each%n", feeds.sum(),
+                feeds.sum() == 0 ? 0.0 : (double) feedBytes.sum() / feeds.sum());
+    }
+
+    private static void inProcess(DeltaRegistryProperties properties, int clients, int seconds,
+            int heartbeaters) throws InterruptedException {
+        ShardedRegistry registry = new ShardedRegistry(properties);
+        String[] apps = apps();
+        for (int i = 0; i < clients; i++) {
+            registry.register(record(apps[i % apps.length], "instance-" + i, i), 0);
+        }
+        ExecutorService threads = Executors.newCachedThreadPool();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        LongAdder heartbeats = new LongAdder();
+        LongAdder changes = new LongAdder();
+        LongAdder reads = new LongAdder();
+        for (int t = 0; t < heartbeaters; t++) {
+            int first = t;
+            threads.submit(() -> {
+                for (int i = first; System.nanoTime() < deadline; i = (i + heartbeaters) % clients) {
+                    registry.renew(apps[i % apps.length], "instance-" + i);
+                    heartbeats.increment();
+                }
+            });
+        }
+        threads.submit(() -> {
+            for (int i = 0; System.nanoTime() < deadline; i++) {
+                registry.register(record(PROBE, "probe-" + (i % 1000), i), 0);
+                changes.increment();
+            }
+        });
+        threads.submit(() -> {
+            while (System.nanoTime() < deadline) {
+                registry.feed(0, 0);
+                reads.increment();
+            }
+        });
+        threads.shutdown();
+        threads.awaitTermination(seconds + 10, TimeUnit.SECONDS);
+        registry.shutdown();
+        System.out.printf("in process, %d shards: %.0f heartbeats/s, %.0f changes/s, %.1f snapshots/s%n",
+                properties.getShards(), heartbeats.sum() / (double) seconds, changes.sum() / (double) seconds,
+                reads.sum() / (double) seconds);
+    }
+
+    private static double jsonBytesPerInstance(ShardedRegistry registry) {
+        try {
+            List<InstanceRecord> all = new ArrayList<>();
+            for (Feed.Change change : registry.feed(0, 0).getChanges()) {
+                all.add(change.getRecord());
+            }
+            return (double) new ObjectMapper().writeValueAsBytes(all).length / all.size();
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return Double.NaN;
+        }
+        int index = Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1);
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+    private static RestTemplate restTemplate() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setReadTimeout(30000);
+        return new RestTemplate(requestFactory);
+    }
+
+    private static String[] apps() {
+        String[] apps = new String[50];
+        for (int i = 0; i < apps.length; i++) {
+            apps[i] = "SERVICE-" + i;
+        }
+        return apps;
+    }
+
+    private static RegistryController.Registration registration(int i) {
+        RegistryController.Registration registration = new RegistryController.Registration();
+        registration.setHost(host(i));
+        registration.setPort(8080);
+        registration.setMetadata(metadata(i));
+        return registration;
+    }
+
+    private static InstanceRecord record(String app, String instanceId, int i) {
+        return new InstanceRecord(app, instanceId, host(i), 8080,
+                InstanceRecord.Status.UP, metadata(i));
+    }
+
+    private static String host(int i) {
+        return "10.0." + (i / 250 % 250) + "." + (i % 250);
+    }
+
+    private static Map<String, String> metadata(int i) {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("zone", Arrays.asList("a", "b", "c").get(i % 3));
+        metadata.put("version", "1.0." + (i % 4));
+        return metadata;
+    }
+
+}
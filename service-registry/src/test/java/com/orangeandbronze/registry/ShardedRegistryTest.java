@@ -0,0 +1,226 @@
+package com.orangeandbronze.registry;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ShardedRegistryTest {
+
+    private final DeltaRegistryProperties properties = new DeltaRegistryProperties();
+    private ShardedRegistry registry;
+
+    @After
+    public void tearDown() {
+        if (registry != null) {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    public void feedSurvivesEncoding() {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("zone", "a");
+        metadata.put("version", "1.2");
+        Feed feed = new Feed(7, 300, true, Arrays.asList(
+                new Feed.Change(false, new InstanceRecord("FORTUNE", "f1", "host-1", 8080,
+                        InstanceRecord.Status.UP, metadata)),
+                new Feed.Change(false, new InstanceRecord("FORTUNE", "f2", "host-2", 8080,
+                        InstanceRecord.Status.OUT_OF_SERVICE, metadata)),
+                new Feed.Change(true, InstanceRecord.removed("GREETING", "g1"))));
+
+        byte[] bytes = FeedCodec.encode(feed);
+        Feed decoded = FeedCodec.decode(bytes);
+
+        assertTrue(decoded.isSnapshot());
+        assertEquals(7, decoded.getEpoch());
+        assertEquals(300, decoded.getVersion());
+        assertEquals(3, decoded.getChanges().size());
+        assertEquals(feed.getChanges().get(0).getRecord(), decoded.getChanges().get(0).getRecord());
+        assertEquals(feed.getChanges().get(1).getRecord(), decoded.getChanges().get(1).getRecord());
+        assertTrue(decoded.getChanges().get(2).isRemoved());
+        assertEquals("g1", decoded.getChanges().get(2).getRecord().getInstanceId());
+    }
+
+    @Test
+    public void repeatedStringsAreWrittenOnce() {
+        Feed one = new Feed(7, 1, false, Collections.singletonList(
+                new Feed.Change(false, record("FORTUNE", "f1"))));
+        Feed two = new Feed(7, 2, false, Arrays.asList(
+                new Feed.Change(false, record("FORTUNE", "f1")),
+                new Feed.Change(false, record("FORTUNE", "f2"))));
+
+        int first = FeedCodec.encode(one).length;
+        int second = FeedCodec.encode(two).length - first;
+
+        // the app, host and metadata of the second instance are back references
+        assertTrue("second instance took " + second + " bytes", second <= 13);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedFeedIsRejected() {
+        byte[] bytes = FeedCodec.encode(new Feed(7, 1, false, Collections.singletonList(
+                new Feed.Change(false, record("FORTUNE", "f1")))));
+        FeedCodec.decode(Arrays.copyOf(bytes, bytes.length - 3));
+    }
+
+    @Test
+    public void deltaHoldsTheLatestChangePerInstance() {
+        registry = new ShardedRegistry(properties);
+        registry.register(record("FORTUNE", "f1"), 0);
+        long since = registry.version();
+
+        registry.register(record("FORTUNE", "f2"), 0);
+        registry.register(new InstanceRecord("FORTUNE", "f1", "host", 8080, InstanceRecord.Status.DOWN, null), 0);
+        registry.cancel("FORTUNE", "f2");
+        // unchanged, so not a change
+        registry.register(new InstanceRecord("FORTUNE", "f1", "host", 8080, InstanceRecord.Status.DOWN, null), 0);
+
+        Feed feed = registry.feed(registry.epoch(), since);
+        assertFalse(feed.isSnapshot());
+        assertEquals(since + 3, feed.getVersion());
+        assertEquals(2, feed.getChanges().size());
+        assertEquals(InstanceRecord.Status.DOWN, feed.getChanges().get(0).getRecord().getStatus());
+        assertTrue(feed.getChanges().get(1).isRemoved());
+        assertTrue(registry.feed(registry.epoch(), feed.getVersion()).isEmpty());
+    }
+
+    @Test
+    public void clientTooFarBehindGetsEverything() {
+        properties.setChangeLogCapacity(4);
+        registry = new ShardedRegistry(properties);
+        for (int i = 0; i < 10; i++) {
+            registry.register(record("FORTUNE", "f" + i), 0);
+        }
+
+        Feed behind = registry.feed(registry.epoch(), 3);
+        assertTrue(behind.isSnapshot());
+        assertEquals(10, behind.getChanges().size());
+        assertEquals(10, behind.getVersion());
+
+        assertFalse(registry.feed(registry.epoch(), 7).isSnapshot());
+        // a version this run never reached
+        assertTrue(registry.feed(registry.epoch(), 50).isSnapshot());
+    }
+
+    @Test
+    public void waitersRunOnTheNextChange() throws InterruptedException {
+        registry = new ShardedRegistry(properties);
+        registry.register(record("FORTUNE", "f1"), 0);
+        CountDownLatch woken = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Runnable gone = cancelled::countDown;
+
+        registry.await(registry.version(), woken::countDown);
+        registry.await(registry.version(), gone);
+        registry.cancelWait(gone);
+        assertEquals(1, woken.getCount());
+
+        assertTrue(registry.renew("FORTUNE", "f1"));
+        assertEquals("heartbeats are not changes", 1, woken.getCount());
+
+        registry.register(record("FORTUNE", "f2"), 0);
+        assertTrue(woken.await(1, TimeUnit.SECONDS));
+        assertEquals(1, cancelled.getCount());
+    }
+
+    @Test
+    public void unrenewedLeasesAreEvicted() throws InterruptedException {
+        registry = new ShardedRegistry(properties);
+        registry.register(record("FORTUNE", "f1"), 50);
+        registry.register(record("FORTUNE", "f2"), 60000);
+        long since = registry.version();
+        assertFalse(registry.renew("FORTUNE", "unknown"));
+
+        Thread.sleep(100);
+        registry.evictExpired();
+
+        assertNull(registry.get("FORTUNE", "f1"));
+        assertNotNull(registry.get("FORTUNE", "f2"));
+        Feed feed = registry.feed(registry.epoch(), since);
+        assertEquals(1, feed.getChanges().size());
+        assertTrue(feed.getChanges().get(0).isRemoved());
+        assertFalse(registry.renew("FORTUNE", "f1"));
+    }
+
+    @Test
+    public void laterChangeWins() {
+        registry = new ShardedRegistry(properties);
+        registry.replicateRegister(record("FORTUNE", "f1"), 0, 100);
+        registry.replicateCancel("FORTUNE", "f1", 200);
+        registry.replicateRegister(record("FORTUNE", "f1"), 0, 150);
+        assertNull("older registration after cancel", registry.get("FORTUNE", "f1"));
+
+        registry.replicateRegister(record("FORTUNE", "f1"), 0, 300);
+        registry.replicateCancel("FORTUNE", "f1", 250);
+        assertNotNull("older cancel after registration", registry.get("FORTUNE", "f1"));
+
+        // a local change is later than any a peer made, whatever the clocks say
+        registry.replicateRegister(record("FORTUNE", "f2"), 0, Long.MAX_VALUE / 2);
+        registry.cancel("FORTUNE", "f2");
+        registry.replicateRegister(record("FORTUNE", "f2"), 0, Long.MAX_VALUE / 2);
+        assertNull(registry.get("FORTUNE", "f2"));
+    }
+
+    @Test
+    public void replicaFollowsTheFeed() {
+        registry = new ShardedRegistry(properties);
+        registry.register(record("FORTUNE", "f1"), 0);
+        registry.register(record("FORTUNE", "f2"), 0);
+        RegistryReplica replica = new RegistryReplica("http://unused", null);
+
+        replica.apply(FeedCodec.decode(registry.encodedFeed(0, 0)));
+        assertEquals(2, replica.instances("FORTUNE").size());
+
+        registry.cancel("FORTUNE", "f1");
+        registry.register(record("GREETING", "g1"), 0);
+        replica.apply(FeedCodec.decode(registry.encodedFeed(replica.epoch(), replica.version())));
+        assertNull(replica.get("FORTUNE", "f1"));
+        assertNotNull(replica.get("GREETING", "g1"));
+
+        registry.cancel("FORTUNE", "f2");
+        replica.apply(FeedCodec.decode(registry.encodedFeed(0, 0)));
+        assertEquals(1, replica.size());
+        assertEquals(registry.version(), replica.version());
+    }
+
+    @Test
+    public void replicaOfARestartedRegistryStartsOver() {
+        registry = new ShardedRegistry(properties);
+        registry.register(record("FORTUNE", "f1"), 0);
+        registry.register(record("FORTUNE", "f2"), 0);
+        RegistryReplica replica = new RegistryReplica("http://unused", null);
+        replica.apply(FeedCodec.decode(registry.encodedFeed(0, 0)));
+        assertEquals(2, replica.version());
+
+        // restarted, and already past the version the replica has
+        registry = new ShardedRegistry(properties);
+        registry.register(record("GREETING", "g1"), 0);
+        registry.register(record("GREETING", "g2"), 0);
+        registry.register(record("GREETING", "g3"), 0);
+        assertNotEquals(registry.epoch(), replica.epoch());
+
+        Feed feed = FeedCodec.decode(registry.encodedFeed(replica.epoch(), replica.version()));
+        assertTrue(feed.isSnapshot());
+        replica.apply(feed);
+        assertEquals(registry.epoch(), replica.epoch());
+        assertEquals(3, replica.version());
+        assertEquals(3, replica.size());
+        assertNull(replica.get("FORTUNE", "f1"));
+        assertNotNull(replica.get("GREETING", "g3"));
+        assertTrue(registry.feed(replica.epoch(), replica.version()).isEmpty());
+    }
+
+    private static InstanceRecord record(String app, String instanceId) {
+        return new InstanceRecord(app, instanceId, "host", 8080, InstanceRecord.Status.UP,
+                Collections.singletonMap("zone", "a"));
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A {@link CorsProperties.Policy} compiled into ready-to-send header values,
+ * so applying it to a request costs a set lookup and a few header writes.
+ */
+class CorsPolicy {
+
+    private final boolean anyOrigin;
+    private final Set<String> origins;
+    private final boolean allowCredentials;
+    private final Set<String> methods;
+    private final String allowMethods;
+    private final String allowHeaders;
+    private final String maxAge;
+
+    CorsPolicy(CorsProperties.Policy policy) {
+        this.anyOrigin = policy.getAllowedOrigins().contains("*");
+        this.origins = new HashSet<>(policy.getAllowedOrigins());
+        this.allowCredentials = policy.isAllowCredentials();
+        this.methods = new HashSet<>(policy.getAllowedMethods());
+        this.allowMethods = StringUtils.collectionToDelimitedString(policy.getAllowedMethods(), ",");
+        this.allowHeaders = policy.getAllowedHeaders().contains("*") ? null
+                : StringUtils.collectionToDelimitedString(policy.getAllowedHeaders(), ",");
+        this.maxAge = String.valueOf(policy.getMaxAge());
+    }
+
+    boolean allowsOrigin(String origin) {
+        return anyOrigin || origins.contains(origin);
+    }
+
+    boolean allowsMethod(String method) {
+        return methods.contains(method);
+    }
+
+    void addAllowOrigin(HttpServletResponse response, String origin) {
+        if (anyOrigin && !allowCredentials) {
+            response.addHeader("Access-Control-Allow-Origin", "*");
+        } else {
+            response.addHeader("Access-Control-Allow-Origin", origin);
+            response.addHeader("Vary", "Origin");
+        }
+        if (allowCredentials) {
+            response.addHeader("Access-Control-Allow-Credentials", "true");
+        }
+    }
+
+    void addPreflight(HttpServletResponse response, String requestedHeaders) {
+        response.addHeader("Access-Control-Allow-Methods", allowMethods);
+        String headers = allowHeaders != null ? allowHeaders : requestedHeaders;
+        if (headers != null) {
+            response.addHeader("Access-Control-Allow-Headers", headers);
+        }
+        response.addHeader("Access-Control-Max-Age", maxAge);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.orangeandbronze.gateway;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>CORS policies for the gateway. {@code gateway.cors.defaults} applies to
+ * every route without its own entry under {@code gateway.cors.routes},
+ * keyed by Zuul route name:
+ * </p>
+ * <pre>
+ * gateway:
+ *   cors:
+ *     routes:
+ *       fortune:
+ *         allowed-origins: http://localhost:8791
+ *         max-age: 3600
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "gateway.cors")
+public class CorsProperties {
+
+    private Policy defaults = new Policy();
+
+    private Map<String, Policy> routes = new LinkedHashMap<>();
+
+    public Policy getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Policy defaults) {
+        this.defaults = defaults;
+    }
+
+    public Map<String, Policy> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Policy> routes) {
+        this.routes = routes;
+    }
+
+    public static class Policy {
+
+        /**
+         * Allowed origins, or {@code *} for any.
+         */
+        private List<String> allowedOrigins = new ArrayList<>(Arrays.asList("*"));
+
+        private List<String> allowedMethods = new ArrayList<>(Arrays.asList("OPTIONS", "GET"));
+
+        /**
+         * Allowed request headers, or {@code *} to allow whatever a preflight asks for.
+         */
+        private List<String> allowedHeaders = new ArrayList<>(Arrays.asList("*"));
+
+        private boolean allowCredentials;
+
+        /**
+         * How long (in seconds) browsers may cache a preflight response.
+         */
+        private long maxAge = 1800;
+
+        public List<String> getAllowedOrigins() {
+            return allowedOrigins;
+        }
+
+        public void setAllowedOrigins(List<String> allowedOrigins) {
+            this.allowedOrigins = allowedOrigins;
+        }
+
+        public List<String> getAllowedMethods() {
+            return allowedMethods;
+        }
+
+        public void setAllowedMethods(List<String> allowedMethods) {
+            this.allowedMethods = allowedMethods;
+        }
+
+        public List<String> getAllowedHeaders() {
+            return allowedHeaders;
+        }
+
+        public void setAllowedHeaders(List<String> allowedHeaders) {
+            this.allowedHeaders = allowedHeaders;
+        }
+
+        public boolean isAllowCredentials() {
+            return allowCredentials;
+        }
+
+        public void setAllowCredentials(boolean allowCredentials) {
+            this.allowCredentials = allowCredentials;
+        }
+
+        public long getMaxAge() {
+            return maxAge;
+        }
+
+        public void setMaxAge(long maxAge) {
+            this.maxAge = maxAge;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.orangeandbronze.store;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Hashes and checks passwords on a pool of its own.
+ * </p><p>
+ * A password check costs tens of milliseconds of CPU by design. Done on the
+ * request threads, a burst of logins takes every processor and every other
+ * request waits behind it. Here at most {@code auth.store.hashing-threads}
+ * checks run at once, and at most {@code hashing-queue-capacity} wait;
+ * a login past that, or one that waits longer than {@code hashing-timeout},
+ * fails with an {@link AuthenticationServiceException} instead of piling
+ * up.
+ * </p>
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, PublicMetrics {
+
+    private final PasswordEncoder delegate;
+    private final CredentialStoreProperties properties;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, CredentialStoreProperties properties) {
+        this.delegate = delegate;
+        this.properties = properties;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-hashing-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(properties.getHashingThreads(), properties.getHashingThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getHashingQueueCapacity()),
+                threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        checks.increment();
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> result;
+        try {
+            result = executor.submit(task);
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new AuthenticationServiceException("Too many logins in progress, try again later");
+        }
+        try {
+            return result.get(properties.getHashingTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            result.cancel(true);
+            timedOut.increment();
+            throw new AuthenticationServiceException("Password check timed out, try again later");
+        } catch (InterruptedException ex) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Interrupted while checking the password", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new AuthenticationServiceException("Password check failed", ex.getCause());
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("password.checks", checks.sum()),
+                new Metric<>("password.rejected", rejected.sum()),
+                new Metric<>("password.timed-out", timedOut.sum()),
+                new Metric<>("password.active", executor.getActiveCount()),
+                new Metric<>("password.queued", executor.getQueue().size()));
+    }
+
+}
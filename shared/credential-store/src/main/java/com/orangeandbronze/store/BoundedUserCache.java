@@ -0,0 +1,125 @@
+package com.orangeandbronze.store;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Keeps the users {@link DaoAuthenticationProvider} loads, so a login
+ * does not query the store every time.
+ * </p><ul>
+ * <li>A user is reused for {@code auth.store.user-cache-ttl}.</li>
+ * <li>At most {@code user-cache-max-size} users are kept, least recently
+ * used first out.</li>
+ * <li>When a password does not match the cached user, the provider loads
+ * the user again before it rejects the login, so a changed password
+ * works at once. {@code JdbcUserDetailsManager} evicts the users it
+ * changes or deletes.</li>
+ * </ul><p>
+ * The provider erases the password of the user it authenticates, so the
+ * cache keeps a copy and hands out copies.
+ * </p>
+ */
+public class BoundedUserCache implements UserCache, PublicMetrics {
+
+    private CredentialStoreProperties properties;
+    // guarded by itself
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public BoundedUserCache(CredentialStoreProperties properties) {
+        this.properties = properties;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > BoundedUserCache.this.properties.getUserCacheMaxSize();
+            }
+        };
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(username);
+            if (entry != null && entry.isOlderThan(System.currentTimeMillis(), properties.getUserCacheTtl())) {
+                entries.remove(username);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(entry.user);
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        if (properties.getUserCacheMaxSize() <= 0) {
+            return;
+        }
+        Entry entry = new Entry(copy(user), System.currentTimeMillis());
+        synchronized (entries) {
+            entries.put(user.getUsername(), entry);
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        synchronized (entries) {
+            entries.remove(username);
+        }
+    }
+
+    public void removeAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("userdetails.cache.hits", hits.sum()),
+                new Metric<>("userdetails.cache.misses", misses.sum()),
+                new Metric<>("userdetails.cache.entries", size));
+    }
+
+    private static UserDetails copy(UserDetails user) {
+        return new User(user.getUsername(), user.getPassword(), user.isEnabled(), user.isAccountNonExpired(),
+                user.isCredentialsNonExpired(), user.isAccountNonLocked(), user.getAuthorities());
+    }
+
+    private static class Entry {
+
+        final UserDetails user;
+        final long loadedAt;
+
+        Entry(UserDetails user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isOlderThan(long now, long age) {
+            return now - loadedAt >= age;
+        }
+    }
+
+}
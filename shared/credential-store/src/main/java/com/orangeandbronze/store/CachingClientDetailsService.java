@@ -0,0 +1,114 @@
+package com.orangeandbronze.store;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.oauth2.provider.ClientDetails;
+import org.springframework.security.oauth2.provider.ClientDetailsService;
+import org.springframework.security.oauth2.provider.ClientRegistrationException;
+import org.springframework.security.oauth2.provider.client.BaseClientDetails;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Keeps the clients loaded from the store. A token request looks its
+ * client up several times (to authenticate it, to check the grant, to
+ * size the token), and every one of those is served from here.
+ * </p><ul>
+ * <li>A client is reused for {@code auth.store.client-cache-ttl}.</li>
+ * <li>At most {@code client-cache-max-size} clients are kept, least
+ * recently used first out.</li>
+ * <li>An unknown client is not cached.</li>
+ * </ul><p>
+ * Clients are mutable, so the cache hands out copies.
+ * </p>
+ */
+public class CachingClientDetailsService implements ClientDetailsService, PublicMetrics {
+
+    private ClientDetailsService delegate;
+    private CredentialStoreProperties properties;
+    // guarded by itself
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingClientDetailsService(ClientDetailsService delegate, CredentialStoreProperties properties) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CachingClientDetailsService.this.properties.getClientCacheMaxSize();
+            }
+        };
+    }
+
+    @Override
+    public ClientDetails loadClientByClientId(String clientId) throws ClientRegistrationException {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(clientId);
+        }
+        if (entry != null && !entry.isOlderThan(now, properties.getClientCacheTtl())) {
+            hits.increment();
+            return new BaseClientDetails(entry.client);
+        }
+        misses.increment();
+        ClientDetails client = delegate.loadClientByClientId(clientId);
+        if (properties.getClientCacheMaxSize() > 0) {
+            synchronized (entries) {
+                entries.put(clientId, new Entry(new BaseClientDetails(client), now));
+            }
+        }
+        return new BaseClientDetails(client);
+    }
+
+    /**
+     * Drops a client, e.g. after its secret or scopes were changed in the
+     * store.
+     */
+    public void evict(String clientId) {
+        synchronized (entries) {
+            entries.remove(clientId);
+        }
+    }
+
+    public void evictAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("clientdetails.cache.hits", hits.sum()),
+                new Metric<>("clientdetails.cache.misses", misses.sum()),
+                new Metric<>("clientdetails.cache.entries", size));
+    }
+
+    private static class Entry {
+
+        final ClientDetails client;
+        final long loadedAt;
+
+        Entry(ClientDetails client, long loadedAt) {
+            this.client = client;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isOlderThan(long now, long age) {
+            return now - loadedAt >= age;
+        }
+    }
+
+}
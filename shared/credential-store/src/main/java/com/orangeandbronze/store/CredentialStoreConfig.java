@@ -0,0 +1,71 @@
+package com.orangeandbronze.store;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.oauth2.provider.client.JdbcClientDetailsService;
+import org.springframework.security.provisioning.JdbcUserDetailsManager;
+
+import javax.sql.DataSource;
+
+/**
+ * <p>Users and clients come from the database ({@code schema.sql},
+ * {@code data.sql}; an embedded H2 one unless {@code spring.datasource.*}
+ * says otherwise). Both are looked up by primary key, and kept for a while
+ * in bounded caches. Passwords and client secrets are BCrypt hashes,
+ * checked on a bounded pool of their own.
+ * </p><p>
+ * {@link JdbcUserDetailsManager} and {@link JdbcClientDetailsService} can
+ * also add, change and remove users and clients.
+ * </p>
+ */
+@Configuration
+@EnableConfigurationProperties(CredentialStoreProperties.class)
+public class CredentialStoreConfig {
+
+    @Autowired
+    private CredentialStoreProperties properties;
+
+    @Bean
+    public BoundedPasswordEncoder passwordEncoder() {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(properties.getHashStrength()), properties);
+    }
+
+    @Bean
+    public BoundedUserCache userCache() {
+        return new BoundedUserCache(properties);
+    }
+
+    @Bean
+    public JdbcUserDetailsManager userDetailsManager(DataSource dataSource) {
+        JdbcUserDetailsManager userDetailsManager = new JdbcUserDetailsManager();
+        userDetailsManager.setDataSource(dataSource);
+        userDetailsManager.setUserCache(userCache());
+        return userDetailsManager;
+    }
+
+    @Bean
+    public DaoAuthenticationProvider userAuthenticationProvider(JdbcUserDetailsManager userDetailsManager) {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsManager);
+        provider.setUserCache(userCache());
+        provider.setPasswordEncoder(passwordEncoder());
+        return provider;
+    }
+
+    @Bean
+    public JdbcClientDetailsService clientStore(DataSource dataSource) {
+        JdbcClientDetailsService clientStore = new JdbcClientDetailsService(dataSource);
+        clientStore.setPasswordEncoder(passwordEncoder());
+        return clientStore;
+    }
+
+    @Bean
+    public CachingClientDetailsService cachingClientDetailsService(JdbcClientDetailsService clientStore) {
+        return new CachingClientDetailsService(clientStore, properties);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.orangeandbronze.store;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "auth.store")
+public class CredentialStoreProperties {
+
+    /**
+     * How long (in milliseconds) a user loaded from the store is reused for
+     * logins before it is loaded again.
+     */
+    private long userCacheTtl = 60000;
+
+    /**
+     * Maximum number of users cached at once.
+     */
+    private int userCacheMaxSize = 10000;
+
+    /**
+     * How long (in milliseconds) a client loaded from the store is reused
+     * before it is loaded again.
+     */
+    private long clientCacheTtl = 60000;
+
+    /**
+     * Maximum number of clients cached at once.
+     */
+    private int clientCacheMaxSize = 1000;
+
+    /**
+     * BCrypt cost (log2 of the rounds) of new password hashes. Stored hashes
+     * keep the cost they were made with.
+     */
+    private int hashStrength = 10;
+
+    /**
+     * Threads that hash and check passwords. Defaults to the number of
+     * processors.
+     */
+    private int hashingThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Password checks that may wait for a hashing thread. A login past that
+     * is turned away at once.
+     */
+    private int hashingQueueCapacity = 100;
+
+    /**
+     * How long (in milliseconds) a login waits for its password check.
+     */
+    private long hashingTimeout = 5000;
+
+    public long getUserCacheTtl() {
+        return userCacheTtl;
+    }
+
+    public void setUserCacheTtl(long userCacheTtl) {
+        this.userCacheTtl = userCacheTtl;
+    }
+
+    public int getUserCacheMaxSize() {
+        return userCacheMaxSize;
+    }
+
+    public void setUserCacheMaxSize(int userCacheMaxSize) {
+        this.userCacheMaxSize = userCacheMaxSize;
+    }
+
+    public long getClientCacheTtl() {
+        return clientCacheTtl;
+    }
+
+    public void setClientCacheTtl(long clientCacheTtl) {
+        this.clientCacheTtl = clientCacheTtl;
+    }
+
+    public int getClientCacheMaxSize() {
+        return clientCacheMaxSize;
+    }
+
+    public void setClientCacheMaxSize(int clientCacheMaxSize) {
+        this.clientCacheMaxSize = clientCacheMaxSize;
+    }
+
+    public int getHashStrength() {
+        return hashStrength;
+    }
+
+    public void setHashStrength(int hashStrength) {
+        this.hashStrength = hashStrength;
+    }
+
+    public int getHashingThreads() {
+        return hashingThreads;
+    }
+
+    public void setHashingThreads(int hashingThreads) {
+        this.hashingThreads = hashingThreads;
+    }
+
+    public int getHashingQueueCapacity() {
+        return hashingQueueCapacity;
+    }
+
+    public void setHashingQueueCapacity(int hashingQueueCapacity) {
+        this.hashingQueueCapacity = hashingQueueCapacity;
+    }
+
+    public long getHashingTimeout() {
+        return hashingTimeout;
+    }
+
+    public void setHashingTimeout(long hashingTimeout) {
+        this.hashingTimeout = hashingTimeout;
+    }
+
+}
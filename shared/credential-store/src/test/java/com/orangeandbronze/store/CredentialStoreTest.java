@@ -0,0 +1,176 @@
+package com.orangeandbronze.store;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.provider.ClientDetails;
+import org.springframework.security.oauth2.provider.ClientDetailsService;
+import org.springframework.security.oauth2.provider.NoSuchClientException;
+import org.springframework.security.oauth2.provider.client.BaseClientDetails;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CredentialStoreTest {
+
+    private final CredentialStoreProperties properties = new CredentialStoreProperties();
+    private final ExecutorService logins = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        logins.shutdownNow();
+    }
+
+    @Test
+    public void cachedUserIsACopy() {
+        BoundedUserCache cache = new BoundedUserCache(properties);
+        User user = new User("user", "hash", AuthorityUtils.createAuthorityList("ROLE_USER"));
+        cache.putUserInCache(user);
+        user.eraseCredentials();
+
+        User cached = (User) cache.getUserFromCache("user");
+        cached.eraseCredentials();
+
+        assertEquals("hash", cache.getUserFromCache("user").getPassword());
+        assertEquals(2L, metric(cache, "userdetails.cache.hits"));
+    }
+
+    @Test
+    public void userCacheHonoursTtlAndSize() throws InterruptedException {
+        properties.setUserCacheMaxSize(2);
+        properties.setUserCacheTtl(50);
+        BoundedUserCache cache = new BoundedUserCache(properties);
+        cache.putUserInCache(user("first"));
+        cache.putUserInCache(user("second"));
+        cache.getUserFromCache("first");
+        cache.putUserInCache(user("third"));
+
+        assertNotNull(cache.getUserFromCache("first"));
+        assertNull(cache.getUserFromCache("second"));
+        Thread.sleep(60);
+        assertNull(cache.getUserFromCache("first"));
+        assertEquals(1, metric(cache, "userdetails.cache.entries"));
+    }
+
+    @Test
+    public void clientIsLoadedOnceWithinTtl() {
+        AtomicInteger loads = new AtomicInteger();
+        ClientDetailsService store = clientId -> {
+            loads.incrementAndGet();
+            if (!clientId.equals("acme")) {
+                throw new NoSuchClientException("No client with requested id: " + clientId);
+            }
+            return new BaseClientDetails("acme", null, "openid", "password", null);
+        };
+        CachingClientDetailsService clients = new CachingClientDetailsService(store, properties);
+
+        ClientDetails first = clients.loadClientByClientId("acme");
+        ((BaseClientDetails) first).setScope(Collections.singleton("changed"));
+        ClientDetails second = clients.loadClientByClientId("acme");
+        for (int i = 0; i < 2; i++) {
+            try {
+                clients.loadClientByClientId("unknown");
+                fail("Expected an unknown client");
+            } catch (NoSuchClientException expected) {
+            }
+        }
+
+        assertEquals(Collections.singleton("openid"), second.getScope());
+        assertEquals(3, loads.get());
+        clients.evict("acme");
+        clients.loadClientByClientId("acme");
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void passwordChecksBeyondTheQueueAreTurnedAway() throws Exception {
+        properties.setHashingThreads(1);
+        properties.setHashingQueueCapacity(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new SlowEncoder(release), properties);
+
+        Future<Boolean> running = logins.submit(() -> encoder.matches("secret", "secret"));
+        Future<Boolean> queued = logins.submit(() -> encoder.matches("secret", "secret"));
+        Thread.sleep(100);
+        try {
+            encoder.matches("secret", "secret");
+            fail("Expected the check to be turned away");
+        } catch (AuthenticationServiceException expected) {
+        }
+        release.countDown();
+
+        assertTrue(running.get(1, TimeUnit.SECONDS));
+        assertTrue(queued.get(1, TimeUnit.SECONDS));
+        assertEquals(1L, metric(encoder, "password.rejected"));
+        encoder.shutdown();
+    }
+
+    @Test
+    public void passwordCheckTimesOut() {
+        properties.setHashingTimeout(50);
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new SlowEncoder(release), properties);
+
+        try {
+            encoder.matches("secret", "secret");
+            fail("Expected the check to time out");
+        } catch (AuthenticationServiceException expected) {
+        }
+        assertEquals(1L, metric(encoder, "password.timed-out"));
+        encoder.shutdown();
+    }
+
+    private static UserDetails user(String username) {
+        return new User(username, "hash", AuthorityUtils.createAuthorityList("ROLE_USER"));
+    }
+
+    private static Number metric(PublicMetrics metrics, String name) {
+        for (Metric<?> metric : metrics.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue();
+            }
+        }
+        throw new AssertionError("No metric " + name);
+    }
+
+    /**
+     * Stands in for BCrypt: a check takes until the latch is released.
+     */
+    private static class SlowEncoder implements PasswordEncoder {
+
+        private final CountDownLatch latch;
+
+        SlowEncoder(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            try {
+                latch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    }
+
+}
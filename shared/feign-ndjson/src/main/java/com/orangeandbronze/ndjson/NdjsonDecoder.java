@@ -0,0 +1,63 @@
+package com.orangeandbronze.ndjson;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an {@code application/x-ndjson} body one line at a time into a
+ * {@link List}; every other response, or one declared as anything but a
+ * collection, goes to the default decoder.
+ */
+public class NdjsonDecoder implements Decoder {
+
+    private final ObjectMapper objectMapper;
+    private final Decoder delegate;
+
+    public NdjsonDecoder(ObjectMapper objectMapper, Decoder delegate) {
+        this.objectMapper = objectMapper;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        JavaType elementType = objectMapper.getTypeFactory().constructType(type).getContentType();
+        // only collections can take one value per line
+        if (!isNdjson(response) || response.body() == null || elementType == null) {
+            return delegate.decode(response, type);
+        }
+        List<Object> items = new ArrayList<>();
+        try (InputStream body = response.body().asInputStream();
+             MappingIterator<Object> values = objectMapper.readerFor(elementType).readValues(body)) {
+            while (values.hasNextValue()) {
+                items.add(values.nextValue());
+            }
+        }
+        return items;
+    }
+
+    private boolean isNdjson(Response response) {
+        for (Map.Entry<String, Collection<String>> header : response.headers().entrySet()) {
+            if (!"Content-Type".equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (String contentType : header.getValue()) {
+                if (contentType.startsWith("application/x-ndjson")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
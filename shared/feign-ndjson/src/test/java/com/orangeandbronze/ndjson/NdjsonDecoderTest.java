@@ -0,0 +1,73 @@
+package com.orangeandbronze.ndjson;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class NdjsonDecoderTest {
+
+    private final NdjsonDecoder decoder = new NdjsonDecoder(new ObjectMapper(), (response, type) -> "delegated");
+
+    @Test
+    public void readsOneValuePerLine() throws Exception {
+        Response response = response("application/x-ndjson;charset=UTF-8",
+                "\"first\"\n\"a \\\"quoted\\\" one\"\n\"café\"\n");
+
+        assertEquals(Arrays.asList("first", "a \"quoted\" one", "café"), decoder.decode(response, listOfStrings()));
+    }
+
+    @Test
+    public void readsAnEmptyBatch() throws Exception {
+        assertEquals(Collections.emptyList(),
+                decoder.decode(response("application/x-ndjson", ""), listOfStrings()));
+    }
+
+    @Test
+    public void matchesTheContentTypeHeaderInAnyCase() throws Exception {
+        Map<String, Collection<String>> headers = new HashMap<>();
+        headers.put("content-type", Collections.singletonList("application/x-ndjson"));
+        Response response = Response.builder().status(200).headers(headers)
+                .body("\"only\"\n", StandardCharsets.UTF_8).build();
+
+        assertEquals(Collections.singletonList("only"), decoder.decode(response, listOfStrings()));
+    }
+
+    @Test
+    public void leavesOtherContentTypesToTheDelegate() throws Exception {
+        assertEquals("delegated", decoder.decode(response("text/plain;charset=UTF-8", "a fortune"), String.class));
+    }
+
+    @Test
+    public void leavesNdjsonForNonCollectionTypesToTheDelegate() throws Exception {
+        assertEquals("delegated", decoder.decode(response("application/x-ndjson", "\"only\"\n"), String.class));
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnMalformedLines() throws Exception {
+        decoder.decode(response("application/x-ndjson", "\"first\"\n\"unterminated\n"), listOfStrings());
+    }
+
+    private static Response response(String contentType, String body) {
+        Map<String, Collection<String>> headers = new HashMap<>();
+        headers.put("Content-Type", Collections.singletonList(contentType));
+        return Response.builder().status(200).headers(headers).body(body, StandardCharsets.UTF_8).build();
+    }
+
+    private static Type listOfStrings() {
+        return new TypeReference<List<String>>() { }.getType();
+    }
+
+}
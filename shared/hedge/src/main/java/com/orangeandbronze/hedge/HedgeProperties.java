@@ -0,0 +1,100 @@
+package com.orangeandbronze.hedge;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "hedge")
+public class HedgeProperties {
+
+    /**
+     * Send a second request to another instance when the first is slow.
+     */
+    private boolean enabled;
+
+    /**
+     * Fixed hedge delay in milliseconds; 0 derives it from observed latency.
+     */
+    private long delay;
+
+    /**
+     * Latency percentile used as the hedge delay when no fixed delay is set.
+     */
+    private double percentile = 95;
+
+    /**
+     * Lower bound (in milliseconds) for the derived delay.
+     */
+    private long minDelay = 5;
+
+    /**
+     * Extra requests allowed, as a fraction of all requests.
+     */
+    private double budget = 0.05;
+
+    /**
+     * Threads available for in-flight attempts.
+     */
+    private int maxThreads = 200;
+
+    /**
+     * Longest wait (in milliseconds) for any attempt to answer; keep it
+     * above the client's read timeout.
+     */
+    private long timeout = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public long getMinDelay() {
+        return minDelay;
+    }
+
+    public void setMinDelay(long minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    public double getBudget() {
+        return budget;
+    }
+
+    public void setBudget(double budget) {
+        this.budget = budget;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+}
@@ -0,0 +1,307 @@
+package com.orangeandbronze.hedge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Runs an idempotent call against one instance and, if it has not
+ * answered within the hedge delay, against a second one; whichever answers
+ * first wins and the other result is discarded.
+ * </p><p>
+ * The delay is either fixed ({@code hedge.delay}) or the configured
+ * percentile of recent attempt latencies. Hedges are paid for out of a
+ * token budget: every call earns {@code hedge.budget} of a token and a
+ * hedge costs one, so extra load stays below that fraction even when the
+ * whole fleet is slow.
+ * </p><p>
+ * No call waits longer than {@code hedge.timeout} for an answer, whatever
+ * its attempts do.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "hedge", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(HedgeProperties.class)
+public class Hedger implements PublicMetrics {
+
+    private static final int SAMPLES = 1024;
+    private static final long TOKEN = 1000;
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final LoadBalancerClient loadBalancer;
+    private final HedgeProperties properties;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(SAMPLES);
+    private final AtomicInteger sampleIndex = new AtomicInteger();
+    private volatile boolean samplesFilled;
+    private volatile long delayNanos;
+
+    private final AtomicLong tokens = new AtomicLong(MAX_TOKENS);
+    private final long tokensPerCall;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    public interface Attempt<T> {
+        T call(ServiceInstance instance) throws IOException;
+    }
+
+    public interface Discard<T> {
+        void discard(T result) throws IOException;
+    }
+
+    @Autowired
+    public Hedger(LoadBalancerClient loadBalancer, HedgeProperties properties) {
+        this.loadBalancer = loadBalancer;
+        this.properties = properties;
+        this.tokensPerCall = Math.round(properties.getBudget() * TOKEN);
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(
+                properties.getDelay() > 0 ? properties.getDelay() : properties.getMinDelay());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, properties.getMaxThreads(), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "hedge-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public <T> T execute(String serviceId, Attempt<T> attempt, Discard<T> discard) throws IOException {
+        calls.increment();
+        deposit();
+
+        ServiceInstance primary = choose(serviceId, null);
+        BlockingQueue<Outcome<T>> outcomes = new LinkedBlockingQueue<>();
+        try {
+            submit(primary, attempt, false, outcomes);
+        } catch (RejectedExecutionException ex) {
+            // out of threads: no hedging, just make the call
+            return attempt.call(primary);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getTimeout());
+        int pending = 1;
+        try {
+            Outcome<T> first = outcomes.poll(delayNanos, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                ServiceInstance secondary = withdraw() ? choose(serviceId, primary) : null;
+                if (secondary != null && submitQuietly(secondary, attempt, outcomes)) {
+                    hedges.increment();
+                    pending = 2;
+                }
+                first = next(outcomes, deadline, serviceId);
+            }
+            pending--;
+            if (first.error != null && pending > 0) {
+                first = next(outcomes, deadline, serviceId);
+                pending--;
+            }
+            if (pending > 0) {
+                discardLater(outcomes, discard, pending);
+            }
+            if (first.error != null) {
+                throw first.error;
+            }
+            if (first.hedge) {
+                hedgeWins.increment();
+            }
+            return first.result;
+        } catch (SocketTimeoutException ex) {
+            discardLater(outcomes, discard, pending);
+            throw ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            discardLater(outcomes, discard, pending);
+            throw new InterruptedIOException("Interrupted waiting for " + serviceId);
+        }
+    }
+
+    private <T> Outcome<T> next(BlockingQueue<Outcome<T>> outcomes, long deadline, String serviceId)
+            throws InterruptedException, SocketTimeoutException {
+        Outcome<T> outcome = outcomes.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (outcome == null) {
+            throw new SocketTimeoutException(
+                    "No answer from " + serviceId + " within " + properties.getTimeout() + " ms");
+        }
+        return outcome;
+    }
+
+    private ServiceInstance choose(String serviceId, ServiceInstance other) {
+        ServiceInstance instance = loadBalancer.choose(serviceId);
+        if (instance == null) {
+            if (other != null) {
+                return null;
+            }
+            throw new IllegalStateException("No instances available for " + serviceId);
+        }
+        // a hedge to the same slow instance is worthless, give the balancer a few tries
+        for (int i = 0; other != null && i < 3 && sameInstance(instance, other); i++) {
+            instance = loadBalancer.choose(serviceId);
+        }
+        return other != null && sameInstance(instance, other) ? null : instance;
+    }
+
+    private boolean sameInstance(ServiceInstance a, ServiceInstance b) {
+        return a.getHost().equals(b.getHost()) && a.getPort() == b.getPort();
+    }
+
+    private <T> void submit(ServiceInstance instance, Attempt<T> attempt, boolean hedge,
+            BlockingQueue<Outcome<T>> outcomes) {
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            Outcome<T> outcome = null;
+            try {
+                outcome = new Outcome<>(attempt.call(instance), null, hedge);
+            } catch (IOException ex) {
+                outcome = new Outcome<>(null, ex, hedge);
+            } catch (RuntimeException ex) {
+                outcome = new Outcome<>(null, new IOException(ex), hedge);
+            } finally {
+                // an Error too must reach the caller, not leave it waiting
+                outcomes.add(outcome != null ? outcome
+                        : new Outcome<>(null, new IOException("Attempt on " + instance.getUri() + " failed"), hedge));
+            }
+            record(System.nanoTime() - start);
+        });
+    }
+
+    private <T> boolean submitQuietly(ServiceInstance instance, Attempt<T> attempt,
+            BlockingQueue<Outcome<T>> outcomes) {
+        try {
+            submit(instance, attempt, true, outcomes);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes whatever the losing attempts return, on a thread of their own.
+     */
+    private <T> void discardLater(BlockingQueue<Outcome<T>> outcomes, Discard<T> discard, int count) {
+        try {
+            executor.execute(() -> {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        Outcome<T> late = outcomes.poll(1, TimeUnit.MINUTES);
+                        if (late != null && late.result != null) {
+                            discard.discard(late.result);
+                        }
+                    }
+                } catch (Exception ex) {
+                    logger.debug("Could not discard losing attempt: {}", ex.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            logger.debug("No thread left to discard losing attempt");
+        }
+    }
+
+    private void deposit() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= MAX_TOKENS) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(MAX_TOKENS, current + tokensPerCall)));
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                budgetExhausted.increment();
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    private void record(long nanos) {
+        // masked, so the slot stays valid when the counter wraps past Integer.MAX_VALUE
+        int index = sampleIndex.getAndIncrement() & (SAMPLES - 1);
+        latencies.set(index, nanos);
+        if (index == SAMPLES - 1) {
+            samplesFilled = true;
+        }
+        if (properties.getDelay() <= 0 && (index & 127) == 127) {
+            updateDelay(samplesFilled ? SAMPLES : index + 1);
+        }
+    }
+
+    private void updateDelay(int count) {
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(properties.getPercentile() / 100 * count) - 1;
+        long percentile = sorted[Math.max(0, Math.min(count - 1, rank))];
+        delayNanos = Math.max(percentile, TimeUnit.MILLISECONDS.toNanos(properties.getMinDelay()));
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long callCount = calls.sum();
+        long hedgeCount = hedges.sum();
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("hedge.calls", callCount),
+                new Metric<>("hedge.hedges", hedgeCount),
+                new Metric<>("hedge.wins", hedgeWins.sum()),
+                new Metric<>("hedge.budget-exhausted", budgetExhausted.sum()),
+                new Metric<>("hedge.hedge-rate", callCount == 0 ? 0.0 : (double) hedgeCount / callCount),
+                new Metric<>("hedge.win-rate", hedgeCount == 0 ? 0.0 : (double) hedgeWins.sum() / hedgeCount),
+                new Metric<>("hedge.delay-ms", TimeUnit.NANOSECONDS.toMicros(delayNanos) / 1000.0));
+    }
+
+    private static class Outcome<T> {
+
+        final T result;
+        final IOException error;
+        final boolean hedge;
+
+        Outcome(T result, IOException error, boolean hedge) {
+            this.result = result;
+            this.error = error;
+            this.hedge = hedge;
+        }
+    }
+
+}
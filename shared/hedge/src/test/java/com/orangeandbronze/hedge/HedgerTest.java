@@ -0,0 +1,215 @@
+package com.orangeandbronze.hedge;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerRequest;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Hedges against a stub fleet: each instance answers with its own name
+ * after its own delay, and the balancer hands them out in turn.
+ */
+public class HedgerTest {
+
+    private static final String SERVICE = "fortune-service";
+
+    private final Map<Integer, Long> delays = new HashMap<>();
+    private final Set<Integer> failing = new HashSet<>();
+    private Hedger hedger;
+
+    @After
+    public void shutdown() {
+        if (hedger != null) {
+            hedger.shutdown();
+        }
+    }
+
+    @Test
+    public void fastInstanceAnswersWithoutAHedge() throws Exception {
+        hedger = hedger(fleet(instance(1, 0), instance(2, 0)), fixedDelay(200));
+
+        assertEquals("instance-1", call());
+        assertEquals(0, metric("hedge.hedges"));
+    }
+
+    @Test
+    public void slowInstanceIsHedgedToAnother() throws Exception {
+        hedger = hedger(fleet(instance(1, 2000), instance(2, 0)), fixedDelay(50));
+        CountDownLatch discarded = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        String result = hedger.execute(SERVICE, this::answer, late -> discarded.countDown());
+
+        assertEquals("instance-2", result);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(1, metric("hedge.hedges"));
+        assertEquals(1, metric("hedge.wins"));
+        assertTrue("losing answer discarded", discarded.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedAttemptFallsBackToTheHedge() throws Exception {
+        hedger = hedger(fleet(instance(1, 100), instance(2, 300)), fixedDelay(20));
+        failing.add(1);
+
+        assertEquals("instance-2", call());
+    }
+
+    @Test
+    public void hedgesStopWhenTheBudgetRunsOut() throws Exception {
+        HedgeProperties properties = fixedDelay(10);
+        properties.setBudget(0);
+        hedger = hedger(fleet(instance(1, 100), instance(2, 100)), properties);
+
+        for (int i = 0; i < 12; i++) {
+            call();
+        }
+
+        // the budget starts with ten tokens and earns none
+        assertEquals(10, metric("hedge.hedges"));
+        assertEquals(2, metric("hedge.budget-exhausted"));
+    }
+
+    @Test(timeout = 10000)
+    public void errorInAnAttemptFailsTheCall() throws Exception {
+        hedger = hedger(fleet(instance(1, 0)), fixedDelay(1000));
+
+        try {
+            hedger.execute(SERVICE, instance -> {
+                throw new AssertionError("broken attempt");
+            }, late -> { });
+            fail("expected an IOException");
+        } catch (IOException expected) {
+            // and not a caller waiting forever
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void waitIsBoundedWhenNoInstanceAnswers() throws Exception {
+        HedgeProperties properties = fixedDelay(20);
+        properties.setTimeout(300);
+        hedger = hedger(fleet(instance(1, 60000), instance(2, 60000)), properties);
+
+        long start = System.nanoTime();
+        try {
+            call();
+            fail("expected a timeout");
+        } catch (SocketTimeoutException expected) {
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void latencySamplesSurviveCounterOverflow() throws Exception {
+        HedgeProperties properties = new HedgeProperties();
+        properties.setMinDelay(1);
+        // one instance, so no hedge can cover for a lost answer
+        hedger = hedger(fleet(instance(1, 0)), properties);
+        sampleIndex(hedger).set(Integer.MAX_VALUE - 200);
+
+        // every 128th sample recomputes the delay, across the wraparound
+        for (int i = 0; i < 400; i++) {
+            assertEquals("instance-1", call());
+        }
+        assertTrue(sampleIndex(hedger).get() < 0);
+    }
+
+    private String call() throws IOException {
+        return hedger.execute(SERVICE, this::answer, late -> { });
+    }
+
+    private String answer(ServiceInstance instance) throws IOException {
+        try {
+            Thread.sleep(delays.get(instance.getPort()));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+        if (failing.contains(instance.getPort())) {
+            throw new IOException("Connection reset: " + instance.getUri());
+        }
+        return instance.getServiceId();
+    }
+
+    private ServiceInstance instance(int id, long delay) {
+        delays.put(id, delay);
+        return new DefaultServiceInstance("instance-" + id, "localhost", id, false);
+    }
+
+    private static HedgeProperties fixedDelay(long delay) {
+        HedgeProperties properties = new HedgeProperties();
+        properties.setDelay(delay);
+        return properties;
+    }
+
+    private static Hedger hedger(LoadBalancerClient loadBalancer, HedgeProperties properties) {
+        properties.setEnabled(true);
+        return new Hedger(loadBalancer, properties);
+    }
+
+    private long metric(String name) {
+        for (Metric<?> metric : hedger.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static AtomicInteger sampleIndex(Hedger hedger) throws ReflectiveOperationException {
+        Field field = Hedger.class.getDeclaredField("sampleIndex");
+        field.setAccessible(true);
+        return (AtomicInteger) field.get(hedger);
+    }
+
+    /**
+     * Round-robin over the given instances.
+     */
+    private static LoadBalancerClient fleet(ServiceInstance... instances) {
+        List<ServiceInstance> fleet = asList(instances);
+        AtomicInteger next = new AtomicInteger();
+        return new LoadBalancerClient() {
+            @Override
+            public ServiceInstance choose(String serviceId) {
+                return fleet.get(Math.floorMod(next.getAndIncrement(), fleet.size()));
+            }
+
+            @Override
+            public <T> T execute(String serviceId, LoadBalancerRequest<T> request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public <T> T execute(String serviceId, ServiceInstance serviceInstance, LoadBalancerRequest<T> request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public URI reconstructURI(ServiceInstance instance, URI original) {
+                return original;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.orangeandbronze.http;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "http.client")
+public class HttpClientProperties {
+
+    /**
+     * Maximum number of pooled connections across all routes.
+     */
+    private int maxTotal = 200;
+
+    /**
+     * Maximum number of pooled connections to a single host.
+     */
+    private int maxPerRoute = 50;
+
+    private int connectTimeout = 1000;
+
+    private int readTimeout = 5000;
+
+    /**
+     * How long to wait for a connection from a saturated pool.
+     */
+    private int connectionRequestTimeout = 1000;
+
+    /**
+     * Keep-alive used when the server does not send a Keep-Alive header.
+     */
+    private long keepAlive = 30000;
+
+    /**
+     * Pooled connections idle for longer than this are closed.
+     */
+    private long idleTimeout = 60000;
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+}
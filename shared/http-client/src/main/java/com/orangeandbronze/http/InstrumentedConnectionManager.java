@@ -0,0 +1,85 @@
+package com.orangeandbronze.http;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A connection pool that records how long connections stay leased and how
+ * often callers time out waiting for one, and publishes that together with
+ * the pool's occupancy as actuator metrics.
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager implements PublicMetrics {
+
+    private final ConcurrentMap<HttpClientConnection, Long> leasedAt = new ConcurrentHashMap<>();
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder leaseNanos = new LongAdder();
+    private final LongAdder leaseTimeouts = new LongAdder();
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest() {
+
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                try {
+                    HttpClientConnection connection = request.get(timeout, tunit);
+                    leasedAt.put(connection, System.nanoTime());
+                    return connection;
+                } catch (ConnectionPoolTimeoutException ex) {
+                    leaseTimeouts.increment();
+                    throw ex;
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(HttpClientConnection connection, Object state, long keepAlive, TimeUnit tunit) {
+        Long start = leasedAt.remove(connection);
+        if (start != null) {
+            leases.increment();
+            leaseNanos.add(System.nanoTime() - start);
+        }
+        super.releaseConnection(connection, state, keepAlive, tunit);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        PoolStats stats = getTotalStats();
+        long leaseCount = leases.sum();
+        double averageLeaseMillis = leaseCount == 0 ? 0.0
+                : TimeUnit.NANOSECONDS.toMicros(leaseNanos.sum()) / 1000.0 / leaseCount;
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("http.client.pool.leased", stats.getLeased()),
+                new Metric<>("http.client.pool.available", stats.getAvailable()),
+                new Metric<>("http.client.pool.pending", stats.getPending()),
+                new Metric<>("http.client.pool.max", stats.getMax()),
+                new Metric<>("http.client.pool.saturation",
+                        stats.getMax() == 0 ? 0.0 : (double) stats.getLeased() / stats.getMax()),
+                new Metric<>("http.client.pool.leases", leaseCount),
+                new Metric<>("http.client.pool.lease-time-ms", averageLeaseMillis),
+                new Metric<>("http.client.pool.lease-timeouts", leaseTimeouts.sum()));
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.orangeandbronze.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HttpClientConfigTest {
+
+    private HttpServer server;
+    private String base;
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private HttpClientProperties properties = new HttpClientProperties();
+    private InstrumentedConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            if (exchange.getRequestURI().getPath().equals("/slow")) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        base = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        release.countDown();
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        server.stop(0);
+    }
+
+    private void createClient() {
+        HttpClientConfig config = new HttpClientConfig();
+        connectionManager = config.httpClientConnectionManager(properties);
+        httpClient = config.httpClient(properties, connectionManager);
+        restTemplate = new RestTemplate(config.clientHttpRequestFactory(httpClient));
+    }
+
+    @Test
+    public void appliesPoolLimits() {
+        properties.setMaxTotal(7);
+        properties.setMaxPerRoute(3);
+        createClient();
+
+        assertEquals(7, connectionManager.getMaxTotal());
+        assertEquals(3, connectionManager.getDefaultMaxPerRoute());
+    }
+
+    @Test
+    public void reusesConnections() {
+        createClient();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ok", restTemplate.getForObject(base + "/", String.class));
+        }
+
+        assertEquals(5, clientPorts.size());
+        assertEquals(1, clientPorts.stream().distinct().count());
+        assertEquals(5L, metric("http.client.pool.leases"));
+        assertEquals(1, metric("http.client.pool.available"));
+    }
+
+    @Test
+    public void dropsConnectionsOnceTheKeepAliveRunsOut() throws Exception {
+        properties.setKeepAlive(100);
+        createClient();
+
+        restTemplate.getForObject(base + "/", String.class);
+        restTemplate.getForObject(base + "/", String.class);
+        Thread.sleep(300);
+        restTemplate.getForObject(base + "/", String.class);
+
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+        assertNotEquals(clientPorts.get(1), clientPorts.get(2));
+    }
+
+    @Test
+    public void timesOutSlowResponses() {
+        properties.setReadTimeout(100);
+        createClient();
+
+        long start = System.nanoTime();
+        try {
+            restTemplate.getForObject(base + "/slow", String.class);
+            fail("Expected a read timeout");
+        } catch (ResourceAccessException ex) {
+            assertTrue(ex.getCause() instanceof SocketTimeoutException);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+
+    @Test
+    public void timesOutWaitingForASaturatedPool() throws Exception {
+        properties.setMaxPerRoute(1);
+        properties.setConnectionRequestTimeout(100);
+        createClient();
+
+        Thread holder = new Thread(() -> restTemplate.getForObject(base + "/slow", String.class));
+        holder.start();
+        while (clientPorts.isEmpty()) {
+            Thread.sleep(10);
+        }
+
+        try {
+            restTemplate.getForObject(base + "/", String.class);
+            fail("Expected a connection request timeout");
+        } catch (ResourceAccessException ex) {
+            assertTrue(ex.getCause() instanceof ConnectionPoolTimeoutException);
+        }
+        assertEquals(1L, metric("http.client.pool.lease-timeouts"));
+        assertEquals(1, metric("http.client.pool.leased"));
+
+        release.countDown();
+        holder.join();
+    }
+
+    private Object metric(String name) {
+        for (Metric<?> metric : connectionManager.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue();
+            }
+        }
+        throw new AssertionError("No metric " + name);
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.orangeandbronze.discovery;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.discovery.EurekaClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Keeps a snapshot of the UP instances of every service looked up so far,
+ * and hands them out round-robin without locking.
+ * </p><p>
+ * Snapshots are only rebuilt when the Eureka client refreshes its local
+ * registry (signalled by a {@link HeartbeatEvent}), so the request path
+ * neither goes through the refresh-scoped {@link EurekaClient} proxy nor
+ * looks the service up in the registry. That includes finding no instance
+ * up: the lookup keeps failing fast until the next refresh rather than
+ * asking the registry again on every request. Each service keeps its
+ * round-robin position across refreshes, so a refresh does not send the
+ * next request back to the first instance.
+ * </p>
+ */
+@Component
+public class InstanceCache {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private EurekaClient discoveryClient;
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InstanceCache(EurekaClient discoveryClient) {
+        this.discoveryClient = discoveryClient;
+    }
+
+    public InstanceInfo nextInstance(String serviceId) {
+        String key = serviceId.toUpperCase(Locale.ROOT);
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            snapshot = snapshots.computeIfAbsent(key, serviceIdKey -> load(serviceIdKey, new AtomicInteger()));
+        }
+        return snapshot.next(serviceId);
+    }
+
+    @EventListener(HeartbeatEvent.class)
+    public void refresh() {
+        snapshots.replaceAll((serviceId, snapshot) -> load(serviceId, snapshot.position));
+    }
+
+    private Snapshot load(String serviceId, AtomicInteger position) {
+        List<InstanceInfo> up = new ArrayList<>();
+        for (InstanceInfo instance : discoveryClient.getInstancesByVipAddress(serviceId, false)) {
+            if (instance.getStatus() == InstanceStatus.UP) {
+                up.add(instance);
+            }
+        }
+        logger.debug("{} has {} instances up", serviceId, up.size());
+        return new Snapshot(up.toArray(new InstanceInfo[up.size()]), position);
+    }
+
+    private static class Snapshot {
+
+        private final InstanceInfo[] instances;
+        private final AtomicInteger position;
+
+        Snapshot(InstanceInfo[] instances, AtomicInteger position) {
+            this.instances = instances;
+            this.position = position;
+        }
+
+        InstanceInfo next(String serviceId) {
+            if (instances.length == 0) {
+                throw new IllegalStateException("No instances of " + serviceId + " are up");
+            }
+            return instances[(position.getAndIncrement() & Integer.MAX_VALUE) % instances.length];
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.orangeandbronze.discovery;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.discovery.EurekaClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InstanceCacheTest {
+
+    private List<InstanceInfo> registry = new ArrayList<>();
+    private int lookups;
+    private InstanceCache instanceCache;
+
+    @Before
+    public void setUp() {
+        EurekaClient eurekaClient = (EurekaClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {EurekaClient.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getInstancesByVipAddress")) {
+                        assertEquals("FORTUNE-SERVICE", args[0]);
+                        lookups++;
+                        return new ArrayList<>(registry);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        instanceCache = new InstanceCache(eurekaClient);
+    }
+
+    @Test
+    public void handsOutUpInstancesRoundRobin() {
+        registry.addAll(Arrays.asList(instance("a", InstanceStatus.UP), instance("b", InstanceStatus.DOWN),
+                instance("c", InstanceStatus.UP)));
+
+        assertEquals("a", instanceCache.nextInstance("fortune-service").getId());
+        assertEquals("c", instanceCache.nextInstance("FORTUNE-SERVICE").getId());
+        assertEquals("a", instanceCache.nextInstance("fortune-service").getId());
+    }
+
+    @Test
+    public void asksTheRegistryOnlyOnRefresh() {
+        registry.add(instance("a", InstanceStatus.UP));
+
+        instanceCache.nextInstance("fortune-service");
+        instanceCache.nextInstance("fortune-service");
+        assertEquals(1, lookups);
+
+        registry.set(0, instance("b", InstanceStatus.UP));
+        assertEquals("a", instanceCache.nextInstance("fortune-service").getId());
+
+        instanceCache.refresh();
+        assertEquals(2, lookups);
+        assertEquals("b", instanceCache.nextInstance("fortune-service").getId());
+    }
+
+    @Test
+    public void keepsTheRoundRobinPositionAcrossRefreshes() {
+        registry.addAll(Arrays.asList(instance("a", InstanceStatus.UP), instance("b", InstanceStatus.UP),
+                instance("c", InstanceStatus.UP)));
+
+        assertEquals("a", instanceCache.nextInstance("fortune-service").getId());
+        instanceCache.refresh();
+        assertEquals("b", instanceCache.nextInstance("fortune-service").getId());
+        instanceCache.refresh();
+        assertEquals("c", instanceCache.nextInstance("fortune-service").getId());
+    }
+
+    @Test
+    public void remembersThatNoInstanceIsUpUntilTheNextRefresh() {
+        for (int i = 0; i < 3; i++) {
+            try {
+                instanceCache.nextInstance("fortune-service");
+                fail("Expected no instances");
+            } catch (IllegalStateException ex) {
+                assertEquals("No instances of fortune-service are up", ex.getMessage());
+            }
+        }
+        assertEquals(1, lookups);
+
+        registry.add(instance("a", InstanceStatus.UP));
+        instanceCache.refresh();
+        assertEquals("a", instanceCache.nextInstance("fortune-service").getId());
+        assertEquals(2, lookups);
+    }
+
+    private static InstanceInfo instance(String id, InstanceStatus status) {
+        return InstanceInfo.Builder.newBuilder()
+                .setInstanceId(id)
+                .setAppName("FORTUNE-SERVICE")
+                .setHostName(id)
+                .setVIPAddress("fortune-service")
+                .setStatus(status)
+                .build();
+    }
+
+}
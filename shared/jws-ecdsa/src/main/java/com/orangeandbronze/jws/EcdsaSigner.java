@@ -0,0 +1,68 @@
+package com.orangeandbronze.jws;
+
+import org.springframework.security.jwt.crypto.sign.Signer;
+
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+
+/**
+ * <p>Signs with an EC private key, the JWS way (ES256, ES384 or ES512,
+ * by the key's curve).
+ * </p><p>
+ * The JDK writes ECDSA signatures in DER; a JWS signature is the two
+ * integers r and s, each padded to the curve size, one after the other.
+ * Thread safe, like {@code RsaSigner}.
+ * </p>
+ */
+public class EcdsaSigner implements Signer {
+
+    private final ECPrivateKey key;
+    private final String algorithm;
+    private final int length;
+
+    public EcdsaSigner(ECPrivateKey key) {
+        this.key = key;
+        this.length = EcdsaVerifier.integerLength(key.getParams());
+        this.algorithm = EcdsaVerifier.algorithm(length);
+    }
+
+    @Override
+    public byte[] sign(byte[] bytes) {
+        try {
+            Signature signature = Signature.getInstance(algorithm);
+            signature.initSign(key);
+            signature.update(bytes);
+            return toJose(signature.sign(), length);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public String algorithm() {
+        return algorithm;
+    }
+
+    static byte[] toJose(byte[] der, int length) {
+        // SEQUENCE { INTEGER r, INTEGER s }, the length in one byte or in 0x81 and one byte
+        int offset = der[1] == (byte) 0x81 ? 3 : 2;
+        byte[] jose = new byte[2 * length];
+        offset = copyInteger(der, offset, jose, 0, length);
+        copyInteger(der, offset, jose, length, length);
+        return jose;
+    }
+
+    private static int copyInteger(byte[] der, int offset, byte[] jose, int to, int length) {
+        int size = der[offset + 1];
+        int start = offset + 2;
+        int end = start + size;
+        // drop the sign byte; pad on the left
+        while (end - start > length) {
+            start++;
+        }
+        System.arraycopy(der, start, jose, to + length - (end - start), end - start);
+        return end;
+    }
+
+}
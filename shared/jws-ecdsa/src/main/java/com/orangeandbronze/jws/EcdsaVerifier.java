@@ -0,0 +1,91 @@
+package com.orangeandbronze.jws;
+
+import org.springframework.security.jwt.crypto.sign.InvalidSignatureException;
+import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECParameterSpec;
+import java.util.Arrays;
+
+/**
+ * <p>Verifies JWS ECDSA signatures (ES256, ES384 or ES512, by the key's
+ * curve), as {@link EcdsaSigner} writes them.
+ * </p><p>
+ * A JWS signature is the two integers r and s, each padded to the curve
+ * size, one after the other; the JDK reads ECDSA signatures in DER.
+ * </p>
+ */
+public class EcdsaVerifier implements SignatureVerifier {
+
+    private final ECPublicKey key;
+    private final String algorithm;
+    private final int length;
+
+    public EcdsaVerifier(ECPublicKey key) {
+        this.key = key;
+        this.length = integerLength(key.getParams());
+        this.algorithm = algorithm(length);
+    }
+
+    @Override
+    public void verify(byte[] content, byte[] sig) {
+        boolean verified;
+        try {
+            Signature signature = Signature.getInstance(algorithm);
+            signature.initVerify(key);
+            signature.update(content);
+            verified = sig.length == 2 * length && signature.verify(toDer(sig));
+        } catch (GeneralSecurityException ex) {
+            throw new InvalidSignatureException("ECDSA signature could not be checked: " + ex.getMessage());
+        }
+        if (!verified) {
+            throw new InvalidSignatureException("ECDSA signature did not match content");
+        }
+    }
+
+    @Override
+    public String algorithm() {
+        return algorithm;
+    }
+
+    static int integerLength(ECParameterSpec params) {
+        return (params.getOrder().bitLength() + 7) / 8;
+    }
+
+    static String algorithm(int length) {
+        switch (length) {
+            case 32:
+                return "SHA256withECDSA";
+            case 48:
+                return "SHA384withECDSA";
+            case 66:
+                return "SHA512withECDSA";
+            default:
+                throw new IllegalArgumentException("No JWS algorithm for a " + length * 8 + "-bit curve");
+        }
+    }
+
+    static byte[] toDer(byte[] jose) {
+        byte[] r = new BigInteger(1, Arrays.copyOfRange(jose, 0, jose.length / 2)).toByteArray();
+        byte[] s = new BigInteger(1, Arrays.copyOfRange(jose, jose.length / 2, jose.length)).toByteArray();
+        int size = 2 + r.length + 2 + s.length;
+        ByteArrayOutputStream der = new ByteArrayOutputStream(size + 3);
+        der.write(0x30);
+        if (size > 127) {
+            der.write(0x81);
+        }
+        der.write(size);
+        der.write(0x02);
+        der.write(r.length);
+        der.write(r, 0, r.length);
+        der.write(0x02);
+        der.write(s.length);
+        der.write(s, 0, s.length);
+        return der.toByteArray();
+    }
+
+}
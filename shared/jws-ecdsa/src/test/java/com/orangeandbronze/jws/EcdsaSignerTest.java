@@ -0,0 +1,66 @@
+package com.orangeandbronze.jws;
+
+import org.junit.Test;
+import org.springframework.security.jwt.crypto.sign.InvalidSignatureException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class EcdsaSignerTest {
+
+    private static final byte[] CONTENT = "header.claims".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void signaturesAreTheCurveSizeAndVerify() throws Exception {
+        check("secp256r1", "SHA256withECDSA", 64);
+        check("secp384r1", "SHA384withECDSA", 96);
+        // long enough for the DER sequence length to take two bytes
+        check("secp521r1", "SHA512withECDSA", 132);
+    }
+
+    @Test(expected = InvalidSignatureException.class)
+    public void otherContentIsRejected() throws Exception {
+        KeyPair keyPair = keyPair("secp256r1");
+        byte[] signature = new EcdsaSigner((ECPrivateKey) keyPair.getPrivate()).sign(CONTENT);
+
+        new EcdsaVerifier((ECPublicKey) keyPair.getPublic())
+                .verify("header.other".getBytes(StandardCharsets.UTF_8), signature);
+    }
+
+    @Test(expected = InvalidSignatureException.class)
+    public void signaturesOfAnotherLengthAreRejected() throws Exception {
+        KeyPair keyPair = keyPair("secp256r1");
+        byte[] signature = new EcdsaSigner((ECPrivateKey) keyPair.getPrivate()).sign(CONTENT);
+
+        new EcdsaVerifier((ECPublicKey) keyPair.getPublic())
+                .verify(CONTENT, Arrays.copyOf(signature, signature.length + 1));
+    }
+
+    private static void check(String curve, String algorithm, int length) throws Exception {
+        KeyPair keyPair = keyPair(curve);
+        EcdsaSigner signer = new EcdsaSigner((ECPrivateKey) keyPair.getPrivate());
+        EcdsaVerifier verifier = new EcdsaVerifier((ECPublicKey) keyPair.getPublic());
+        assertEquals(algorithm, signer.algorithm());
+        assertEquals(algorithm, verifier.algorithm());
+        // r and s are short now and then, so sign a few times to get some padded
+        for (int i = 0; i < 50; i++) {
+            byte[] signature = signer.sign(CONTENT);
+            assertEquals(length, signature.length);
+            verifier.verify(CONTENT, signature);
+        }
+    }
+
+    private static KeyPair keyPair(String curve) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec(curve));
+        return generator.generateKeyPair();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.orangeandbronze.loadbalancer;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.Server;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>Power of two choices over peak-EWMA cost: picks two reachable
+ * instances at random and keeps the one with the lower
+ * latency-times-in-flight, as tracked in {@link ServerLoad}. Instances that
+ * stall pick up a high cost at once and are mostly left alone until it
+ * decays. Choosing is lock-free and constant time.
+ * </p><p>
+ * Select it per client, for example:
+ * </p>
+ * <pre>
+ * fortune-service:
+ *   ribbon:
+ *     NFLoadBalancerRuleClassName: com.orangeandbronze.loadbalancer.PeakEwmaRule
+ * </pre>
+ */
+public class PeakEwmaRule extends AbstractLoadBalancerRule {
+
+    @Override
+    public void initWithNiwsConfig(IClientConfig clientConfig) {
+    }
+
+    @Override
+    public Server choose(Object key) {
+        ILoadBalancer loadBalancer = getLoadBalancer();
+        if (loadBalancer == null) {
+            return null;
+        }
+        List<Server> servers = loadBalancer.getReachableServers();
+        int count = servers.size();
+        if (count == 0) {
+            return null;
+        }
+        if (count == 1) {
+            return servers.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(count);
+        int second = random.nextInt(count - 1);
+        if (second >= first) {
+            second++;
+        }
+        Server a = servers.get(first);
+        Server b = servers.get(second);
+        return cost(a) <= cost(b) ? a : b;
+    }
+
+    private double cost(Server server) {
+        return ServerLoad.of(server.getHost(), server.getPort()).cost();
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.orangeandbronze.loadbalancer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>In-flight requests and peak-EWMA latency of one backend instance, as
+ * seen by this client. Updated with plain atomics from whichever thread
+ * makes the call, and read by {@link PeakEwmaRule}.
+ * </p><p>
+ * Instances are kept in a static registry keyed by {@code host:port}:
+ * Ribbon creates rules reflectively in each client's own context, so this
+ * is the one place both the HTTP clients and the rules can reach.
+ * </p>
+ */
+public final class ServerLoad {
+
+    /**
+     * How fast old latency is forgotten; a slow instance is back to a
+     * clean slate after a few of these without traffic.
+     */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final double PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final ConcurrentMap<String, ServerLoad> SERVERS = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicReference<Ewma> ewma = new AtomicReference<>(new Ewma(0, System.nanoTime()));
+
+    private ServerLoad() {
+    }
+
+    public static ServerLoad of(String host, int port) {
+        return SERVERS.computeIfAbsent(host + ":" + port, hostPort -> new ServerLoad());
+    }
+
+    static Map<String, ServerLoad> all() {
+        return SERVERS;
+    }
+
+    /**
+     * @return the start time to pass to {@link #end(long)}
+     */
+    public long start() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void end(long start) {
+        long now = System.nanoTime();
+        record(now, now - start);
+    }
+
+    /**
+     * Ends a request that failed; counts as at least as slow as the penalty
+     * so a fast-failing instance does not look attractive.
+     */
+    public void fail(long start) {
+        long now = System.nanoTime();
+        record(now, Math.max(now - start, PENALTY_NANOS));
+    }
+
+    void record(long now, double rtt) {
+        inFlight.decrementAndGet();
+        Ewma current;
+        Ewma next;
+        do {
+            current = ewma.get();
+            double value;
+            // peak sensitive: jump straight up to a slow sample, ease down from it
+            if (rtt > current.decayed(now)) {
+                value = rtt;
+            } else {
+                // the weight is the decay since the last sample; applied once, so a
+                // steady stream settles on its own latency
+                double weight = Math.exp(-Math.max(0, now - current.stamp) / DECAY_NANOS);
+                value = current.value * weight + rtt * (1 - weight);
+            }
+            next = new Ewma(value, now);
+        } while (!ewma.compareAndSet(current, next));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public double getLatencyNanos() {
+        return ewma.get().decayed(System.nanoTime());
+    }
+
+    /**
+     * Expected wait: latency scaled by the queue in front of it. An instance
+     * nobody has measured yet is free while idle, so new instances get
+     * probed, and expensive once requests pile up on it.
+     */
+    double cost() {
+        int pending = inFlight.get();
+        double latency = getLatencyNanos();
+        if (latency == 0 && pending > 0) {
+            return PENALTY_NANOS + pending;
+        }
+        return latency * (pending + 1);
+    }
+
+    private static class Ewma {
+
+        final double value;
+        final long stamp;
+
+        Ewma(double value, long stamp) {
+            this.value = value;
+            this.stamp = stamp;
+        }
+
+        double decayed(long now) {
+            return value * Math.exp(-Math.max(0, now - stamp) / DECAY_NANOS);
+        }
+    }
+
+}
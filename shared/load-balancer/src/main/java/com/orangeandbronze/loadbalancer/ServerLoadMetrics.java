@@ -0,0 +1,33 @@
+package com.orangeandbronze.loadbalancer;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes what {@link PeakEwmaRule} sees for every instance this
+ * application has called.
+ */
+@Component
+public class ServerLoadMetrics implements PublicMetrics {
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (Map.Entry<String, ServerLoad> server : ServerLoad.all().entrySet()) {
+            String prefix = "loadbalancer." + server.getKey() + ".";
+            ServerLoad load = server.getValue();
+            metrics.add(new Metric<>(prefix + "in-flight", load.getInFlight()));
+            metrics.add(new Metric<>(prefix + "latency-ms",
+                    TimeUnit.NANOSECONDS.toMicros((long) load.getLatencyNanos()) / 1000.0));
+        }
+        return metrics;
+    }
+
+}
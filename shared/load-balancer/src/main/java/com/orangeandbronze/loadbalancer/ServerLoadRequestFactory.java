@@ -0,0 +1,66 @@
+package com.orangeandbronze.loadbalancer;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+/**
+ * Feeds {@link ServerLoad} from a RestTemplate. It sits below the
+ * interceptors, so the URI it sees already names the chosen instance.
+ */
+public class ServerLoadRequestFactory implements ClientHttpRequestFactory {
+
+    private final ClientHttpRequestFactory delegate;
+
+    public ServerLoadRequestFactory(ClientHttpRequestFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        ClientHttpRequest request = delegate.createRequest(uri, httpMethod);
+        return new ClientHttpRequest() {
+
+            @Override
+            public ClientHttpResponse execute() throws IOException {
+                ServerLoad load = ServerLoad.of(uri.getHost(), uri.getPort());
+                long start = load.start();
+                try {
+                    ClientHttpResponse response = request.execute();
+                    load.end(start);
+                    return response;
+                } catch (IOException | RuntimeException ex) {
+                    load.fail(start);
+                    throw ex;
+                }
+            }
+
+            @Override
+            public OutputStream getBody() throws IOException {
+                return request.getBody();
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return request.getHeaders();
+            }
+
+            @Override
+            public HttpMethod getMethod() {
+                return request.getMethod();
+            }
+
+            @Override
+            public URI getURI() {
+                return request.getURI();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.orangeandbronze.loadbalancer;
+
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.RoundRobinRule;
+import com.netflix.loadbalancer.Server;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A fleet where one instance has degraded: four instances with four
+ * workers each, three answering in 5 ms and one in 40 ms. Closed-loop
+ * clients go through the rule, and a request waits for a worker of the
+ * chosen instance. Round robin keeps sending the slow instance its share,
+ * so requests queue up there; PeakEwmaRule sees its latency and queue and
+ * moves the load to the fast ones.
+ */
+public class PeakEwmaRuleSimulationTest {
+
+    private static final long[] SERVICE_MILLIS = {5, 5, 5, 40};
+    private static final int WORKERS = 4;
+    private static final int CLIENTS = 32;
+    private static final long RUN_MILLIS = 2000;
+
+    @Test
+    public void beatsRoundRobinOnADegradedFleet() throws Exception {
+        Result roundRobin = run(new RoundRobinRule());
+        Result peakEwma = run(new PeakEwmaRule());
+
+        assertTrue("p99 " + peakEwma.p99Millis() + " ms with PeakEwmaRule, "
+                        + roundRobin.p99Millis() + " ms with round robin",
+                peakEwma.p99Millis() * 2 < roundRobin.p99Millis());
+        assertTrue(peakEwma + " against " + roundRobin, peakEwma.latencies.size() > roundRobin.latencies.size());
+    }
+
+    private Result run(AbstractLoadBalancerRule rule) throws Exception {
+        // ServerLoad is a static registry, so every run uses hosts of its own
+        String host = "simulation-" + UUID.randomUUID();
+        BaseLoadBalancer loadBalancer = new BaseLoadBalancer();
+        Map<Server, Semaphore> workers = new HashMap<>();
+        Map<Server, Long> serviceMillis = new HashMap<>();
+        for (int i = 0; i < SERVICE_MILLIS.length; i++) {
+            Server server = new Server(host, i + 1);
+            loadBalancer.addServer(server);
+            workers.put(server, new Semaphore(WORKERS, true));
+            serviceMillis.put(server, SERVICE_MILLIS[i]);
+        }
+        rule.setLoadBalancer(loadBalancer);
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+        List<Future<Result>> results = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            results.add(clients.submit(() -> {
+                Result result = new Result();
+                start.await();
+                while (System.nanoTime() < deadline) {
+                    Server server = rule.choose(null);
+                    ServerLoad load = ServerLoad.of(server.getHost(), server.getPort());
+                    long begin = load.start();
+                    Semaphore instance = workers.get(server);
+                    instance.acquire();
+                    try {
+                        Thread.sleep(serviceMillis.get(server));
+                    } finally {
+                        instance.release();
+                    }
+                    load.end(begin);
+                    result.latencies.add(System.nanoTime() - begin);
+                }
+                return result;
+            }));
+        }
+        start.countDown();
+        Result total = new Result();
+        for (Future<Result> result : results) {
+            total.latencies.addAll(result.get().latencies);
+        }
+        clients.shutdown();
+        return total;
+    }
+
+    private static class Result {
+
+        final List<Long> latencies = new ArrayList<>();
+
+        long p99Millis() {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return TimeUnit.NANOSECONDS.toMillis(sorted.get((int) (sorted.size() * 0.99)));
+        }
+
+        long p50Millis() {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return TimeUnit.NANOSECONDS.toMillis(sorted.get(sorted.size() / 2));
+        }
+
+        @Override
+        public String toString() {
+            return latencies.size() + " served, p50 " + p50Millis() + " ms, p99 " + p99Millis() + " ms";
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.orangeandbronze.loadbalancer;
+
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.Server;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class PeakEwmaRuleTest {
+
+    /*
+     * ServerLoad is a static registry, so every test uses hosts of its own.
+     */
+    private final String host = "peak-ewma-" + UUID.randomUUID();
+
+    @Test
+    public void picksTheFasterOfTwo() {
+        Server slow = server(1);
+        Server fast = server(2);
+        sample(slow, 200);
+        sample(fast, 10);
+
+        PeakEwmaRule rule = rule(slow, fast);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(fast, rule.choose(null));
+        }
+    }
+
+    @Test
+    public void picksTheLessBusyOfTwoEquallyFast() {
+        Server busy = server(1);
+        Server idle = server(2);
+        sample(busy, 50);
+        sample(idle, 50);
+        for (int i = 0; i < 3; i++) {
+            load(busy).start();
+        }
+
+        PeakEwmaRule rule = rule(busy, idle);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(idle, rule.choose(null));
+        }
+    }
+
+    @Test
+    public void fastFailuresDoNotAttractTraffic() {
+        Server failing = server(1);
+        Server healthy = server(2);
+        load(failing).fail(load(failing).start());
+        sample(healthy, 100);
+
+        PeakEwmaRule rule = rule(failing, healthy);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(healthy, rule.choose(null));
+        }
+    }
+
+    @Test
+    public void unmeasuredInstanceIsProbedWhileIdle() {
+        Server known = server(1);
+        Server fresh = server(2);
+        sample(known, 5);
+
+        assertEquals(fresh, rule(known, fresh).choose(null));
+
+        load(fresh).start();
+        assertEquals(known, rule(known, fresh).choose(null));
+    }
+
+    @Test
+    public void mostLoadedOfManyIsNeverChosen() {
+        Server[] servers = new Server[4];
+        for (int i = 0; i < servers.length; i++) {
+            servers[i] = server(i + 1);
+            sample(servers[i], 10 * (i + 1));
+        }
+
+        PeakEwmaRule rule = rule(servers);
+
+        // it loses every comparison it is drawn into
+        for (int i = 0; i < 1000; i++) {
+            assertNotEquals(servers[3], rule.choose(null));
+        }
+    }
+
+    @Test
+    public void handlesSmallFleets() {
+        Server only = server(1);
+
+        assertEquals(only, rule(only).choose(null));
+        assertNull(rule().choose(null));
+    }
+
+    private Server server(int port) {
+        return new Server(host, port);
+    }
+
+    private static ServerLoad load(Server server) {
+        return ServerLoad.of(server.getHost(), server.getPort());
+    }
+
+    /**
+     * Records one finished request that took the given time.
+     */
+    private static void sample(Server server, long millis) {
+        ServerLoad load = load(server);
+        load.start();
+        load.end(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static PeakEwmaRule rule(Server... servers) {
+        BaseLoadBalancer loadBalancer = new BaseLoadBalancer();
+        loadBalancer.addServers(Arrays.asList(servers));
+        PeakEwmaRule rule = new PeakEwmaRule();
+        rule.setLoadBalancer(loadBalancer);
+        return rule;
+    }
+
+}
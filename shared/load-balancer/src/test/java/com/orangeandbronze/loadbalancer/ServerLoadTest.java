@@ -0,0 +1,79 @@
+package com.orangeandbronze.loadbalancer;
+
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ServerLoadTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /*
+     * ServerLoad is a static registry, so every test uses a host of its own.
+     */
+    private final ServerLoad load = ServerLoad.of("server-load-" + UUID.randomUUID(), 80);
+
+    @Test
+    public void steadyStreamSettlesOnItsLatency() {
+        // one sample every 10 ms for a minute, the last one just now
+        long now = System.nanoTime();
+        stream(load, now - TimeUnit.SECONDS.toNanos(60), now, 10 * MILLIS, 20 * MILLIS);
+
+        assertEquals(20.0, load.getLatencyNanos() / MILLIS, 0.2);
+    }
+
+    @Test
+    public void slowSampleIsTakenAtOnce() {
+        long now = System.nanoTime();
+        stream(load, now - TimeUnit.SECONDS.toNanos(10), now - MILLIS, 10 * MILLIS, 20 * MILLIS);
+
+        load.start();
+        load.record(now, 500 * MILLIS);
+
+        assertEquals(500.0, load.getLatencyNanos() / MILLIS, 1);
+    }
+
+    @Test
+    public void steadyStreamEasesDownFromAPeak() {
+        assertEquals(20 + 480 * Math.exp(-0.5), afterPeak(5), 5);
+        assertEquals(20.0, afterPeak(90), 0.5);
+    }
+
+    /**
+     * @return the latency after a 500 ms peak followed by the given number
+     * of seconds of 20 ms samples
+     */
+    private static double afterPeak(long seconds) {
+        ServerLoad load = ServerLoad.of("server-load-" + UUID.randomUUID(), 80);
+        long now = System.nanoTime();
+        long begin = now - TimeUnit.SECONDS.toNanos(seconds);
+        load.start();
+        load.record(begin, 500 * MILLIS);
+        stream(load, begin + 10 * MILLIS, now, 10 * MILLIS, 20 * MILLIS);
+        return load.getLatencyNanos() / MILLIS;
+    }
+
+    @Test
+    public void idleInstanceIsForgotten() {
+        long now = System.nanoTime();
+        load.start();
+        load.record(now - TimeUnit.SECONDS.toNanos(60), 500 * MILLIS);
+
+        assertEquals(0.0, load.getLatencyNanos() / MILLIS, 2);
+    }
+
+    /**
+     * Records one request of the given latency every interval, from begin
+     * up to end.
+     */
+    private static void stream(ServerLoad load, long begin, long end, long interval, long rtt) {
+        for (long at = begin; at <= end; at += interval) {
+            load.start();
+            load.record(at, rtt);
+        }
+    }
+
+}
@@ -0,0 +1,250 @@
+package com.orangeandbronze.storage;
+
+import zipkin.Span;
+import zipkin.internal.ApplyTimestampAndDuration;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the segment being written, on the heap. Spans of a trace are
+ * chained through an open addressing table from trace ID to its last span,
+ * and each service keeps the timestamp and trace ID of every span it took
+ * part in. Once the segment is full this is written out as a
+ * {@link SealedIndex}. Not thread safe.
+ */
+final class ActiveIndex implements SegmentIndex {
+
+    // trace ID and position of each span, in the order written
+    private final LongPairs spans = new LongPairs(1024);
+    // the span before each one in the same trace, or -1
+    private int[] previous = new int[1024];
+    // trace ID to its last span plus one, 0 for a free slot
+    private long[] keys = new long[1024];
+    private int[] heads = new int[1024];
+    private int traces;
+
+    private final Map<String, Service> services = new HashMap<>();
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private long lastWritten;
+
+    /**
+     * @return the names of the services the span belongs to
+     */
+    Set<String> add(Span span, long position, long now) {
+        int entry = spans.size();
+        spans.add(span.traceId, position);
+        if (entry == previous.length) {
+            previous = Arrays.copyOf(previous, entry * 2);
+        }
+        int slot = slot(span.traceId);
+        if (heads[slot] == 0) {
+            keys[slot] = span.traceId;
+            traces++;
+        }
+        previous[entry] = heads[slot] - 1;
+        heads[slot] = entry + 1;
+        if (traces * 2 > keys.length) {
+            grow();
+        }
+
+        Long timestamp = span.timestamp != null ? span.timestamp : ApplyTimestampAndDuration.guessTimestamp(span);
+        if (timestamp != null) {
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+        Set<String> serviceNames = span.serviceNames();
+        for (String serviceName : serviceNames) {
+            Service service = services.computeIfAbsent(serviceName, name -> new Service());
+            if (!span.name.isEmpty()) {
+                service.spanNames.add(span.name);
+            }
+            if (timestamp != null) {
+                service.traces.add(timestamp, span.traceId);
+            }
+        }
+        lastWritten = Math.max(lastWritten, now);
+        return serviceNames;
+    }
+
+    @Override
+    public long[] positions(long traceId) {
+        int slot = slot(traceId);
+        int count = 0;
+        for (int entry = heads[slot] - 1; entry >= 0; entry = previous[entry]) {
+            count++;
+        }
+        long[] positions = new long[count];
+        for (int entry = heads[slot] - 1; entry >= 0; entry = previous[entry]) {
+            positions[--count] = spans.second(entry);
+        }
+        return positions;
+    }
+
+    @Override
+    public void candidates(String serviceName, long from, long to, LongPairs into) {
+        for (Map.Entry<String, Service> service : services.entrySet()) {
+            if (serviceName == null || serviceName.equals(service.getKey())) {
+                LongPairs traces = service.getValue().traces;
+                for (int i = 0; i < traces.size(); i++) {
+                    if (traces.first(i) >= from && traces.first(i) <= to) {
+                        into.add(traces.first(i), traces.second(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Set<String>> spanNames() {
+        Map<String, Set<String>> spanNames = new HashMap<>();
+        for (Map.Entry<String, Service> service : services.entrySet()) {
+            spanNames.put(service.getKey(), Collections.unmodifiableSet(service.getValue().spanNames));
+        }
+        return spanNames;
+    }
+
+    @Override
+    public long minTimestamp() {
+        return minTimestamp;
+    }
+
+    @Override
+    public long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    @Override
+    public long lastWritten() {
+        return lastWritten;
+    }
+
+    void lastWritten(long lastWritten) {
+        this.lastWritten = lastWritten;
+    }
+
+    @Override
+    public int spans() {
+        return spans.size();
+    }
+
+    /**
+     * Writes the index in the form {@link SealedIndex} reads: span
+     * positions sorted by trace ID, and per service each trace once, with
+     * the earliest timestamp it had there, latest first. The file is
+     * replaced whole, so a crash leaves either none or a complete one.
+     */
+    void write(File file) throws IOException {
+        LongPairs sorted = new LongPairs(spans.size());
+        for (int i = 0; i < spans.size(); i++) {
+            sorted.add(spans.first(i), spans.second(i));
+        }
+        sorted.sort();
+
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp.toFile()), 64 * 1024))) {
+                out.writeInt(SealedIndex.MAGIC);
+                out.writeLong(lastWritten);
+                out.writeLong(minTimestamp);
+                out.writeLong(maxTimestamp);
+                out.writeInt(sorted.size());
+                for (int i = 0; i < sorted.size(); i++) {
+                    out.writeLong(sorted.first(i));
+                }
+                for (int i = 0; i < sorted.size(); i++) {
+                    out.writeLong(sorted.second(i));
+                }
+                out.writeInt(services.size());
+                for (Map.Entry<String, Service> service : services.entrySet()) {
+                    writeString(out, service.getKey());
+                    out.writeInt(service.getValue().spanNames.size());
+                    for (String spanName : service.getValue().spanNames) {
+                        writeString(out, spanName);
+                    }
+                    LongPairs traces = service.getValue().earliestByTrace();
+                    out.writeInt(traces.size());
+                    for (int i = traces.size() - 1; i >= 0; i--) {
+                        out.writeLong(traces.first(i));
+                    }
+                    for (int i = traces.size() - 1; i >= 0; i--) {
+                        out.writeLong(traces.second(i));
+                    }
+                }
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private int slot(long traceId) {
+        int mask = keys.length - 1;
+        int slot = (int) ((traceId * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (heads[slot] != 0 && keys[slot] != traceId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        keys = new long[oldKeys.length * 2];
+        heads = new int[oldHeads.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+    }
+
+    private static final class Service {
+
+        final Set<String> spanNames = new HashSet<>();
+        // timestamp and trace ID of each span
+        final LongPairs traces = new LongPairs();
+
+        // timestamp and trace ID, each trace once, sorted by timestamp
+        LongPairs earliestByTrace() {
+            LongPairs byTrace = new LongPairs(traces.size());
+            for (int i = 0; i < traces.size(); i++) {
+                byTrace.add(traces.second(i), traces.first(i));
+            }
+            byTrace.sort();
+            LongPairs earliest = new LongPairs(byTrace.size());
+            for (int i = 0; i < byTrace.size(); i++) {
+                if (i == 0 || byTrace.first(i) != byTrace.first(i - 1)) {
+                    earliest.add(byTrace.second(i), byTrace.first(i));
+                }
+            }
+            earliest.sort();
+            return earliest;
+        }
+
+    }
+
+}
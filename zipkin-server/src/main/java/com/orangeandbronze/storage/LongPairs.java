@@ -0,0 +1,123 @@
+package com.orangeandbronze.storage;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of pairs of longs, such as trace ID and position, held in
+ * two arrays instead of as boxed objects on the heap. Not thread safe.
+ */
+final class LongPairs {
+
+    private static final int INSERTION_SORT = 16;
+
+    private long[] firsts;
+    private long[] seconds;
+    private int size;
+
+    LongPairs() {
+        this(16);
+    }
+
+    LongPairs(int capacity) {
+        firsts = new long[Math.max(capacity, 1)];
+        seconds = new long[firsts.length];
+    }
+
+    void add(long first, long second) {
+        if (size == firsts.length) {
+            firsts = Arrays.copyOf(firsts, size * 2);
+            seconds = Arrays.copyOf(seconds, size * 2);
+        }
+        firsts[size] = first;
+        seconds[size] = second;
+        size++;
+    }
+
+    long first(int index) {
+        return firsts[index];
+    }
+
+    long second(int index) {
+        return seconds[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Drops the pairs from {@code size} on.
+     */
+    void truncate(int size) {
+        this.size = Math.min(this.size, size);
+    }
+
+    /**
+     * Sorts by the first of each pair, then the second, ascending.
+     */
+    void sort() {
+        sort(0, size);
+    }
+
+    private void sort(int from, int to) {
+        while (to - from > INSERTION_SORT) {
+            int pivot = median(from, (from + to) >>> 1, to - 1);
+            long pivotFirst = firsts[pivot];
+            long pivotSecond = seconds[pivot];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (compare(i, pivotFirst, pivotSecond) < 0) {
+                    i++;
+                }
+                while (compare(j, pivotFirst, pivotSecond) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // recurse into the smaller side so the stack stays shallow
+            if (j + 1 - from < to - i) {
+                sort(from, j + 1);
+                from = i;
+            } else {
+                sort(i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compare(j, firsts[j - 1], seconds[j - 1]) < 0; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private int median(int a, int b, int c) {
+        if (compare(a, firsts[b], seconds[b]) < 0) {
+            if (compare(b, firsts[c], seconds[c]) < 0) {
+                return b;
+            }
+            return compare(a, firsts[c], seconds[c]) < 0 ? c : a;
+        }
+        if (compare(a, firsts[c], seconds[c]) < 0) {
+            return a;
+        }
+        return compare(b, firsts[c], seconds[c]) < 0 ? c : b;
+    }
+
+    private int compare(int index, long first, long second) {
+        int compared = Long.compare(firsts[index], first);
+        return compared != 0 ? compared : Long.compare(seconds[index], second);
+    }
+
+    private void swap(int i, int j) {
+        long first = firsts[i];
+        long second = seconds[i];
+        firsts[i] = firsts[j];
+        seconds[i] = seconds[j];
+        firsts[j] = first;
+        seconds[j] = second;
+    }
+
+}
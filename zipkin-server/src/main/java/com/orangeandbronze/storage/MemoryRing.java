@@ -0,0 +1,79 @@
+package com.orangeandbronze.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The most recent blocks of the span log, in direct buffers outside the
+ * heap. Block {@code n} is kept in slot {@code n % slots} until the ring
+ * comes round to it again, by which time it is in its segment file. Not
+ * thread safe: {@link SegmentStorage} guards it.
+ */
+class MemoryRing {
+
+    private final int blockBytes;
+    private final ByteBuffer[] slots;
+    // oldest block still held, and the one being filled
+    private long first;
+    private long current;
+
+    MemoryRing(long memoryBytes, int blockBytes, long block) {
+        this.blockBytes = blockBytes;
+        this.slots = new ByteBuffer[(int) Math.max(2, memoryBytes / blockBytes)];
+        this.first = block;
+        this.current = block;
+    }
+
+    boolean contains(long position) {
+        long block = position / blockBytes;
+        return block >= first && block <= current;
+    }
+
+    /**
+     * Starts filling {@code block}, giving up the oldest one if the ring is
+     * full.
+     */
+    void advance(long block) {
+        current = block;
+        first = Math.max(first, block - slots.length + 1);
+    }
+
+    void write(long position, byte[] record) {
+        ByteBuffer slot = slot(position / blockBytes);
+        int offset = (int) (position % blockBytes);
+        slot.putInt(offset, record.length);
+        ByteBuffer target = slot.duplicate();
+        target.position(offset + 4);
+        target.put(record);
+    }
+
+    byte[] read(long position) {
+        ByteBuffer source = slot(position / blockBytes).duplicate();
+        int offset = (int) (position % blockBytes);
+        byte[] record = new byte[source.getInt(offset)];
+        source.position(offset + 4);
+        source.get(record);
+        return record;
+    }
+
+    /**
+     * The first {@code length} bytes of a block, to write it out.
+     */
+    ByteBuffer contents(long block, int length) {
+        ByteBuffer contents = slot(block).duplicate();
+        contents.clear().limit(length);
+        return contents;
+    }
+
+    long bytes() {
+        return (long) slots.length * blockBytes;
+    }
+
+    private ByteBuffer slot(long block) {
+        int slot = (int) (block % slots.length);
+        if (slots[slot] == null) {
+            slots[slot] = ByteBuffer.allocateDirect(blockBytes);
+        }
+        return slots[slot];
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.orangeandbronze.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of a full segment, read from the file {@link ActiveIndex#write}
+ * left, which is mapped into memory rather than loaded onto the heap:
+ * <pre>
+ * magic, last written, min timestamp, max timestamp
+ * span count, trace IDs (sorted), positions (in the same order)
+ * service count, per service:
+ *     name, span name count, span names,
+ *     trace count, timestamps (latest first), trace IDs (in the same order)
+ * </pre>
+ * Only service and span names are read up front. Safe for concurrent use.
+ */
+final class SealedIndex implements SegmentIndex {
+
+    static final int MAGIC = 0x5a534931;
+
+    private static final long[] NONE = new long[0];
+
+    private final MappedByteBuffer buffer;
+    private final long lastWritten;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final int spans;
+    private final int traceIds;
+    private final int positions;
+    private final Map<String, Service> services = new HashMap<>();
+    private final Map<String, Set<String>> spanNames = new HashMap<>();
+
+    private SealedIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        ByteBuffer header = buffer.duplicate();
+        try {
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a segment index");
+            }
+            lastWritten = header.getLong();
+            minTimestamp = header.getLong();
+            maxTimestamp = header.getLong();
+            spans = header.getInt();
+            traceIds = header.position();
+            positions = traceIds + spans * 8;
+            header.position(positions + spans * 8);
+            int count = header.getInt();
+            for (int i = 0; i < count; i++) {
+                String name = readString(header);
+                Set<String> names = new HashSet<>();
+                for (int j = header.getInt(); j > 0; j--) {
+                    names.add(readString(header));
+                }
+                int traces = header.getInt();
+                services.put(name, new Service(header.position(), traces));
+                spanNames.put(name, Collections.unmodifiableSet(names));
+                header.position(header.position() + traces * 16);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Truncated segment index", e);
+        }
+    }
+
+    static SealedIndex open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new SealedIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public long[] positions(long traceId) {
+        int low = 0;
+        int high = spans;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(traceIds + middle * 8) < traceId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int end = low;
+        while (end < spans && buffer.getLong(traceIds + end * 8) == traceId) {
+            end++;
+        }
+        if (end == low) {
+            return NONE;
+        }
+        long[] found = new long[end - low];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = buffer.getLong(positions + (low + i) * 8);
+        }
+        return found;
+    }
+
+    @Override
+    public void candidates(String serviceName, long from, long to, LongPairs into) {
+        if (serviceName != null) {
+            Service service = services.get(serviceName);
+            if (service != null) {
+                service.candidates(from, to, into);
+            }
+            return;
+        }
+        for (Service service : services.values()) {
+            service.candidates(from, to, into);
+        }
+    }
+
+    @Override
+    public Map<String, Set<String>> spanNames() {
+        return Collections.unmodifiableMap(spanNames);
+    }
+
+    @Override
+    public long minTimestamp() {
+        return minTimestamp;
+    }
+
+    @Override
+    public long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    @Override
+    public long lastWritten() {
+        return lastWritten;
+    }
+
+    @Override
+    public int spans() {
+        return spans;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private final class Service {
+
+        private final int timestamps;
+        private final int traceIds;
+        private final int count;
+
+        Service(int offset, int count) {
+            this.timestamps = offset;
+            this.traceIds = offset + count * 8;
+            this.count = count;
+        }
+
+        // timestamps are latest first, so skip those after to and stop at from
+        void candidates(long from, long to, LongPairs into) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (buffer.getLong(timestamps + middle * 8) > to) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int i = low; i < count; i++) {
+                long timestamp = buffer.getLong(timestamps + i * 8);
+                if (timestamp < from) {
+                    break;
+                }
+                into.add(timestamp, buffer.getLong(traceIds + i * 8));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.orangeandbronze.storage;
+
+import zipkin.Codec;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only file of span blocks starting at some position of the log,
+ * named after it, and its index. Each span is its length followed by its
+ * thrift encoding. Blocks are written at their offset from the start of
+ * the file, so what is left over at the end of one is a hole that reads
+ * back as a zero length.
+ */
+class Segment {
+
+    static final String DATA = ".seg";
+    static final String INDEX = ".idx";
+
+    // most spans are smaller, so one read usually gets the whole of one
+    private static final int READ_AHEAD = 512;
+
+    private final long start;
+    private final File data;
+    private final FileChannel channel;
+    private volatile SegmentIndex index;
+
+    private Segment(long start, File data, FileChannel channel) {
+        this.start = start;
+        this.data = data;
+        this.channel = channel;
+    }
+
+    static Segment create(File directory, long start) throws IOException {
+        File data = new File(directory, String.format("%020d", start) + DATA);
+        return new Segment(start, data, FileChannel.open(data.toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    static Segment open(File data) throws IOException {
+        String name = data.getName();
+        long start;
+        try {
+            start = Long.parseLong(name.substring(0, name.length() - DATA.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a segment: " + name);
+        }
+        return new Segment(start, data, FileChannel.open(data.toPath(), StandardOpenOption.READ));
+    }
+
+    long start() {
+        return start;
+    }
+
+    File file() {
+        return data;
+    }
+
+    SegmentIndex index() {
+        return index;
+    }
+
+    void index(SegmentIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Bytes of spans and index on disk.
+     */
+    long bytes() {
+        return data.length() + indexFile().length();
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    void write(ByteBuffer contents, long position) throws IOException {
+        long offset = position - start;
+        while (contents.hasRemaining()) {
+            offset += channel.write(contents, offset);
+        }
+    }
+
+    byte[] read(long position) throws IOException {
+        long offset = position - start;
+        ByteBuffer buffer = ByteBuffer.allocate(READ_AHEAD);
+        readFully(buffer, offset, 4);
+        int length = buffer.getInt(0);
+        if (length <= 0) {
+            throw new IOException("No span at " + position + " in " + data);
+        }
+        byte[] record = new byte[length];
+        int buffered = Math.min(buffer.position() - 4, length);
+        buffer.flip().position(4);
+        buffer.get(record, 0, buffered);
+        if (buffered < length) {
+            readFully(ByteBuffer.wrap(record, buffered, length - buffered), offset + 4 + buffered,
+                    length - buffered);
+        }
+        return record;
+    }
+
+    /**
+     * Uses the index written when this segment was full, or builds it again
+     * from the spans if there is none, as after a crash.
+     *
+     * @return whether the index had to be built again
+     */
+    boolean load(int blockBytes) throws IOException {
+        File file = indexFile();
+        if (file.isFile()) {
+            try {
+                index = SealedIndex.open(file);
+                return false;
+            } catch (IOException e) {
+                // written by something else, build it again
+            }
+        }
+        ActiveIndex scanned = scan(blockBytes);
+        if (scanned.spans() > 0) {
+            seal(scanned);
+        } else {
+            index = scanned;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the index of this full segment to disk and serves from it from
+     * now on.
+     */
+    void seal(ActiveIndex active) throws IOException {
+        File file = indexFile();
+        active.write(file);
+        index = SealedIndex.open(file);
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to lose
+        }
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(indexFile().toPath());
+        Files.deleteIfExists(data.toPath());
+    }
+
+    // reads each block up to its first zero or cut off length
+    private ActiveIndex scan(int blockBytes) throws IOException {
+        ActiveIndex scanned = new ActiveIndex();
+        ByteBuffer block = ByteBuffer.allocate(blockBytes);
+        long size = channel.size();
+        for (long offset = 0; offset < size; offset += blockBytes) {
+            block.clear();
+            while (block.hasRemaining() && channel.read(block, offset + block.position()) > 0) {
+                // until the block or the file ends
+            }
+            int end = block.position();
+            int at = 0;
+            while (at + 4 <= end) {
+                int length = block.getInt(at);
+                if (length <= 0 || at + 4 + length > end) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                block.position(at + 4);
+                block.get(record);
+                try {
+                    scanned.add(Codec.THRIFT.readSpan(record), start + offset + at, data.lastModified());
+                } catch (IllegalArgumentException e) {
+                    break;
+                }
+                at += 4 + length;
+            }
+        }
+        return scanned;
+    }
+
+    private void readFully(ByteBuffer buffer, long offset, int atLeast) throws IOException {
+        int read = 0;
+        while (read < atLeast) {
+            int count = channel.read(buffer, offset + read);
+            if (count < 0) {
+                throw new EOFException("No span at " + (start + offset) + " in " + data);
+            }
+            read += count;
+        }
+    }
+
+    private File indexFile() {
+        String name = data.getName();
+        return new File(data.getParentFile(), name.substring(0, name.length() - DATA.length()) + INDEX);
+    }
+
+}
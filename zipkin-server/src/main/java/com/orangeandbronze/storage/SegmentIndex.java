@@ -0,0 +1,48 @@
+package com.orangeandbronze.storage;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What a {@link Segment} holds: where the spans of each trace are, and
+ * which traces each service took part in and when. Timestamps are epoch
+ * microseconds, as in spans.
+ */
+interface SegmentIndex {
+
+    /**
+     * Positions of the spans whose trace ID has these lower 64 bits, in the
+     * order they were written.
+     */
+    long[] positions(long traceId);
+
+    /**
+     * Adds timestamp and trace ID of the traces {@code serviceName} took
+     * part in between {@code from} and {@code to}, or of all traces if it is
+     * null. A trace may be added more than once.
+     */
+    void candidates(String serviceName, long from, long to, LongPairs into);
+
+    /**
+     * Span names by service name.
+     */
+    Map<String, Set<String>> spanNames();
+
+    /**
+     * Earliest span timestamp, {@link Long#MAX_VALUE} if none had one.
+     */
+    long minTimestamp();
+
+    /**
+     * Latest span timestamp, {@link Long#MIN_VALUE} if none had one.
+     */
+    long maxTimestamp();
+
+    /**
+     * When (epoch milliseconds) the last span was written.
+     */
+    long lastWritten();
+
+    int spans();
+
+}
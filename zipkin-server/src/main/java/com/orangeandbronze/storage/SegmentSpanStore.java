@@ -0,0 +1,164 @@
+package com.orangeandbronze.storage;
+
+import zipkin.DependencyLink;
+import zipkin.Span;
+import zipkin.internal.CorrectForClockSkew;
+import zipkin.internal.DependencyLinker;
+import zipkin.internal.GroupByTraceId;
+import zipkin.internal.MergeById;
+import zipkin.storage.QueryRequest;
+import zipkin.storage.SpanStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Answers queries from the indexes of {@link SegmentStorage}.
+ * </p><p>
+ * Trace searches go through the segments latest first, collecting the
+ * traces the service took part in within the time window. Those newer than
+ * anything in the segments left are fetched, merged and tested against the
+ * request, newest first, until there are {@code limit} of them; so a search
+ * for recent traces usually touches only the latest segment or two.
+ * </p>
+ */
+class SegmentSpanStore implements SpanStore {
+
+    private final SegmentStorage storage;
+    private final boolean strictTraceId;
+
+    SegmentSpanStore(SegmentStorage storage, boolean strictTraceId) {
+        this.storage = storage;
+        this.strictTraceId = strictTraceId;
+    }
+
+    @Override
+    public List<List<Span>> getTraces(QueryRequest request) {
+        long from = (request.endTs - request.lookback) * 1000;
+        long to = request.endTs * 1000;
+        List<Segment> segments = storage.segments();
+        Collections.reverse(segments);
+        // latest timestamp in each segment and those older than it
+        long[] latest = new long[segments.size() + 1];
+        latest[segments.size()] = Long.MIN_VALUE;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            latest[i] = Math.max(latest[i + 1], storage.read(segments.get(i), SegmentIndex::maxTimestamp));
+        }
+
+        List<List<Span>> traces = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        LongPairs candidates = new LongPairs();
+        for (int i = 0; i < segments.size() && traces.size() < request.limit; i++) {
+            Segment segment = segments.get(i);
+            boolean overlaps = storage.read(segment,
+                    index -> index.minTimestamp() <= to && index.maxTimestamp() >= from);
+            if (overlaps) {
+                storage.read(segment, index -> {
+                    index.candidates(request.serviceName, from, to, candidates);
+                    return null;
+                });
+            }
+            fetch(request, candidates, latest[i + 1], seen, traces);
+        }
+        fetch(request, candidates, Long.MIN_VALUE, seen, traces);
+        Collections.sort(traces, GroupByTraceId.TRACE_DESCENDING);
+        return traces.size() > request.limit ? new ArrayList<>(traces.subList(0, request.limit)) : traces;
+    }
+
+    // fetches the candidates newer than after, latest first, and keeps the rest
+    private void fetch(QueryRequest request, LongPairs candidates, long after, Set<Long> seen,
+            List<List<Span>> traces) {
+        candidates.sort();
+        int keep = candidates.size();
+        while (keep > 0 && candidates.first(keep - 1) > after) {
+            keep--;
+        }
+        for (int i = candidates.size() - 1; i >= keep && traces.size() < request.limit; i--) {
+            long traceId = candidates.second(i);
+            if (!seen.add(traceId)) {
+                continue;
+            }
+            for (List<Span> trace : GroupByTraceId.apply(storage.spans(traceId), strictTraceId, true)) {
+                if (request.test(trace)) {
+                    traces.add(trace);
+                }
+            }
+        }
+        candidates.truncate(keep);
+    }
+
+    @Override
+    public List<Span> getTrace(long traceIdHigh, long traceIdLow) {
+        List<Span> spans = getRawTrace(traceIdHigh, traceIdLow);
+        return spans == null ? null : CorrectForClockSkew.apply(MergeById.apply(spans));
+    }
+
+    @Override
+    public List<Span> getRawTrace(long traceIdHigh, long traceIdLow) {
+        List<Span> spans = storage.spans(traceIdLow);
+        if (strictTraceId) {
+            for (Iterator<Span> i = spans.iterator(); i.hasNext(); ) {
+                if (i.next().traceIdHigh != traceIdHigh) {
+                    i.remove();
+                }
+            }
+        }
+        if (spans.isEmpty()) {
+            return null;
+        }
+        Collections.sort(spans);
+        return spans;
+    }
+
+    @Deprecated
+    @Override
+    public List<Span> getTrace(long traceId) {
+        return getTrace(0L, traceId);
+    }
+
+    @Deprecated
+    @Override
+    public List<Span> getRawTrace(long traceId) {
+        return getRawTrace(0L, traceId);
+    }
+
+    @Override
+    public List<String> getServiceNames() {
+        List<String> serviceNames = new ArrayList<>(storage.spanNames().keySet());
+        Collections.sort(serviceNames);
+        return serviceNames;
+    }
+
+    @Override
+    public List<String> getSpanNames(String serviceName) {
+        if (serviceName == null) {
+            return Collections.emptyList();
+        }
+        Set<String> names = storage.spanNames().get(serviceName.toLowerCase());
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        List<String> spanNames = new ArrayList<>(names);
+        Collections.sort(spanNames);
+        return spanNames;
+    }
+
+    @Override
+    public List<DependencyLink> getDependencies(long endTs, Long lookback) {
+        QueryRequest request = QueryRequest.builder()
+                .endTs(endTs)
+                .lookback(lookback != null ? lookback : endTs)
+                .limit(Integer.MAX_VALUE)
+                .build();
+        DependencyLinker linker = new DependencyLinker();
+        for (List<Span> trace : getTraces(request)) {
+            linker.putTrace(trace);
+        }
+        return linker.link();
+    }
+
+}
@@ -0,0 +1,475 @@
+package com.orangeandbronze.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import zipkin.Codec;
+import zipkin.Span;
+import zipkin.storage.AsyncSpanConsumer;
+import zipkin.storage.AsyncSpanStore;
+import zipkin.storage.SpanStore;
+import zipkin.storage.StorageAdapters;
+import zipkin.storage.StorageComponent;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * <p>Keeps spans in a log on disk, with only the most recent part of it and
+ * the index being written in memory, instead of every span on the heap as
+ * the in-memory store does.
+ * </p><ul>
+ * <li>Spans are appended, thrift encoded, to fixed size blocks in a
+ * {@link MemoryRing} outside the heap. A full block is written to the
+ * current {@link Segment} file right away, but stays in the ring, and is
+ * read from there, until the ring comes round to it again.</li>
+ * <li>The segment being written is indexed on the heap by trace ID, and by
+ * service and timestamp. Once full, the index is written next to it and
+ * mapped from there, and a new segment started.</li>
+ * <li>Segments whose last span was written longer than {@code retention}
+ * ago are deleted, and the oldest ones besides while all of them take
+ * more than {@code max-disk-bytes}.</li>
+ * <li>At startup the segments in {@code directory} are opened again, and
+ * those left without an index by a crash indexed from their spans. Spans
+ * still in a block that was not full are lost in a crash, as they were
+ * only in memory.</li>
+ * </ul><p>
+ * One thread writes at a time. Readers of the ring and of the index being
+ * written share a read lock the writer holds while it appends; full
+ * segments are immutable and read without it.
+ * </p>
+ */
+public class SegmentStorage implements StorageComponent, StorageAdapters.SpanConsumer, PublicMetrics {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final File directory;
+    private final int blockBytes;
+    private final long segmentBytes;
+    private final long memoryBytes;
+    private final SegmentStorageProperties properties;
+    private final SegmentSpanStore spanStore;
+    private final AsyncSpanStore asyncSpanStore;
+    private final AsyncSpanConsumer asyncSpanConsumer;
+
+    private final Object writer = new Object();
+    // guards the ring, and the active segment and its index against the writer
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private MemoryRing ring;
+    private Segment active;
+    private ActiveIndex activeIndex;
+    // the block being filled, and how much of it is
+    private long block;
+    private int used;
+    // full segments, oldest first, replaced whole
+    private volatile List<Segment> sealed = Collections.emptyList();
+    // service name to span names, rebuilt when segments are deleted
+    private volatile Map<String, Set<String>> spanNames = new ConcurrentHashMap<>();
+    private volatile Exception failure;
+    private ScheduledExecutorService retention;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder memoryReads = new LongAdder();
+    private final LongAdder diskReads = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    public SegmentStorage(SegmentStorageProperties properties, boolean strictTraceId) {
+        this.properties = properties;
+        this.directory = new File(properties.getDirectory());
+        this.blockBytes = properties.getBlockBytes();
+        this.memoryBytes = properties.getMemoryBytes();
+        // whole blocks only
+        this.segmentBytes = Math.max(1, properties.getSegmentBytes() / blockBytes) * blockBytes;
+        this.spanStore = new SegmentSpanStore(this, strictTraceId);
+        this.asyncSpanStore = StorageAdapters.blockingToAsync(spanStore, Runnable::run);
+        this.asyncSpanConsumer = StorageAdapters.blockingToAsync(this, Runnable::run);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory.toPath());
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(Segment.DATA));
+        List<Segment> segments = new ArrayList<>();
+        long next = 0;
+        long spans = 0;
+        for (File file : files == null ? new File[0] : files) {
+            Segment segment = Segment.open(file);
+            try {
+                if (segment.load(blockBytes)) {
+                    logger.info("Indexed segment {} again", file);
+                }
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable segment {}: {}", file, e.getMessage());
+                segment.close();
+                continue;
+            }
+            next = Math.max(next, roundUp(segment.start() + segment.size()));
+            if (segment.index().spans() == 0) {
+                segment.delete();
+                continue;
+            }
+            segments.add(segment);
+            spans += segment.index().spans();
+        }
+        segments.sort(Comparator.comparingLong(Segment::start));
+        sealed = Collections.unmodifiableList(segments);
+        spanNames = spanNames(segments);
+        if (!segments.isEmpty()) {
+            logger.info("Opened {} segments holding {} spans from {}", segments.size(), spans, directory);
+        }
+
+        block = next / blockBytes;
+        used = 0;
+        ring = new MemoryRing(memoryBytes, blockBytes, block);
+        activeIndex = new ActiveIndex();
+        active = Segment.create(directory, next);
+        active.index(activeIndex);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("trace-storage-");
+        threadFactory.setDaemon(true);
+        retention = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        retention.scheduleWithFixedDelay(() -> {
+            try {
+                expire(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                logger.warn("Could not delete expired segments", e);
+            }
+        }, 0, properties.getRetentionCheckInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public SpanStore spanStore() {
+        return spanStore;
+    }
+
+    @Override
+    public AsyncSpanStore asyncSpanStore() {
+        return asyncSpanStore;
+    }
+
+    @Override
+    public AsyncSpanConsumer asyncSpanConsumer() {
+        return asyncSpanConsumer;
+    }
+
+    @Override
+    public CheckResult check() {
+        Exception last = failure;
+        return last == null ? CheckResult.OK : CheckResult.failed(last);
+    }
+
+    @Override
+    public void accept(List<Span> spans) {
+        if (spans.isEmpty()) {
+            return;
+        }
+        byte[][] records = new byte[spans.size()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = Codec.THRIFT.writeSpan(spans.get(i));
+        }
+        long now = System.currentTimeMillis();
+        synchronized (writer) {
+            if (active == null) {
+                throw new IllegalStateException("Storage is closed");
+            }
+            List<Segment> full = new ArrayList<>(1);
+            lock.writeLock().lock();
+            try {
+                for (int i = 0; i < records.length; i++) {
+                    byte[] record = records[i];
+                    if (record.length + 4 > blockBytes) {
+                        logger.debug("Dropping span of {} bytes, larger than a block", record.length);
+                        dropped.increment();
+                        continue;
+                    }
+                    if (used + 4 + record.length > blockBytes) {
+                        Segment segment = nextBlock();
+                        if (segment != null) {
+                            full.add(segment);
+                        }
+                    }
+                    long position = block * blockBytes + used;
+                    ring.write(position, record);
+                    used += 4 + record.length;
+                    Span span = spans.get(i);
+                    for (String serviceName : activeIndex.add(span, position, now)) {
+                        Set<String> names = spanNames.computeIfAbsent(serviceName,
+                                name -> ConcurrentHashMap.newKeySet());
+                        if (!span.name.isEmpty()) {
+                            names.add(span.name);
+                        }
+                    }
+                    accepted.increment();
+                }
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // full segments are no longer written, so no lock is needed
+            for (Segment segment : full) {
+                seal(segment);
+            }
+        }
+    }
+
+    /**
+     * Writes out what is left in memory, and the index of the segment being
+     * written.
+     */
+    @Override
+    public void close() {
+        if (retention != null) {
+            retention.shutdownNow();
+        }
+        synchronized (writer) {
+            if (active == null) {
+                return;
+            }
+            Segment last = active;
+            lock.writeLock().lock();
+            try {
+                flushBlock();
+                if (activeIndex.spans() > 0) {
+                    List<Segment> segments = new ArrayList<>(sealed);
+                    segments.add(last);
+                    sealed = Collections.unmodifiableList(segments);
+                }
+                active = null;
+            } catch (IOException e) {
+                logger.warn("Could not write the last spans to {}: {}", last.file(), e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                if (activeIndex.spans() > 0) {
+                    last.seal(activeIndex);
+                } else {
+                    last.delete();
+                }
+            } catch (IOException e) {
+                logger.warn("Could not index segment {}: {}", last.file(), e.getMessage());
+            }
+            for (Segment segment : sealed) {
+                segment.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes the full segments whose last span was written longer than
+     * {@code retention} before {@code now}, and then the oldest while the
+     * segments take more than {@code max-disk-bytes}.
+     */
+    void expire(long now) {
+        synchronized (writer) {
+            long diskBytes = active == null ? 0 : active.bytes();
+            for (Segment segment : sealed) {
+                diskBytes += segment.bytes();
+            }
+            List<Segment> kept = new ArrayList<>();
+            List<Segment> expiring = new ArrayList<>();
+            // oldest first
+            for (Segment segment : sealed) {
+                boolean old = now - segment.index().lastWritten() > properties.getRetention()
+                        || diskBytes > properties.getMaxDiskBytes();
+                if (old) {
+                    diskBytes -= segment.bytes();
+                }
+                (old ? expiring : kept).add(segment);
+            }
+            if (expiring.isEmpty() || active == null) {
+                return;
+            }
+            sealed = Collections.unmodifiableList(kept);
+            List<Segment> remaining = new ArrayList<>(kept);
+            remaining.add(active);
+            spanNames = spanNames(remaining);
+            for (Segment segment : expiring) {
+                try {
+                    segment.delete();
+                } catch (IOException e) {
+                    logger.warn("Could not delete segment {}: {}", segment.file(), e.getMessage());
+                }
+                expired.increment();
+            }
+            logger.info("Deleted {} segments past retention or max-disk-bytes", expiring.size());
+        }
+    }
+
+    /**
+     * All segments, oldest first.
+     */
+    List<Segment> segments() {
+        lock.readLock().lock();
+        try {
+            List<Segment> segments = new ArrayList<>(sealed);
+            if (active != null) {
+                segments.add(active);
+            }
+            return segments;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a segment's index, under the lock if it is still being written.
+     */
+    <T> T read(Segment segment, Function<SegmentIndex, T> reader) {
+        SegmentIndex index = segment.index();
+        if (!(index instanceof ActiveIndex)) {
+            return reader.apply(index);
+        }
+        lock.readLock().lock();
+        try {
+            return reader.apply(segment.index());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The spans whose trace ID has these lower 64 bits, from memory where
+     * still there, from their segment file otherwise.
+     */
+    List<Span> spans(long traceId) {
+        List<Segment> segments = segments();
+        long[][] positions = new long[segments.size()][];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = read(segments.get(i), index -> index.positions(traceId));
+        }
+        List<Span> spans = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (long[] found : positions) {
+                for (int j = 0; j < found.length; j++) {
+                    if (ring != null && ring.contains(found[j])) {
+                        decode(ring.read(found[j]), spans);
+                        memoryReads.increment();
+                        found[j] = -1;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < positions.length; i++) {
+            for (long position : positions[i]) {
+                if (position >= 0) {
+                    try {
+                        decode(segments.get(i).read(position), spans);
+                        diskReads.increment();
+                    } catch (IOException e) {
+                        // deleted since, or cut off by a crash
+                        logger.debug("Could not read span at {}: {}", position, e.getMessage());
+                    }
+                }
+            }
+        }
+        return spans;
+    }
+
+    Map<String, Set<String>> spanNames() {
+        return spanNames;
+    }
+
+    private void decode(byte[] record, List<Span> into) {
+        try {
+            into.add(Codec.THRIFT.readSpan(record));
+        } catch (IllegalArgumentException e) {
+            logger.debug("Skipping unreadable span: {}", e.getMessage());
+        }
+    }
+
+    // writes out the block being filled and starts the next, and the next
+    // segment if this one is full, which is returned to be sealed
+    private Segment nextBlock() throws IOException {
+        flushBlock();
+        block++;
+        used = 0;
+        ring.advance(block);
+        if (block * blockBytes - active.start() < segmentBytes) {
+            return null;
+        }
+        Segment full = active;
+        List<Segment> segments = new ArrayList<>(sealed);
+        segments.add(full);
+        sealed = Collections.unmodifiableList(segments);
+        activeIndex = new ActiveIndex();
+        active = Segment.create(directory, block * blockBytes);
+        active.index(activeIndex);
+        return full;
+    }
+
+    private void flushBlock() throws IOException {
+        if (used > 0) {
+            active.write(ring.contents(block, used), block * blockBytes);
+        }
+    }
+
+    private void seal(Segment segment) {
+        try {
+            segment.seal((ActiveIndex) segment.index());
+        } catch (IOException e) {
+            // still served from the heap, and indexed again at startup
+            logger.warn("Could not index segment {}: {}", segment.file(), e.getMessage());
+        }
+    }
+
+    private long roundUp(long position) {
+        return (position + blockBytes - 1) / blockBytes * blockBytes;
+    }
+
+    private Map<String, Set<String>> spanNames(List<Segment> segments) {
+        Map<String, Set<String>> spanNames = new ConcurrentHashMap<>();
+        for (Segment segment : segments) {
+            Map<String, Set<String>> names = read(segment, SegmentIndex::spanNames);
+            for (Map.Entry<String, Set<String>> service : names.entrySet()) {
+                spanNames.computeIfAbsent(service.getKey(), name -> ConcurrentHashMap.newKeySet())
+                        .addAll(service.getValue());
+            }
+        }
+        return spanNames;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Segment> segments = segments();
+        long diskBytes = 0;
+        for (Segment segment : segments) {
+            diskBytes += segment.bytes();
+        }
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("trace.storage.spans", accepted.sum()),
+                new Metric<>("trace.storage.dropped", dropped.sum()),
+                new Metric<>("trace.storage.segments", segments.size()),
+                new Metric<>("trace.storage.disk-bytes", diskBytes),
+                new Metric<>("trace.storage.memory-bytes", memoryBytes),
+                new Metric<>("trace.storage.memory-reads", memoryReads.sum()),
+                new Metric<>("trace.storage.disk-reads", diskReads.sum()),
+                new Metric<>("trace.storage.expired-segments", expired.sum()));
+    }
+
+}
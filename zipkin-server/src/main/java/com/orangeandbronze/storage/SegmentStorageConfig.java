@@ -0,0 +1,26 @@
+package com.orangeandbronze.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import zipkin.storage.StorageComponent;
+
+/**
+ * Puts {@link SegmentStorage} in place of the in-memory store, which the
+ * Zipkin server only sets up when there is no other
+ * {@link StorageComponent} bean.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "trace.storage", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(SegmentStorageProperties.class)
+public class SegmentStorageConfig {
+
+    @Bean
+    public SegmentStorage segmentStorage(SegmentStorageProperties properties,
+            @Value("${zipkin.storage.strict-trace-id:true}") boolean strictTraceId) {
+        return new SegmentStorage(properties, strictTraceId);
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.orangeandbronze.storage;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.concurrent.TimeUnit;
+
+@ConfigurationProperties(prefix = "trace.storage")
+public class SegmentStorageProperties {
+
+    /**
+     * Keep spans in {@link SegmentStorage} instead of the in-memory store,
+     * which holds every span on the heap and drops the oldest past
+     * {@code zipkin.storage.mem.max-spans}.
+     */
+    private boolean enabled;
+
+    /**
+     * Where segment files and their indexes are written, relative to the
+     * working directory unless absolute.
+     */
+    private String directory = "zipkin-segments";
+
+    /**
+     * Bytes of the most recent spans kept in memory, outside the heap.
+     * Older ones are read back from their segment file.
+     */
+    private long memoryBytes = 64 * 1024 * 1024;
+
+    /**
+     * Bytes spans are written to disk in. A span does not span blocks, so
+     * larger ones are dropped.
+     */
+    private int blockBytes = 1024 * 1024;
+
+    /**
+     * Bytes of spans per segment file. Once full it is indexed on disk and
+     * a new one started.
+     */
+    private long segmentBytes = 64 * 1024 * 1024;
+
+    /**
+     * How long (in milliseconds) a segment is kept after its last span was
+     * written.
+     */
+    private long retention = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Most bytes of segments and indexes on disk. Past this the oldest full
+     * segments are deleted, whatever their retention.
+     */
+    private long maxDiskBytes = 8L * 1024 * 1024 * 1024;
+
+    /**
+     * How often (in milliseconds) segments past their retention or
+     * {@code max-disk-bytes} are looked for.
+     */
+    private long retentionCheckInterval = 60000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public void setMemoryBytes(long memoryBytes) {
+        this.memoryBytes = memoryBytes;
+    }
+
+    public int getBlockBytes() {
+        return blockBytes;
+    }
+
+    public void setBlockBytes(int blockBytes) {
+        this.blockBytes = blockBytes;
+    }
+
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public void setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    public long getRetention() {
+        return retention;
+    }
+
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    public long getMaxDiskBytes() {
+        return maxDiskBytes;
+    }
+
+    public void setMaxDiskBytes(long maxDiskBytes) {
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    public long getRetentionCheckInterval() {
+        return retentionCheckInterval;
+    }
+
+    public void setRetentionCheckInterval(long retentionCheckInterval) {
+        this.retentionCheckInterval = retentionCheckInterval;
+    }
+
+}
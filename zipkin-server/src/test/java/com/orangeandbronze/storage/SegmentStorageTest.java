@@ -0,0 +1,258 @@
+package com.orangeandbronze.storage;
+
+import com.orangeandbronze.TraceServerApplication;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+import zipkin.Annotation;
+import zipkin.Codec;
+import zipkin.DependencyLink;
+import zipkin.Endpoint;
+import zipkin.Span;
+import zipkin.storage.QueryRequest;
+import zipkin.storage.StorageComponent;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Storage with blocks, memory and segments small enough that most spans
+ * end up on disk.
+ */
+public class SegmentStorageTest {
+
+    private static final long BASE = 1500000000000000L;
+    private static final int TRACES = 300;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private SegmentStorage storage;
+
+    @Before
+    public void start() throws Exception {
+        directory = folder.newFolder("segments");
+        storage = open();
+        for (int i = 0; i < TRACES; i++) {
+            storage.accept(trace(i));
+        }
+    }
+
+    @After
+    public void stop() {
+        storage.close();
+    }
+
+    @Test
+    public void tracesAreReadFromMemoryAndFromDisk() {
+        assertTrue(metric("trace.storage.segments") > 10);
+
+        assertEquals(trace(0), storage.spanStore().getTrace(0L, traceId(0)));
+        assertTrue(metric("trace.storage.disk-reads") > 0);
+        assertEquals(0, metric("trace.storage.memory-reads"));
+
+        assertEquals(trace(TRACES - 1), storage.spanStore().getTrace(0L, traceId(TRACES - 1)));
+        assertTrue(metric("trace.storage.memory-reads") > 0);
+
+        assertNull(storage.spanStore().getTrace(0L, 12345L));
+        assertNull(storage.spanStore().getTrace(1L, traceId(0)));
+    }
+
+    @Test
+    public void tracesAreFoundByServiceAndTime() {
+        QueryRequest request = QueryRequest.builder()
+                .serviceName("service-1")
+                .endTs(timestamp(150) / 1000)
+                .lookback(100L)
+                .limit(10)
+                .build();
+
+        List<Long> expected = new ArrayList<>();
+        for (int i = 150; expected.size() < 10; i--) {
+            if (i % 4 == 1) {
+                expected.add(traceId(i));
+            }
+        }
+        assertEquals(expected, traceIds(storage.spanStore().getTraces(request)));
+
+        request = request.toBuilder().serviceName(null).limit(3).build();
+        assertEquals(Arrays.asList(traceId(150), traceId(149), traceId(148)),
+                traceIds(storage.spanStore().getTraces(request)));
+
+        request = request.toBuilder().serviceName("frontend").spanName("call-1").lookback(5L).build();
+        assertEquals(Arrays.asList(traceId(149), traceId(147), traceId(145)),
+                traceIds(storage.spanStore().getTraces(request)));
+    }
+
+    @Test
+    public void servicesSpanNamesAndDependenciesAreKept() {
+        assertEquals(Arrays.asList("frontend", "service-0", "service-1", "service-2", "service-3"),
+                storage.spanStore().getServiceNames());
+        assertEquals(Arrays.asList("call-0", "call-1", "get"), storage.spanStore().getSpanNames("frontend"));
+        assertEquals(Arrays.asList("call-1"), storage.spanStore().getSpanNames("service-1"));
+
+        List<DependencyLink> links = storage.spanStore().getDependencies(timestamp(TRACES) / 1000, null);
+        assertEquals(4, links.size());
+        for (DependencyLink link : links) {
+            assertEquals("frontend", link.parent);
+            assertEquals(TRACES / 4, link.callCount);
+        }
+    }
+
+    @Test
+    public void segmentsPastRetentionAreDeleted() {
+        int segments = storage.segments().size();
+
+        storage.expire(System.currentTimeMillis() + 60001);
+
+        assertEquals(1, storage.segments().size());
+        assertEquals(segments - 1, metric("trace.storage.expired-segments"));
+        assertEquals(1, new File(directory.getPath()).list().length);
+        assertNull(storage.spanStore().getTrace(0L, traceId(0)));
+
+        storage.accept(trace(TRACES));
+        assertEquals(trace(TRACES), storage.spanStore().getTrace(0L, traceId(TRACES)));
+    }
+
+    @Test
+    public void oldestSegmentsPastMaxDiskBytesAreDeleted() throws Exception {
+        storage.close();
+        storage = open(40000);
+
+        storage.expire(System.currentTimeMillis());
+
+        assertTrue(metric("trace.storage.disk-bytes") <= 40000);
+        assertTrue(metric("trace.storage.expired-segments") > 0);
+        assertNull(storage.spanStore().getTrace(0L, traceId(0)));
+        assertEquals(trace(TRACES - 1), storage.spanStore().getTrace(0L, traceId(TRACES - 1)));
+    }
+
+    @Test
+    public void segmentsAreOpenedAgainAfterRestart() throws Exception {
+        storage.close();
+        storage = open();
+        assertEquals(trace(0), storage.spanStore().getTrace(0L, traceId(0)));
+        assertEquals(trace(TRACES - 1), storage.spanStore().getTrace(0L, traceId(TRACES - 1)));
+        assertEquals(5, storage.spanStore().getServiceNames().size());
+
+        // as if it crashed before writing any index
+        storage.close();
+        for (File index : directory.listFiles((dir, name) -> name.endsWith(Segment.INDEX))) {
+            assertTrue(index.delete());
+        }
+        storage = open();
+        assertEquals(trace(0), storage.spanStore().getTrace(0L, traceId(0)));
+        assertEquals(trace(TRACES - 1), storage.spanStore().getTrace(0L, traceId(TRACES - 1)));
+        QueryRequest request = QueryRequest.builder()
+                .serviceName("service-2")
+                .endTs(timestamp(TRACES) / 1000)
+                .limit(TRACES)
+                .build();
+        assertEquals(TRACES / 4, storage.spanStore().getTraces(request).size());
+    }
+
+    @Test
+    public void serverStoresSpansInSegments() throws Exception {
+        ConfigurableApplicationContext server = new SpringApplicationBuilder(TraceServerApplication.class).run(
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--trace.storage.enabled=true",
+                "--trace.storage.directory=" + folder.newFolder("server").getPath());
+        try {
+            assertTrue(server.getBean(StorageComponent.class) instanceof SegmentStorage);
+            String url = "http://localhost:"
+                    + ((EmbeddedWebApplicationContext) server).getEmbeddedServletContainer().getPort() + "/api/v1/";
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            RestTemplate restTemplate = new RestTemplate();
+            restTemplate.postForEntity(url + "spans", new HttpEntity<>(Codec.JSON.writeSpans(trace(7)), headers),
+                    Void.class);
+
+            String trace = restTemplate.getForObject(url + "trace/" + Long.toHexString(traceId(7)), String.class);
+            assertTrue(trace.contains("\"serviceName\":\"service-3\""));
+        } finally {
+            server.close();
+        }
+    }
+
+    private SegmentStorage open() throws Exception {
+        return open(Long.MAX_VALUE);
+    }
+
+    private SegmentStorage open(long maxDiskBytes) throws Exception {
+        SegmentStorageProperties properties = new SegmentStorageProperties();
+        properties.setDirectory(directory.getPath());
+        properties.setBlockBytes(2048);
+        properties.setMemoryBytes(8192);
+        properties.setSegmentBytes(8192);
+        properties.setRetention(60000);
+        properties.setMaxDiskBytes(maxDiskBytes);
+        SegmentStorage storage = new SegmentStorage(properties, true);
+        storage.start();
+        return storage;
+    }
+
+    private long metric(String name) {
+        for (Metric<?> metric : storage.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static List<Long> traceIds(List<List<Span>> traces) {
+        List<Long> traceIds = new ArrayList<>();
+        for (List<Span> trace : traces) {
+            traceIds.add(trace.get(0).traceId);
+        }
+        return traceIds;
+    }
+
+    private static long traceId(int trace) {
+        return 0x7a3f000000000000L + trace * 7919L;
+    }
+
+    private static long timestamp(int trace) {
+        return BASE + trace * 1000L;
+    }
+
+    // the frontend serving a request and calling one of four services,
+    // alternating between two operations
+    private static List<Span> trace(int trace) {
+        long traceId = traceId(trace);
+        long timestamp = timestamp(trace);
+        Endpoint frontend = Endpoint.create("frontend", 127 << 24 | 1);
+        Endpoint service = Endpoint.create("service-" + trace % 4, 127 << 24 | 2);
+        Span root = Span.builder().traceId(traceId).id(traceId).name("get")
+                .timestamp(timestamp).duration(500L)
+                .addAnnotation(Annotation.create(timestamp, "sr", frontend))
+                .addAnnotation(Annotation.create(timestamp + 500, "ss", frontend))
+                .build();
+        Span call = Span.builder().traceId(traceId).id(traceId + 1).parentId(traceId).name("call-" + trace % 2)
+                .timestamp(timestamp + 100).duration(300L)
+                .addAnnotation(Annotation.create(timestamp + 100, "cs", frontend))
+                .addAnnotation(Annotation.create(timestamp + 150, "sr", service))
+                .addAnnotation(Annotation.create(timestamp + 350, "ss", service))
+                .addAnnotation(Annotation.create(timestamp + 400, "cr", frontend))
+                .build();
+        return Collections.unmodifiableList(Arrays.asList(root, call));
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.orangeandbronze.storage;
+
+import org.springframework.util.FileSystemUtils;
+import zipkin.Annotation;
+import zipkin.BinaryAnnotation;
+import zipkin.Endpoint;
+import zipkin.Span;
+import zipkin.storage.InMemoryStorage;
+import zipkin.storage.QueryRequest;
+import zipkin.storage.SpanStore;
+import zipkin.storage.StorageAdapters;
+import zipkin.storage.StorageComponent;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * <p>Writes {@code spans} spans, as traces of five spans across twenty
+ * services over a day, to {@link SegmentStorage} with its default sizes, or
+ * to the in-memory store with room for all of them, and reports:
+ * </p><ul>
+ * <li>spans written per second, disk used and heap left in use;</li>
+ * <li>latency of fetching a recent trace (still in memory) and an old one
+ * (on disk), of a search by service over an hour, and of listing service
+ * and span names.</li>
+ * </ul><p>
+ * Not run by the build:
+ * </p><pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-Xmx512m -cp %classpath com.orangeandbronze.storage.SpanStorageBenchmark [spans] [segment|memory]"
+ * </pre>
+ */
+public class SpanStorageBenchmark {
+
+    private static final long BASE = TimeUnit.MILLISECONDS.toMicros(1500000000000L);
+    private static final long DAY = TimeUnit.DAYS.toMicros(1);
+    private static final int SERVICES = 20;
+    private static final int SPANS_PER_TRACE = 5;
+    private static final int BATCH = 20;
+    private static final int QUERIES = 1000;
+    private static final int WARM_UP = 200;
+
+    public static void main(String[] args) throws Exception {
+        long spans = args.length > 0 ? Long.parseLong(args[0]) : 10000000;
+        boolean memory = args.length > 1 && args[1].equals("memory");
+        int traces = (int) (spans / SPANS_PER_TRACE);
+        File directory = Files.createTempDirectory("zipkin-segments").toFile();
+        StorageComponent storage;
+        StorageAdapters.SpanConsumer consumer;
+        if (memory) {
+            InMemoryStorage inMemory = InMemoryStorage.builder().maxSpanCount(Integer.MAX_VALUE).build();
+            storage = inMemory;
+            consumer = inMemory.spanConsumer();
+        } else {
+            SegmentStorageProperties properties = new SegmentStorageProperties();
+            properties.setDirectory(directory.getPath());
+            SegmentStorage segments = new SegmentStorage(properties, true);
+            segments.start();
+            storage = segments;
+            consumer = segments;
+        }
+        try {
+            System.out.printf("%s, %,d spans in %,d traces:%n", memory ? "in-memory" : "segments",
+                    (long) traces * SPANS_PER_TRACE, traces);
+            write(consumer, traces);
+            System.gc();
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("  heap in use: %,d MB of %,d MB%n",
+                    (runtime.totalMemory() - runtime.freeMemory()) >> 20, runtime.maxMemory() >> 20);
+            if (!memory) {
+                long bytes = 0;
+                for (File file : directory.listFiles()) {
+                    bytes += file.length();
+                }
+                System.out.printf("  on disk: %,d MB in %d files%n", bytes >> 20, directory.list().length);
+            }
+            query(storage.spanStore(), traces);
+        } finally {
+            storage.close();
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    private static void write(StorageAdapters.SpanConsumer consumer, int traces) {
+        long start = System.nanoTime();
+        List<Span> batch = new ArrayList<>(BATCH * SPANS_PER_TRACE);
+        for (int trace = 0; trace < traces; trace++) {
+            batch.addAll(trace(trace, traces));
+            if (batch.size() >= BATCH * SPANS_PER_TRACE || trace == traces - 1) {
+                consumer.accept(batch);
+                batch = new ArrayList<>(BATCH * SPANS_PER_TRACE);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  write: %,.0f spans/s (%.1f s)%n", (long) traces * SPANS_PER_TRACE / seconds, seconds);
+    }
+
+    private static void query(SpanStore spanStore, int traces) {
+        Random random = new Random(1);
+        int recent = Math.min(traces, 10000);
+        report("getTrace, last " + recent + " traces", () -> {
+            int trace = traces - 1 - random.nextInt(recent);
+            return check(spanStore.getTrace(0L, traceId(trace)));
+        });
+        report("getTrace, any trace", () -> check(spanStore.getTrace(0L, traceId(random.nextInt(traces)))));
+        report("getTraces, service over an hour, limit 10", () -> {
+            long endTs = timestamp(random.nextInt(traces), traces) / 1000;
+            QueryRequest request = QueryRequest.builder()
+                    .serviceName(service(random.nextInt(SERVICES)))
+                    .endTs(endTs)
+                    .lookback(TimeUnit.HOURS.toMillis(1))
+                    .limit(10)
+                    .build();
+            return spanStore.getTraces(request);
+        });
+        report("getServiceNames", spanStore::getServiceNames);
+        report("getSpanNames", () -> spanStore.getSpanNames(service(random.nextInt(SERVICES))));
+    }
+
+    private static Object check(List<Span> trace) {
+        if (trace == null || trace.size() != SPANS_PER_TRACE) {
+            throw new IllegalStateException("Trace not found whole: " + trace);
+        }
+        return trace;
+    }
+
+    private static void report(String name, Supplier<Object> query) {
+        List<Long> nanos = new ArrayList<>();
+        for (int i = 0; i < WARM_UP + QUERIES; i++) {
+            long start = System.nanoTime();
+            query.get();
+            if (i >= WARM_UP) {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+        Collections.sort(nanos);
+        System.out.printf("  %s: p50 %.3f ms, p99 %.3f ms%n", name, nanos.get(nanos.size() / 2) / 1e6,
+                nanos.get(nanos.size() * 99 / 100) / 1e6);
+    }
+
+    // a call from the root service to four others, one of ten operations each
+    private static List<Span> trace(int trace, int traces) {
+        long traceId = traceId(trace);
+        long timestamp = timestamp(trace, traces);
+        Endpoint root = endpoint(trace % SERVICES);
+        Span[] spans = new Span[SPANS_PER_TRACE];
+        spans[0] = Span.builder().traceId(traceId).id(traceId).name("op-" + trace % 10)
+                .timestamp(timestamp).duration(5000L)
+                .addAnnotation(Annotation.create(timestamp, "sr", root))
+                .addAnnotation(Annotation.create(timestamp + 5000, "ss", root))
+                .addBinaryAnnotation(BinaryAnnotation.create("http.path", "/api/" + trace % 10, root))
+                .build();
+        for (int i = 1; i < SPANS_PER_TRACE; i++) {
+            Endpoint callee = endpoint((trace + i * 7) % SERVICES);
+            long start = timestamp + i * 1000;
+            spans[i] = Span.builder().traceId(traceId).id(traceId + i).parentId(traceId)
+                    .name("op-" + (trace + i) % 10)
+                    .timestamp(start).duration(800L)
+                    .addAnnotation(Annotation.create(start, "cs", root))
+                    .addAnnotation(Annotation.create(start + 100, "sr", callee))
+                    .addAnnotation(Annotation.create(start + 700, "ss", callee))
+                    .addAnnotation(Annotation.create(start + 800, "cr", root))
+                    .build();
+        }
+        return Arrays.asList(spans);
+    }
+
+    private static long traceId(int trace) {
+        // spread like random IDs, but known again when querying
+        long id = (trace + 1) * 0x9E3779B97F4A7C15L;
+        id ^= id >>> 31;
+        return id == 0 ? 1 : id;
+    }
+
+    private static long timestamp(int trace, int traces) {
+        return BASE + DAY * trace / traces;
+    }
+
+    private static String service(int service) {
+        return "service-" + service;
+    }
+
+    private static Endpoint endpoint(int service) {
+        return Endpoint.create(service(service), 10 << 24 | service);
+    }
+
+}